@@ -0,0 +1,86 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.benchmark;
+
+import org.apache.mahout.matrix.DenseMatrix;
+import org.apache.mahout.matrix.DenseVector;
+import org.apache.mahout.matrix.Matrix;
+import org.apache.mahout.matrix.SequentialAccessSparseVector;
+import org.apache.mahout.matrix.SparseRowMatrix;
+import org.apache.mahout.matrix.SparseVector;
+import org.apache.mahout.matrix.Vector;
+
+import java.util.Random;
+
+/**
+ * Builds the random operands of the benchmarks. Each non-zero is present with probability <code>density</code>
+ * and drawn from a standard normal distribution, so a fixed seed gives the same operands on every run.
+ */
+final class BenchmarkData {
+
+  static final long SEED = 0x5eedL;
+
+  private BenchmarkData() {
+  }
+
+  /**
+   * @param implementation the simple class name of the vector: DenseVector, SparseVector or
+   *  SequentialAccessSparseVector
+   */
+  static Vector randomVector(String implementation, int cardinality, double density, Random random) {
+    Vector result;
+    if ("DenseVector".equals(implementation)) {
+      result = new DenseVector(cardinality);
+    } else if ("SparseVector".equals(implementation)) {
+      result = new SparseVector(cardinality);
+    } else if ("SequentialAccessSparseVector".equals(implementation)) {
+      result = new SequentialAccessSparseVector(cardinality);
+    } else {
+      throw new IllegalArgumentException("Unknown vector implementation: " + implementation);
+    }
+    for (int i = 0; i < cardinality; i++) {
+      if (random.nextDouble() < density) {
+        result.setQuick(i, random.nextGaussian());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param implementation the simple class name of the matrix: DenseMatrix or SparseRowMatrix
+   */
+  static Matrix randomMatrix(String implementation, int rows, int columns, double density, Random random) {
+    Matrix result;
+    if ("DenseMatrix".equals(implementation)) {
+      result = new DenseMatrix(rows, columns);
+    } else if ("SparseRowMatrix".equals(implementation)) {
+      result = new SparseRowMatrix(new int[] {rows, columns});
+    } else {
+      throw new IllegalArgumentException("Unknown matrix implementation: " + implementation);
+    }
+    for (int row = 0; row < rows; row++) {
+      for (int column = 0; column < columns; column++) {
+        if (random.nextDouble() < density) {
+          result.setQuick(row, column, random.nextGaussian());
+        }
+      }
+    }
+    return result;
+  }
+
+}
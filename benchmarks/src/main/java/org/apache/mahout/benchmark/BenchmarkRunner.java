@@ -0,0 +1,56 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Main class of <code>benchmarks.jar</code>. Runs the benchmarks matching the regular expressions given as
+ * arguments, or all of them, with the GC profiler attached so that allocation rates and collection counts are
+ * reported next to each score:
+ *
+ * <pre>
+ * mvn -Pbenchmarks package
+ * java -jar benchmarks/target/benchmarks.jar VectorBenchmark.dot
+ * </pre>
+ *
+ * The full JMH command line, for example to change the parameters with <code>-p density=0.5</code>, is
+ * available through <code>java -cp benchmarks/target/benchmarks.jar org.openjdk.jmh.Main -prof gc</code>.
+ */
+public final class BenchmarkRunner {
+
+  private BenchmarkRunner() {
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    ChainedOptionsBuilder options = new OptionsBuilder().addProfiler(GCProfiler.class);
+    if (args.length == 0) {
+      options.include(BenchmarkRunner.class.getPackage().getName() + ".*");
+    } else {
+      for (String pattern : args) {
+        options.include(pattern);
+      }
+    }
+    new Runner(options.build()).run();
+  }
+
+}
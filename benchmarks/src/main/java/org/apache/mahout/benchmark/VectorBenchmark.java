@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.benchmark;
+
+import org.apache.mahout.matrix.BinaryFunction;
+import org.apache.mahout.matrix.Vector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Element-wise operations and iteration over pairs of vectors of the same implementation, cardinality and
+ * density.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VectorBenchmark {
+
+  @Param({"DenseVector", "SparseVector", "SequentialAccessSparseVector"})
+  public String implementation;
+
+  @Param({"1000", "100000"})
+  public int cardinality;
+
+  @Param({"1.0", "0.1", "0.01"})
+  public double density;
+
+  private Vector x;
+
+  private Vector y;
+
+  private Vector accumulator;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(BenchmarkData.SEED);
+    x = BenchmarkData.randomVector(implementation, cardinality, density, random);
+    y = BenchmarkData.randomVector(implementation, cardinality, density, random);
+    // after the first call the non-zeros of the accumulator stop changing, so every call does the same work
+    accumulator = x.copy();
+  }
+
+  @Benchmark
+  public double dot() {
+    return x.dot(y);
+  }
+
+  @Benchmark
+  public Vector plus() {
+    return x.plus(y);
+  }
+
+  @Benchmark
+  public Vector assign() {
+    return accumulator.assign(y, BinaryFunction.plus);
+  }
+
+  @Benchmark
+  public double iterate() {
+    double sum = 0.0;
+    for (Vector.Element element : x) {
+      sum += element.get();
+    }
+    return sum;
+  }
+
+}
@@ -0,0 +1,89 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.benchmark;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.mahout.matrix.AbstractVector;
+import org.apache.mahout.matrix.Vector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round-trips of vectors through their two serialized forms: the text form of {@link Vector#asFormatString()}
+ * used by the text based jobs, and the binary {@link org.apache.hadoop.io.Writable} form used in SequenceFiles.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VectorSerializationBenchmark {
+
+  @Param({"DenseVector", "SparseVector", "SequentialAccessSparseVector"})
+  public String implementation;
+
+  @Param({"100", "10000"})
+  public int cardinality;
+
+  @Param({"1.0", "0.01"})
+  public double density;
+
+  private Vector vector;
+
+  private Vector decoded;
+
+  private final DataOutputBuffer out = new DataOutputBuffer();
+
+  private final DataInputBuffer in = new DataInputBuffer();
+
+  @Setup
+  public void setUp() {
+    vector = BenchmarkData.randomVector(implementation, cardinality, density, new Random(BenchmarkData.SEED));
+    decoded = vector.like();
+  }
+
+  @Benchmark
+  public Vector formatRoundTrip() {
+    return AbstractVector.decodeVector(vector.asFormatString());
+  }
+
+  @Benchmark
+  public Vector writableRoundTrip() throws IOException {
+    out.reset();
+    vector.write(out);
+    in.reset(out.getData(), out.getLength());
+    decoded.readFields(in);
+    return decoded;
+  }
+
+}
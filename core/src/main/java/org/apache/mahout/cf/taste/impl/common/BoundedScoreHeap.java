@@ -0,0 +1,205 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.common;
+
+/**
+ * <p>Keeps track of the <code>capacity</code> highest scores offered to it, using a min-heap of primitive
+ * <code>double</code>s so that nothing is allocated per offered score.</p>
+ *
+ * <p>Each accepted score is given a <em>slot</em> number between 0 and <code>capacity - 1</code>. The caller keeps
+ * whatever the score belongs to (an index, or the thing itself) in its own array or list at that slot. A new slot
+ * is always {@link #size()} - 1 after the offer, so a list can simply be appended to. When a lower score is evicted
+ * to make room, its slot is handed to the new score, so the caller's storage never grows past
+ * <code>capacity</code> and objects need only be created for the final top entries.</p>
+ *
+ * <p>{@link Double#NaN} scores are never accepted. Ties with the lowest kept score are not accepted once
+ * the heap is full, so among equal scores the first ones offered win.</p>
+ *
+ * <p>This class is not thread-safe, but may be {@link #clear()}ed and reused.</p>
+ */
+public final class BoundedScoreHeap {
+
+  private static final int INITIAL_ARRAY_SIZE = 16;
+
+  private final int capacity;
+  /** Heap of slot numbers, ordered by their score; the lowest score is at the root. */
+  private int[] heap;
+  private double[] slotScores;
+  private int size;
+
+  /**
+   * @param capacity maximum number of scores to keep
+   * @throws IllegalArgumentException if capacity is less than 1
+   */
+  public BoundedScoreHeap(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be at least 1");
+    }
+    this.capacity = capacity;
+    // Capacity may be huge when the caller wants "all of them", so grow on demand
+    int arraySize = Math.min(capacity, INITIAL_ARRAY_SIZE);
+    this.heap = new int[arraySize];
+    this.slotScores = new double[arraySize];
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @return <code>true</code> if {@link #offer(double)} would accept this score
+   */
+  public boolean wouldAccept(double score) {
+    return !Double.isNaN(score) && (size < capacity || score > slotScores[heap[0]]);
+  }
+
+  /**
+   * @return lowest score kept, or {@link Double#NEGATIVE_INFINITY} while fewer than <code>capacity</code>
+   *  scores are kept (since then any score is accepted)
+   */
+  public double lowestAcceptedScore() {
+    return size < capacity ? Double.NEGATIVE_INFINITY : slotScores[heap[0]];
+  }
+
+  /**
+   * @param score score to add
+   * @return slot at which the caller should store what this score belongs to, overwriting anything there, or -1
+   *  if the score was not accepted
+   */
+  public int offer(double score) {
+    if (Double.isNaN(score)) {
+      return -1;
+    }
+    if (size < capacity) {
+      if (size == heap.length) {
+        grow();
+      }
+      int slot = size;
+      slotScores[slot] = score;
+      heap[size] = slot;
+      siftUp(size);
+      size++;
+      return slot;
+    }
+    int slot = heap[0];
+    if (score <= slotScores[slot]) {
+      return -1;
+    }
+    // Evict the lowest score and reuse its slot
+    slotScores[slot] = score;
+    siftDown(0);
+    return slot;
+  }
+
+  public double getScore(int slot) {
+    if (slot < 0 || slot >= size) {
+      throw new IndexOutOfBoundsException(String.valueOf(slot));
+    }
+    return slotScores[slot];
+  }
+
+  /**
+   * @return slots of the kept scores, ordered from highest score to lowest. This does not change the heap.
+   */
+  public int[] slotsByDescendingScore() {
+    // Slots are 0 .. size-1; sort them by score with a simple heapsort on a copy of the heap
+    int[] sorted = new int[size];
+    int[] work = new int[size];
+    System.arraycopy(heap, 0, work, 0, size);
+    int workSize = size;
+    for (int i = size - 1; i >= 0; i--) {
+      // The root of the min-heap is the lowest remaining score, so fill from the end
+      sorted[i] = work[0];
+      workSize--;
+      work[0] = work[workSize];
+      siftDown(work, workSize, 0);
+    }
+    return sorted;
+  }
+
+  public void clear() {
+    size = 0;
+  }
+
+  private void grow() {
+    int newSize = (int) Math.min((long) capacity, 2L * heap.length);
+    int[] newHeap = new int[newSize];
+    System.arraycopy(heap, 0, newHeap, 0, size);
+    heap = newHeap;
+    double[] newSlotScores = new double[newSize];
+    System.arraycopy(slotScores, 0, newSlotScores, 0, size);
+    slotScores = newSlotScores;
+  }
+
+  private void siftUp(int index) {
+    int slot = heap[index];
+    double score = slotScores[slot];
+    while (index > 0) {
+      int parent = (index - 1) >>> 1;
+      int parentSlot = heap[parent];
+      if (slotScores[parentSlot] <= score) {
+        break;
+      }
+      heap[index] = parentSlot;
+      index = parent;
+    }
+    heap[index] = slot;
+  }
+
+  private void siftDown(int index) {
+    siftDown(heap, size, index);
+  }
+
+  private void siftDown(int[] theHeap, int theSize, int index) {
+    if (theSize == 0) {
+      return;
+    }
+    int slot = theHeap[index];
+    double score = slotScores[slot];
+    int half = theSize >>> 1;
+    while (index < half) {
+      int child = (index << 1) + 1;
+      int childSlot = theHeap[child];
+      int right = child + 1;
+      if (right < theSize && slotScores[theHeap[right]] < slotScores[childSlot]) {
+        child = right;
+        childSlot = theHeap[child];
+      }
+      if (score <= slotScores[childSlot]) {
+        break;
+      }
+      theHeap[index] = childSlot;
+      index = child;
+    }
+    theHeap[index] = slot;
+  }
+
+  @Override
+  public String toString() {
+    return "BoundedScoreHeap[size:" + size + ", capacity:" + capacity + ']';
+  }
+
+}
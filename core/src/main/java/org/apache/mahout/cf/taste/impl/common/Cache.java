@@ -19,6 +19,12 @@ package org.apache.mahout.cf.taste.impl.common;
 
 import org.apache.mahout.cf.taste.common.TasteException;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
 /**
  * <p>An efficient Map-like class which caches values for keys. Values are not "put" into a {@link Cache};
  * instead the caller supplies the instance with an implementation of {@link Retriever} which can load the
@@ -26,13 +32,36 @@ import org.apache.mahout.cf.taste.common.TasteException;
  *
  * <p>The cache does not support <code>null</code> values or keys.</p>
  *
+ * <p>Entries are spread over a number of segments by key hash, each with its own lock, so that threads
+ * using different keys seldom contend. When a key is missing, only one thread calls the {@link Retriever} for
+ * it; other threads asking for the same key meanwhile wait for, and share, its result.</p>
+ *
+ * <p>A bounded cache limits the total weight of its entries, which is by default 1 per entry, or as given by a
+ * {@link Weigher}. Eviction follows the W-TinyLFU policy: new entries enter a small LRU "window"; entries
+ * leaving the window are admitted to the main, segmented LRU space only if they have been asked for more often
+ * than the entry they would evict, judging by a compact, periodically aged frequency sketch of recent
+ * requests. A one-off scan of many keys therefore does not flush out frequently used entries.</p>
+ *
+ * <p>Given a {@link Tagger}, the cache also indexes each entry by the tags, such as the IDs of the users or items
+ * its value was computed from, that it gives. {@link #removeTagged(Object)} then uncaches just the entries with a
+ * given tag, in time proportional to their number rather than the size of the cache.</p>
+ *
  * <p>Thanks to Amila Jayasooriya for helping evaluate performance of the rewrite of this class, as part of a
  * Google Summer of Code 2007 project.</p>
  */
 public final class Cache<K, V> implements Retriever<K, V> {
 
-  private final FastMap<K, V> cache;
+  private static final int MAX_SEGMENTS = 16;
+  /** Segments are only added while each would still hold at least this weight. */
+  private static final long MIN_SEGMENT_WEIGHT = 64L;
+
+  private final Segment<K, V>[] segments;
+  private final int segmentMask;
+  private final ConcurrentMap<K, Loading<V>> loading;
   private final Retriever<? super K, ? extends V> retriever;
+  private final Weigher<? super K, ? super V> weigher;
+  private final Tagger<? super K, ? super V> tagger;
+  private final TagIndex<K> tagIndex;
 
   /**
    * <p>Creates a new cache based on the given {@link Retriever}.</p>
@@ -50,14 +79,82 @@ public final class Cache<K, V> implements Retriever<K, V> {
    * @param maxEntries maximum number of entries the cache will store before evicting some
    */
   public Cache(Retriever<? super K, ? extends V> retriever, int maxEntries) {
+    this(retriever, maxEntries, (Tagger<K, V>) null);
+  }
+
+  /**
+   * <p>Creates a new cache based on the given {@link Retriever} and with given maximum size, which indexes its
+   * entries by the tags the given {@link Tagger} gives them.</p>
+   *
+   * @param retriever object which can retrieve values for keys
+   * @param maxEntries maximum number of entries the cache will store before evicting some
+   * @param tagger gives the tags of each entry; if <code>null</code>, entries are not tagged
+   */
+  public Cache(Retriever<? super K, ? extends V> retriever, int maxEntries, Tagger<? super K, ? super V> tagger) {
+    this(retriever, maxEntries == FastMap.NO_MAX_SIZE ? Long.MAX_VALUE : maxEntries, null, tagger);
+  }
+
+  /**
+   * <p>Creates a new cache based on the given {@link Retriever}, which evicts entries once the total weight of
+   * its entries would exceed the given maximum.</p>
+   *
+   * @param retriever object which can retrieve values for keys
+   * @param maxWeight maximum total weight of entries, or {@link Long#MAX_VALUE} for no maximum
+   * @param weigher gives the weight of each entry; if <code>null</code>, each weighs 1
+   */
+  public Cache(Retriever<? super K, ? extends V> retriever, long maxWeight, Weigher<? super K, ? super V> weigher) {
+    this(retriever, maxWeight, weigher, null);
+  }
+
+  /**
+   * <p>Creates a new cache based on the given {@link Retriever}, which evicts entries once the total weight of
+   * its entries would exceed the given maximum, and indexes its entries by the tags the given {@link Tagger} gives
+   * them.</p>
+   *
+   * @param retriever object which can retrieve values for keys
+   * @param maxWeight maximum total weight of entries, or {@link Long#MAX_VALUE} for no maximum
+   * @param weigher gives the weight of each entry; if <code>null</code>, each weighs 1
+   * @param tagger gives the tags of each entry; if <code>null</code>, entries are not tagged
+   */
+  public Cache(Retriever<? super K, ? extends V> retriever,
+               long maxWeight,
+               Weigher<? super K, ? super V> weigher,
+               Tagger<? super K, ? super V> tagger) {
     if (retriever == null) {
       throw new IllegalArgumentException("retriever is null");
     }
-    if (maxEntries < 1) {
-      throw new IllegalArgumentException("maxEntries must be at least 1");
+    if (maxWeight < 1L) {
+      throw new IllegalArgumentException("maxWeight must be at least 1");
     }
-    cache = new FastMap<K, V>(11, maxEntries);
     this.retriever = retriever;
+    this.weigher = weigher;
+    this.tagger = tagger;
+    this.tagIndex = tagger == null ? null : new TagIndex<K>();
+    int numSegments = 1;
+    while (numSegments < MAX_SEGMENTS && maxWeight / (2L * numSegments) >= MIN_SEGMENT_WEIGHT) {
+      numSegments <<= 1;
+    }
+    @SuppressWarnings("unchecked")
+    Segment<K, V>[] newSegments = (Segment<K, V>[]) new Segment<?, ?>[numSegments];
+    segments = newSegments;
+    for (int i = 0; i < numSegments; i++) {
+      long segmentWeight = maxWeight == Long.MAX_VALUE ? Long.MAX_VALUE : maxWeight / numSegments;
+      segments[i] = new Segment<K, V>(segmentWeight, tagIndex);
+    }
+    segmentMask = numSegments - 1;
+    loading = new ConcurrentHashMap<K, Loading<V>>();
+  }
+
+  /**
+   * Mixes all bits of the key's hash code into the high bits, which choose the segment.
+   */
+  private static int spread(Object key) {
+    int hash = key.hashCode() * 0x9e3779b9;
+    return hash ^ (hash >>> 16);
+  }
+
+  private Segment<K, V> segmentFor(int hash) {
+    return segments[(hash >>> 28) & segmentMask];
   }
 
   /**
@@ -69,24 +166,44 @@ public final class Cache<K, V> implements Retriever<K, V> {
    */
   @Override
   public V get(K key) throws TasteException {
-    V value;
-    synchronized (cache) {
-      value = cache.get(key);
-    }
+    int hash = spread(key);
+    Segment<K, V> segment = segmentFor(hash);
+    V value = segment.get(key, hash);
     if (value == null) {
-      return getAndCacheValue(key);
+      return getAndCacheValue(key, hash, segment);
     }
     return value;
   }
 
   /**
-   * <p>Uncaches any existing value for a given key.</p>
+   * <p>Uncaches any existing value for a given key. A value being retrieved for the key at the time is returned
+   * to those waiting for it, but is not cached.</p>
    *
    * @param key cache key
    */
   public void remove(K key) {
-    synchronized (cache) {
-      cache.remove(key);
+    loading.remove(key);
+    int hash = spread(key);
+    segmentFor(hash).remove(key, hash);
+  }
+
+  /**
+   * <p>Uncaches any existing values whose entries the {@link Tagger} gave the given tag. Values being retrieved at
+   * the time are returned to those waiting for them, but are not cached, since they may depend on the tag too.</p>
+   *
+   * @param tag tag of entries to uncache
+   * @throws IllegalStateException if this cache has no {@link Tagger}
+   */
+  public void removeTagged(Object tag) {
+    if (tagIndex == null) {
+      throw new IllegalStateException("cache has no tagger");
+    }
+    FastSet<K> keys = tagIndex.removeTag(tag);
+    if (keys != null) {
+      for (K key : keys) {
+        int hash = spread(key);
+        segmentFor(hash).remove(key, hash);
+      }
     }
   }
 
@@ -94,17 +211,47 @@ public final class Cache<K, V> implements Retriever<K, V> {
    * <p>Clears the cache.</p>
    */
   public void clear() {
-    synchronized (cache) {
-      cache.clear();
+    loading.clear();
+    if (tagIndex != null) {
+      tagIndex.invalidate();
+    }
+    for (Segment<K, V> segment : segments) {
+      segment.clear();
     }
   }
 
-  private V getAndCacheValue(K key) throws TasteException {
-    V value = retriever.get(key);
-    synchronized (cache) {
-      cache.put(key, value);
+  private V getAndCacheValue(K key, int hash, Segment<K, V> segment) throws TasteException {
+    Loading<V> ours = new Loading<V>();
+    Loading<V> theirs = loading.putIfAbsent(key, ours);
+    if (theirs != null) {
+      return theirs.await();
+    }
+    long removals = segment.getRemovals(hash);
+    long generation = tagIndex == null ? 0L : tagIndex.getGeneration();
+    try {
+      V value = retriever.get(key);
+      ours.set(value);
+      // Only cache it if the key was not removed or cleared while retrieving; the segment checks again when
+      // putting it, since the key may be removed after it stops loading
+      if (loading.remove(key, ours)) {
+        int weight = weigher == null ? 1 : weigher.weigh(key, value);
+        Object[] tags = tagger == null ? null : tagger.getTags(key, value).toArray();
+        segment.put(key, hash, value, weight, tags, removals, generation);
+      }
+      return value;
+    } catch (TasteException te) {
+      ours.fail(te);
+      loading.remove(key, ours);
+      throw te;
+    } catch (RuntimeException re) {
+      ours.fail(re);
+      loading.remove(key, ours);
+      throw re;
+    } catch (Error e) {
+      ours.fail(e);
+      loading.remove(key, ours);
+      throw e;
     }
-    return value;
   }
 
   @Override
@@ -112,4 +259,414 @@ public final class Cache<K, V> implements Retriever<K, V> {
     return "Cache[retriever:" + retriever + ']';
   }
 
+  /**
+   * Gives the tags of an entry, by which {@link #removeTagged(Object)} can uncache it. It is called once, when the
+   * entry is cached.
+   */
+  public interface Tagger<K, V> {
+    /**
+     * @return tags of the entry, typically including IDs of the users or items the value depends on
+     */
+    Collection<?> getTags(K key, V value);
+  }
+
+  /**
+   * Gives the weight of an entry, which counts against the maximum weight of a {@link Cache}. It is computed once,
+   * when the entry is cached.
+   */
+  public interface Weigher<K, V> {
+    /**
+     * @return weight of the entry, at least 0
+     */
+    int weigh(K key, V value);
+  }
+
+  /**
+   * A value being retrieved, which other threads wanting it can wait for.
+   */
+  private static final class Loading<V> {
+
+    private final CountDownLatch done = new CountDownLatch(1);
+    private V value;
+    private Throwable failure;
+
+    void set(V value) {
+      this.value = value;
+      done.countDown();
+    }
+
+    void fail(Throwable failure) {
+      this.failure = failure;
+      done.countDown();
+    }
+
+    V await() throws TasteException {
+      try {
+        done.await();
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        throw new TasteException(ie);
+      }
+      if (failure == null) {
+        return value;
+      }
+      if (failure instanceof TasteException) {
+        throw (TasteException) failure;
+      }
+      if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      }
+      throw (Error) failure;
+    }
+  }
+
+  /**
+   * The keys of cached entries with each tag. It changes along with the entries in the segments, under their
+   * locks, so a key is indexed exactly while its entry is cached. Its generation counts tag removals, so that a
+   * value retrieved while one happened, which may be stale, can be refused.
+   */
+  private static final class TagIndex<K> {
+
+    private final FastMap<Object, FastSet<K>> keysByTag = new FastMap<Object, FastSet<K>>();
+    private long generation;
+
+    synchronized long getGeneration() {
+      return generation;
+    }
+
+    /**
+     * @return false, adding nothing, if any tag has been removed since the given generation
+     */
+    synchronized boolean add(K key, Object[] tags, long expectedGeneration) {
+      if (generation != expectedGeneration) {
+        return false;
+      }
+      for (Object tag : tags) {
+        FastSet<K> keys = keysByTag.get(tag);
+        if (keys == null) {
+          keys = new FastSet<K>();
+          keysByTag.put(tag, keys);
+        }
+        keys.add(key);
+      }
+      return true;
+    }
+
+    synchronized void remove(K key, Object[] tags) {
+      for (Object tag : tags) {
+        FastSet<K> keys = keysByTag.get(tag);
+        if (keys != null && keys.remove(key) && keys.isEmpty()) {
+          keysByTag.remove(tag);
+        }
+      }
+    }
+
+    synchronized FastSet<K> removeTag(Object tag) {
+      generation++;
+      return keysByTag.remove(tag);
+    }
+
+    synchronized void invalidate() {
+      generation++;
+    }
+  }
+
+  /**
+   * One lock's worth of entries. When bounded, the entries sit in one of three LRU queues, oldest first: the
+   * window, and the probation and protected parts of the main space. An entry hit in probation is promoted to
+   * protected; protected overflow is demoted back to probation, whose oldest entries are the victims that entries
+   * leaving the window must out-rank to be admitted.
+   *
+   * <p>Like the {@link TagIndex} generation, removal counts, kept per stripe of key hashes, let a value retrieved
+   * while its key was removed be refused.</p>
+   */
+  private static final class Segment<K, V> {
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    private static final int REMOVAL_STRIPES = 64;
+
+    private final Map<K, Node<K, V>> map;
+    private final boolean bounded;
+    private final long maxWindowWeight;
+    private final long maxMainWeight;
+    private final long maxProtectedWeight;
+    private final Node<K, V>[] queues;
+    private final long[] queueWeights;
+    private final FrequencySketch sketch;
+    private final TagIndex<K> tagIndex;
+    private final long[] removals;
+
+    Segment(long maxWeight, TagIndex<K> tagIndex) {
+      this.tagIndex = tagIndex;
+      map = new FastMap<K, Node<K, V>>();
+      bounded = maxWeight != Long.MAX_VALUE;
+      maxWindowWeight = Math.max(1L, maxWeight / 100L);
+      maxMainWeight = maxWeight - maxWindowWeight;
+      maxProtectedWeight = maxMainWeight * 4L / 5L;
+      @SuppressWarnings("unchecked")
+      Node<K, V>[] newQueues = (Node<K, V>[]) new Node<?, ?>[3];
+      queues = newQueues;
+      for (int i = 0; i < queues.length; i++) {
+        queues[i] = new Node<K, V>(null, 0, null, 0, null);
+        queues[i].previous = queues[i];
+        queues[i].next = queues[i];
+      }
+      queueWeights = new long[3];
+      sketch = bounded ? new FrequencySketch(maxWeight) : null;
+      removals = new long[REMOVAL_STRIPES];
+    }
+
+    synchronized long getRemovals(int hash) {
+      return removals[hash & (REMOVAL_STRIPES - 1)];
+    }
+
+    synchronized V get(K key, int hash) {
+      Node<K, V> node = map.get(key);
+      if (!bounded) {
+        return node == null ? null : node.value;
+      }
+      sketch.increment(hash);
+      if (node == null) {
+        return null;
+      }
+      onHit(node);
+      return node.value;
+    }
+
+    synchronized void put(K key, int hash, V value, int weight, Object[] tags,
+                          long expectedRemovals, long generation) {
+      if (removals[hash & (REMOVAL_STRIPES - 1)] != expectedRemovals) {
+        return;
+      }
+      Node<K, V> existing = map.get(key);
+      if (existing != null) {
+        unlink(existing);
+        discard(existing);
+      }
+      if (bounded && weight > maxWindowWeight + maxMainWeight) {
+        return;
+      }
+      if (tagIndex != null && !tagIndex.add(key, tags, generation)) {
+        return;
+      }
+      Node<K, V> node = new Node<K, V>(key, hash, value, weight, tags);
+      map.put(key, node);
+      link(node, WINDOW);
+      if (bounded) {
+        evict();
+        sketch.ensureCapacity(map.size());
+      }
+    }
+
+    synchronized void remove(K key, int hash) {
+      removals[hash & (REMOVAL_STRIPES - 1)]++;
+      Node<K, V> node = map.get(key);
+      if (node != null) {
+        unlink(node);
+        discard(node);
+      }
+    }
+
+    synchronized void clear() {
+      if (tagIndex != null) {
+        for (Node<K, V> node : map.values()) {
+          tagIndex.remove(node.key, node.tags);
+        }
+      }
+      map.clear();
+      for (int i = 0; i < removals.length; i++) {
+        removals[i]++;
+      }
+      for (int i = 0; i < queues.length; i++) {
+        queues[i].previous = queues[i];
+        queues[i].next = queues[i];
+        queueWeights[i] = 0L;
+      }
+    }
+
+    private void onHit(Node<K, V> node) {
+      if (node.queue == PROBATION) {
+        unlink(node);
+        link(node, PROTECTED);
+        while (queueWeights[PROTECTED] > maxProtectedWeight) {
+          Node<K, V> demoted = queues[PROTECTED].next;
+          unlink(demoted);
+          link(demoted, PROBATION);
+        }
+      } else {
+        // move to the young end of its queue
+        int queue = node.queue;
+        unlink(node);
+        link(node, queue);
+      }
+    }
+
+    /**
+     * Moves entries out of the window while it is too heavy, each either admitted to the main space, if there is
+     * room or it is more frequent than the entry it would replace, or dropped.
+     */
+    private void evict() {
+      while (queueWeights[WINDOW] > maxWindowWeight) {
+        Node<K, V> candidate = queues[WINDOW].next;
+        unlink(candidate);
+        if (queueWeights[PROBATION] + queueWeights[PROTECTED] + candidate.weight > maxMainWeight) {
+          Node<K, V> victim = mainVictim();
+          if (victim == null || sketch.frequency(candidate.hash) <= sketch.frequency(victim.hash)) {
+            discard(candidate);
+            continue;
+          }
+          while (victim != null &&
+                 queueWeights[PROBATION] + queueWeights[PROTECTED] + candidate.weight > maxMainWeight) {
+            unlink(victim);
+            discard(victim);
+            victim = mainVictim();
+          }
+        }
+        link(candidate, PROBATION);
+      }
+    }
+
+    private Node<K, V> mainVictim() {
+      for (int queue = PROBATION; queue <= PROTECTED; queue++) {
+        Node<K, V> oldest = queues[queue].next;
+        if (oldest != queues[queue]) {
+          return oldest;
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Drops an unlinked node from the map and the tag index.
+     */
+    private void discard(Node<K, V> node) {
+      map.remove(node.key);
+      if (tagIndex != null) {
+        tagIndex.remove(node.key, node.tags);
+      }
+    }
+
+    private void link(Node<K, V> node, int queue) {
+      Node<K, V> head = queues[queue];
+      node.queue = queue;
+      node.previous = head.previous;
+      node.next = head;
+      head.previous.next = node;
+      head.previous = node;
+      queueWeights[queue] += node.weight;
+    }
+
+    private void unlink(Node<K, V> node) {
+      node.previous.next = node.next;
+      node.next.previous = node.previous;
+      node.previous = null;
+      node.next = null;
+      queueWeights[node.queue] -= node.weight;
+    }
+  }
+
+  private static final class Node<K, V> {
+
+    private final K key;
+    private final int hash;
+    private final V value;
+    private final int weight;
+    private final Object[] tags;
+    private int queue;
+    private Node<K, V> previous;
+    private Node<K, V> next;
+
+    private Node(K key, int hash, V value, int weight, Object[] tags) {
+      this.key = key;
+      this.hash = hash;
+      this.value = value;
+      this.weight = weight;
+      this.tags = tags;
+    }
+  }
+
+  /**
+   * A count-min sketch of 4-bit counters, 16 to a <code>long</code> and one <code>long</code> per entry,
+   * estimating how often each key hash has been asked for recently. All counters are halved once there have been
+   * ten increments per <code>long</code>, so that the estimates favor recent history.
+   *
+   * <p>It starts small and grows with the number of entries actually cached, up to the most the segment could
+   * hold, or {@link #MAX_LENGTH}, so that a cache bounded by weight, whose entry count is unknown, does not
+   * allocate for its maximum weight up front. Growing starts the counts afresh.</p>
+   */
+  private static final class FrequencySketch {
+
+    private static final int[] SEEDS = { 0x97cb3127, 0xb8b3d1b5, 0xc2b2ae35, 0x27d4eb2f };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MIN_LENGTH = 8;
+    private static final int MAX_LENGTH = 1 << 16;
+
+    private final int maxLength;
+    private long[] table;
+    private int counterMask;
+    private int sampleSize;
+    private int increments;
+
+    FrequencySketch(long maxEntries) {
+      maxLength = lengthFor(maxEntries);
+      resize(MIN_LENGTH);
+    }
+
+    private static int lengthFor(long entries) {
+      int length = MIN_LENGTH;
+      while (length < entries && length < MAX_LENGTH) {
+        length <<= 1;
+      }
+      return length;
+    }
+
+    void ensureCapacity(int entries) {
+      if (entries > table.length && table.length < maxLength) {
+        resize(Math.min(lengthFor(entries), maxLength));
+      }
+    }
+
+    private void resize(int length) {
+      table = new long[length];
+      counterMask = 16 * length - 1;
+      sampleSize = 10 * length;
+      increments = 0;
+    }
+
+    private int counterIndex(int hash, int i) {
+      int h = (hash + SEEDS[i]) * SEEDS[i];
+      return (h ^ (h >>> 16)) & counterMask;
+    }
+
+    int frequency(int hash) {
+      int frequency = 15;
+      for (int i = 0; i < SEEDS.length; i++) {
+        int index = counterIndex(hash, i);
+        int count = (int) ((table[index >>> 4] >>> ((index & 15) << 2)) & 0xfL);
+        frequency = Math.min(frequency, count);
+      }
+      return frequency;
+    }
+
+    void increment(int hash) {
+      boolean added = false;
+      for (int i = 0; i < SEEDS.length; i++) {
+        int index = counterIndex(hash, i);
+        int shift = (index & 15) << 2;
+        if (((table[index >>> 4] >>> shift) & 0xfL) != 0xfL) {
+          table[index >>> 4] += 1L << shift;
+          added = true;
+        }
+      }
+      if (added && ++increments >= sampleSize) {
+        for (int i = 0; i < table.length; i++) {
+          table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        increments /= 2;
+      }
+    }
+  }
+
 }
@@ -34,6 +34,14 @@ public class CompactRunningAverage implements RunningAverage, Serializable {
     average = Float.NaN;
   }
 
+  /**
+   * @param other running average to copy the state of
+   */
+  public CompactRunningAverage(CompactRunningAverage other) {
+    count = other.count;
+    average = other.average;
+  }
+
   @Override
   public void addDatum(double datum) {
     if ((int) count < 65535) { // = 65535 = 2^16 - 1
@@ -29,6 +29,15 @@ public final class CompactRunningAverageAndStdDev extends CompactRunningAverage
     stdDev = Float.NaN;
   }
 
+  /**
+   * @param other running average to copy the state of
+   */
+  public CompactRunningAverageAndStdDev(CompactRunningAverageAndStdDev other) {
+    super(other);
+    stdDev = other.stdDev;
+    sumX2 = other.sumX2;
+  }
+
   @Override
   public double getStandardDeviation() {
     return (double) stdDev;
@@ -0,0 +1,358 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.common;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>A version of {@link FastByIDMap} whose values are <code>double</code>s, so that neither keys nor values are
+ * boxed. A missing value is reported as {@link Double#NaN}, which therefore can't be stored.</p>
+ *
+ * <p>This class is not a bit thread-safe.</p>
+ *
+ * <p>This implementation does not allow {@link Long#MIN_VALUE} or {@link Long#MAX_VALUE} as a key, since those
+ * mark empty and removed slots.</p>
+ *
+ * @see FastByIDMap
+ */
+public final class FastByIDDoubleMap implements Serializable, Cloneable {
+
+  public static final int NO_MAX_SIZE = Integer.MAX_VALUE;
+
+  /** Marks a slot that has never been used. */
+  private static final long NULL = Long.MIN_VALUE;
+  /** Marks a slot whose key has been removed. */
+  private static final long REMOVED = Long.MAX_VALUE;
+
+  private long[] keys;
+  private double[] values;
+  private int numEntries;
+  private int numSlotsUsed;
+  private int maxSize;
+  private BitSet recentlyAccessed;
+  private final boolean countingAccesses;
+
+  /**
+   * Creates a new {@link FastByIDDoubleMap} with default capacity.
+   */
+  public FastByIDDoubleMap() {
+    this(5, NO_MAX_SIZE);
+  }
+
+  public FastByIDDoubleMap(int size) {
+    this(size, NO_MAX_SIZE);
+  }
+
+  /**
+   * Creates a new {@link FastByIDDoubleMap} whose capacity can accommodate the given number of entries without
+   * rehash.
+   *
+   * @param size desired capacity
+   * @param maxSize max capacity
+   * @throws IllegalArgumentException if size is less than 1 or at least half of
+   *  {@link RandomUtils#MAX_INT_SMALLER_TWIN_PRIME}
+   */
+  public FastByIDDoubleMap(int size, int maxSize) {
+    if (size < 1) {
+      throw new IllegalArgumentException("size must be at least 1");
+    }
+    if (size >= RandomUtils.MAX_INT_SMALLER_TWIN_PRIME >> 1) {
+      throw new IllegalArgumentException("size must be less than " + (RandomUtils.MAX_INT_SMALLER_TWIN_PRIME >> 1));
+    }
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("maxSize must be at least 1");
+    }
+    int hashSize = RandomUtils.nextTwinPrime(2 * size);
+    keys = new long[hashSize];
+    Arrays.fill(keys, NULL);
+    values = new double[hashSize];
+    this.maxSize = maxSize;
+    this.countingAccesses = maxSize != Integer.MAX_VALUE;
+    this.recentlyAccessed = countingAccesses ? new BitSet(hashSize) : null;
+  }
+
+  /**
+   * This is for the benefit of inner classes. Without it the compiler would just generate a similar synthetic
+   * accessor. Might as well make it explicit.
+   */
+  long[] getKeys() {
+    return keys;
+  }
+
+  private int find(long key) {
+    int theHashCode = RandomUtils.hashLong(key) & 0x7FFFFFFF; // make sure it's positive
+    long[] keys = this.keys;
+    int hashSize = keys.length;
+    int jump = 1 + theHashCode % (hashSize - 2);
+    int index = theHashCode % hashSize;
+    long currentKey = keys[index];
+    while (currentKey != NULL && key != currentKey) {
+      if (index < jump) {
+        index += hashSize - jump;
+      } else {
+        index -= jump;
+      }
+      currentKey = keys[index];
+    }
+    return index;
+  }
+
+  /**
+   * @return value for the key, or {@link Double#NaN} if there is none
+   */
+  public double get(long key) {
+    if (key == NULL || key == REMOVED) {
+      return Double.NaN;
+    }
+    int index = find(key);
+    if (keys[index] == NULL) {
+      return Double.NaN;
+    }
+    if (countingAccesses) {
+      recentlyAccessed.set(index);
+    }
+    return values[index];
+  }
+
+  public int size() {
+    return numEntries;
+  }
+
+  public boolean isEmpty() {
+    return numEntries == 0;
+  }
+
+  public boolean containsKey(long key) {
+    return key != NULL && key != REMOVED && keys[find(key)] != NULL;
+  }
+
+  /**
+   * @return previous value for the key, or {@link Double#NaN} if there was none
+   * @throws IllegalArgumentException if key is {@link Long#MIN_VALUE} or {@link Long#MAX_VALUE}, or value is
+   *  {@link Double#NaN}
+   */
+  public double put(long key, double value) {
+    if (key == NULL || key == REMOVED) {
+      throw new IllegalArgumentException("Invalid key: " + key);
+    }
+    if (Double.isNaN(value)) {
+      throw new IllegalArgumentException("Invalid value: " + value);
+    }
+    int index = find(key);
+    if (keys[index] != NULL) {
+      // Updating an existing entry never rehashes, so it's safe while iterating over the keys
+      double oldValue = values[index];
+      values[index] = value;
+      return oldValue;
+    }
+    // If less than half the slots are open, let's clear it up
+    if (numSlotsUsed >= keys.length >> 1) {
+      // If over half the slots used are actual entries, let's grow
+      if (numEntries >= numSlotsUsed >> 1) {
+        growAndRehash();
+      } else {
+        // Otherwise just rehash to clear REMOVED entries and don't grow
+        rehash();
+      }
+      index = find(key);
+    }
+    // If size is limited,
+    if (countingAccesses && numEntries >= maxSize) {
+      // and we're too large, clear some old-ish entry
+      clearStaleEntry(index);
+    }
+    keys[index] = key;
+    values[index] = value;
+    numEntries++;
+    numSlotsUsed++;
+    return Double.NaN;
+  }
+
+  private void clearStaleEntry(int index) {
+    while (true) {
+      long currentKey;
+      do {
+        if (index == 0) {
+          index = keys.length - 1;
+        } else {
+          index--;
+        }
+        currentKey = keys[index];
+      } while (currentKey == NULL || currentKey == REMOVED);
+      if (recentlyAccessed.get(index)) {
+        recentlyAccessed.clear(index);
+      } else {
+        break;
+      }
+    }
+    // Delete the entry
+    keys[index] = REMOVED;
+    numEntries--;
+  }
+
+  /**
+   * @return value removed, or {@link Double#NaN} if there was none
+   */
+  public double remove(long key) {
+    if (key == NULL || key == REMOVED) {
+      return Double.NaN;
+    }
+    int index = find(key);
+    if (keys[index] == NULL) {
+      return Double.NaN;
+    } else {
+      keys[index] = REMOVED;
+      numEntries--;
+      // don't decrement numSlotsUsed
+      return values[index];
+    }
+  }
+
+  public void clear() {
+    numEntries = 0;
+    numSlotsUsed = 0;
+    Arrays.fill(keys, NULL);
+    if (countingAccesses) {
+      recentlyAccessed.clear();
+    }
+  }
+
+  /**
+   * @return an iterator over the keys, whose <code>remove()</code> removes the current entry
+   */
+  public LongPrimitiveIterator keySetIterator() {
+    return new KeyIterator();
+  }
+
+  public void rehash() {
+    rehash(RandomUtils.nextTwinPrime(numEntries << 1));
+  }
+
+  private void growAndRehash() {
+    if (keys.length >= RandomUtils.MAX_INT_SMALLER_TWIN_PRIME >> 1) {
+      throw new IllegalStateException("Can't grow any more");
+    }
+    rehash(RandomUtils.nextTwinPrime(keys.length << 1));
+  }
+
+  private void rehash(int newHashSize) {
+    long[] oldKeys = keys;
+    double[] oldValues = values;
+    numEntries = 0;
+    numSlotsUsed = 0;
+    if (countingAccesses) {
+      recentlyAccessed = new BitSet(newHashSize);
+    }
+    keys = new long[newHashSize];
+    Arrays.fill(keys, NULL);
+    values = new double[newHashSize];
+    int length = oldKeys.length;
+    for (int i = 0; i < length; i++) {
+      long key = oldKeys[i];
+      if (key != NULL && key != REMOVED) {
+        put(key, oldValues[i]);
+      }
+    }
+  }
+
+  void iteratorRemove(int lastNext) {
+    if (lastNext >= keys.length) {
+      throw new NoSuchElementException();
+    }
+    if (lastNext < 0) {
+      throw new IllegalStateException();
+    }
+    keys[lastNext] = REMOVED;
+    numEntries--;
+  }
+
+  @Override
+  public FastByIDDoubleMap clone() {
+    FastByIDDoubleMap clone;
+    try {
+      clone = (FastByIDDoubleMap) super.clone();
+    } catch (CloneNotSupportedException cnse) {
+      throw new AssertionError();
+    }
+    clone.keys = keys.clone();
+    clone.values = values.clone();
+    clone.recentlyAccessed = countingAccesses ? new BitSet(keys.length) : null;
+    return clone;
+  }
+
+  @Override
+  public String toString() {
+    if (isEmpty()) {
+      return "{}";
+    }
+    StringBuilder result = new StringBuilder();
+    result.append('{');
+    for (int i = 0; i < keys.length; i++) {
+      long key = keys[i];
+      if (key != NULL && key != REMOVED) {
+        result.append(key).append('=').append(values[i]).append(',');
+      }
+    }
+    result.setCharAt(result.length() - 1, '}');
+    return result.toString();
+  }
+
+  private final class KeyIterator implements LongPrimitiveIterator {
+
+    private int position;
+    private int lastNext = -1;
+
+    @Override
+    public boolean hasNext() {
+      goToNext();
+      return position < getKeys().length;
+    }
+
+    @Override
+    public long nextLong() {
+      goToNext();
+      lastNext = position;
+      long[] keys = getKeys();
+      if (position >= keys.length) {
+        throw new NoSuchElementException();
+      }
+      return keys[position++];
+    }
+
+    @Override
+    public Long next() {
+      return nextLong();
+    }
+
+    private void goToNext() {
+      long[] keys = getKeys();
+      int length = keys.length;
+      while (position < length && (keys[position] == NULL || keys[position] == REMOVED)) {
+        position++;
+      }
+    }
+
+    @Override
+    public void remove() {
+      iteratorRemove(lastNext);
+    }
+  }
+
+}
@@ -35,6 +35,14 @@ public class FullRunningAverage implements RunningAverage, Serializable {
     average = Double.NaN;
   }
 
+  /**
+   * @param other running average to copy the state of
+   */
+  public FullRunningAverage(FullRunningAverage other) {
+    count = other.count;
+    average = other.average;
+  }
+
   /**
    * @param datum new item to add to the running average
    */
@@ -29,6 +29,15 @@ public final class FullRunningAverageAndStdDev extends FullRunningAverage implem
     stdDev = Double.NaN;
   }
 
+  /**
+   * @param other running average to copy the state of
+   */
+  public FullRunningAverageAndStdDev(FullRunningAverageAndStdDev other) {
+    super(other);
+    stdDev = other.stdDev;
+    sumX2 = other.sumX2;
+  }
+
   @Override
   public double getStandardDeviation() {
     return stdDev;
@@ -56,6 +56,13 @@ public final class RandomUtils {
     return (int) (bits ^ (bits >>> 32));
   }
 
+  /**
+   * @return what {@link Long#hashCode()} would return for the same value
+   */
+  public static int hashLong(long value) {
+    return (int) (value ^ (value >>> 32));
+  }
+
   /**
    * <p>Finds next-largest "twin primes": numbers p and p+2 such that both are prime. Finds the smallest such p such
    * that the smaller twin, p, is greater than or equal to n. Returns p+2, the larger of the two twins.</p>
@@ -0,0 +1,574 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.model;
+
+import org.apache.mahout.cf.taste.common.NoSuchItemException;
+import org.apache.mahout.cf.taste.common.NoSuchUserException;
+import org.apache.mahout.cf.taste.common.Refreshable;
+import org.apache.mahout.cf.taste.common.TasteException;
+import org.apache.mahout.cf.taste.impl.common.ArrayIterator;
+import org.apache.mahout.cf.taste.impl.common.FastSet;
+import org.apache.mahout.cf.taste.model.DataModel;
+import org.apache.mahout.cf.taste.model.Item;
+import org.apache.mahout.cf.taste.model.Preference;
+import org.apache.mahout.cf.taste.model.User;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * <p>A {@link DataModel} which holds its data in a few packed primitive arrays instead of a graph of
+ * {@link User}, {@link Item} and {@link Preference} objects, so that it can hold many millions of preferences
+ * in a fraction of the memory {@link GenericDataModel} needs.</p>
+ *
+ * <p>User and item IDs are kept sorted in one array each, so that the position of an ID in its array is a dense
+ * int index whose order is the order of the IDs. The preferences are stored twice, by user and by item, in
+ * compressed sparse row form: for each user the indexes of the items it has preferences for, in increasing order,
+ * in an <code>int[]</code> and the preference values in a parallel <code>float[]</code>, and likewise for each item.
+ * That is 16 bytes per preference, and the only per-user and per-item overhead is the ID itself. Preference values
+ * are stored as floats, so they keep about 7 significant digits.</p>
+ *
+ * <p>The {@link User}s, {@link Item}s and {@link Preference}s returned are lightweight views created on demand.
+ * {@link CompactUser} and {@link CompactItem} also expose their preferences by index, which the similarity
+ * implementations use to compare two users or items directly on the arrays.</p>
+ *
+ * <p>Like {@link GenericDataModel} this model is immutable; {@link #setPreference(Object, Object, double)} and
+ * {@link #removePreference(Object, Object)} are not supported.</p>
+ */
+public final class CompactDataModel implements DataModel, Serializable {
+
+  private static final int IO_BUFFER_SIZE = 1 << 16;
+  /** Number of ints or floats mapped at once when reading, so that no mapping approaches 2GB. */
+  private static final int MAP_CHUNK_SIZE = 1 << 26;
+
+  private final Object[] userIDs;
+  private final Object[] itemIDs;
+
+  private final int[] userOffsets;
+  private final int[] userItemIndexes;
+  private final float[] userValues;
+
+  private final int[] itemOffsets;
+  private final int[] itemUserIndexes;
+  private final float[] itemValues;
+
+  /**
+   * <p>Creates a new {@link CompactDataModel} holding the preferences of the given {@link User}s.</p>
+   *
+   * @param users {@link User}s to include in this {@link CompactDataModel}
+   */
+  public CompactDataModel(Iterable<? extends User> users) {
+    if (users == null) {
+      throw new IllegalArgumentException("users is null");
+    }
+
+    Set<Object> userIDSet = new FastSet<Object>();
+    Set<Object> itemIDSet = new FastSet<Object>();
+    for (User user : users) {
+      userIDSet.add(user.getID());
+      for (Preference preference : user.getPreferencesAsArray()) {
+        itemIDSet.add(preference.getItem().getID());
+      }
+    }
+    userIDs = sortedIDs(userIDSet);
+    itemIDs = sortedIDs(itemIDSet);
+
+    // a user's preferences are already ordered by item, so they only need packing in user order;
+    // as in GenericDataModel a later user with the same ID replaces an earlier one
+    int[] userLengths = new int[userIDs.length];
+    int[][] userItems = new int[userIDs.length][];
+    float[][] userItemValues = new float[userIDs.length][];
+    for (User user : users) {
+      int userIndex = Arrays.binarySearch(userIDs, user.getID());
+      Preference[] prefs = user.getPreferencesAsArray();
+      int[] items = new int[prefs.length];
+      float[] values = new float[prefs.length];
+      for (int i = 0; i < prefs.length; i++) {
+        items[i] = Arrays.binarySearch(itemIDs, prefs[i].getItem().getID());
+        values[i] = (float) prefs[i].getValue();
+      }
+      userItems[userIndex] = items;
+      userItemValues[userIndex] = values;
+      userLengths[userIndex] = prefs.length;
+    }
+    int numPreferences = 0;
+    for (int length : userLengths) {
+      numPreferences += length;
+    }
+    userOffsets = new int[userIDs.length + 1];
+    userItemIndexes = new int[numPreferences];
+    userValues = new float[numPreferences];
+    for (int userIndex = 0; userIndex < userIDs.length; userIndex++) {
+      int offset = userOffsets[userIndex];
+      userOffsets[userIndex + 1] = offset + userLengths[userIndex];
+      System.arraycopy(userItems[userIndex], 0, userItemIndexes, offset, userLengths[userIndex]);
+      System.arraycopy(userItemValues[userIndex], 0, userValues, offset, userLengths[userIndex]);
+      userItems[userIndex] = null;
+      userItemValues[userIndex] = null;
+    }
+
+    itemOffsets = new int[itemIDs.length + 1];
+    itemUserIndexes = new int[numPreferences];
+    itemValues = new float[numPreferences];
+    transpose(userOffsets, userItemIndexes, userValues, itemOffsets, itemUserIndexes, itemValues);
+  }
+
+  /**
+   * <p>Creates a new {@link CompactDataModel} containing a copy of the data from another given
+   * {@link DataModel}.</p>
+   *
+   * @param dataModel {@link DataModel} to copy
+   * @throws TasteException if an error occurs while retrieving the other {@link DataModel}'s users
+   */
+  public CompactDataModel(DataModel dataModel) throws TasteException {
+    this(dataModel.getUsers());
+  }
+
+  /**
+   * <p>Creates a new {@link CompactDataModel} directly from its by-user arrays, which it takes ownership of.</p>
+   *
+   * @param userIDs the user IDs, sorted and without duplicates
+   * @param itemIDs the item IDs, sorted and without duplicates
+   * @param userOffsets for each user index, the offset of its first preference in the other two arrays, followed
+   *  by the total number of preferences
+   * @param userItemIndexes the item index of each preference, increasing within each user
+   * @param userValues the value of each preference
+   */
+  public CompactDataModel(Object[] userIDs,
+                   Object[] itemIDs,
+                   int[] userOffsets,
+                   int[] userItemIndexes,
+                   float[] userValues) {
+    if (userOffsets.length != userIDs.length + 1 || userItemIndexes.length != userValues.length
+        || userOffsets[userIDs.length] != userValues.length) {
+      throw new IllegalArgumentException("Inconsistent array lengths");
+    }
+    this.userIDs = userIDs;
+    this.itemIDs = itemIDs;
+    this.userOffsets = userOffsets;
+    this.userItemIndexes = userItemIndexes;
+    this.userValues = userValues;
+    itemOffsets = new int[itemIDs.length + 1];
+    itemUserIndexes = new int[userValues.length];
+    itemValues = new float[userValues.length];
+    transpose(userOffsets, userItemIndexes, userValues, itemOffsets, itemUserIndexes, itemValues);
+  }
+
+  /**
+   * <p>Writes this model to the given channel, at its current position, in the binary form read by
+   * {@link #readFrom(FileChannel, long)}: the preference counts, the by-user arrays and then the IDs.
+   * The by-item arrays are not written, since they are quickly rebuilt from the by-user arrays.</p>
+   *
+   * @param channel channel to write to
+   * @throws IOException if an error occurs while writing
+   * @throws IllegalStateException if the user and item IDs are not all {@link String}s
+   */
+  public void writeTo(FileChannel channel) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER_SIZE);
+    buffer.putInt(userIDs.length).putInt(itemIDs.length).putInt(userValues.length);
+    for (int offset : userOffsets) {
+      buffer = putInt(channel, buffer, offset);
+    }
+    for (int itemIndex : userItemIndexes) {
+      buffer = putInt(channel, buffer, itemIndex);
+    }
+    for (float value : userValues) {
+      buffer = putInt(channel, buffer, Float.floatToRawIntBits(value));
+    }
+    flush(channel, buffer);
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+    writeIDs(out, userIDs);
+    writeIDs(out, itemIDs);
+    // not closed, since that would close the caller's channel
+    out.flush();
+  }
+
+  private static ByteBuffer putInt(FileChannel channel, ByteBuffer buffer, int value) throws IOException {
+    if (buffer.remaining() < 4) {
+      flush(channel, buffer);
+    }
+    return buffer.putInt(value);
+  }
+
+  private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  private static void writeIDs(DataOutputStream out, Object[] ids) throws IOException {
+    for (Object id : ids) {
+      if (!(id instanceof String)) {
+        throw new IllegalStateException("Only String IDs can be written, not " + id);
+      }
+      out.writeUTF((String) id);
+    }
+  }
+
+  /**
+   * <p>Reads a {@link CompactDataModel} written by {@link #writeTo(FileChannel)}. The arrays are copied out of
+   * memory-mapped regions of the file in bulk, so this costs little more than reading the bytes from disk.</p>
+   *
+   * @param channel channel to read from
+   * @param position position in the channel at which the model was written
+   * @return the model
+   * @throws IOException if an error occurs while reading, or the data is truncated
+   */
+  public static CompactDataModel readFrom(FileChannel channel, long position) throws IOException {
+    ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, position, 12L);
+    int numUsers = header.getInt();
+    int numItems = header.getInt();
+    int numPreferences = header.getInt();
+    if (numUsers < 0 || numItems < 0 || numPreferences < 0) {
+      throw new IOException("Corrupt header");
+    }
+    long arraysPosition = position + 12L;
+    int[] userOffsets = new int[numUsers + 1];
+    readInts(channel, arraysPosition, userOffsets);
+    arraysPosition += 4L * userOffsets.length;
+    int[] userItemIndexes = new int[numPreferences];
+    readInts(channel, arraysPosition, userItemIndexes);
+    arraysPosition += 4L * numPreferences;
+    float[] userValues = new float[numPreferences];
+    readFloats(channel, arraysPosition, userValues);
+    arraysPosition += 4L * numPreferences;
+
+    channel.position(arraysPosition);
+    DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+    Object[] userIDs = readIDs(in, numUsers);
+    Object[] itemIDs = readIDs(in, numItems);
+    if (userOffsets[0] != 0 || userOffsets[numUsers] != numPreferences) {
+      throw new IOException("Corrupt user offsets");
+    }
+    return new CompactDataModel(userIDs, itemIDs, userOffsets, userItemIndexes, userValues);
+  }
+
+  private static void readInts(FileChannel channel, long position, int[] dest) throws IOException {
+    for (int from = 0; from < dest.length; from += MAP_CHUNK_SIZE) {
+      int length = Math.min(MAP_CHUNK_SIZE, dest.length - from);
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position + 4L * from, 4L * length);
+      mapped.asIntBuffer().get(dest, from, length);
+    }
+  }
+
+  private static void readFloats(FileChannel channel, long position, float[] dest) throws IOException {
+    for (int from = 0; from < dest.length; from += MAP_CHUNK_SIZE) {
+      int length = Math.min(MAP_CHUNK_SIZE, dest.length - from);
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position + 4L * from, 4L * length);
+      mapped.asFloatBuffer().get(dest, from, length);
+    }
+  }
+
+  private static Object[] readIDs(DataInputStream in, int count) throws IOException {
+    Object[] ids = new Object[count];
+    for (int i = 0; i < count; i++) {
+      ids[i] = in.readUTF();
+    }
+    return ids;
+  }
+
+  private static Object[] sortedIDs(Collection<Object> ids) {
+    Object[] result = ids.toArray();
+    Arrays.sort(result);
+    return result;
+  }
+
+  /**
+   * Builds the by-item arrays from the by-user arrays with a counting sort. Users are visited in increasing order,
+   * so each item's users come out sorted.
+   */
+  private static void transpose(int[] offsets, int[] indexes, float[] values,
+                                int[] tOffsets, int[] tIndexes, float[] tValues) {
+    for (int index : indexes) {
+      tOffsets[index + 1]++;
+    }
+    for (int i = 1; i < tOffsets.length; i++) {
+      tOffsets[i] += tOffsets[i - 1];
+    }
+    int[] next = new int[tOffsets.length - 1];
+    System.arraycopy(tOffsets, 0, next, 0, next.length);
+    for (int major = 0; major < offsets.length - 1; major++) {
+      for (int i = offsets[major]; i < offsets[major + 1]; i++) {
+        int position = next[indexes[i]]++;
+        tIndexes[position] = major;
+        tValues[position] = values[i];
+      }
+    }
+  }
+
+  @Override
+  public Iterable<? extends User> getUsers() {
+    return new Iterable<User>() {
+      @Override
+      public Iterator<User> iterator() {
+        return new UserIterator();
+      }
+    };
+  }
+
+  /**
+   * @throws NoSuchUserException if there is no such {@link User}
+   */
+  @Override
+  public CompactUser getUser(Object id) throws NoSuchUserException {
+    int userIndex = userIndex(id);
+    if (userIndex < 0) {
+      throw new NoSuchUserException();
+    }
+    return new CompactUser(this, userIndex);
+  }
+
+  @Override
+  public Iterable<? extends Item> getItems() {
+    return new Iterable<Item>() {
+      @Override
+      public Iterator<Item> iterator() {
+        return new ItemIterator();
+      }
+    };
+  }
+
+  /**
+   * @throws NoSuchItemException if there is no such {@link Item}
+   */
+  @Override
+  public CompactItem getItem(Object id) throws NoSuchItemException {
+    int itemIndex = itemIndex(id);
+    if (itemIndex < 0) {
+      throw new NoSuchItemException();
+    }
+    return new CompactItem(this, itemIndex);
+  }
+
+  @Override
+  public Iterable<? extends Preference> getPreferencesForItem(Object itemID) {
+    return new ArrayIterator<Preference>(getPreferencesForItemAsArray(itemID));
+  }
+
+  @Override
+  public Preference[] getPreferencesForItemAsArray(Object itemID) {
+    int itemIndex = itemIndex(itemID);
+    if (itemIndex < 0) {
+      return new Preference[0];
+    }
+    int start = itemOffsets[itemIndex];
+    Preference[] result = new Preference[itemOffsets[itemIndex + 1] - start];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = new CompactPreference(this, itemUserIndexes[start + i], itemIndex, itemValues[start + i]);
+    }
+    return result;
+  }
+
+  @Override
+  public int getNumItems() {
+    return itemIDs.length;
+  }
+
+  @Override
+  public int getNumUsers() {
+    return userIDs.length;
+  }
+
+  @Override
+  public int getNumUsersWithPreferenceFor(Object... itemIDs) {
+    if (itemIDs == null) {
+      throw new IllegalArgumentException("itemIDs is null");
+    }
+    int length = itemIDs.length;
+    if (length == 0 || length > 2) {
+      throw new IllegalArgumentException("Illegal number of item IDs: " + length);
+    }
+    int itemIndex1 = itemIndex(itemIDs[0]);
+    if (itemIndex1 < 0) {
+      return 0;
+    }
+    if (length == 1) {
+      return itemOffsets[itemIndex1 + 1] - itemOffsets[itemIndex1];
+    }
+    int itemIndex2 = itemIndex(itemIDs[1]);
+    if (itemIndex2 < 0) {
+      return 0;
+    }
+    // both user lists are sorted, so count the users they share with a merge
+    int i = itemOffsets[itemIndex1];
+    int end1 = itemOffsets[itemIndex1 + 1];
+    int j = itemOffsets[itemIndex2];
+    int end2 = itemOffsets[itemIndex2 + 1];
+    int count = 0;
+    while (i < end1 && j < end2) {
+      int user1 = itemUserIndexes[i];
+      int user2 = itemUserIndexes[j];
+      if (user1 < user2) {
+        i++;
+      } else if (user1 > user2) {
+        j++;
+      } else {
+        count++;
+        i++;
+        j++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @throws UnsupportedOperationException
+   */
+  @Override
+  public void setPreference(Object userID, Object itemID, double value) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * @throws UnsupportedOperationException
+   */
+  @Override
+  public void removePreference(Object userID, Object itemID) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void refresh(Collection<Refreshable> alreadyRefreshed) {
+    // Does nothing
+  }
+
+  /**
+   * @return the index of the user with the given ID, or a negative value if there is none
+   */
+  int userIndex(Object userID) {
+    return Arrays.binarySearch(userIDs, userID);
+  }
+
+  /**
+   * @return the index of the item with the given ID, or a negative value if there is none
+   */
+  int itemIndex(Object itemID) {
+    return Arrays.binarySearch(itemIDs, itemID);
+  }
+
+  Object getUserID(int userIndex) {
+    return userIDs[userIndex];
+  }
+
+  Object getItemID(int itemIndex) {
+    return itemIDs[itemIndex];
+  }
+
+  int getUserOffset(int userIndex) {
+    return userOffsets[userIndex];
+  }
+
+  int getUserItemIndex(int offset) {
+    return userItemIndexes[offset];
+  }
+
+  float getUserValue(int offset) {
+    return userValues[offset];
+  }
+
+  /**
+   * @return the offset of the given item in the given user's preferences, or a negative value if the user has no
+   *         preference for it
+   */
+  int findUserItem(int userIndex, int itemIndex) {
+    int from = userOffsets[userIndex];
+    int to = userOffsets[userIndex + 1];
+    int offset = Arrays.binarySearch(userItemIndexes, from, to, itemIndex);
+    return offset >= from ? offset : -1;
+  }
+
+  int getItemOffset(int itemIndex) {
+    return itemOffsets[itemIndex];
+  }
+
+  int getItemUserIndex(int offset) {
+    return itemUserIndexes[offset];
+  }
+
+  float getItemValue(int offset) {
+    return itemValues[offset];
+  }
+
+  @Override
+  public String toString() {
+    return "CompactDataModel[users:" + userIDs.length + ", items:" + itemIDs.length + ", preferences:" +
+        userValues.length + ']';
+  }
+
+  private final class UserIterator implements Iterator<User> {
+
+    private int next;
+
+    @Override
+    public boolean hasNext() {
+      return next < userIDs.length;
+    }
+
+    @Override
+    public User next() {
+      if (next >= userIDs.length) {
+        throw new NoSuchElementException();
+      }
+      return new CompactUser(CompactDataModel.this, next++);
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private final class ItemIterator implements Iterator<Item> {
+
+    private int next;
+
+    @Override
+    public boolean hasNext() {
+      return next < itemIDs.length;
+    }
+
+    @Override
+    public Item next() {
+      if (next >= itemIDs.length) {
+        throw new NoSuchElementException();
+      }
+      return new CompactItem(CompactDataModel.this, next++);
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+}
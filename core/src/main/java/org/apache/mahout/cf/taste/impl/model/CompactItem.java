@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.model;
+
+import org.apache.mahout.cf.taste.model.DataModel;
+import org.apache.mahout.cf.taste.model.Item;
+
+import java.io.Serializable;
+
+/**
+ * <p>An {@link Item} of a {@link CompactDataModel}: a view of one item's row of the model's arrays, giving access
+ * to the preferences expressed for it by position so that two items of the same model can be compared without
+ * creating any objects.</p>
+ */
+public final class CompactItem implements Item, Serializable {
+
+  private final CompactDataModel model;
+  private final int index;
+  private final int offset;
+  private final int numPreferences;
+
+  CompactItem(CompactDataModel model, int index) {
+    this.model = model;
+    this.index = index;
+    this.offset = model.getItemOffset(index);
+    this.numPreferences = model.getItemOffset(index + 1) - offset;
+  }
+
+  @Override
+  public Object getID() {
+    return model.getItemID(index);
+  }
+
+  @Override
+  public boolean isRecommendable() {
+    return true;
+  }
+
+  /**
+   * @return number of preferences expressed for this item
+   */
+  public int getNumPreferences() {
+    return numPreferences;
+  }
+
+  /**
+   * @param i position of a preference, between 0 and {@link #getNumPreferences()} - 1
+   * @return index of its user in the model; indexes increase with i, as user IDs do
+   */
+  public int getUserIndex(int i) {
+    return model.getItemUserIndex(offset + i);
+  }
+
+  /**
+   * @param i position of a preference, between 0 and {@link #getNumPreferences()} - 1
+   * @return its value
+   */
+  public double getValue(int i) {
+    return model.getItemValue(offset + i);
+  }
+
+  /**
+   * @return true if this item is a view of the given {@link DataModel}, so that its user indexes may be
+   *         compared with those of the model's other items
+   */
+  public boolean belongsTo(DataModel dataModel) {
+    return model == dataModel;
+  }
+
+  @Override
+  public int hashCode() {
+    return getID().hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return obj instanceof Item && ((Item) obj).getID().equals(getID());
+  }
+
+  @Override
+  public String toString() {
+    return "Item[id:" + getID() + ']';
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public int compareTo(Item item) {
+    if (item instanceof CompactItem && ((CompactItem) item).model == model) {
+      // indexes are in ID order
+      int otherIndex = ((CompactItem) item).index;
+      return index < otherIndex ? -1 : index == otherIndex ? 0 : 1;
+    }
+    return ((Comparable<Object>) getID()).compareTo(item.getID());
+  }
+
+}
@@ -0,0 +1,73 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.model;
+
+import org.apache.mahout.cf.taste.model.Item;
+import org.apache.mahout.cf.taste.model.Preference;
+import org.apache.mahout.cf.taste.model.User;
+
+import java.io.Serializable;
+
+/**
+ * <p>A {@link Preference} of a {@link CompactDataModel}, created on demand. Since the model is immutable,
+ * {@link #setValue(double)} is not supported.</p>
+ */
+final class CompactPreference implements Preference, Serializable {
+
+  private final CompactDataModel model;
+  private final int userIndex;
+  private final int itemIndex;
+  private final float value;
+
+  CompactPreference(CompactDataModel model, int userIndex, int itemIndex, float value) {
+    this.model = model;
+    this.userIndex = userIndex;
+    this.itemIndex = itemIndex;
+    this.value = value;
+  }
+
+  @Override
+  public User getUser() {
+    return new CompactUser(model, userIndex);
+  }
+
+  @Override
+  public Item getItem() {
+    return new CompactItem(model, itemIndex);
+  }
+
+  @Override
+  public double getValue() {
+    return value;
+  }
+
+  /**
+   * @throws UnsupportedOperationException
+   */
+  @Override
+  public void setValue(double value) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public String toString() {
+    return "CompactPreference[user: " + model.getUserID(userIndex) + ", item:" + model.getItemID(itemIndex) +
+        ", value:" + value + ']';
+  }
+
+}
@@ -0,0 +1,132 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.model;
+
+import org.apache.mahout.cf.taste.impl.common.ArrayIterator;
+import org.apache.mahout.cf.taste.model.DataModel;
+import org.apache.mahout.cf.taste.model.Preference;
+import org.apache.mahout.cf.taste.model.User;
+
+import java.io.Serializable;
+
+/**
+ * <p>A {@link User} of a {@link CompactDataModel}: a view of one user's row of the model's arrays. Besides the
+ * {@link User} methods, which create {@link Preference} views on demand, it gives access to the preferences by
+ * position, so that two users of the same model can be compared without creating any objects.</p>
+ */
+public final class CompactUser implements User, Serializable {
+
+  private final CompactDataModel model;
+  private final int index;
+  private final int offset;
+  private final int numPreferences;
+
+  CompactUser(CompactDataModel model, int index) {
+    this.model = model;
+    this.index = index;
+    this.offset = model.getUserOffset(index);
+    this.numPreferences = model.getUserOffset(index + 1) - offset;
+  }
+
+  @Override
+  public Object getID() {
+    return model.getUserID(index);
+  }
+
+  @Override
+  public Preference getPreferenceFor(Object itemID) {
+    int itemIndex = model.itemIndex(itemID);
+    if (itemIndex < 0) {
+      return null;
+    }
+    int prefOffset = model.findUserItem(index, itemIndex);
+    return prefOffset < 0 ? null : new CompactPreference(model, index, itemIndex, model.getUserValue(prefOffset));
+  }
+
+  @Override
+  public Iterable<Preference> getPreferences() {
+    return new ArrayIterator<Preference>(getPreferencesAsArray());
+  }
+
+  @Override
+  public Preference[] getPreferencesAsArray() {
+    Preference[] result = new Preference[numPreferences];
+    for (int i = 0; i < numPreferences; i++) {
+      result[i] = new CompactPreference(model, index, getItemIndex(i), model.getUserValue(offset + i));
+    }
+    return result;
+  }
+
+  /**
+   * @return number of preferences this user has expressed
+   */
+  public int getNumPreferences() {
+    return numPreferences;
+  }
+
+  /**
+   * @param i position of a preference, between 0 and {@link #getNumPreferences()} - 1
+   * @return index of its item in the model; indexes increase with i, as item IDs do
+   */
+  public int getItemIndex(int i) {
+    return model.getUserItemIndex(offset + i);
+  }
+
+  /**
+   * @param i position of a preference, between 0 and {@link #getNumPreferences()} - 1
+   * @return its value
+   */
+  public double getValue(int i) {
+    return model.getUserValue(offset + i);
+  }
+
+  /**
+   * @return true if this user is a view of the given {@link DataModel}, so that its item indexes may be
+   *         compared with those of the model's other users
+   */
+  public boolean belongsTo(DataModel dataModel) {
+    return model == dataModel;
+  }
+
+  @Override
+  public int hashCode() {
+    return getID().hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return obj instanceof User && ((User) obj).getID().equals(getID());
+  }
+
+  @Override
+  public String toString() {
+    return "User[id:" + getID() + ']';
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public int compareTo(User o) {
+    if (o instanceof CompactUser && ((CompactUser) o).model == model) {
+      // indexes are in ID order
+      int otherIndex = ((CompactUser) o).index;
+      return index < otherIndex ? -1 : index == otherIndex ? 0 : 1;
+    }
+    return ((Comparable<Object>) getID()).compareTo(o.getID());
+  }
+
+}
@@ -0,0 +1,513 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.model;
+
+import org.apache.mahout.cf.taste.common.NoSuchItemException;
+import org.apache.mahout.cf.taste.common.NoSuchUserException;
+import org.apache.mahout.cf.taste.common.Refreshable;
+import org.apache.mahout.cf.taste.common.TasteException;
+import org.apache.mahout.cf.taste.impl.common.ArrayIterator;
+import org.apache.mahout.cf.taste.impl.common.FastMap;
+import org.apache.mahout.cf.taste.model.DataModel;
+import org.apache.mahout.cf.taste.model.Item;
+import org.apache.mahout.cf.taste.model.Preference;
+import org.apache.mahout.cf.taste.model.PreferenceChangeListener;
+import org.apache.mahout.cf.taste.model.User;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>An in-memory {@link DataModel} which, unlike {@link GenericDataModel}, supports
+ * {@link #setPreference(Object, Object, double)} and {@link #removePreference(Object, Object)}, and is meant
+ * to take a high rate of them while being read by many threads.</p>
+ *
+ * <p>Each {@link User} holds its {@link Preference}s in an array which is replaced, never modified, on each
+ * change. So a {@link User}'s {@link User#getPreferencesAsArray()} is always a consistent snapshot, and reading
+ * it never blocks. Each {@link Item} holds its {@link Preference}s in a map from user ID, and builds its
+ * sorted array lazily, the first time it is asked for after a change; a burst of changes to a popular
+ * {@link Item} therefore costs one rebuild, not one per change. Changes are serialized only per user and per
+ * item, by one of a fixed number of lock stripes chosen by ID.</p>
+ *
+ * <p>{@link PreferenceChangeListener}s added by {@link #addPreferenceChangeListener(PreferenceChangeListener)}
+ * are told of each change, after it has been made. The caching classes, like
+ * {@link org.apache.mahout.cf.taste.impl.recommender.CachingRecommender} and
+ * {@link org.apache.mahout.cf.taste.impl.similarity.CachingUserSimilarity}, implement this interface to
+ * discard only the results affected by the change.</p>
+ *
+ * <p>User and item IDs must be {@link Comparable} with one another.</p>
+ */
+public final class ConcurrentDataModel implements DataModel {
+
+  private static final int NUM_LOCK_STRIPES = 64; // power of 2
+  private static final Preference[] NO_PREFS = new Preference[0];
+
+  private final Map<Object, ConcurrentUser> userMap;
+  private final Map<Object, ItemPreferences> itemMap;
+  private final AtomicInteger numUsers;
+  private final AtomicInteger numItems;
+  private final Object[] userLocks;
+  private final Object[] itemLocks;
+  private final List<PreferenceChangeListener> listeners;
+
+  /**
+   * <p>Creates an empty {@link ConcurrentDataModel}.</p>
+   */
+  public ConcurrentDataModel() {
+    userMap = new ConcurrentSkipListMap<Object, ConcurrentUser>();
+    itemMap = new ConcurrentSkipListMap<Object, ItemPreferences>();
+    numUsers = new AtomicInteger();
+    numItems = new AtomicInteger();
+    userLocks = newLocks();
+    itemLocks = newLocks();
+    listeners = new CopyOnWriteArrayList<PreferenceChangeListener>();
+  }
+
+  /**
+   * <p>Creates a new {@link ConcurrentDataModel} containing a copy of the data from another
+   * given {@link DataModel}.</p>
+   *
+   * @param dataModel {@link DataModel} to copy
+   * @throws TasteException if an error occurs while retrieving the other {@link DataModel}'s users
+   */
+  public ConcurrentDataModel(DataModel dataModel) throws TasteException {
+    this();
+    for (User user : dataModel.getUsers()) {
+      for (Preference preference : user.getPreferencesAsArray()) {
+        doSetPreference(user.getID(), preference.getItem().getID(), preference.getValue());
+      }
+    }
+  }
+
+  private static Object[] newLocks() {
+    Object[] locks = new Object[NUM_LOCK_STRIPES];
+    for (int i = 0; i < locks.length; i++) {
+      locks[i] = new Object();
+    }
+    return locks;
+  }
+
+  private static Object lockFor(Object[] locks, Object id) {
+    int hash = id.hashCode();
+    hash ^= (hash >>> 20) ^ (hash >>> 12);
+    hash ^= (hash >>> 7) ^ (hash >>> 4);
+    return locks[hash & (NUM_LOCK_STRIPES - 1)];
+  }
+
+  /**
+   * @param listener to be told of each change to a {@link Preference} from now on
+   */
+  public void addPreferenceChangeListener(PreferenceChangeListener listener) {
+    if (listener == null) {
+      throw new IllegalArgumentException("listener is null");
+    }
+    listeners.add(listener);
+  }
+
+  /**
+   * @param listener to no longer be told of changes
+   */
+  public void removePreferenceChangeListener(PreferenceChangeListener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * @return all {@link User}s, ordered by ID. Users added or removed while iterating may or may not be seen.
+   */
+  @Override
+  public Iterable<? extends User> getUsers() {
+    return Collections.unmodifiableCollection(userMap.values());
+  }
+
+  /**
+   * @throws NoSuchUserException if there is no such {@link User}
+   */
+  @Override
+  public User getUser(Object id) throws NoSuchUserException {
+    User user = id == null ? null : userMap.get(id);
+    if (user == null) {
+      throw new NoSuchUserException();
+    }
+    return user;
+  }
+
+  /**
+   * @return all {@link Item}s, ordered by ID. Items added or removed while iterating may or may not be seen.
+   */
+  @Override
+  public Iterable<? extends Item> getItems() {
+    return new Iterable<Item>() {
+      @Override
+      public Iterator<Item> iterator() {
+        return new ItemIterator(itemMap.values().iterator());
+      }
+    };
+  }
+
+  /**
+   * @throws NoSuchItemException if there is no such {@link Item}
+   */
+  @Override
+  public Item getItem(Object id) throws NoSuchItemException {
+    ItemPreferences itemPrefs = id == null ? null : itemMap.get(id);
+    if (itemPrefs == null) {
+      throw new NoSuchItemException();
+    }
+    return itemPrefs.getItem();
+  }
+
+  @Override
+  public Iterable<? extends Preference> getPreferencesForItem(Object itemID) {
+    return new ArrayIterator<Preference>(getPreferencesForItemAsArray(itemID));
+  }
+
+  @Override
+  public Preference[] getPreferencesForItemAsArray(Object itemID) {
+    ItemPreferences itemPrefs = itemMap.get(itemID);
+    return itemPrefs == null ? NO_PREFS : itemPrefs.getPreferencesAsArray();
+  }
+
+  @Override
+  public int getNumItems() {
+    return numItems.get();
+  }
+
+  @Override
+  public int getNumUsers() {
+    return numUsers.get();
+  }
+
+  @Override
+  public int getNumUsersWithPreferenceFor(Object... itemIDs) {
+    if (itemIDs == null) {
+      throw new IllegalArgumentException("itemIDs is null");
+    }
+    int length = itemIDs.length;
+    if (length == 0 || length > 2) {
+      throw new IllegalArgumentException("Illegal number of item IDs: " + length);
+    }
+    Preference[] prefs1 = getPreferencesForItemAsArray(itemIDs[0]);
+    if (length == 1) {
+      return prefs1.length;
+    }
+    Preference[] prefs2 = getPreferencesForItemAsArray(itemIDs[1]);
+    // Both are ordered by user, so merge
+    Comparator<Preference> byUser = ByUserPreferenceComparator.getInstance();
+    int count = 0;
+    int i = 0;
+    int j = 0;
+    while (i < prefs1.length && j < prefs2.length) {
+      int compare = byUser.compare(prefs1[i], prefs2[j]);
+      if (compare < 0) {
+        i++;
+      } else if (compare > 0) {
+        j++;
+      } else {
+        count++;
+        i++;
+        j++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public void setPreference(Object userID, Object itemID, double value) {
+    if (userID == null || itemID == null) {
+      throw new IllegalArgumentException("userID or itemID is null");
+    }
+    if (Double.isNaN(value)) {
+      throw new IllegalArgumentException("Invalid value: " + value);
+    }
+    doSetPreference(userID, itemID, value);
+    fireChanged(userID, itemID);
+  }
+
+  private void doSetPreference(Object userID, Object itemID, double value) {
+    // Always user stripe, then item stripe, so the two can't deadlock
+    synchronized (lockFor(userLocks, userID)) {
+      ConcurrentUser user = userMap.get(userID);
+      boolean newUser = user == null;
+      if (newUser) {
+        user = new ConcurrentUser((Comparable<?>) userID);
+      }
+      Object itemLock = lockFor(itemLocks, itemID);
+      synchronized (itemLock) {
+        ItemPreferences itemPrefs = itemMap.get(itemID);
+        if (itemPrefs == null) {
+          itemPrefs = new ItemPreferences(newItem(itemID), itemLock);
+          itemMap.put(itemID, itemPrefs);
+          numItems.incrementAndGet();
+        }
+        Preference preference = new GenericPreference(user, itemPrefs.getItem(), value);
+        user.setPreference(preference);
+        itemPrefs.setPreference(userID, preference);
+      }
+      if (newUser) {
+        userMap.put(userID, user);
+        numUsers.incrementAndGet();
+      }
+    }
+  }
+
+  private static <K extends Comparable<K>> Item newItem(Object itemID) {
+    @SuppressWarnings("unchecked")
+    K id = (K) itemID;
+    return new GenericItem<K>(id);
+  }
+
+  @Override
+  public void removePreference(Object userID, Object itemID) {
+    if (userID == null || itemID == null) {
+      throw new IllegalArgumentException("userID or itemID is null");
+    }
+    boolean removed = false;
+    synchronized (lockFor(userLocks, userID)) {
+      ConcurrentUser user = userMap.get(userID);
+      if (user != null) {
+        synchronized (lockFor(itemLocks, itemID)) {
+          ItemPreferences itemPrefs = itemMap.get(itemID);
+          if (itemPrefs != null && itemPrefs.removePreference(userID)) {
+            user.removePreference(itemID);
+            removed = true;
+            if (itemPrefs.isEmpty()) {
+              itemMap.remove(itemID);
+              numItems.decrementAndGet();
+            }
+          }
+        }
+        if (user.getPreferencesAsArray().length == 0) {
+          userMap.remove(userID);
+          numUsers.decrementAndGet();
+        }
+      }
+    }
+    if (removed) {
+      fireChanged(userID, itemID);
+    }
+  }
+
+  private void fireChanged(Object userID, Object itemID) {
+    for (PreferenceChangeListener listener : listeners) {
+      listener.preferenceChanged(userID, itemID);
+    }
+  }
+
+  @Override
+  public void refresh(Collection<Refreshable> alreadyRefreshed) {
+    // Does nothing
+  }
+
+  @Override
+  public String toString() {
+    return "ConcurrentDataModel[users:" + numUsers + ", items:" + numItems + ']';
+  }
+
+  /**
+   * A {@link User} whose {@link Preference}s, ordered by {@link Item}, are replaced as a whole on each change.
+   * Its methods each read one snapshot of them.
+   */
+  private static final class ConcurrentUser implements User {
+
+    private final Comparable<?> id;
+    private volatile Preference[] preferences;
+
+    private ConcurrentUser(Comparable<?> id) {
+      this.id = id;
+      this.preferences = NO_PREFS;
+    }
+
+    @Override
+    public Object getID() {
+      return id;
+    }
+
+    @Override
+    public Preference getPreferenceFor(Object itemID) {
+      Preference[] prefs = preferences;
+      int index = indexOf(prefs, itemID);
+      return index < 0 ? null : prefs[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int indexOf(Preference[] prefs, Object itemID) {
+      int low = 0;
+      int high = prefs.length - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        int compare = ((Comparable<Object>) prefs[mid].getItem().getID()).compareTo(itemID);
+        if (compare < 0) {
+          low = mid + 1;
+        } else if (compare > 0) {
+          high = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return -(low + 1);
+    }
+
+    @Override
+    public Iterable<Preference> getPreferences() {
+      return new ArrayIterator<Preference>(preferences);
+    }
+
+    @Override
+    public Preference[] getPreferencesAsArray() {
+      return preferences;
+    }
+
+    /** Called with this user's lock held. */
+    void setPreference(Preference preference) {
+      Preference[] prefs = preferences;
+      int index = indexOf(prefs, preference.getItem().getID());
+      Preference[] newPrefs;
+      if (index >= 0) {
+        newPrefs = prefs.clone();
+        newPrefs[index] = preference;
+      } else {
+        int insertion = -index - 1;
+        newPrefs = new Preference[prefs.length + 1];
+        System.arraycopy(prefs, 0, newPrefs, 0, insertion);
+        newPrefs[insertion] = preference;
+        System.arraycopy(prefs, insertion, newPrefs, insertion + 1, prefs.length - insertion);
+      }
+      preferences = newPrefs;
+    }
+
+    /** Called with this user's lock held. */
+    void removePreference(Object itemID) {
+      Preference[] prefs = preferences;
+      int index = indexOf(prefs, itemID);
+      if (index >= 0) {
+        Preference[] newPrefs = Arrays.copyOf(prefs, prefs.length - 1);
+        System.arraycopy(prefs, index + 1, newPrefs, index, prefs.length - index - 1);
+        preferences = newPrefs;
+      }
+    }
+
+    @Override
+    public int hashCode() {
+      return id.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof User && ((User) obj).getID().equals(id);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int compareTo(User o) {
+      return ((Comparable<Object>) id).compareTo(o.getID());
+    }
+
+    @Override
+    public String toString() {
+      return "User[id:" + id + ']';
+    }
+  }
+
+  /**
+   * The {@link Preference}s for one {@link Item}, by user ID. All access to the map is under the item's lock
+   * stripe; the array ordered by {@link User} is rebuilt under the lock when first needed after a change, and
+   * otherwise read without locking.
+   */
+  private static final class ItemPreferences {
+
+    private final Item item;
+    private final Object lock;
+    private final Map<Object, Preference> byUserID;
+    private volatile Preference[] sorted;
+
+    private ItemPreferences(Item item, Object lock) {
+      this.item = item;
+      this.lock = lock;
+      this.byUserID = new FastMap<Object, Preference>();
+      this.sorted = NO_PREFS;
+    }
+
+    Item getItem() {
+      return item;
+    }
+
+    Preference[] getPreferencesAsArray() {
+      Preference[] result = sorted;
+      if (result == null) {
+        synchronized (lock) {
+          result = sorted;
+          if (result == null) {
+            Collection<Preference> values = byUserID.values();
+            result = values.toArray(new Preference[values.size()]);
+            Arrays.sort(result, ByUserPreferenceComparator.getInstance());
+            sorted = result;
+          }
+        }
+      }
+      return result;
+    }
+
+    /** Called with the lock held. */
+    void setPreference(Object userID, Preference preference) {
+      byUserID.put(userID, preference);
+      sorted = null;
+    }
+
+    /** Called with the lock held. */
+    boolean removePreference(Object userID) {
+      if (byUserID.remove(userID) == null) {
+        return false;
+      }
+      sorted = null;
+      return true;
+    }
+
+    /** Called with the lock held. */
+    boolean isEmpty() {
+      return byUserID.isEmpty();
+    }
+  }
+
+  private static final class ItemIterator implements Iterator<Item> {
+    private final Iterator<ItemPreferences> delegate;
+    private ItemIterator(Iterator<ItemPreferences> delegate) {
+      this.delegate = delegate;
+    }
+    @Override
+    public boolean hasNext() {
+      return delegate.hasNext();
+    }
+    @Override
+    public Item next() {
+      return delegate.next().getItem();
+    }
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+}
@@ -50,10 +50,10 @@ public final class GenericDataModel implements DataModel, Serializable {
   private static final Iterable<Preference> NO_PREFS_ITERABLE = new EmptyIterable<Preference>();
 
   private final List<User> users;
-  private final Map<Object, User> userMap;
+  private final FastMap<Object, User> userMap;
   private final List<Item> items;
-  private final Map<Object, Item> itemMap;
-  private final Map<Object, Preference[]> preferenceForItems;
+  private final FastMap<Object, Item> itemMap;
+  private final FastMap<Object, Preference[]> preferenceForItems;
 
   /**
    * <p>Creates a new {@link GenericDataModel} from the given {@link User}s (and their preferences).
@@ -71,7 +71,7 @@ public final class GenericDataModel implements DataModel, Serializable {
     this.itemMap = new FastMap<Object, Item>();
     // I'm abusing generics a little here since I want to use this (huge) map to hold Lists,
     // then arrays, and don't want to allocate two Maps at once here.
-    Map<Object, Object> prefsForItems = new FastMap<Object, Object>();
+    FastMap<Object, Object> prefsForItems = new FastMap<Object, Object>();
     for (User user : users) {
       userMap.put(user.getID(), user);
       Preference[] prefsArray = user.getPreferencesAsArray();
@@ -104,7 +104,19 @@ public final class GenericDataModel implements DataModel, Serializable {
       entry.setValue(prefsAsArray);
     }
     // Yeah more generics ugliness
-    this.preferenceForItems = (Map<Object, Preference[]>) (Map<Object, ?>) prefsForItems;
+    this.preferenceForItems = (FastMap<Object, Preference[]>) (FastMap<Object, ?>) prefsForItems;
+  }
+
+  private GenericDataModel(List<User> users,
+                           FastMap<Object, User> userMap,
+                           List<Item> items,
+                           FastMap<Object, Item> itemMap,
+                           FastMap<Object, Preference[]> preferenceForItems) {
+    this.users = users;
+    this.userMap = userMap;
+    this.items = items;
+    this.itemMap = itemMap;
+    this.preferenceForItems = preferenceForItems;
   }
 
   /**
@@ -118,6 +130,124 @@ public final class GenericDataModel implements DataModel, Serializable {
     this(dataModel.getUsers());
   }
 
+  /**
+   * <p>Creates a new {@link GenericDataModel} in which the given {@link User}s replace the existing
+   * {@link User}s with the same IDs, or are added if there are none. This {@link GenericDataModel} is
+   * not changed, so it may be read while the new one is built.</p>
+   *
+   * <p>The new {@link GenericDataModel} shares all {@link User}s, {@link Item}s and preference arrays
+   * that the update does not touch. Apart from copying the references in its maps and lists, the cost
+   * is proportional to the number of preferences of the updated {@link User}s and the items they prefer,
+   * not to the size of the whole model.</p>
+   *
+   * @param updatedUsers {@link User}s to add or replace. Their {@link Preference}s must not be shared
+   *  with {@link User}s of this {@link GenericDataModel}
+   * @return the updated {@link GenericDataModel}
+   */
+  public GenericDataModel withUsers(Iterable<? extends User> updatedUsers) {
+    if (updatedUsers == null) {
+      throw new IllegalArgumentException("updatedUsers is null");
+    }
+    Map<Object, User> updatedUserMap = new FastMap<Object, User>();
+    for (User user : updatedUsers) {
+      updatedUserMap.put(user.getID(), user);
+    }
+    if (updatedUserMap.isEmpty()) {
+      return this;
+    }
+
+    FastMap<Object, User> newUserMap = userMap.clone();
+    FastMap<Object, Item> newItemMap = itemMap.clone();
+    FastMap<Object, Preference[]> newPrefsForItems = preferenceForItems.clone();
+
+    List<User> newUsers = new ArrayList<User>(users);
+    List<User> addedUsers = new ArrayList<User>();
+    List<Item> addedItems = new ArrayList<Item>();
+    Map<Object, List<Preference>> addedPrefsForItems = new FastMap<Object, List<Preference>>();
+    for (User user : updatedUserMap.values()) {
+      User oldUser = newUserMap.put(user.getID(), user);
+      if (oldUser == null) {
+        addedUsers.add(user);
+      } else {
+        newUsers.set(Collections.binarySearch(newUsers, oldUser), user);
+        for (Preference preference : oldUser.getPreferencesAsArray()) {
+          Object itemID = preference.getItem().getID();
+          if (!addedPrefsForItems.containsKey(itemID)) {
+            addedPrefsForItems.put(itemID, new ArrayList<Preference>());
+          }
+        }
+      }
+      for (Preference preference : user.getPreferencesAsArray()) {
+        Item item = preference.getItem();
+        Object itemID = item.getID();
+        if (!newItemMap.containsKey(itemID)) {
+          newItemMap.put(itemID, item);
+          addedItems.add(item);
+        }
+        List<Preference> prefsForItem = addedPrefsForItems.get(itemID);
+        if (prefsForItem == null) {
+          prefsForItem = new ArrayList<Preference>();
+          addedPrefsForItems.put(itemID, prefsForItem);
+        }
+        prefsForItem.add(preference);
+      }
+    }
+    if (!addedUsers.isEmpty()) {
+      // mostly sorted already, which the sort takes advantage of
+      newUsers.addAll(addedUsers);
+      Collections.sort(newUsers);
+    }
+
+    // Rebuild the preference arrays of touched items, dropping the preferences of replaced users
+    Set<Object> removedItemIDs = new FastSet<Object>();
+    for (Map.Entry<Object, List<Preference>> entry : addedPrefsForItems.entrySet()) {
+      Object itemID = entry.getKey();
+      List<Preference> prefsForItem = entry.getValue();
+      Preference[] oldPrefs = newPrefsForItems.get(itemID);
+      if (oldPrefs != null) {
+        for (Preference preference : oldPrefs) {
+          if (!updatedUserMap.containsKey(preference.getUser().getID())) {
+            prefsForItem.add(preference);
+          }
+        }
+      }
+      if (prefsForItem.isEmpty()) {
+        newPrefsForItems.remove(itemID);
+        newItemMap.remove(itemID);
+        removedItemIDs.add(itemID);
+      } else {
+        Preference[] prefsAsArray = prefsForItem.toArray(new Preference[prefsForItem.size()]);
+        Arrays.sort(prefsAsArray, ByUserPreferenceComparator.getInstance());
+        newPrefsForItems.put(itemID, prefsAsArray);
+      }
+    }
+
+    List<Item> newItems;
+    if (addedItems.isEmpty() && removedItemIDs.isEmpty()) {
+      newItems = items;
+    } else {
+      newItems = new ArrayList<Item>(items.size() + addedItems.size());
+      for (Item item : items) {
+        if (!removedItemIDs.contains(item.getID())) {
+          newItems.add(item);
+        }
+      }
+      for (Item item : addedItems) {
+        if (!removedItemIDs.contains(item.getID())) {
+          newItems.add(item);
+        }
+      }
+      Collections.sort(newItems);
+      newItems = Collections.unmodifiableList(newItems);
+    }
+
+    return new GenericDataModel(Collections.unmodifiableList(newUsers),
+                                newUserMap,
+                                newItems,
+                                newItemMap,
+                                newPrefsForItems);
+  }
+
   @Override
   public Iterable<? extends User> getUsers() {
     return users;
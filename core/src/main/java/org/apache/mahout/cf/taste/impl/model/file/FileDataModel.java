@@ -17,6 +17,7 @@
 
 package org.apache.mahout.cf.taste.impl.model.file;
 
+import org.apache.mahout.cf.taste.common.NoSuchUserException;
 import org.apache.mahout.cf.taste.common.Refreshable;
 import org.apache.mahout.cf.taste.common.TasteException;
 import org.apache.mahout.cf.taste.impl.common.FastMap;
@@ -35,12 +36,15 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Iterator;
 import java.util.Collections;
+import java.util.Set;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -61,6 +65,11 @@ import java.util.concurrent.atomic.AtomicInteger;
  * that supersedes what is in the main data file. This is a mechanism that allows an application to push
  * updates to {@link FileDataModel} without re-copying the entire data file.</p>
  *
+ * <p>When only new update files have appeared since the data was loaded, {@link #refresh(Collection)} applies
+ * just those to a copy of the current data, which then replaces it; the data file and the update files already
+ * applied are not read again, and readers keep using the old data until the new data is ready. If instead the
+ * data file or an update file already applied has changed or disappeared, everything is reloaded.</p>
+ *
  * <p>The line may contain a blank preference value (e.g. "123,ABC,"). This is interpreted to mean "delete
  * preference", and is only useful in the context of an update delta file (see above).</p>
  *
@@ -75,6 +84,10 @@ import java.util.concurrent.atomic.AtomicInteger;
  * application-specific needs and input formats. See {@link #processLine(String, Map, Map)},
  * {@link #buildItem(String)}, {@link #buildUser(String, List)}
  * and {@link #buildPreference(User, Item, double)}.</p>
+ *
+ * <p>Alternatively, for larger files, the data can be loaded by a {@link ParallelFileLoader} into a
+ * {@link org.apache.mahout.cf.taste.impl.model.CompactDataModel}; see {@link #FileDataModel(File, boolean)}.
+ * This ignores the methods above.</p>
  */
 public class FileDataModel implements DataModel {
 
@@ -87,8 +100,11 @@ public class FileDataModel implements DataModel {
   private long lastModified;
   private char delimiter;
   private boolean loaded;
-  private DataModel delegate;
+  private volatile DataModel delegate;
   private final ReentrantLock reloadLock;
+  private long dataFileLastModified;
+  private final Map<File, Long> appliedUpdateFiles;
+  private final ParallelFileLoader loader;
 
   /**
    * @param dataFile file containing preferences data. If file is compressed (and name ends in .gz
@@ -96,6 +112,19 @@ public class FileDataModel implements DataModel {
    * @throws FileNotFoundException if dataFile does not exist
    */
   public FileDataModel(File dataFile) throws FileNotFoundException {
+    this(dataFile, false);
+  }
+
+  /**
+   * @param dataFile file containing preferences data. If file is compressed (and name ends in .gz
+   *  or .zip accordingly) it will be decompressed as it is read)
+   * @param compact if true, the data is parsed in parallel by a {@link ParallelFileLoader} into a
+   *  {@link org.apache.mahout.cf.taste.impl.model.CompactDataModel}, and a binary snapshot of it is kept next to
+   *  the data file so that it need not be parsed again until the files change. In this case
+   *  {@link #processLine(String, Map, Map)} and the <code>build</code> methods are not used
+   * @throws FileNotFoundException if dataFile does not exist
+   */
+  public FileDataModel(File dataFile, boolean compact) throws FileNotFoundException {
     if (dataFile == null) {
       throw new IllegalArgumentException("dataFile is null");
     }
@@ -110,6 +139,9 @@ public class FileDataModel implements DataModel {
     this.dataFile = dataFile.getAbsoluteFile();
     this.lastModified = dataFile.lastModified();
     this.reloadLock = new ReentrantLock();
+    this.appliedUpdateFiles = new FastMap<File, Long>();
+    this.loader = compact ?
+        new ParallelFileLoader(this.dataFile, true, Runtime.getRuntime().availableProcessors()) : null;
   }
 
   public File getDataFile() {
@@ -120,10 +152,28 @@ public class FileDataModel implements DataModel {
     if (!reloadLock.isLocked()) {
       reloadLock.lock();
       try {
+        // recorded before reading, so that a change made while reading is noticed by the next refresh
+        dataFileLastModified = dataFile.lastModified();
+        appliedUpdateFiles.clear();
+        Iterable<File> updateFiles = findUpdateFiles();
+        for (File updateFile : updateFiles) {
+          appliedUpdateFiles.put(updateFile, updateFile.lastModified());
+        }
+
+        if (loader != null) {
+          try {
+            delegate = loader.load(updateFiles);
+          } catch (IOException ioe) {
+            throw new IllegalStateException(ioe);
+          }
+          loaded = true;
+          return;
+        }
+
         Map<String, List<Preference>> data = new FastMap<String, List<Preference>>();
 
         processFile(dataFile, data);
-        for (File updateFile : findUpdateFiles()) {
+        for (File updateFile : updateFiles) {
           processFile(updateFile, data);
         }
 
@@ -136,6 +186,59 @@ public class FileDataModel implements DataModel {
     }
   }
 
+  /**
+   * Applies the update files which have appeared since the data was last loaded to a copy of the current data,
+   * and then swaps in the copy. Only the users named in the new update files are copied and rebuilt; see
+   * {@link GenericDataModel#withUsers(Iterable)}.
+   *
+   * @return false if the update files can't be applied alone and the data must be reloaded instead: because it
+   *  has not been loaded yet, was loaded by a {@link ParallelFileLoader}, or because the data file or an update
+   *  file already applied has changed or disappeared, or a new update file sorts before one already applied
+   */
+  private boolean applyNewUpdateFiles() {
+    if (reloadLock.isLocked()) {
+      // being loaded already
+      return true;
+    }
+    reloadLock.lock();
+    try {
+      if (!loaded || loader != null || !(delegate instanceof GenericDataModel)) {
+        return false;
+      }
+      if (dataFile.lastModified() != dataFileLastModified) {
+        return false;
+      }
+      List<File> newUpdateFiles = new ArrayList<File>();
+      int numApplied = 0;
+      for (File updateFile : findUpdateFiles()) {
+        Long applied = appliedUpdateFiles.get(updateFile);
+        if (applied == null) {
+          newUpdateFiles.add(updateFile);
+        } else if (applied != updateFile.lastModified() || !newUpdateFiles.isEmpty()) {
+          return false;
+        } else {
+          numApplied++;
+        }
+      }
+      if (numApplied < appliedUpdateFiles.size()) {
+        return false;
+      }
+
+      GenericDataModel current = (GenericDataModel) delegate;
+      UpdatedData data = new UpdatedData(current);
+      for (File updateFile : newUpdateFiles) {
+        appliedUpdateFiles.put(updateFile, updateFile.lastModified());
+        processFile(updateFile, data);
+      }
+      delegate = current.withUsers(new UserIteratableOverData(data));
+      log.info("Applied {} update files to {} users", newUpdateFiles.size(), data.size());
+      return true;
+
+    } finally {
+      reloadLock.unlock();
+    }
+  }
+
   /**
    * Finds update delta files in the same directory as the data file. This finds any file whose
    * name starts the same way as the data file (up to first period) but isn't the data file itself.
@@ -339,7 +442,9 @@ public class FileDataModel implements DataModel {
     if (mostRecentModification > lastModified + MIN_RELOAD_INTERVAL_MS) {
       log.debug("File has changed; reloading...");
       lastModified = mostRecentModification;
-      reload();
+      if (!applyNewUpdateFiles()) {
+        reload();
+      }
     }
   }
 
@@ -388,6 +493,51 @@ public class FileDataModel implements DataModel {
     return "FileDataModel[dataFile:" + dataFile + ']';
   }
 
+  /**
+   * The preferences of the users named in update files, as {@link #processLine(String, Map, Map)} sees them. When
+   * a user is first looked up, the map is seeded with copies of that user's current preferences, so that lines
+   * are applied on top of them; the current {@link Preference} objects themselves are not shared, since the
+   * {@link User}s built from this map take ownership of their preferences.
+   */
+  private final class UpdatedData extends AbstractMap<String, List<Preference>> {
+    private final GenericDataModel current;
+    private final Map<String, List<Preference>> updated;
+    private UpdatedData(GenericDataModel current) {
+      this.current = current;
+      this.updated = new FastMap<String, List<Preference>>();
+    }
+    @Override
+    public List<Preference> get(Object key) {
+      List<Preference> prefs = updated.get(key);
+      if (prefs == null && key instanceof String) {
+        User user;
+        try {
+          user = current.getUser(key);
+        } catch (NoSuchUserException nsue) {
+          return null;
+        }
+        Preference[] currentPrefs = user.getPreferencesAsArray();
+        prefs = new ArrayList<Preference>(currentPrefs.length);
+        for (Preference pref : currentPrefs) {
+          if (pref instanceof BooleanPreference) {
+            prefs.add(new BooleanPreference(null, pref.getItem()));
+          } else {
+            prefs.add(buildPreference(null, pref.getItem(), pref.getValue()));
+          }
+        }
+        updated.put((String) key, prefs);
+      }
+      return prefs;
+    }
+    @Override
+    public List<Preference> put(String key, List<Preference> value) {
+      return updated.put(key, value);
+    }
+    @Override
+    public Set<Map.Entry<String, List<Preference>>> entrySet() {
+      return updated.entrySet();
+    }
+  }
 
   private final class UserIteratableOverData implements Iterable<User> {
     private final Map<String, List<Preference>> data;
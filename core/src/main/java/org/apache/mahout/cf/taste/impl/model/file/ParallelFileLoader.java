@@ -0,0 +1,841 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.model.file;
+
+import org.apache.mahout.cf.taste.impl.common.IOUtils;
+import org.apache.mahout.cf.taste.impl.model.CompactDataModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipInputStream;
+
+/**
+ * <p>Loads a {@link FileDataModel} data file, and its update files, into a {@link CompactDataModel}. The format is
+ * that of {@link FileDataModel}: lines of user ID, item ID and optional preference value, separated by commas
+ * or tabs, where an empty value removes the preference.</p>
+ *
+ * <p>An uncompressed file is split into byte ranges on line boundaries, and the ranges are memory-mapped and
+ * parsed in parallel. Parsing works on the bytes directly: each chunk maps the distinct IDs it sees to dense int
+ * indexes without creating a {@link String} per field, and preference values are parsed from the bytes. The
+ * chunks are then merged straight into the by-user arrays of the {@link CompactDataModel}. Compressed files can
+ * not be split, so each is parsed by a single thread. A later line for the same user and item replaces an
+ * earlier one, in the data file or any update file.</p>
+ *
+ * <p>Optionally the loaded model is saved as a binary snapshot next to the data file, named after it with a
+ * leading period so that {@link FileDataModel} does not take it for an update file. The snapshot records the
+ * length and modification time of every file it was loaded from; as long as those have not changed, later loads
+ * read the snapshot, through memory-mapping, instead of parsing the files again.</p>
+ *
+ * <p>Unlike {@link FileDataModel#processLine(String, java.util.Map, java.util.Map)}, this always reads the
+ * standard format, and the user and item IDs it produces are always {@link String}s.</p>
+ */
+public final class ParallelFileLoader {
+
+  private static final Logger log = LoggerFactory.getLogger(ParallelFileLoader.class);
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  private static final int SNAPSHOT_MAGIC = 0x4d434450; // "MCDP"
+  private static final int SNAPSHOT_VERSION = 1;
+  /** Files are not split into ranges smaller than this. */
+  private static final long MIN_RANGE_SIZE = 1L << 20;
+  /** Ranges are kept well below the 2GB limit of a single mapping. */
+  private static final long MAX_RANGE_SIZE = 1L << 30;
+  private static final int STREAM_BUFFER_SIZE = 1 << 20;
+
+  private final File dataFile;
+  private final File snapshotFile;
+  private final boolean useSnapshot;
+  private final int numThreads;
+
+  /**
+   * Creates a loader which uses one thread per processor and does not use a snapshot.
+   *
+   * @param dataFile the data file
+   * @throws FileNotFoundException if dataFile does not exist
+   */
+  public ParallelFileLoader(File dataFile) throws FileNotFoundException {
+    this(dataFile, false, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param dataFile the data file. If it is compressed (and its name ends in .gz or .zip accordingly) it will be
+   *  decompressed as it is read
+   * @param useSnapshot whether to read and write a binary snapshot next to the data file
+   * @param numThreads number of threads to parse with
+   * @throws FileNotFoundException if dataFile does not exist
+   */
+  public ParallelFileLoader(File dataFile, boolean useSnapshot, int numThreads) throws FileNotFoundException {
+    if (dataFile == null) {
+      throw new IllegalArgumentException("dataFile is null");
+    }
+    if (!dataFile.exists() || dataFile.isDirectory()) {
+      throw new FileNotFoundException(dataFile.toString());
+    }
+    if (numThreads < 1) {
+      throw new IllegalArgumentException("numThreads must be at least 1");
+    }
+    this.dataFile = dataFile.getAbsoluteFile();
+    this.snapshotFile = new File(this.dataFile.getParentFile(), '.' + this.dataFile.getName() + ".snapshot");
+    this.useSnapshot = useSnapshot;
+    this.numThreads = numThreads;
+  }
+
+  public File getDataFile() {
+    return dataFile;
+  }
+
+  public File getSnapshotFile() {
+    return snapshotFile;
+  }
+
+  /**
+   * Loads the data file only.
+   *
+   * @return the loaded model
+   * @throws IOException if an error occurs while reading the file
+   */
+  public CompactDataModel load() throws IOException {
+    return load(Collections.<File>emptyList());
+  }
+
+  /**
+   * Loads the data file followed by the given update files, whose lines supersede those of the data file.
+   *
+   * @param updateFiles update files, in the order in which they apply
+   * @return the loaded model
+   * @throws IOException if an error occurs while reading the files
+   */
+  public CompactDataModel load(Iterable<File> updateFiles) throws IOException {
+    List<File> sources = new ArrayList<File>();
+    sources.add(dataFile);
+    for (File updateFile : updateFiles) {
+      sources.add(updateFile);
+    }
+
+    if (useSnapshot) {
+      CompactDataModel snapshot = readSnapshot(sources);
+      if (snapshot != null) {
+        log.info("Read snapshot {}", snapshotFile);
+        return snapshot;
+      }
+    }
+
+    long start = System.currentTimeMillis();
+    CompactDataModel model = parse(sources);
+    log.info("Loaded {} in {}ms", model, System.currentTimeMillis() - start);
+
+    if (useSnapshot) {
+      try {
+        writeSnapshot(sources, model);
+      } catch (IOException ioe) {
+        log.warn("Could not write snapshot " + snapshotFile, ioe);
+      }
+    }
+    return model;
+  }
+
+  private CompactDataModel parse(List<File> sources) throws IOException {
+    final byte delimiter = determineDelimiter(dataFile);
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    try {
+      List<Future<Chunk>> futures = new ArrayList<Future<Chunk>>();
+      for (final File source : sources) {
+        if (isCompressed(source)) {
+          futures.add(executor.submit(new Callable<Chunk>() {
+            @Override
+            public Chunk call() throws IOException {
+              return parseStream(source, delimiter);
+            }
+          }));
+        } else {
+          long[] boundaries = splitIntoRanges(source);
+          for (int i = 0; i + 1 < boundaries.length; i++) {
+            final long from = boundaries[i];
+            final long to = boundaries[i + 1];
+            futures.add(executor.submit(new Callable<Chunk>() {
+              @Override
+              public Chunk call() throws IOException {
+                return parseRange(source, from, to, delimiter);
+              }
+            }));
+          }
+        }
+      }
+      List<Chunk> chunks = new ArrayList<Chunk>(futures.size());
+      for (Future<Chunk> future : futures) {
+        chunks.add(future.get());
+      }
+      return merge(chunks);
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while loading " + dataFile);
+    } catch (ExecutionException ee) {
+      Throwable cause = ee.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static boolean isCompressed(File file) {
+    String name = file.getName();
+    return name.endsWith(".gz") || name.endsWith(".zip");
+  }
+
+  private static InputStream openStream(File file) throws IOException {
+    InputStream is = new FileInputStream(file);
+    String name = file.getName();
+    if (name.endsWith(".gz")) {
+      return new GZIPInputStream(is);
+    }
+    if (name.endsWith(".zip")) {
+      ZipInputStream zis = new ZipInputStream(is);
+      zis.getNextEntry();
+      return zis;
+    }
+    return is;
+  }
+
+  /**
+   * As in {@link FileDataModel}, the delimiter is a comma if the first non-empty line of the data file has one,
+   * otherwise a tab.
+   */
+  private static byte determineDelimiter(File file) throws IOException {
+    InputStream in = openStream(file);
+    try {
+      boolean sawTab = false;
+      boolean sawAnything = false;
+      int b;
+      while ((b = in.read()) >= 0) {
+        if (b == ',') {
+          return ',';
+        }
+        if (b == '\n' || b == '\r') {
+          if (sawAnything) {
+            break;
+          }
+        } else {
+          sawAnything = true;
+          sawTab |= b == '\t';
+        }
+      }
+      if (sawTab) {
+        return '\t';
+      }
+    } finally {
+      IOUtils.quietClose(in);
+    }
+    throw new IllegalArgumentException("Did not find a delimiter in first line");
+  }
+
+  /**
+   * @return the start of each range of the file, each after a line break, followed by the length of the file
+   */
+  private long[] splitIntoRanges(File file) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      long length = raf.length();
+      long numRanges = Math.max(1L, Math.min(4L * numThreads, length / MIN_RANGE_SIZE));
+      numRanges = Math.max(numRanges, (length + MAX_RANGE_SIZE - 1) / MAX_RANGE_SIZE);
+      List<Long> boundaries = new ArrayList<Long>();
+      boundaries.add(0L);
+      for (long i = 1; i < numRanges; i++) {
+        long position = Math.max(i * (length / numRanges), boundaries.get(boundaries.size() - 1));
+        raf.seek(position);
+        int b;
+        while ((b = raf.read()) >= 0 && b != '\n') {
+          position++;
+        }
+        if (b < 0) {
+          break;
+        }
+        long boundary = position + 1;
+        if (boundary > boundaries.get(boundaries.size() - 1) && boundary < length) {
+          boundaries.add(boundary);
+        }
+      }
+      boundaries.add(length);
+      long[] result = new long[boundaries.size()];
+      for (int i = 0; i < result.length; i++) {
+        result[i] = boundaries.get(i);
+      }
+      return result;
+    } finally {
+      IOUtils.quietClose(raf);
+    }
+  }
+
+  private static Chunk parseRange(File file, long from, long to, byte delimiter) throws IOException {
+    Chunk chunk = new Chunk();
+    if (to > from) {
+      RandomAccessFile raf = new RandomAccessFile(file, "r");
+      try {
+        ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        parseLines(buffer, 0, buffer.limit(), delimiter, chunk);
+      } finally {
+        IOUtils.quietClose(raf);
+      }
+    }
+    return chunk;
+  }
+
+  private static Chunk parseStream(File file, byte delimiter) throws IOException {
+    Chunk chunk = new Chunk();
+    InputStream in = openStream(file);
+    try {
+      byte[] bytes = new byte[STREAM_BUFFER_SIZE];
+      int size = 0;
+      int read;
+      while ((read = in.read(bytes, size, bytes.length - size)) >= 0) {
+        size += read;
+        int lastLineEnd = size - 1;
+        while (lastLineEnd >= 0 && bytes[lastLineEnd] != '\n') {
+          lastLineEnd--;
+        }
+        if (lastLineEnd < 0) {
+          if (size == bytes.length) {
+            // a line longer than the buffer
+            bytes = Arrays.copyOf(bytes, 2 * bytes.length);
+          }
+          continue;
+        }
+        parseLines(ByteBuffer.wrap(bytes), 0, lastLineEnd + 1, delimiter, chunk);
+        size -= lastLineEnd + 1;
+        System.arraycopy(bytes, lastLineEnd + 1, bytes, 0, size);
+      }
+      parseLines(ByteBuffer.wrap(bytes), 0, size, delimiter, chunk);
+    } finally {
+      IOUtils.quietClose(in);
+    }
+    return chunk;
+  }
+
+  private static void parseLines(ByteBuffer buffer, int from, int to, byte delimiter, Chunk chunk) {
+    int lineStart = from;
+    while (lineStart < to) {
+      int lineEnd = lineStart;
+      while (lineEnd < to && buffer.get(lineEnd) != '\n') {
+        lineEnd++;
+      }
+      int end = lineEnd;
+      if (end > lineStart && buffer.get(end - 1) == '\r') {
+        end--;
+      }
+      if (end > lineStart) {
+        parseLine(buffer, lineStart, end, delimiter, chunk);
+      }
+      lineStart = lineEnd + 1;
+    }
+  }
+
+  private static void parseLine(ByteBuffer buffer, int from, int to, byte delimiter, Chunk chunk) {
+    int delimiterOne = indexOf(buffer, from, to, delimiter);
+    if (delimiterOne < 0) {
+      throw new IllegalArgumentException("Bad line: " + toString(buffer, from, to));
+    }
+    int delimiterTwo = indexOf(buffer, delimiterOne + 1, to, delimiter);
+    int user = chunk.users.indexOf(buffer, from, delimiterOne);
+    int item = chunk.items.indexOf(buffer, delimiterOne + 1, delimiterTwo < 0 ? to : delimiterTwo);
+    if (delimiterTwo < 0) {
+      chunk.add(user, item, 1.0f);
+    } else if (delimiterTwo + 1 == to) {
+      // blank value: remove pref
+      chunk.add(user, ~item, 0.0f);
+    } else {
+      chunk.add(user, item, (float) parseDouble(buffer, delimiterTwo + 1, to));
+    }
+  }
+
+  private static int indexOf(ByteBuffer buffer, int from, int to, byte b) {
+    for (int i = from; i < to; i++) {
+      if (buffer.get(i) == b) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static String toString(ByteBuffer buffer, int from, int to) {
+    byte[] bytes = new byte[to - from];
+    for (int i = from; i < to; i++) {
+      bytes[i - from] = buffer.get(i);
+    }
+    return new String(bytes, UTF8);
+  }
+
+  private static final double[] POWERS_OF_TEN = {
+      1.0e0, 1.0e1, 1.0e2, 1.0e3, 1.0e4, 1.0e5, 1.0e6, 1.0e7, 1.0e8, 1.0e9, 1.0e10, 1.0e11,
+      1.0e12, 1.0e13, 1.0e14, 1.0e15, 1.0e16, 1.0e17, 1.0e18, 1.0e19, 1.0e20, 1.0e21, 1.0e22,
+  };
+
+  /**
+   * Parses a decimal number such as "-12.5" or "3e-2" from the bytes. When the digits fit in a double exactly and
+   * the power of ten is small, one multiplication or division gives the correctly rounded result, the same as
+   * {@link Double#parseDouble(String)}; anything else is handed to {@link Double#parseDouble(String)}.
+   */
+  static double parseDouble(ByteBuffer buffer, int from, int to) {
+    int i = from;
+    boolean negative = false;
+    if (i < to && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+      negative = buffer.get(i) == '-';
+      i++;
+    }
+    long mantissa = 0L;
+    boolean sawDigit = false;
+    int digits = 0;
+    int exponent = 0;
+    boolean sawPoint = false;
+    for (; i < to; i++) {
+      byte b = buffer.get(i);
+      if (b >= '0' && b <= '9') {
+        if (digits >= 18) {
+          return Double.parseDouble(toString(buffer, from, to));
+        }
+        mantissa = 10L * mantissa + (b - '0');
+        sawDigit = true;
+        if (mantissa != 0L) {
+          digits++;
+        }
+        if (sawPoint) {
+          exponent--;
+        }
+      } else if (b == '.' && !sawPoint) {
+        sawPoint = true;
+      } else {
+        break;
+      }
+    }
+    if (!sawDigit) {
+      return Double.parseDouble(toString(buffer, from, to));
+    }
+    if (i < to) {
+      byte b = buffer.get(i++);
+      if (b != 'e' && b != 'E' || i == to) {
+        return Double.parseDouble(toString(buffer, from, to));
+      }
+      boolean negativeExponent = false;
+      if (buffer.get(i) == '-' || buffer.get(i) == '+') {
+        negativeExponent = buffer.get(i) == '-';
+        i++;
+      }
+      int explicitExponent = 0;
+      if (i == to) {
+        return Double.parseDouble(toString(buffer, from, to));
+      }
+      for (; i < to; i++) {
+        b = buffer.get(i);
+        if (b < '0' || b > '9' || explicitExponent > 1000) {
+          return Double.parseDouble(toString(buffer, from, to));
+        }
+        explicitExponent = 10 * explicitExponent + (b - '0');
+      }
+      exponent += negativeExponent ? -explicitExponent : explicitExponent;
+    }
+    double result;
+    if (mantissa == 0L) {
+      result = 0.0;
+    } else if (mantissa > (1L << 53) || exponent < -22 || exponent > 22) {
+      return Double.parseDouble(toString(buffer, from, to));
+    } else if (exponent < 0) {
+      result = mantissa / POWERS_OF_TEN[-exponent];
+    } else {
+      result = mantissa * POWERS_OF_TEN[exponent];
+    }
+    return negative ? -result : result;
+  }
+
+  /**
+   * Merges the chunks, in order, into the arrays of a {@link CompactDataModel}: the IDs of all chunks are sorted
+   * into the global ID arrays, the preferences are bucketed by user with a counting sort, which keeps them in file
+   * order, and then each user's preferences are sorted by item, keeping only the last line for each item.
+   */
+  private static CompactDataModel merge(List<Chunk> chunks) {
+    Object[] userIDs = mergeIDs(chunks, true);
+    Object[] itemIDs = mergeIDs(chunks, false);
+    int[][] userMaps = new int[chunks.size()][];
+    int[][] itemMaps = new int[chunks.size()][];
+    for (int c = 0; c < chunks.size(); c++) {
+      userMaps[c] = globalIndexes(chunks.get(c).users.toStrings(), userIDs);
+      itemMaps[c] = globalIndexes(chunks.get(c).items.toStrings(), itemIDs);
+    }
+
+    int[] offsets = new int[userIDs.length + 1];
+    long total = 0L;
+    for (int c = 0; c < chunks.size(); c++) {
+      Chunk chunk = chunks.get(c);
+      for (int i = 0; i < chunk.size; i++) {
+        offsets[userMaps[c][chunk.userIndexes[i]] + 1]++;
+      }
+      total += chunk.size;
+    }
+    if (total > Integer.MAX_VALUE) {
+      throw new IllegalStateException("Too many preferences: " + total);
+    }
+    for (int u = 0; u < userIDs.length; u++) {
+      offsets[u + 1] += offsets[u];
+    }
+    int[] next = Arrays.copyOf(offsets, userIDs.length);
+    int[] items = new int[(int) total];
+    float[] values = new float[(int) total];
+    for (int c = 0; c < chunks.size(); c++) {
+      Chunk chunk = chunks.get(c);
+      int[] userMap = userMaps[c];
+      int[] itemMap = itemMaps[c];
+      for (int i = 0; i < chunk.size; i++) {
+        int position = next[userMap[chunk.userIndexes[i]]]++;
+        int item = chunk.itemIndexes[i];
+        items[position] = item < 0 ? ~itemMap[~item] : itemMap[item];
+        values[position] = chunk.values[i];
+      }
+      // let the chunk's arrays go as soon as possible
+      chunks.set(c, null);
+    }
+
+    int maxLength = 0;
+    for (int u = 0; u < userIDs.length; u++) {
+      maxLength = Math.max(maxLength, offsets[u + 1] - offsets[u]);
+    }
+    long[] keys = new long[maxLength];
+    int[] segmentItems = new int[maxLength];
+    float[] segmentValues = new float[maxLength];
+    boolean[] itemUsed = new boolean[itemIDs.length];
+    int size = 0;
+    for (int u = 0; u < userIDs.length; u++) {
+      int from = offsets[u];
+      int length = offsets[u + 1] - from;
+      offsets[u] = size;
+      for (int i = 0; i < length; i++) {
+        int item = items[from + i];
+        segmentItems[i] = item;
+        segmentValues[i] = values[from + i];
+        // item in the high word, file order in the low word
+        keys[i] = ((long) (item < 0 ? ~item : item) << 32) | i;
+      }
+      Arrays.sort(keys, 0, length);
+      for (int i = 0; i < length; i++) {
+        if (i + 1 < length && keys[i + 1] >>> 32 == keys[i] >>> 32) {
+          // superseded by a later line
+          continue;
+        }
+        int position = (int) keys[i];
+        int item = segmentItems[position];
+        if (item >= 0) {
+          items[size] = item;
+          values[size] = segmentValues[position];
+          itemUsed[item] = true;
+          size++;
+        }
+      }
+    }
+    offsets[userIDs.length] = size;
+
+    // drop items which were only ever removed
+    int[] itemRemap = new int[itemIDs.length];
+    int numItems = 0;
+    for (int i = 0; i < itemIDs.length; i++) {
+      itemRemap[i] = numItems;
+      if (itemUsed[i]) {
+        itemIDs[numItems++] = itemIDs[i];
+      }
+    }
+    if (numItems < itemIDs.length) {
+      itemIDs = Arrays.copyOf(itemIDs, numItems);
+      for (int i = 0; i < size; i++) {
+        items[i] = itemRemap[items[i]];
+      }
+    }
+    if (size < items.length) {
+      items = Arrays.copyOf(items, size);
+      values = Arrays.copyOf(values, size);
+    }
+    return new CompactDataModel(userIDs, itemIDs, offsets, items, values);
+  }
+
+  private static Object[] mergeIDs(List<Chunk> chunks, boolean users) {
+    List<String> all = new ArrayList<String>();
+    for (Chunk chunk : chunks) {
+      all.addAll(Arrays.asList((users ? chunk.users : chunk.items).toStrings()));
+    }
+    String[] sorted = all.toArray(new String[all.size()]);
+    Arrays.sort(sorted);
+    int size = 0;
+    for (String id : sorted) {
+      if (size == 0 || !id.equals(sorted[size - 1])) {
+        sorted[size++] = id;
+      }
+    }
+    Object[] result = new Object[size];
+    System.arraycopy(sorted, 0, result, 0, size);
+    return result;
+  }
+
+  private static int[] globalIndexes(String[] localIDs, Object[] globalIDs) {
+    int[] result = new int[localIDs.length];
+    for (int i = 0; i < localIDs.length; i++) {
+      result[i] = Arrays.binarySearch(globalIDs, localIDs[i]);
+    }
+    return result;
+  }
+
+  private CompactDataModel readSnapshot(List<File> sources) {
+    if (!snapshotFile.exists()) {
+      return null;
+    }
+    RandomAccessFile raf = null;
+    try {
+      raf = new RandomAccessFile(snapshotFile, "r");
+      if (raf.readInt() != SNAPSHOT_MAGIC || raf.readInt() != SNAPSHOT_VERSION) {
+        log.info("Ignoring snapshot {} in an unknown format", snapshotFile);
+        return null;
+      }
+      byte[] header = new byte[raf.readInt()];
+      raf.readFully(header);
+      if (!Arrays.equals(header, describe(sources))) {
+        log.info("Snapshot {} is out of date", snapshotFile);
+        return null;
+      }
+      return CompactDataModel.readFrom(raf.getChannel(), 12L + header.length);
+    } catch (IOException ioe) {
+      log.warn("Could not read snapshot " + snapshotFile, ioe);
+      return null;
+    } catch (IllegalArgumentException iae) {
+      log.warn("Could not read snapshot " + snapshotFile, iae);
+      return null;
+    } finally {
+      IOUtils.quietClose(raf);
+    }
+  }
+
+  /**
+   * The snapshot is written to a temporary file which then replaces the old snapshot, so that a concurrent or
+   * interrupted load never sees half a snapshot.
+   */
+  private void writeSnapshot(List<File> sources, CompactDataModel model) throws IOException {
+    File tempFile = File.createTempFile(snapshotFile.getName(), ".tmp", snapshotFile.getParentFile());
+    boolean written = false;
+    try {
+      RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");
+      try {
+        byte[] header = describe(sources);
+        raf.writeInt(SNAPSHOT_MAGIC);
+        raf.writeInt(SNAPSHOT_VERSION);
+        raf.writeInt(header.length);
+        raf.write(header);
+        model.writeTo(raf.getChannel());
+      } finally {
+        raf.close();
+      }
+      if (snapshotFile.exists() && !snapshotFile.delete()) {
+        throw new IOException("Could not delete " + snapshotFile);
+      }
+      if (!tempFile.renameTo(snapshotFile)) {
+        throw new IOException("Could not rename " + tempFile + " to " + snapshotFile);
+      }
+      written = true;
+      log.info("Wrote snapshot {}", snapshotFile);
+    } finally {
+      if (!written) {
+        tempFile.delete();
+      }
+    }
+  }
+
+  /**
+   * @return the name, length and modification time of each source file, which identify the data a snapshot holds
+   */
+  private static byte[] describe(List<File> sources) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(sources.size());
+    for (File source : sources) {
+      out.writeUTF(source.getName());
+      out.writeLong(source.length());
+      out.writeLong(source.lastModified());
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  @Override
+  public String toString() {
+    return "ParallelFileLoader[dataFile:" + dataFile + ']';
+  }
+
+  /**
+   * The preferences parsed from one range of a file, with user and item indexes local to the chunk. A removal is
+   * recorded with the complement of the item index.
+   */
+  private static final class Chunk {
+
+    private final IDTable users = new IDTable();
+    private final IDTable items = new IDTable();
+    private int[] userIndexes = new int[1024];
+    private int[] itemIndexes = new int[1024];
+    private float[] values = new float[1024];
+    private int size;
+
+    void add(int user, int item, float value) {
+      if (size == values.length) {
+        int newCapacity = 2 * size;
+        userIndexes = Arrays.copyOf(userIndexes, newCapacity);
+        itemIndexes = Arrays.copyOf(itemIndexes, newCapacity);
+        values = Arrays.copyOf(values, newCapacity);
+      }
+      userIndexes[size] = user;
+      itemIndexes[size] = item;
+      values[size] = value;
+      size++;
+    }
+  }
+
+  /**
+   * Maps the distinct byte sequences seen in a chunk to dense indexes. The bytes of each ID are copied once into
+   * an arena and looked up by open addressing, so a {@link String} is only created once per distinct ID, by
+   * {@link #toStrings()}.
+   */
+  private static final class IDTable {
+
+    private int[] slots = new int[1024]; // index + 1, or 0 if empty
+    private int[] hashes = new int[512];
+    private int[] starts = new int[512];
+    private int[] lengths = new int[512];
+    private byte[] arena = new byte[4096];
+    private int arenaSize;
+    private int size;
+    private String[] strings;
+
+    int indexOf(ByteBuffer buffer, int from, int to) {
+      int hash = 0;
+      for (int i = from; i < to; i++) {
+        hash = 31 * hash + buffer.get(i);
+      }
+      int mask = slots.length - 1;
+      int slot = mix(hash) & mask;
+      int entry;
+      while ((entry = slots[slot]) != 0) {
+        int index = entry - 1;
+        if (hashes[index] == hash && sameBytes(index, buffer, from, to)) {
+          return index;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return add(buffer, from, to, hash, slot);
+    }
+
+    private static int mix(int hash) {
+      hash ^= (hash >>> 20) ^ (hash >>> 12);
+      return hash ^ (hash >>> 7) ^ (hash >>> 4);
+    }
+
+    private boolean sameBytes(int index, ByteBuffer buffer, int from, int to) {
+      int length = to - from;
+      if (lengths[index] != length) {
+        return false;
+      }
+      int start = starts[index];
+      for (int i = 0; i < length; i++) {
+        if (arena[start + i] != buffer.get(from + i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private int add(ByteBuffer buffer, int from, int to, int hash, int slot) {
+      int length = to - from;
+      if (size == hashes.length) {
+        int newCapacity = 2 * size;
+        hashes = Arrays.copyOf(hashes, newCapacity);
+        starts = Arrays.copyOf(starts, newCapacity);
+        lengths = Arrays.copyOf(lengths, newCapacity);
+      }
+      if (arenaSize + length > arena.length) {
+        arena = Arrays.copyOf(arena, Math.max(2 * arena.length, arenaSize + length));
+      }
+      for (int i = 0; i < length; i++) {
+        arena[arenaSize + i] = buffer.get(from + i);
+      }
+      int index = size++;
+      hashes[index] = hash;
+      starts[index] = arenaSize;
+      lengths[index] = length;
+      arenaSize += length;
+      slots[slot] = index + 1;
+      if (2 * size > slots.length) {
+        rehash();
+      }
+      strings = null;
+      return index;
+    }
+
+    private void rehash() {
+      slots = new int[2 * slots.length];
+      int mask = slots.length - 1;
+      for (int index = 0; index < size; index++) {
+        int slot = mix(hashes[index]) & mask;
+        while (slots[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        slots[slot] = index + 1;
+      }
+    }
+
+    String[] toStrings() {
+      if (strings == null) {
+        strings = new String[size];
+        for (int index = 0; index < size; index++) {
+          strings[index] = new String(arena, starts[index], lengths[index], UTF8);
+        }
+      }
+      return strings;
+    }
+  }
+
+}
@@ -22,6 +22,9 @@ import org.apache.mahout.cf.taste.common.TasteException;
 import org.apache.mahout.cf.taste.common.NoSuchUserException;
 import org.apache.mahout.cf.taste.impl.common.IOUtils;
 import org.apache.mahout.cf.taste.impl.common.IteratorIterable;
+import org.apache.mahout.cf.taste.impl.common.FastMap;
+import org.apache.mahout.cf.taste.impl.common.FastSet;
+import org.apache.mahout.cf.taste.impl.common.Pair;
 import org.apache.mahout.cf.taste.impl.model.GenericItem;
 import org.apache.mahout.cf.taste.impl.model.GenericPreference;
 import org.apache.mahout.cf.taste.impl.model.GenericUser;
@@ -29,6 +32,7 @@ import org.apache.mahout.cf.taste.model.DataModel;
 import org.apache.mahout.cf.taste.model.Item;
 import org.apache.mahout.cf.taste.model.JDBCDataModel;
 import org.apache.mahout.cf.taste.model.Preference;
+import org.apache.mahout.cf.taste.model.PrefetchingDataModel;
 import org.apache.mahout.cf.taste.model.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,8 +48,11 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
  * <p>An abstract superclass for JDBC-related {@link DataModel} implementations, providing most of the common
@@ -67,8 +74,21 @@ import java.util.NoSuchElementException;
  * {@link String}s as IDs throughout your code. If your IDs are really numeric, and you use, say, {@link Long}
  * for IDs in the rest of your code, you will run into subtle problems because the {@link Long} values won't
  * be equal to or compare correctly to the underlying {@link String} key values.</p>
+ *
+ * <p>Implementations that supply batch queries (see {@link #getUserBatchSQL(int)} and the like) coalesce lookups
+ * of users, of an item's preferences, and of preference counts: callers that arrive while such a query is running
+ * are served together by the next one, which looks up all their keys with one query. The same queries serve
+ * {@link #prefetch(Object, Collection)}, so that a single thread looping over many items needs one query per
+ * kind of lookup rather than one per item. Batch results are matched to the requested IDs by their
+ * {@link ResultSet#getString(int)} form. A row whose ID doesn't match any requested ID means the database returns
+ * IDs in another form than they were bound in, perhaps differently cased under a case-insensitive collation or
+ * formatted differently from a numeric column. When that happens, the requested IDs left without rows are looked up
+ * again one at a time, with the single-key queries, which compare them the database's own way. Use a
+ * {@link DataSource} which pools prepared statements, like {@link ConnectionPoolDataSource}, so that these and
+ * the other queries aren't parsed again on every call. Large result sets are read forward-only,
+ * {@value #FETCH_SIZE} rows at a time, so drivers that can stream results need not hold them all in memory.</p>
  */
-public abstract class AbstractJDBCDataModel implements JDBCDataModel {
+public abstract class AbstractJDBCDataModel implements JDBCDataModel, PrefetchingDataModel {
 
   static final Logger log = LoggerFactory.getLogger(AbstractJDBCDataModel.class);
 
@@ -78,6 +98,13 @@ public abstract class AbstractJDBCDataModel implements JDBCDataModel {
   public static final String DEFAULT_ITEM_ID_COLUMN = "item_id";
   public static final String DEFAULT_PREFERENCE_COLUMN = "preference";
 
+  /** Number of rows to fetch at a time from potentially large result sets */
+  public static final int FETCH_SIZE = 1000;
+  /** Most keys looked up by one batch query */
+  private static final int MAX_BATCH_SIZE = 128;
+  /** Most batch queries of one kind that may run at once */
+  private static final int MAX_CONCURRENT_BATCHES = 4;
+
   private final DataSource dataSource;
   private final String preferenceTable;
   private final String userIDColumn;
@@ -94,6 +121,12 @@ public abstract class AbstractJDBCDataModel implements JDBCDataModel {
   private final String getPrefsForItemSQL;
   private final String getNumPreferenceForItemSQL;
   private final String getNumPreferenceForItemsSQL;
+  private final CoalescingLoader<String, List<Preference>> userLoader;
+  private final CoalescingLoader<String, List<Preference>> prefsForItemLoader;
+  private final CoalescingLoader<String, Integer> numPreferenceForItemLoader;
+  private final CoalescingLoader<Pair<String, String>, Integer> numPreferenceForItemsLoader;
+  private volatile BatchSupport batchSupport;
+  private final ThreadLocal<Prefetch> prefetches;
 
   protected AbstractJDBCDataModel(DataSource dataSource,
                                   String getUserSQL,
@@ -184,6 +217,34 @@ public abstract class AbstractJDBCDataModel implements JDBCDataModel {
     this.getPrefsForItemSQL = getPrefsForItemSQL;
     this.getNumPreferenceForItemSQL = getNumPreferenceForItemSQL;
     this.getNumPreferenceForItemsSQL = getNumPreferenceForItemsSQL;
+
+    this.userLoader = new CoalescingLoader<String, List<Preference>>(MAX_BATCH_SIZE, MAX_CONCURRENT_BATCHES) {
+      @Override
+      Map<String, List<Preference>> load(List<String> userIDs) throws TasteException {
+        return doGetUsers(userIDs);
+      }
+    };
+    this.prefsForItemLoader =
+        new CoalescingLoader<String, List<Preference>>(MAX_BATCH_SIZE, MAX_CONCURRENT_BATCHES) {
+          @Override
+          Map<String, List<Preference>> load(List<String> itemIDs) throws TasteException {
+            return doGetPreferencesForItems(itemIDs);
+          }
+        };
+    this.numPreferenceForItemLoader = new CoalescingLoader<String, Integer>(MAX_BATCH_SIZE, MAX_CONCURRENT_BATCHES) {
+      @Override
+      Map<String, Integer> load(List<String> itemIDs) throws TasteException {
+        return doGetNumPreferenceForItems(itemIDs);
+      }
+    };
+    this.numPreferenceForItemsLoader =
+        new CoalescingLoader<Pair<String, String>, Integer>(MAX_BATCH_SIZE, MAX_CONCURRENT_BATCHES) {
+          @Override
+          Map<Pair<String, String>, Integer> load(List<Pair<String, String>> itemIDPairs) throws TasteException {
+            return doGetNumPreferenceForItemPairs(itemIDPairs);
+          }
+        };
+    this.prefetches = new ThreadLocal<Prefetch>();
   }
 
   private static void checkNotNullAndLog(String argName, Object value) {
@@ -257,12 +318,20 @@ public abstract class AbstractJDBCDataModel implements JDBCDataModel {
 
     log.debug("Retrieving user ID '{}'", id);
 
+    String idString = id.toString();
+    List<Preference> prefs = getBatchSupport().users ? userLoader.get(idString) : doGetUser(id);
+    if (prefs == null || prefs.isEmpty()) {
+      throw new NoSuchUserException();
+    }
+    return buildUser(idString, prefs);
+  }
+
+  private List<Preference> doGetUser(Object id) throws TasteException {
+
     Connection conn = null;
     PreparedStatement stmt = null;
     ResultSet rs = null;
 
-    String idString = id.toString();
-
     try {
       conn = dataSource.getConnection();
       stmt = conn.prepareStatement(getUserSQL);
@@ -275,12 +344,7 @@ public abstract class AbstractJDBCDataModel implements JDBCDataModel {
       while (rs.next()) {
         addPreference(rs, prefs);
       }
-
-      if (prefs.isEmpty()) {
-        throw new NoSuchUserException();
-      }
-
-      return buildUser(idString, prefs);
+      return prefs;
 
     } catch (SQLException sqle) {
       log.warn("Exception while retrieving user", sqle);
@@ -291,6 +355,51 @@ public abstract class AbstractJDBCDataModel implements JDBCDataModel {
 
   }
 
+  private Map<String, List<Preference>> doGetUsers(List<String> ids) throws TasteException {
+    String sql = getUserBatchSQL(getBatchSize(ids.size()));
+    Set<String> requested = new FastSet<String>(ids.size());
+    requested.addAll(ids);
+    Map<String, List<Preference>> prefsByUser = new FastMap<String, List<Preference>>(ids.size());
+    boolean unmatched = false;
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    try {
+      conn = dataSource.getConnection();
+      stmt = conn.prepareStatement(sql);
+      setBatchArgs(stmt, ids);
+
+      log.debug("Executing SQL query: {}", sql);
+      rs = stmt.executeQuery();
+      while (rs.next()) {
+        String userID = rs.getString(3);
+        if (!requested.contains(userID)) {
+          unmatched = true;
+          continue;
+        }
+        List<Preference> prefs = prefsByUser.get(userID);
+        if (prefs == null) {
+          prefs = new ArrayList<Preference>();
+          prefsByUser.put(userID, prefs);
+        }
+        addPreference(rs, prefs);
+      }
+    } catch (SQLException sqle) {
+      log.warn("Exception while retrieving users", sqle);
+      throw new TasteException(sqle);
+    } finally {
+      IOUtils.quietClose(rs, stmt, conn);
+    }
+    if (unmatched) {
+      for (String id : ids) {
+        if (!prefsByUser.containsKey(id)) {
+          prefsByUser.put(id, doGetUser(id));
+        }
+      }
+    }
+    return prefsByUser;
+  }
+
   @Override
   public Iterable<? extends Item> getItems() throws TasteException {
     log.debug("Retrieving all items...");
@@ -348,6 +457,20 @@ public abstract class AbstractJDBCDataModel implements JDBCDataModel {
 
   private List<? extends Preference> doGetPreferencesForItem(Object itemID) throws TasteException {
     log.debug("Retrieving preferences for item ID '{}'", itemID);
+    Prefetch prefetch = prefetches.get();
+    if (prefetch != null) {
+      List<Preference> prefs = prefetch.getPreferencesForItem(itemID.toString());
+      if (prefs != null) {
+        return prefs;
+      }
+    }
+    if (getBatchSupport().prefsForItems) {
+      return prefsForItemLoader.get(itemID.toString());
+    }
+    return queryPreferencesForItem(itemID);
+  }
+
+  private List<Preference> queryPreferencesForItem(Object itemID) throws TasteException {
     Item item = getItem(itemID, true);
     Connection conn = null;
     PreparedStatement stmt = null;
@@ -355,6 +478,7 @@ public abstract class AbstractJDBCDataModel implements JDBCDataModel {
     try {
       conn = dataSource.getConnection();
       stmt = conn.prepareStatement(getPrefsForItemSQL);
+      stmt.setFetchSize(FETCH_SIZE);
       stmt.setObject(1, itemID);
 
       log.debug("Executing SQL query: {}", getPrefsForItemSQL);
@@ -375,6 +499,56 @@ public abstract class AbstractJDBCDataModel implements JDBCDataModel {
     }
   }
 
+  private Map<String, List<Preference>> doGetPreferencesForItems(List<String> itemIDs) throws TasteException {
+    String sql = getPrefsForItemBatchSQL(getBatchSize(itemIDs.size()));
+    Map<String, List<Preference>> prefsByItem = new FastMap<String, List<Preference>>(itemIDs.size());
+    Map<String, Item> items = new FastMap<String, Item>(itemIDs.size());
+    for (String itemID : itemIDs) {
+      items.put(itemID, getItem(itemID, true));
+    }
+    boolean unmatched = false;
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    try {
+      conn = dataSource.getConnection();
+      stmt = conn.prepareStatement(sql);
+      stmt.setFetchSize(FETCH_SIZE);
+      setBatchArgs(stmt, itemIDs);
+
+      log.debug("Executing SQL query: {}", sql);
+      rs = stmt.executeQuery();
+      while (rs.next()) {
+        double preference = rs.getDouble(1);
+        String userID = rs.getString(2);
+        String itemID = rs.getString(3);
+        Item item = items.get(itemID);
+        if (item == null) {
+          unmatched = true;
+          continue;
+        }
+        List<Preference> prefs = prefsByItem.get(itemID);
+        if (prefs == null) {
+          prefs = new ArrayList<Preference>();
+          prefsByItem.put(itemID, prefs);
+        }
+        prefs.add(buildPreference(buildUser(userID, null), item, preference));
+      }
+    } catch (SQLException sqle) {
+      log.warn("Exception while retrieving prefs for items", sqle);
+      throw new TasteException(sqle);
+    } finally {
+      IOUtils.quietClose(rs, stmt, conn);
+    }
+    for (String itemID : itemIDs) {
+      if (!prefsByItem.containsKey(itemID)) {
+        // Items nobody has a preference for simply have none
+        prefsByItem.put(itemID, unmatched ? queryPreferencesForItem(itemID) : new ArrayList<Preference>());
+      }
+    }
+    return prefsByItem;
+  }
+
   @Override
   public int getNumItems() throws TasteException {
     return getNumThings("items", getNumItemsSQL);
@@ -394,11 +568,173 @@ public abstract class AbstractJDBCDataModel implements JDBCDataModel {
     if (length == 0 || length > 2) {
       throw new IllegalArgumentException("Illegal number of item IDs: " + length);
     }
+    Prefetch prefetch = prefetches.get();
+    if (prefetch != null) {
+      Integer count = length == 1 ?
+          prefetch.getNumPreferenceForItem(itemIDs[0].toString()) :
+          prefetch.getNumPreferenceForItemPair(itemIDs[0].toString(), itemIDs[1].toString());
+      if (count != null) {
+        return count;
+      }
+    }
+    BatchSupport support = getBatchSupport();
+    if (length == 1 ? support.numPreferenceForItems : support.numPreferenceForItemPairs) {
+      Integer count = length == 1 ?
+          numPreferenceForItemLoader.get(itemIDs[0].toString()) :
+          numPreferenceForItemsLoader.get(new Pair<String, String>(itemIDs[0].toString(), itemIDs[1].toString()));
+      return count == null ? 0 : count;
+    }
     return length == 1 ?
         getNumThings("user preferring item", getNumPreferenceForItemSQL, itemIDs) :
         getNumThings("user preferring items", getNumPreferenceForItemsSQL, itemIDs);
   }
 
+  private Map<String, Integer> doGetNumPreferenceForItems(List<String> itemIDs) throws TasteException {
+    String sql = getNumPreferenceForItemBatchSQL(getBatchSize(itemIDs.size()));
+    Set<String> requested = new FastSet<String>(itemIDs.size());
+    requested.addAll(itemIDs);
+    Map<String, Integer> counts = new FastMap<String, Integer>(itemIDs.size());
+    boolean unmatched = false;
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    try {
+      conn = dataSource.getConnection();
+      stmt = conn.prepareStatement(sql);
+      setBatchArgs(stmt, itemIDs);
+
+      log.debug("Executing SQL query: {}", sql);
+      rs = stmt.executeQuery();
+      while (rs.next()) {
+        String itemID = rs.getString(1);
+        if (requested.contains(itemID)) {
+          counts.put(itemID, rs.getInt(2));
+        } else {
+          unmatched = true;
+        }
+      }
+    } catch (SQLException sqle) {
+      log.warn("Exception while retrieving number of users preferring items", sqle);
+      throw new TasteException(sqle);
+    } finally {
+      IOUtils.quietClose(rs, stmt, conn);
+    }
+    if (unmatched) {
+      for (String itemID : itemIDs) {
+        if (!counts.containsKey(itemID)) {
+          counts.put(itemID, getNumThings("user preferring item", getNumPreferenceForItemSQL, itemID));
+        }
+      }
+    }
+    return counts;
+  }
+
+  private Map<Pair<String, String>, Integer> doGetNumPreferenceForItemPairs(List<Pair<String, String>> itemIDPairs)
+      throws TasteException {
+    int batchSize = getBatchSize(itemIDPairs.size());
+    String sql = getNumPreferenceForItemsBatchSQL(batchSize);
+    int size = itemIDPairs.size();
+    Set<Pair<String, String>> requested = new FastSet<Pair<String, String>>(size);
+    requested.addAll(itemIDPairs);
+    Map<Pair<String, String>, Integer> counts = new FastMap<Pair<String, String>, Integer>(size);
+    boolean unmatched = false;
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    try {
+      conn = dataSource.getConnection();
+      stmt = conn.prepareStatement(sql);
+      for (int i = 0; i < batchSize; i++) {
+        Pair<String, String> itemIDPair = itemIDPairs.get(Math.min(i, size - 1));
+        stmt.setObject(2 * i + 1, itemIDPair.getFirst());
+        stmt.setObject(2 * i + 2, itemIDPair.getSecond());
+      }
+
+      log.debug("Executing SQL query: {}", sql);
+      rs = stmt.executeQuery();
+      while (rs.next()) {
+        Pair<String, String> itemIDPair = new Pair<String, String>(rs.getString(1), rs.getString(2));
+        if (requested.contains(itemIDPair)) {
+          counts.put(itemIDPair, rs.getInt(3));
+        } else {
+          unmatched = true;
+        }
+      }
+    } catch (SQLException sqle) {
+      log.warn("Exception while retrieving number of users preferring item pairs", sqle);
+      throw new TasteException(sqle);
+    } finally {
+      IOUtils.quietClose(rs, stmt, conn);
+    }
+    if (unmatched) {
+      for (Pair<String, String> itemIDPair : itemIDPairs) {
+        if (!counts.containsKey(itemIDPair)) {
+          counts.put(itemIDPair, getNumThings("user preferring items", getNumPreferenceForItemsSQL,
+                                              itemIDPair.getFirst(), itemIDPair.getSecond()));
+        }
+      }
+    }
+    return counts;
+  }
+
+  /**
+   * Rounds the number of keys up to a power of two, so that only a handful of distinct batch queries are ever
+   * prepared (and pooled).
+   */
+  private static int getBatchSize(int numKeys) {
+    int batchSize = Integer.highestOneBit(numKeys);
+    return batchSize == numKeys ? batchSize : batchSize << 1;
+  }
+
+  /**
+   * Binds keys to a batch query's placeholders. Placeholders beyond the last key repeat it.
+   */
+  private static void setBatchArgs(PreparedStatement stmt, List<String> keys) throws SQLException {
+    int size = keys.size();
+    int batchSize = getBatchSize(size);
+    for (int i = 0; i < batchSize; i++) {
+      stmt.setObject(i + 1, keys.get(Math.min(i, size - 1)));
+    }
+  }
+
+  /**
+   * @return the keys split into lists of at most {@value #MAX_BATCH_SIZE}, one per batch query
+   */
+  private static <K> List<List<K>> partition(List<K> keys) {
+    int size = keys.size();
+    List<List<K>> batches = new ArrayList<List<K>>((size + MAX_BATCH_SIZE - 1) / MAX_BATCH_SIZE);
+    for (int start = 0; start < size; start += MAX_BATCH_SIZE) {
+      batches.add(keys.subList(start, Math.min(start + MAX_BATCH_SIZE, size)));
+    }
+    return batches;
+  }
+
+  private BatchSupport getBatchSupport() {
+    BatchSupport support = batchSupport;
+    if (support == null) {
+      // Racing threads compute the same thing
+      support = new BatchSupport(getUserBatchSQL(1) != null,
+                                 getPrefsForItemBatchSQL(1) != null,
+                                 getNumPreferenceForItemBatchSQL(1) != null,
+                                 getNumPreferenceForItemsBatchSQL(1) != null);
+      batchSupport = support;
+    }
+    return support;
+  }
+
+  @Override
+  public void prefetch(Object itemID, Collection<?> otherItemIDs) {
+    if (itemID == null || otherItemIDs == null) {
+      throw new IllegalArgumentException("itemID or otherItemIDs is null");
+    }
+    prefetches.set(new Prefetch(itemID.toString(), otherItemIDs));
+  }
+
+  @Override
+  public void clearPrefetched() {
+    prefetches.remove();
+  }
+
 
   private int getNumThings(String name, String sql, Object... args) throws TasteException {
     log.debug("Retrieving number of {} in model", name);
@@ -453,6 +789,8 @@ public abstract class AbstractJDBCDataModel implements JDBCDataModel {
 
       log.debug("Executing SQL update: {}", setPreferenceSQL);
       stmt.executeUpdate();
+      // Don't let this thread read back what it prefetched before the change
+      prefetches.remove();
 
     } catch (SQLException sqle) {
       log.warn("Exception while setting preference", sqle);
@@ -483,6 +821,7 @@ public abstract class AbstractJDBCDataModel implements JDBCDataModel {
 
       log.debug("Executing SQL update: {}", removePreferenceSQL);
       stmt.executeUpdate();
+      prefetches.remove();
 
     } catch (SQLException sqle) {
       log.warn("Exception while removing preference", sqle);
@@ -497,6 +836,68 @@ public abstract class AbstractJDBCDataModel implements JDBCDataModel {
     // do nothing
   }
 
+  /**
+   * <p>Subclasses may override this and the other <code>get*BatchSQL</code> methods to supply queries which look
+   * up many keys at once; they are then used instead of the corresponding single-key queries. Each is first called
+   * once to find out whether it is supported.</p>
+   *
+   * @param numUsers number of user ID placeholders
+   * @return SQL selecting item ID, preference and user ID, in that order, for the given users, or
+   *  <code>null</code> (the default) if not supported
+   */
+  protected String getUserBatchSQL(int numUsers) {
+    return null;
+  }
+
+  /**
+   * @param numItems number of item ID placeholders
+   * @return SQL selecting preference, user ID and item ID, in that order, for the given items, or
+   *  <code>null</code> (the default) if not supported
+   */
+  protected String getPrefsForItemBatchSQL(int numItems) {
+    return null;
+  }
+
+  /**
+   * @param numItems number of item ID placeholders
+   * @return SQL selecting item ID and the number of users with a preference for it, for the given items, or
+   *  <code>null</code> (the default) if not supported
+   */
+  protected String getNumPreferenceForItemBatchSQL(int numItems) {
+    return null;
+  }
+
+  /**
+   * @param numItemPairs number of pairs of item ID placeholders
+   * @return SQL selecting both item IDs, in the order they were bound, and the number of users with a preference
+   *  for both, for the given pairs, or <code>null</code> (the default) if not supported
+   */
+  protected String getNumPreferenceForItemsBatchSQL(int numItemPairs) {
+    return null;
+  }
+
+  /**
+   * @return <code>count</code> copies of <code>placeholder</code>, separated by commas, for use in an
+   *  <code>IN (...)</code> clause
+   */
+  protected static String buildPlaceholders(int count, String placeholder) {
+    return buildPlaceholders(count, placeholder, ",");
+  }
+
+  /**
+   * @return <code>count</code> copies of <code>placeholder</code>, separated by <code>separator</code>
+   */
+  protected static String buildPlaceholders(int count, String placeholder, String separator) {
+    StringBuilder result = new StringBuilder(count * (placeholder.length() + separator.length()));
+    for (int i = 0; i < count; i++) {
+      if (i > 0) {
+        result.append(separator);
+      }
+      result.append(placeholder);
+    }
+    return result.toString();
+  }
+
 
   private void addPreference(ResultSet rs, Collection<Preference> prefs)
           throws SQLException {
@@ -539,6 +940,117 @@ public abstract class AbstractJDBCDataModel implements JDBCDataModel {
     return new GenericPreference(user, item, value);
   }
 
+  /**
+   * Which of the batch queries a subclass supplies.
+   */
+  private static final class BatchSupport {
+
+    private final boolean users;
+    private final boolean prefsForItems;
+    private final boolean numPreferenceForItems;
+    private final boolean numPreferenceForItemPairs;
+
+    private BatchSupport(boolean users,
+                         boolean prefsForItems,
+                         boolean numPreferenceForItems,
+                         boolean numPreferenceForItemPairs) {
+      this.users = users;
+      this.prefsForItems = prefsForItems;
+      this.numPreferenceForItems = numPreferenceForItems;
+      this.numPreferenceForItemPairs = numPreferenceForItemPairs;
+    }
+
+  }
+
+  /**
+   * <p>One thread's announcement from {@link #prefetch(Object, Collection)}. Each kind of data is fetched for all
+   * the announced items the first time one of them is looked up, with as few batch queries as possible. The
+   * getters return <code>null</code> for anything not covered, or when the kind of lookup has no batch query, in
+   * which case the caller does the usual lookup.</p>
+   */
+  private final class Prefetch {
+
+    private final String itemID;
+    private final List<String> otherItemIDs;
+    private final Collection<String> allItemIDs;
+    private Map<String, List<Preference>> prefsForItems;
+    private Map<String, Integer> numPreferenceForItems;
+    /** Number of users with a preference for both {@link #itemID} and the key */
+    private Map<String, Integer> numPreferenceForItemPairs;
+
+    private Prefetch(String itemID, Collection<?> otherItemIDs) {
+      this.itemID = itemID;
+      Collection<String> uniqueIDs = new LinkedHashSet<String>(otherItemIDs.size() + 1);
+      for (Object otherItemID : otherItemIDs) {
+        uniqueIDs.add(otherItemID.toString());
+      }
+      uniqueIDs.remove(itemID);
+      this.otherItemIDs = new ArrayList<String>(uniqueIDs);
+      uniqueIDs.add(itemID);
+      this.allItemIDs = uniqueIDs;
+    }
+
+    private List<Preference> getPreferencesForItem(String id) throws TasteException {
+      if (!allItemIDs.contains(id) || !getBatchSupport().prefsForItems) {
+        return null;
+      }
+      if (prefsForItems == null) {
+        Map<String, List<Preference>> loaded = new FastMap<String, List<Preference>>(allItemIDs.size());
+        for (List<String> batch : partition(new ArrayList<String>(allItemIDs))) {
+          loaded.putAll(doGetPreferencesForItems(batch));
+        }
+        prefsForItems = loaded;
+      }
+      return prefsForItems.get(id);
+    }
+
+    private Integer getNumPreferenceForItem(String id) throws TasteException {
+      if (!allItemIDs.contains(id) || !getBatchSupport().numPreferenceForItems) {
+        return null;
+      }
+      if (numPreferenceForItems == null) {
+        Map<String, Integer> loaded = new FastMap<String, Integer>(allItemIDs.size());
+        for (List<String> batch : partition(new ArrayList<String>(allItemIDs))) {
+          loaded.putAll(doGetNumPreferenceForItems(batch));
+        }
+        numPreferenceForItems = loaded;
+      }
+      Integer count = numPreferenceForItems.get(id);
+      // Items nobody has a preference for have no row
+      return count == null ? 0 : count;
+    }
+
+    private Integer getNumPreferenceForItemPair(String id1, String id2) throws TasteException {
+      String otherID;
+      if (itemID.equals(id1)) {
+        otherID = id2;
+      } else if (itemID.equals(id2)) {
+        otherID = id1;
+      } else {
+        return null;
+      }
+      if (!allItemIDs.contains(otherID) || itemID.equals(otherID) || !getBatchSupport().numPreferenceForItemPairs) {
+        return null;
+      }
+      if (numPreferenceForItemPairs == null) {
+        Map<String, Integer> loaded = new FastMap<String, Integer>(otherItemIDs.size());
+        for (List<String> batch : partition(otherItemIDs)) {
+          List<Pair<String, String>> pairs = new ArrayList<Pair<String, String>>(batch.size());
+          for (String batchID : batch) {
+            pairs.add(new Pair<String, String>(itemID, batchID));
+          }
+          for (Map.Entry<Pair<String, String>, Integer> entry : doGetNumPreferenceForItemPairs(pairs).entrySet()) {
+            loaded.put(entry.getKey().getSecond(), entry.getValue());
+          }
+        }
+        numPreferenceForItemPairs = loaded;
+      }
+      Integer count = numPreferenceForItemPairs.get(otherID);
+      return count == null ? 0 : count;
+    }
+
+  }
+
   /**
    * <p>An {@link java.util.Iterator} which returns {@link org.apache.mahout.cf.taste.model.User}s from a
    * {@link java.sql.ResultSet}. This is a useful
@@ -546,6 +1058,9 @@ public abstract class AbstractJDBCDataModel implements JDBCDataModel {
    * at once. It does however require that the DB connection be held open. Note that this class will
    * only release database resources after {@link #hasNext()} has been called and has returned false;
    * callers should make sure to "drain" the entire set of data to avoid tying up database resources.</p>
+   *
+   * <p>It reads one row ahead, rather than stepping back once past a user's last row, so that it works with
+   * forward-only result sets that the driver streams.</p>
    */
   private final class ResultSetUserIterator implements Iterator<User> {
 
@@ -558,9 +1073,11 @@ public abstract class AbstractJDBCDataModel implements JDBCDataModel {
       try {
         connection = dataSource.getConnection();
         statement = connection.prepareStatement(getUsersSQL);
-        statement.setFetchDirection(ResultSet.FETCH_UNKNOWN);
+        statement.setFetchDirection(ResultSet.FETCH_FORWARD);
+        statement.setFetchSize(FETCH_SIZE);
         log.debug("Executing SQL query: {}", getUsersSQL);
         resultSet = statement.executeQuery();
+        advance();
       } catch (SQLException sqle) {
         close();
         throw new TasteException(sqle);
@@ -569,22 +1086,7 @@ public abstract class AbstractJDBCDataModel implements JDBCDataModel {
 
     @Override
     public boolean hasNext() {
-      boolean nextExists = false;
-      if (!closed) {
-        try {
-          // No more results if cursor is pointing at last row, or after
-          // Thanks to Rolf W. for pointing out an earlier bug in this condition
-          if (resultSet.isLast() || resultSet.isAfterLast()) {
-            close();
-          } else {
-            nextExists = true;
-          }
-        } catch (SQLException sqle) {
-          log.warn("Unexpected exception while accessing ResultSet; continuing...", sqle);
-          close();
-        }
-      }
-      return nextExists;
+      return !closed;
     }
 
     @Override
@@ -594,25 +1096,16 @@ public abstract class AbstractJDBCDataModel implements JDBCDataModel {
         throw new NoSuchElementException();
       }
 
-      String currentUserID = null;
       List<Preference> prefs = new ArrayList<Preference>();
+      String currentUserID;
 
       try {
-        while (resultSet.next()) {
-          String userID = resultSet.getString(3);
-          if (currentUserID == null) {
-            currentUserID = userID;
-          }
-          // Did we move on to a new user?
-          if (!userID.equals(currentUserID)) {
-            // back up one row
-            resultSet.previous();
-            // we're done for now
-            break;
-          }
-          // else add a new preference for the current user
+        // The result set is on the current user's first row
+        currentUserID = resultSet.getString(3);
+        do {
           addPreference(resultSet, prefs);
-        }
+          advance();
+        } while (!closed && currentUserID.equals(resultSet.getString(3)));
       } catch (SQLException sqle) {
         // No good way to handle this since we can't throw an exception
         log.warn("Exception while iterating over users", sqle);
@@ -620,11 +1113,6 @@ public abstract class AbstractJDBCDataModel implements JDBCDataModel {
         throw new NoSuchElementException("Can't retrieve more due to exception: " + sqle);
       }
 
-      if (currentUserID == null) {
-        // nothing left?
-        throw new NoSuchElementException();
-      }
-
       return buildUser(currentUserID, prefs);
     }
 
@@ -636,6 +1124,12 @@ public abstract class AbstractJDBCDataModel implements JDBCDataModel {
       throw new UnsupportedOperationException();
     }
 
+    private void advance() throws SQLException {
+      if (!resultSet.next()) {
+        close();
+      }
+    }
+
     private void close() {
       closed = true;
       IOUtils.quietClose(resultSet, statement, connection);
@@ -663,8 +1157,10 @@ public abstract class AbstractJDBCDataModel implements JDBCDataModel {
         connection = dataSource.getConnection();
         statement = connection.prepareStatement(getItemsSQL);
         statement.setFetchDirection(ResultSet.FETCH_FORWARD);
+        statement.setFetchSize(FETCH_SIZE);
         log.debug("Executing SQL query: {}", getItemsSQL);
         resultSet = statement.executeQuery();
+        advance();
       } catch (SQLException sqle) {
         close();
         throw new TasteException(sqle);
@@ -673,22 +1169,7 @@ public abstract class AbstractJDBCDataModel implements JDBCDataModel {
 
     @Override
     public boolean hasNext() {
-      boolean nextExists = false;
-      if (!closed) {
-        try {
-          // No more results if cursor is pointing at last row, or after
-          // Thanks to Rolf W. for pointing out an earlier bug in this condition
-          if (resultSet.isLast() || resultSet.isAfterLast()) {
-            close();
-          } else {
-            nextExists = true;
-          }
-        } catch (SQLException sqle) {
-          log.warn("Unexpected exception while accessing ResultSet; continuing...", sqle);
-          close();
-        }
-      }
-      return nextExists;
+      return !closed;
     }
 
     @Override
@@ -699,11 +1180,10 @@ public abstract class AbstractJDBCDataModel implements JDBCDataModel {
       }
 
       try {
-        if (resultSet.next()) {
-          return buildItem(resultSet.getString(1));
-        } else {
-          throw new NoSuchElementException();
-        }
+        // The result set is already on the next row
+        Item item = buildItem(resultSet.getString(1));
+        advance();
+        return item;
       } catch (SQLException sqle) {
         // No good way to handle this since we can't throw an exception
         log.warn("Exception while iterating over items", sqle);
@@ -721,6 +1201,12 @@ public abstract class AbstractJDBCDataModel implements JDBCDataModel {
       throw new UnsupportedOperationException();
     }
 
+    private void advance() throws SQLException {
+      if (!resultSet.next()) {
+        close();
+      }
+    }
+
     private void close() {
       closed = true;
       IOUtils.quietClose(resultSet, statement, connection);
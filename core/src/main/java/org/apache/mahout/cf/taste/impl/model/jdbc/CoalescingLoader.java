@@ -0,0 +1,167 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.model.jdbc;
+
+import org.apache.mahout.cf.taste.common.TasteException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Coalesces lookups of single keys, made by any number of threads, into lookups of many keys at once. A caller
+ * queues its key, unless that key is already queued or being looked up. If fewer than the maximum number of
+ * lookups are running, it then takes its own key and whatever else is queued, up to a batch size, and looks them
+ * all up together. Otherwise it waits, and its key goes into the next lookup along with the keys that queued up
+ * in the meantime. So while one query runs, the callers arriving behind it share the next query instead of each
+ * running their own.</p>
+ */
+abstract class CoalescingLoader<K, V> {
+
+  private final int maxBatchSize;
+  private final int maxConcurrentLoads;
+  private final Map<K, Result<V>> queued;
+  private final Map<K, Result<V>> loading;
+  private int runningLoads;
+
+  CoalescingLoader(int maxBatchSize, int maxConcurrentLoads) {
+    if (maxBatchSize < 1 || maxConcurrentLoads < 1) {
+      throw new IllegalArgumentException("maxBatchSize and maxConcurrentLoads must be at least 1");
+    }
+    this.maxBatchSize = maxBatchSize;
+    this.maxConcurrentLoads = maxConcurrentLoads;
+    this.queued = new LinkedHashMap<K, Result<V>>();
+    this.loading = new LinkedHashMap<K, Result<V>>();
+  }
+
+  /**
+   * @param keys keys to look up, at most the batch size, without duplicates
+   * @return values for those keys that have one
+   */
+  abstract Map<K, V> load(List<K> keys) throws TasteException;
+
+  /**
+   * @return value for the key, or <code>null</code> if {@link #load(List)} found none
+   */
+  final V get(K key) throws TasteException {
+    Result<V> result;
+    synchronized (this) {
+      result = loading.get(key);
+      if (result == null) {
+        result = queued.get(key);
+        if (result == null) {
+          result = new Result<V>();
+          queued.put(key, result);
+        }
+      }
+    }
+    while (true) {
+      Map<K, Result<V>> batch;
+      synchronized (this) {
+        while (!result.done && (result.loading || runningLoads >= maxConcurrentLoads)) {
+          try {
+            wait();
+          } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new TasteException("Interrupted while waiting for lookup", ie);
+          }
+        }
+        if (result.done) {
+          break;
+        }
+        runningLoads++;
+        batch = takeBatch(key, result);
+      }
+      loadBatch(batch);
+    }
+    return result.getValue();
+  }
+
+  /** Takes the given key and then the longest-queued ones, and moves them from queued to loading. */
+  private Map<K, Result<V>> takeBatch(K key, Result<V> result) {
+    Map<K, Result<V>> batch = new LinkedHashMap<K, Result<V>>();
+    queued.remove(key);
+    batch.put(key, result);
+    Iterator<Map.Entry<K, Result<V>>> it = queued.entrySet().iterator();
+    while (batch.size() < maxBatchSize && it.hasNext()) {
+      Map.Entry<K, Result<V>> entry = it.next();
+      batch.put(entry.getKey(), entry.getValue());
+      it.remove();
+    }
+    for (Map.Entry<K, Result<V>> entry : batch.entrySet()) {
+      entry.getValue().loading = true;
+      loading.put(entry.getKey(), entry.getValue());
+    }
+    return batch;
+  }
+
+  private void loadBatch(Map<K, Result<V>> batch) {
+    Map<K, V> values = null;
+    Throwable failure = null;
+    try {
+      values = load(new ArrayList<K>(batch.keySet()));
+    } catch (TasteException te) {
+      failure = te;
+    } catch (RuntimeException re) {
+      failure = re;
+    } catch (Error e) {
+      failure = e;
+    } finally {
+      synchronized (this) {
+        for (Map.Entry<K, Result<V>> entry : batch.entrySet()) {
+          Result<V> result = entry.getValue();
+          if (values != null) {
+            result.value = values.get(entry.getKey());
+          } else {
+            result.failure = failure == null ? new TasteException("Lookup failed") : failure;
+          }
+          result.done = true;
+          loading.remove(entry.getKey());
+        }
+        runningLoads--;
+        notifyAll();
+      }
+    }
+  }
+
+  /** Guarded by the enclosing {@link CoalescingLoader}. */
+  private static final class Result<V> {
+
+    private boolean loading;
+    private boolean done;
+    private V value;
+    private Throwable failure;
+
+    private V getValue() throws TasteException {
+      if (failure == null) {
+        return value;
+      }
+      if (failure instanceof TasteException) {
+        throw new TasteException(failure.getMessage(), failure);
+      }
+      if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      }
+      throw (Error) failure;
+    }
+
+  }
+
+}
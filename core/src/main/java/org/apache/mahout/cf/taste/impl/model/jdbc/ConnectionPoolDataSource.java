@@ -17,9 +17,13 @@
 
 package org.apache.mahout.cf.taste.impl.model.jdbc;
 
+import org.apache.commons.dbcp.ConnectionFactory;
+import org.apache.commons.dbcp.PoolableConnectionFactory;
 import org.apache.commons.dbcp.PoolingDataSource;
+import org.apache.commons.pool.KeyedObjectPoolFactory;
 import org.apache.commons.pool.ObjectPool;
-import org.apache.commons.pool.PoolableObjectFactory;
+import org.apache.commons.pool.impl.GenericKeyedObjectPool;
+import org.apache.commons.pool.impl.GenericKeyedObjectPoolFactory;
 import org.apache.commons.pool.impl.StackObjectPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +35,9 @@ import java.sql.SQLException;
 
 /**
  * <p>A wrapper {@link DataSource} which pools connections. Why can't Jakarta Commons DBCP provide this directly?</p>
+ *
+ * <p>Each pooled connection also pools its prepared statements, keyed by SQL, so a statement that is closed is
+ * kept and handed back the next time the same SQL is prepared on that connection.</p>
  */
 public final class ConnectionPoolDataSource implements DataSource {
 
@@ -42,8 +49,13 @@ public final class ConnectionPoolDataSource implements DataSource {
     if (underlyingDataSource == null) {
       throw new IllegalArgumentException("underlyingDataSource is null");
     }
-    PoolableObjectFactory poolFactory = new DataSourceConnectionFactory(underlyingDataSource);
-    ObjectPool connectionPool = new StackObjectPool(poolFactory);
+    ObjectPool connectionPool = new StackObjectPool();
+    ConnectionFactory connectionFactory = new DataSourceConnectionFactory(underlyingDataSource);
+    // No limit on open statements; keep one idle statement per SQL string per connection
+    KeyedObjectPoolFactory statementPoolFactory =
+        new GenericKeyedObjectPoolFactory(null, -1, GenericKeyedObjectPool.WHEN_EXHAUSTED_FAIL, 0L, 1);
+    // This registers itself as the pool's factory; connections stay auto-commit and read-write, as they were
+    new PoolableConnectionFactory(connectionFactory, connectionPool, statementPoolFactory, null, false, true);
     this.delegate = new PoolingDataSource(connectionPool);
   }
 
@@ -97,7 +109,7 @@ public final class ConnectionPoolDataSource implements DataSource {
     return false;
   }
 
-  private static class DataSourceConnectionFactory implements PoolableObjectFactory {
+  private static class DataSourceConnectionFactory implements ConnectionFactory {
 
     private final DataSource dataSource;
 
@@ -106,31 +118,10 @@ public final class ConnectionPoolDataSource implements DataSource {
     }
 
     @Override
-    public Object makeObject() throws SQLException {
+    public Connection createConnection() throws SQLException {
       log.debug("Obtaining pooled connection");
       return dataSource.getConnection();
     }
-
-    @Override
-    public void destroyObject(Object o) throws SQLException {
-      log.debug("Closing pooled connection");
-      ((Connection) o).close();
-    }
-
-    @Override
-    public boolean validateObject(Object o) {
-      return true;
-    }
-
-    @Override
-    public void activateObject(Object o) {
-      // do nothing
-    }
-
-    @Override
-    public void passivateObject(Object o) {
-      // do nothing
-    }
   }
 
 }
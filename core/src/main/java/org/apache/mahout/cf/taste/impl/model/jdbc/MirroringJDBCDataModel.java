@@ -0,0 +1,425 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.model.jdbc;
+
+import org.apache.mahout.cf.taste.common.NoSuchItemException;
+import org.apache.mahout.cf.taste.common.Refreshable;
+import org.apache.mahout.cf.taste.common.TasteException;
+import org.apache.mahout.cf.taste.impl.common.FastMap;
+import org.apache.mahout.cf.taste.impl.common.IOUtils;
+import org.apache.mahout.cf.taste.impl.common.Pair;
+import org.apache.mahout.cf.taste.impl.model.ConcurrentDataModel;
+import org.apache.mahout.cf.taste.model.Item;
+import org.apache.mahout.cf.taste.model.JDBCDataModel;
+import org.apache.mahout.cf.taste.model.Preference;
+import org.apache.mahout.cf.taste.model.PreferenceChangeListener;
+import org.apache.mahout.cf.taste.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>A {@link JDBCDataModel} which answers reads from an in-memory copy of another {@link JDBCDataModel}'s data,
+ * and keeps that copy current by polling a table of changes. Reads therefore run at the speed of a
+ * {@link ConcurrentDataModel}, while {@link #setPreference(Object, Object, double)} and
+ * {@link #removePreference(Object, Object)} write through to the database and then poll for changes, so that the
+ * copy has the write when they return.</p>
+ *
+ * <p>The copy is loaded with one pass over the other model's {@link JDBCDataModel#getUsers()}, which streams the
+ * preference table. From then on, every poll interval, and on {@link #refresh(Collection)}, the changes made
+ * since the last one seen are read and applied in order. The change query must select user ID, item ID,
+ * preference, and a number which increases with each change, such as an auto-increment ID, for changes after the
+ * number bound to its one parameter. A <code>NULL</code> preference means the preference was removed.</p>
+ *
+ * <p>Change numbers are assigned when a change is made, not when it commits, so a change may become visible after
+ * others with greater numbers have already been applied. Each poll therefore reads again the last
+ * <code>changeOverlap</code> change numbers below the greatest one applied. Changes already applied are skipped,
+ * as is a late change to a preference which a later change has already overwritten. The latest change number is
+ * read before the copy is loaded, so changes made while loading are applied again; that is harmless since each
+ * change sets an absolute value. By default, this expects a table like the following, kept up to date by
+ * triggers on the preference table, as in this MySQL example:</p>
+ *
+ * <pre>
+ * CREATE TABLE taste_preference_changes (
+ *   change_id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+ *   user_id VARCHAR(10) NOT NULL,
+ *   item_id VARCHAR(10) NOT NULL,
+ *   preference FLOAT NULL
+ * )
+ *
+ * CREATE TRIGGER taste_preference_insert AFTER INSERT ON taste_preferences FOR EACH ROW
+ *   INSERT INTO taste_preference_changes (user_id, item_id, preference)
+ *   VALUES (NEW.user_id, NEW.item_id, NEW.preference)
+ * CREATE TRIGGER taste_preference_update AFTER UPDATE ON taste_preferences FOR EACH ROW
+ *   INSERT INTO taste_preference_changes (user_id, item_id, preference)
+ *   VALUES (NEW.user_id, NEW.item_id, NEW.preference)
+ * CREATE TRIGGER taste_preference_delete AFTER DELETE ON taste_preferences FOR EACH ROW
+ *   INSERT INTO taste_preference_changes (user_id, item_id, preference)
+ *   VALUES (OLD.user_id, OLD.item_id, NULL)
+ * </pre>
+ *
+ * <p>Old rows may be deleted from the change table once every instance has polled past them by more than the
+ * overlap. A last-modified timestamp column on the preference table itself can serve instead, as long as it is
+ * numeric and increasing, but removals, including those made through this model, won't be seen that way.</p>
+ *
+ * <p>{@link #close()} stops polling.</p>
+ */
+public final class MirroringJDBCDataModel implements JDBCDataModel {
+
+  private static final Logger log = LoggerFactory.getLogger(MirroringJDBCDataModel.class);
+
+  public static final String DEFAULT_GET_LATEST_CHANGE_SQL = "SELECT MAX(change_id) FROM taste_preference_changes";
+  public static final String DEFAULT_GET_CHANGES_SQL =
+      "SELECT user_id, item_id, preference, change_id FROM taste_preference_changes " +
+      "WHERE change_id > ? ORDER BY change_id";
+  public static final long DEFAULT_POLL_INTERVAL_MILLIS = 5000L;
+  public static final long DEFAULT_CHANGE_OVERLAP = 1000L;
+
+  private final JDBCDataModel delegate;
+  private final String getChangesSQL;
+  private final ConcurrentDataModel mirror;
+  private final long changeOverlap;
+  private final Lock pollLock;
+  /** Greatest change number applied; guarded by pollLock */
+  private long lastChange;
+  /** Preference changed by each change applied within the overlap; guarded by pollLock */
+  private final SortedMap<Long, Pair<String, String>> recentChanges;
+  /** Greatest change number applied to each preference in {@link #recentChanges}; guarded by pollLock */
+  private final Map<Pair<String, String>, Long> recentChangeByPreference;
+  private final ScheduledExecutorService poller;
+
+  /**
+   * <p>Creates a {@link MirroringJDBCDataModel} which uses the default change table SQL, polls every
+   * {@link #DEFAULT_POLL_INTERVAL_MILLIS} milliseconds, and reads {@link #DEFAULT_CHANGE_OVERLAP} change numbers
+   * again on each poll.</p>
+   *
+   * @param delegate {@link JDBCDataModel} to copy and write through to
+   * @throws TasteException if the data can't be loaded
+   */
+  public MirroringJDBCDataModel(JDBCDataModel delegate) throws TasteException {
+    this(delegate, DEFAULT_GET_LATEST_CHANGE_SQL, DEFAULT_GET_CHANGES_SQL, DEFAULT_POLL_INTERVAL_MILLIS);
+  }
+
+  /**
+   * <p>As below, reading {@link #DEFAULT_CHANGE_OVERLAP} change numbers again on each poll.</p>
+   */
+  public MirroringJDBCDataModel(JDBCDataModel delegate,
+                                String getLatestChangeSQL,
+                                String getChangesSQL,
+                                long pollIntervalMillis) throws TasteException {
+    this(delegate, getLatestChangeSQL, getChangesSQL, pollIntervalMillis, DEFAULT_CHANGE_OVERLAP);
+  }
+
+  /**
+   * @param delegate {@link JDBCDataModel} to copy and write through to
+   * @param getLatestChangeSQL SQL selecting the number of the latest change
+   * @param getChangesSQL SQL selecting user ID, item ID, preference (or <code>NULL</code>) and change number,
+   *  ordered by change number, for changes after the given number
+   * @param pollIntervalMillis milliseconds between the end of one poll for changes and the start of the next
+   * @param changeOverlap how many change numbers below the greatest one applied to read again on each poll; this
+   *  should cover the changes that may be in flight at once
+   * @throws TasteException if the data can't be loaded
+   * @throws IllegalArgumentException if any argument is null, <code>pollIntervalMillis</code> is not positive or
+   *  <code>changeOverlap</code> is negative
+   */
+  public MirroringJDBCDataModel(JDBCDataModel delegate,
+                                String getLatestChangeSQL,
+                                String getChangesSQL,
+                                long pollIntervalMillis,
+                                long changeOverlap) throws TasteException {
+    if (delegate == null || getLatestChangeSQL == null || getChangesSQL == null) {
+      throw new IllegalArgumentException("delegate or SQL is null");
+    }
+    if (pollIntervalMillis <= 0L) {
+      throw new IllegalArgumentException("pollIntervalMillis must be positive");
+    }
+    if (changeOverlap < 0L) {
+      throw new IllegalArgumentException("changeOverlap must not be negative");
+    }
+    this.delegate = delegate;
+    this.getChangesSQL = getChangesSQL;
+    this.changeOverlap = changeOverlap;
+    this.pollLock = new ReentrantLock();
+    this.recentChanges = new TreeMap<Long, Pair<String, String>>();
+    this.recentChangeByPreference = new FastMap<Pair<String, String>, Long>();
+    this.lastChange = getLatestChange(getLatestChangeSQL);
+    log.info("Loading data from {}...", delegate);
+    this.mirror = new ConcurrentDataModel(delegate);
+    log.info("Loaded {}", mirror);
+    this.poller = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "MirroringJDBCDataModel poller");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    poller.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          pollChanges();
+        } catch (TasteException te) {
+          log.warn("Exception while polling changes; will retry", te);
+        } catch (RuntimeException re) {
+          // Letting this escape would cancel all further polls
+          log.warn("Exception while polling changes; will retry", re);
+        }
+      }
+    }, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private long getLatestChange(String getLatestChangeSQL) throws TasteException {
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    try {
+      conn = delegate.getDataSource().getConnection();
+      stmt = conn.prepareStatement(getLatestChangeSQL);
+      log.debug("Executing SQL query: {}", getLatestChangeSQL);
+      rs = stmt.executeQuery();
+      // No changes yet reads as 0
+      return rs.next() ? rs.getLong(1) : 0L;
+    } catch (SQLException sqle) {
+      log.warn("Exception while retrieving latest change", sqle);
+      throw new TasteException(sqle);
+    } finally {
+      IOUtils.quietClose(rs, stmt, conn);
+    }
+  }
+
+  /**
+   * Applies, in order, all changes not yet applied after the start of the overlap.
+   */
+  private void pollChanges() throws TasteException {
+    try {
+      pollLock.lock();
+      Connection conn = null;
+      PreparedStatement stmt = null;
+      ResultSet rs = null;
+      int numChanges = 0;
+      try {
+        conn = delegate.getDataSource().getConnection();
+        stmt = conn.prepareStatement(getChangesSQL);
+        stmt.setFetchSize(AbstractJDBCDataModel.FETCH_SIZE);
+        stmt.setLong(1, Math.max(0L, lastChange - changeOverlap));
+        log.debug("Executing SQL query: {}", getChangesSQL);
+        rs = stmt.executeQuery();
+        while (rs.next()) {
+          long change = rs.getLong(4);
+          if (recentChanges.containsKey(change)) {
+            continue;
+          }
+          String userID = rs.getString(1);
+          String itemID = rs.getString(2);
+          Pair<String, String> preference = new Pair<String, String>(userID, itemID);
+          Long laterChange = recentChangeByPreference.get(preference);
+          // A change committed late is stale if a later change to the same preference was already applied
+          if (laterChange == null || laterChange < change) {
+            double value = rs.getDouble(3);
+            if (rs.wasNull()) {
+              mirror.removePreference(userID, itemID);
+            } else {
+              mirror.setPreference(userID, itemID, value);
+            }
+            recentChangeByPreference.put(preference, change);
+          }
+          // Record each change as it's applied, so a failure part way through resumes after it
+          recentChanges.put(change, preference);
+          lastChange = Math.max(lastChange, change);
+          numChanges++;
+        }
+      } catch (SQLException sqle) {
+        log.warn("Exception while retrieving changes", sqle);
+        throw new TasteException(sqle);
+      } finally {
+        IOUtils.quietClose(rs, stmt, conn);
+        forgetChangesBefore(lastChange - changeOverlap);
+      }
+      if (numChanges > 0) {
+        log.debug("Applied {} changes", numChanges);
+      }
+    } finally {
+      pollLock.unlock();
+    }
+  }
+
+  /**
+   * Forgets the changes which later polls will no longer read. Must be called holding pollLock.
+   */
+  private void forgetChangesBefore(long firstChange) {
+    SortedMap<Long, Pair<String, String>> oldChanges = recentChanges.headMap(firstChange + 1L);
+    for (Map.Entry<Long, Pair<String, String>> entry : oldChanges.entrySet()) {
+      Pair<String, String> preference = entry.getValue();
+      if (entry.getKey().equals(recentChangeByPreference.get(preference))) {
+        recentChangeByPreference.remove(preference);
+      }
+    }
+    oldChanges.clear();
+  }
+
+  /**
+   * @param listener to be told of each change to a {@link Preference}, whether made through this model or
+   *  polled from the database
+   * @see ConcurrentDataModel#addPreferenceChangeListener(PreferenceChangeListener)
+   */
+  public void addPreferenceChangeListener(PreferenceChangeListener listener) {
+    mirror.addPreferenceChangeListener(listener);
+  }
+
+  /**
+   * @param listener to no longer be told of changes
+   */
+  public void removePreferenceChangeListener(PreferenceChangeListener listener) {
+    mirror.removePreferenceChangeListener(listener);
+  }
+
+  /**
+   * Stops polling for changes. Reads keep working on the data as it is.
+   */
+  public void close() {
+    poller.shutdownNow();
+  }
+
+  @Override
+  public DataSource getDataSource() {
+    return delegate.getDataSource();
+  }
+
+  @Override
+  public Iterable<? extends User> getUsers() {
+    return mirror.getUsers();
+  }
+
+  @Override
+  public User getUser(Object id) throws TasteException {
+    return mirror.getUser(id);
+  }
+
+  @Override
+  public Iterable<? extends Item> getItems() {
+    return mirror.getItems();
+  }
+
+  @Override
+  public Item getItem(Object id) throws TasteException {
+    return mirror.getItem(id);
+  }
+
+  @Override
+  public Item getItem(Object id, boolean assumeExists) throws TasteException {
+    if (!assumeExists) {
+      return mirror.getItem(id);
+    }
+    try {
+      return mirror.getItem(id);
+    } catch (NoSuchItemException nsie) {
+      // Not seen yet; trust the caller, as the database-backed model would
+      return delegate.getItem(id, true);
+    }
+  }
+
+  @Override
+  public Iterable<? extends Preference> getPreferencesForItem(Object itemID) {
+    return mirror.getPreferencesForItem(itemID);
+  }
+
+  @Override
+  public Preference[] getPreferencesForItemAsArray(Object itemID) {
+    return mirror.getPreferencesForItemAsArray(itemID);
+  }
+
+  @Override
+  public int getNumItems() {
+    return mirror.getNumItems();
+  }
+
+  @Override
+  public int getNumUsers() {
+    return mirror.getNumUsers();
+  }
+
+  @Override
+  public int getNumUsersWithPreferenceFor(Object... itemIDs) {
+    return mirror.getNumUsersWithPreferenceFor(itemIDs);
+  }
+
+  /**
+   * Writes the preference to the database, then polls for changes, so that it can be read back at once.
+   */
+  @Override
+  public void setPreference(Object userID, Object itemID, double value) throws TasteException {
+    delegate.setPreference(userID, itemID, value);
+    pollWrittenChange();
+  }
+
+  /**
+   * Removes the preference from the database, then polls for changes.
+   */
+  @Override
+  public void removePreference(Object userID, Object itemID) throws TasteException {
+    delegate.removePreference(userID, itemID);
+    pollWrittenChange();
+  }
+
+  /**
+   * Applies a change just written to the database. It is applied by polling, like any other, rather than to the
+   * copy directly, since another change to the same preference may already have been applied after it.
+   */
+  private void pollWrittenChange() {
+    try {
+      pollChanges();
+    } catch (TasteException te) {
+      // The write itself succeeded; a later poll applies it
+      log.warn("Exception while polling changes after a write", te);
+    }
+  }
+
+  /**
+   * Polls for changes now, rather than waiting for the next poll.
+   */
+  @Override
+  public void refresh(Collection<Refreshable> alreadyRefreshed) {
+    try {
+      pollChanges();
+    } catch (TasteException te) {
+      log.warn("Exception while polling changes", te);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "MirroringJDBCDataModel[delegate:" + delegate + ", mirror:" + mirror + ']';
+  }
+
+}
@@ -74,6 +74,12 @@ import javax.sql.DataSource;
  * <li>query_cache_size=64M</li>
  * </ul>
  *
+ * <p>This implementation supplies batch queries, which coalesce concurrent lookups and serve prefetches; see
+ * {@link AbstractJDBCDataModel}. For the driver to actually stream large result sets in chunks of
+ * {@link #FETCH_SIZE} rows, rather than read them into memory whole, add <code>useCursorFetch=true</code> to the
+ * JDBC URL. <code>useServerPrepStmts=true</code> additionally lets the server reuse the pooled prepared statements'
+ * query plans.</p>
+ *
  * <p>Thanks to Amila Jayasooriya for contributing MySQL notes above as part of Google Summer of Code 2007.</p>
  */
 public class MySQLJDBCDataModel extends AbstractJDBCDataModel {
@@ -162,9 +168,40 @@ public class MySQLJDBCDataModel extends AbstractJDBCDataModel {
           // getNumPreferenceForItemSQL
           "SELECT COUNT(1) FROM " + preferenceTable + " WHERE " + itemIDColumn + "=?",
           // getNumPreferenceForItemsSQL
-          "SELECT COUNT(1) FROM " + preferenceTable + " tp1 INNER JOIN " + preferenceColumn + " tp2 " +
+          "SELECT COUNT(1) FROM " + preferenceTable + " tp1 INNER JOIN " + preferenceTable + " tp2 " +
           "ON (tp1." + userIDColumn + "=tp2." + userIDColumn + ") " +
           "WHERE tp1." + itemIDColumn + "=? and tp2." + itemIDColumn + "=?");
   }
 
+  @Override
+  protected String getUserBatchSQL(int numUsers) {
+    return "SELECT " + getItemIDColumn() + ", " + getPreferenceColumn() + ", " + getUserIDColumn() + " FROM " +
+           getPreferenceTable() + " WHERE " + getUserIDColumn() + " IN (" + buildPlaceholders(numUsers, "?") +
+           ") ORDER BY " + getUserIDColumn() + ", " + getItemIDColumn();
+  }
+
+  @Override
+  protected String getPrefsForItemBatchSQL(int numItems) {
+    return "SELECT " + getPreferenceColumn() + ", " + getUserIDColumn() + ", " + getItemIDColumn() + " FROM " +
+           getPreferenceTable() + " WHERE " + getItemIDColumn() + " IN (" + buildPlaceholders(numItems, "?") +
+           ") ORDER BY " + getItemIDColumn() + ", " + getUserIDColumn();
+  }
+
+  @Override
+  protected String getNumPreferenceForItemBatchSQL(int numItems) {
+    return "SELECT " + getItemIDColumn() + ", COUNT(1) FROM " + getPreferenceTable() + " WHERE " +
+           getItemIDColumn() + " IN (" + buildPlaceholders(numItems, "?") + ") GROUP BY " + getItemIDColumn();
+  }
+
+  @Override
+  protected String getNumPreferenceForItemsBatchSQL(int numItemPairs) {
+    // MySQL 5 can't use an index for a row constructor like (a, b) IN ((?,?),...), but can for OR'd equalities
+    String itemPairPlaceholder = "(tp1." + getItemIDColumn() + "=? AND tp2." + getItemIDColumn() + "=?)";
+    return "SELECT tp1." + getItemIDColumn() + ", tp2." + getItemIDColumn() + ", COUNT(1) FROM " +
+           getPreferenceTable() + " tp1 INNER JOIN " + getPreferenceTable() + " tp2 " +
+           "ON (tp1." + getUserIDColumn() + "=tp2." + getUserIDColumn() + ") " +
+           "WHERE " + buildPlaceholders(numItemPairs, itemPairPlaceholder, " OR ") +
+           " GROUP BY tp1." + getItemIDColumn() + ", tp2." + getItemIDColumn();
+  }
+
 }
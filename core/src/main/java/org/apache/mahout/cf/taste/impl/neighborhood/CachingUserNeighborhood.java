@@ -23,15 +23,20 @@ import org.apache.mahout.cf.taste.impl.common.Cache;
 import org.apache.mahout.cf.taste.impl.common.RefreshHelper;
 import org.apache.mahout.cf.taste.impl.common.Retriever;
 import org.apache.mahout.cf.taste.model.DataModel;
+import org.apache.mahout.cf.taste.model.PreferenceChangeListener;
 import org.apache.mahout.cf.taste.model.User;
 import org.apache.mahout.cf.taste.neighborhood.UserNeighborhood;
 
+import java.util.ArrayList;
 import java.util.Collection;
 
 /**
  * A caching wrapper around an underlying {@link UserNeighborhood} implementation.
+ * When registered as a {@link PreferenceChangeListener}, it uncaches the neighborhood of a user whose
+ * preferences change, and every neighborhood that user belongs to, since their similarity to its other members
+ * changes.
  */
-public final class CachingUserNeighborhood implements UserNeighborhood {
+public final class CachingUserNeighborhood implements UserNeighborhood, PreferenceChangeListener {
 
   private final UserNeighborhood neighborhood;
   private final Cache<Object, Collection<User>> neighborhoodCache;
@@ -42,7 +47,9 @@ public final class CachingUserNeighborhood implements UserNeighborhood {
     }
     this.neighborhood = neighborhood;
     int maxCacheSize = dataModel.getNumUsers(); // just a dumb heuristic for sizing
-    this.neighborhoodCache = new Cache<Object, Collection<User>>(new NeighborhoodRetriever(neighborhood), maxCacheSize);
+    this.neighborhoodCache = new Cache<Object, Collection<User>>(new NeighborhoodRetriever(neighborhood),
+                                                                 maxCacheSize,
+                                                                 new NeighborhoodTagger());
   }
 
   @Override
@@ -50,6 +57,20 @@ public final class CachingUserNeighborhood implements UserNeighborhood {
     return neighborhoodCache.get(userID);
   }
 
+  /**
+   * <p>Uncaches the neighborhood of the given user, and the neighborhoods which include the user.</p>
+   *
+   * @param userID ID of user whose neighborhoods should be uncached
+   */
+  public void clearCacheForUser(Object userID) {
+    neighborhoodCache.removeTagged(userID);
+  }
+
+  @Override
+  public void preferenceChanged(Object userID, Object itemID) {
+    clearCacheForUser(userID);
+  }
+
   @Override
   public void refresh(Collection<Refreshable> alreadyRefreshed) {
     neighborhoodCache.clear();
@@ -57,6 +78,21 @@ public final class CachingUserNeighborhood implements UserNeighborhood {
     RefreshHelper.maybeRefresh(alreadyRefreshed, neighborhood);
   }
 
+  /**
+   * Tags each cached neighborhood with the ID of its user and of each of its members.
+   */
+  private static final class NeighborhoodTagger implements Cache.Tagger<Object, Collection<User>> {
+    @Override
+    public Collection<?> getTags(Object userID, Collection<User> neighbors) {
+      Collection<Object> tags = new ArrayList<Object>(neighbors.size() + 1);
+      tags.add(userID);
+      for (User neighbor : neighbors) {
+        tags.add(neighbor.getID());
+      }
+      return tags;
+    }
+  }
+
   private static final class NeighborhoodRetriever implements Retriever<Object, Collection<User>> {
     private final UserNeighborhood neighborhood;
     private NeighborhoodRetriever(UserNeighborhood neighborhood) {
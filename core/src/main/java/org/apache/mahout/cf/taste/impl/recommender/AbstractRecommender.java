@@ -23,18 +23,21 @@ import org.apache.mahout.cf.taste.model.Item;
 import org.apache.mahout.cf.taste.model.User;
 import org.apache.mahout.cf.taste.recommender.RecommendedItem;
 import org.apache.mahout.cf.taste.recommender.Recommender;
+import org.apache.mahout.cf.taste.recommender.Rescorer;
 import org.apache.mahout.cf.taste.impl.common.FastSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 public abstract class AbstractRecommender implements Recommender {
 
   private static final Logger log = LoggerFactory.getLogger(AbstractRecommender.class);
 
   private final DataModel dataModel;
+  private volatile ParallelScoring parallelScoring;
 
   protected AbstractRecommender(DataModel dataModel) {
     if (dataModel == null) {
@@ -93,6 +96,43 @@ public abstract class AbstractRecommender implements Recommender {
     return dataModel;
   }
 
+  /**
+   * <p>Turns on parallel scoring of candidate items: each request splits its candidates into
+   * <code>numPartitions</code> slices which are scored concurrently on <code>executor</code>. This pays off when
+   * scoring one candidate is expensive, as for users with many preferences. The executor is typically shared
+   * between recommenders and is not shut down by this class. The similarity metrics in use must be thread-safe.</p>
+   *
+   * @param executor executor to score on, or <code>null</code> to go back to scoring on the calling thread
+   * @param numPartitions number of slices to split candidates into, usually the number of available cores
+   * @throws IllegalArgumentException if numPartitions is less than 1
+   */
+  public void setParallelScoring(ExecutorService executor, int numPartitions) {
+    if (numPartitions < 1) {
+      throw new IllegalArgumentException("numPartitions must be at least 1");
+    }
+    parallelScoring = executor == null ? null : new ParallelScoring(executor, numPartitions);
+  }
+
+  /**
+   * <p>Scores the candidates with {@link TopItems}, in parallel if enabled with
+   * {@link #setParallelScoring(ExecutorService, int)}.</p>
+   */
+  protected List<RecommendedItem> scoreTopItems(int howMany,
+                                                Iterable<Item> allItems,
+                                                Rescorer<Item> rescorer,
+                                                TopItems.Estimator<Item> estimator) throws TasteException {
+    ParallelScoring theParallelScoring = parallelScoring;
+    if (theParallelScoring == null) {
+      return TopItems.getTopItems(howMany, allItems, rescorer, estimator);
+    }
+    return TopItems.getTopItems(howMany,
+                                allItems,
+                                rescorer,
+                                estimator,
+                                theParallelScoring.executor,
+                                theParallelScoring.numPartitions);
+  }
+
   /**
    * @param theUser {@link User} being evaluated
    * @return all {@link Item}s in the {@link DataModel} for which the {@link User} has not expressed a preference
@@ -112,4 +152,15 @@ public abstract class AbstractRecommender implements Recommender {
     return allItems;
   }
 
+  private static final class ParallelScoring {
+
+    private final ExecutorService executor;
+    private final int numPartitions;
+
+    private ParallelScoring(ExecutorService executor, int numPartitions) {
+      this.executor = executor;
+      this.numPartitions = numPartitions;
+    }
+  }
+
 }
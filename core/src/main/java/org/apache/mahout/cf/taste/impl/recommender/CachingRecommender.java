@@ -25,6 +25,8 @@ import org.apache.mahout.cf.taste.impl.common.RefreshHelper;
 import org.apache.mahout.cf.taste.impl.common.Retriever;
 import org.apache.mahout.cf.taste.model.DataModel;
 import org.apache.mahout.cf.taste.model.Item;
+import org.apache.mahout.cf.taste.model.Preference;
+import org.apache.mahout.cf.taste.model.PreferenceChangeListener;
 import org.apache.mahout.cf.taste.recommender.RecommendedItem;
 import org.apache.mahout.cf.taste.recommender.Recommender;
 import org.apache.mahout.cf.taste.recommender.Rescorer;
@@ -32,6 +34,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -42,8 +46,13 @@ import java.util.concurrent.atomic.AtomicInteger;
  * <p>A {@link Recommender} which caches the results from another {@link Recommender} in memory.
  * Results are held by {@link SoftReference}s so that the JVM may reclaim memory from the recommendationCache
  * in low-memory situations.</p>
+ *
+ * <p>When registered as a {@link PreferenceChangeListener}, it uncaches just what a change to a user's
+ * preference for an item may affect: the recommendations and estimated preferences of that user, every user's
+ * estimated preference for that item, and the recommendations of every user who was recommended, or has a
+ * preference for, that item. Setting or removing a preference through this class does the same.</p>
  */
-public final class CachingRecommender implements Recommender {
+public final class CachingRecommender implements Recommender, PreferenceChangeListener {
 
   private static final Logger log = LoggerFactory.getLogger(CachingRecommender.class);
 
@@ -63,9 +72,13 @@ public final class CachingRecommender implements Recommender {
     // Use "num users" as an upper limit on cache size. Rough guess.
     int numUsers = recommender.getDataModel().getNumUsers();
     this.recommendationCache =
-        new Cache<Object, Recommendations>(new RecommendationRetriever(this.recommender), numUsers);
+        new Cache<Object, Recommendations>(new RecommendationRetriever(this.recommender),
+                                           numUsers,
+                                           new RecommendationsTagger());
     this.estimatedPrefCache =
-            new Cache<Pair<?, ?>, Double>(new EstimatedPrefRetriever(this.recommender), numUsers);
+            new Cache<Pair<?, ?>, Double>(new EstimatedPrefRetriever(this.recommender),
+                                          numUsers,
+                                          new EstimatedPrefTagger());
     this.refreshHelper = new RefreshHelper(new Callable<Object>() {
       @Override
       public Object call() {
@@ -136,13 +149,13 @@ public final class CachingRecommender implements Recommender {
   @Override
   public void setPreference(Object userID, Object itemID, double value) throws TasteException {
     recommender.setPreference(userID, itemID, value);
-    clear(userID);
+    preferenceChanged(userID, itemID);
   }
 
   @Override
   public void removePreference(Object userID, Object itemID) throws TasteException {
     recommender.removePreference(userID, itemID);
-    clear(userID);
+    preferenceChanged(userID, itemID);
   }
 
   @Override
@@ -165,6 +178,16 @@ public final class CachingRecommender implements Recommender {
     recommendationCache.remove(userID);
   }
 
+  @Override
+  public void preferenceChanged(Object userID, Object itemID) {
+    log.debug("Clearing cached data depending on user ID '{}' and item ID '{}'", userID, itemID);
+    ItemTag itemTag = new ItemTag(itemID);
+    recommendationCache.removeTagged(userID);
+    recommendationCache.removeTagged(itemTag);
+    estimatedPrefCache.removeTagged(userID);
+    estimatedPrefCache.removeTagged(itemTag);
+  }
+
   /**
    * <p>Clears all cached recommendations.</p>
    */
@@ -193,7 +216,17 @@ public final class CachingRecommender implements Recommender {
       List<RecommendedItem> recommendations = currentRescorer == null ?
           recommender.recommend(key, howMany) :
           recommender.recommend(key, howMany, currentRescorer);
-      return new Recommendations(Collections.unmodifiableList(recommendations));
+      // The user's own items count too, since a change to their similarity to others can change the estimates
+      Preference[] prefs = recommender.getDataModel().getUser(key).getPreferencesAsArray();
+      Collection<Object> tags = new ArrayList<Object>(1 + recommendations.size() + prefs.length);
+      tags.add(key);
+      for (RecommendedItem recommendation : recommendations) {
+        tags.add(new ItemTag(recommendation.getItem().getID()));
+      }
+      for (Preference pref : prefs) {
+        tags.add(new ItemTag(pref.getItem().getID()));
+      }
+      return new Recommendations(Collections.unmodifiableList(recommendations), tags);
     }
   }
 
@@ -214,19 +247,67 @@ public final class CachingRecommender implements Recommender {
     }
   }
 
+  /**
+   * Tags each cached list of recommendations as {@link RecommendationRetriever} worked out.
+   */
+  private static final class RecommendationsTagger implements Cache.Tagger<Object, Recommendations> {
+    @Override
+    public Collection<?> getTags(Object userID, Recommendations recommendations) {
+      return recommendations.getTags();
+    }
+  }
+
+  /**
+   * Tags each cached estimate with its user ID and item.
+   */
+  private static final class EstimatedPrefTagger implements Cache.Tagger<Pair<?, ?>, Double> {
+    @Override
+    public Collection<?> getTags(Pair<?, ?> pair, Double estimate) {
+      return Arrays.asList(pair.getFirst(), new ItemTag(pair.getSecond()));
+    }
+  }
+
+  /**
+   * Tags cached data with an item ID, apart from user IDs, which may be equal to item IDs.
+   */
+  private static final class ItemTag {
+
+    private final Object itemID;
+
+    private ItemTag(Object itemID) {
+      this.itemID = itemID;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof ItemTag && itemID.equals(((ItemTag) o).itemID);
+    }
+
+    @Override
+    public int hashCode() {
+      return itemID.hashCode();
+    }
+  }
+
   private static final class Recommendations {
 
     private final List<RecommendedItem> items;
+    private final Collection<Object> tags;
     private boolean noMoreRecommendableItems;
 
-    private Recommendations(List<RecommendedItem> items) {
+    private Recommendations(List<RecommendedItem> items, Collection<Object> tags) {
       this.items = items;
+      this.tags = tags;
     }
 
     List<RecommendedItem> getItems() {
       return items;
     }
 
+    Collection<Object> getTags() {
+      return tags;
+    }
+
     boolean isNoMoreRecommendableItems() {
       return noMoreRecommendableItems;
     }
@@ -28,7 +28,9 @@ import org.apache.mahout.cf.taste.impl.common.FastSet;
 import org.apache.mahout.cf.taste.model.DataModel;
 import org.apache.mahout.cf.taste.model.Item;
 import org.apache.mahout.cf.taste.model.Preference;
+import org.apache.mahout.cf.taste.model.PrefetchingDataModel;
 import org.apache.mahout.cf.taste.model.User;
+import org.apache.mahout.cf.taste.recommender.CandidateItemsStrategy;
 import org.apache.mahout.cf.taste.recommender.ItemBasedRecommender;
 import org.apache.mahout.cf.taste.recommender.RecommendedItem;
 import org.apache.mahout.cf.taste.recommender.Rescorer;
@@ -56,21 +58,38 @@ import java.util.Set;
  * with pre-computed similarities if you're going to use this class. You can use
  * {@link org.apache.mahout.cf.taste.impl.similarity.PearsonCorrelationSimilarity} too, 
  * which computes similarities in real-time,
- * but will probably find this painfully slow for large amounts of data.</p>
+ * but will probably find this painfully slow for large amounts of data. For large catalogues, precompute the top
+ * neighbors of each item with {@link org.apache.mahout.cf.taste.impl.similarity.ItemSimilarityIndexBuilder} and serve
+ * them from a {@link org.apache.mahout.cf.taste.impl.similarity.MappedItemSimilarity}.</p>
+ *
+ * <p>By default only items which co-occur with the user's items are considered as recommendations; see
+ * {@link PreferredItemsNeighborhoodCandidateItemsStrategy}. Supply a different {@link CandidateItemsStrategy}
+ * if the similarity metric can relate items that have never been rated together.</p>
  */
 public final class GenericItemBasedRecommender extends AbstractRecommender implements ItemBasedRecommender {
 
   private static final Logger log = LoggerFactory.getLogger(GenericItemBasedRecommender.class);
 
   private final ItemSimilarity similarity;
+  private final CandidateItemsStrategy candidateItemsStrategy;
   private final RefreshHelper refreshHelper;
 
   public GenericItemBasedRecommender(DataModel dataModel, ItemSimilarity similarity) {
+    this(dataModel, similarity, new PreferredItemsNeighborhoodCandidateItemsStrategy());
+  }
+
+  public GenericItemBasedRecommender(DataModel dataModel,
+                                     ItemSimilarity similarity,
+                                     CandidateItemsStrategy candidateItemsStrategy) {
     super(dataModel);
     if (similarity == null) {
       throw new IllegalArgumentException("similarity is null");
     }
+    if (candidateItemsStrategy == null) {
+      throw new IllegalArgumentException("candidateItemsStrategy is null");
+    }
     this.similarity = similarity;
+    this.candidateItemsStrategy = candidateItemsStrategy;
     this.refreshHelper = new RefreshHelper(null);
     refreshHelper.addDependency(dataModel);
     refreshHelper.addDependency(similarity);
@@ -94,11 +113,11 @@ public final class GenericItemBasedRecommender extends AbstractRecommender imple
       return Collections.emptyList();
     }
 
-    Set<Item> allItems = getAllOtherItems(theUser);
+    Set<Item> allItems = candidateItemsStrategy.getCandidateItems(theUser, getDataModel());
 
     TopItems.Estimator<Item> estimator = new Estimator(theUser);
 
-    List<RecommendedItem> topItems = TopItems.getTopItems(howMany, allItems, rescorer, estimator);
+    List<RecommendedItem> topItems = scoreTopItems(howMany, allItems, rescorer, estimator);
 
     log.debug("Recommendations are: {}", topItems);
     return topItems;
@@ -152,7 +171,7 @@ public final class GenericItemBasedRecommender extends AbstractRecommender imple
     for (Item item : toItems) {
       allItems.remove(item);
     }
-    return TopItems.getTopItems(howMany, allItems, null, estimator);
+    return scoreTopItems(howMany, allItems, null, estimator);
   }
 
   @Override
@@ -181,7 +200,12 @@ public final class GenericItemBasedRecommender extends AbstractRecommender imple
     }
     allUserItems.remove(recommendedItem);
 
-    return TopItems.getTopItems(howMany, allUserItems, null, estimator);
+    boolean prefetching = prefetch(recommendedItem, allUserItems);
+    try {
+      return TopItems.getTopItems(howMany, allUserItems, null, estimator);
+    } finally {
+      clearPrefetched(prefetching);
+    }
   }
 
   private List<RecommendedItem> doMostSimilarItems(Object itemID,
@@ -194,27 +218,70 @@ public final class GenericItemBasedRecommender extends AbstractRecommender imple
       allItems.add(item);
     }
     allItems.remove(toItem);
-    return TopItems.getTopItems(howMany, allItems, null, estimator);
+    // Only helps the slices scored on this thread, when scoring in parallel
+    boolean prefetching = prefetch(toItem, allItems);
+    try {
+      return scoreTopItems(howMany, allItems, null, estimator);
+    } finally {
+      clearPrefetched(prefetching);
+    }
   }
 
   private double doEstimatePreference(User theUser, Item item) throws TasteException {
     double preference = 0.0;
     double totalSimilarity = 0.0;
     Preference[] prefs = theUser.getPreferencesAsArray();
-    for (Preference pref : prefs) {
-      double theSimilarity = similarity.itemSimilarity(item, pref.getItem());
-      if (!Double.isNaN(theSimilarity)) {
-        // Why + 1.0? similarity ranges from -1.0 to 1.0, and we want to use it as a simple
-        // weight. To avoid negative values, we add 1.0 to put it in
-        // the [0.0,2.0] range which is reasonable for weights
-        theSimilarity += 1.0;
-        preference += theSimilarity * pref.getValue();
-        totalSimilarity += theSimilarity;
+    boolean prefetching = false;
+    if (getDataModel() instanceof PrefetchingDataModel) {
+      List<Item> userItems = new ArrayList<Item>(prefs.length);
+      for (Preference pref : prefs) {
+        userItems.add(pref.getItem());
+      }
+      prefetching = prefetch(item, userItems);
+    }
+    try {
+      for (Preference pref : prefs) {
+        double theSimilarity = similarity.itemSimilarity(item, pref.getItem());
+        if (!Double.isNaN(theSimilarity)) {
+          // Why + 1.0? similarity ranges from -1.0 to 1.0, and we want to use it as a simple
+          // weight. To avoid negative values, we add 1.0 to put it in
+          // the [0.0,2.0] range which is reasonable for weights
+          theSimilarity += 1.0;
+          preference += theSimilarity * pref.getValue();
+          totalSimilarity += theSimilarity;
+        }
       }
+    } finally {
+      clearPrefetched(prefetching);
     }
     return totalSimilarity == 0.0 ? Double.NaN : preference / totalSimilarity;
   }
 
+  /**
+   * Tells a {@link PrefetchingDataModel} that the similarities of <code>item</code> with each of
+   * <code>otherItems</code> are about to be computed, so that it can fetch what they need in bulk.
+   *
+   * @return <code>true</code> if {@link #clearPrefetched(boolean)} has something to clear
+   */
+  private boolean prefetch(Item item, Collection<Item> otherItems) {
+    DataModel model = getDataModel();
+    if (!(model instanceof PrefetchingDataModel)) {
+      return false;
+    }
+    List<Object> otherItemIDs = new ArrayList<Object>(otherItems.size());
+    for (Item otherItem : otherItems) {
+      otherItemIDs.add(otherItem.getID());
+    }
+    ((PrefetchingDataModel) model).prefetch(item.getID(), otherItemIDs);
+    return true;
+  }
+
+  private void clearPrefetched(boolean prefetching) {
+    if (prefetching) {
+      ((PrefetchingDataModel) getDataModel()).clearPrefetched();
+    }
+  }
+
   private static int getNumPreferences(User theUser) {
     return theUser.getPreferencesAsArray().length;
   }
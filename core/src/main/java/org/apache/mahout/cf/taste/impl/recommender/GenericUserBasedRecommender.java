@@ -92,7 +92,7 @@ public final class GenericUserBasedRecommender extends AbstractRecommender imple
 
     TopItems.Estimator<Item> estimator = new Estimator(theUser, theNeighborhood);
 
-    List<RecommendedItem> topItems = TopItems.getTopItems(howMany, allItems, rescorer, estimator);
+    List<RecommendedItem> topItems = scoreTopItems(howMany, allItems, rescorer, estimator);
 
     log.debug("Recommendations are: {}", topItems);
     return topItems;
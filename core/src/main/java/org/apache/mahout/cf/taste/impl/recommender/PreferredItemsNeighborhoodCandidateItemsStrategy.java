@@ -0,0 +1,70 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.recommender;
+
+import org.apache.mahout.cf.taste.common.TasteException;
+import org.apache.mahout.cf.taste.impl.common.FastSet;
+import org.apache.mahout.cf.taste.model.DataModel;
+import org.apache.mahout.cf.taste.model.Item;
+import org.apache.mahout.cf.taste.model.Preference;
+import org.apache.mahout.cf.taste.model.User;
+import org.apache.mahout.cf.taste.recommender.CandidateItemsStrategy;
+
+import java.util.Set;
+
+/**
+ * <p>Returns the {@link Item}s that co-occur with at least one of the {@link User}'s items: those preferred by some
+ * other user who also prefers one of this user's items. It walks the item-to-user index through
+ * {@link DataModel#getPreferencesForItemAsArray(Object)}, so the cost depends on the size of that neighborhood
+ * rather than on the size of the catalogue.</p>
+ *
+ * <p>Item-item similarity metrics computed from the data, as well as slope-one diffs, are undefined for items
+ * that have never been rated together, so for those this returns exactly the items that can get an estimate.</p>
+ */
+public final class PreferredItemsNeighborhoodCandidateItemsStrategy implements CandidateItemsStrategy {
+
+  @Override
+  public Set<Item> getCandidateItems(User user, DataModel dataModel) throws TasteException {
+    Set<Item> candidateItems = new FastSet<Item>();
+    Set<Object> visitedUserIDs = new FastSet<Object>();
+    visitedUserIDs.add(user.getID());
+    Preference[] prefs = user.getPreferencesAsArray();
+    for (Preference pref : prefs) {
+      Preference[] itemPrefs = dataModel.getPreferencesForItemAsArray(pref.getItem().getID());
+      for (Preference itemPref : itemPrefs) {
+        User otherUser = itemPref.getUser();
+        // Each other user's items only need to be added once
+        if (visitedUserIDs.add(otherUser.getID())) {
+          for (Preference otherPref : otherUser.getPreferencesAsArray()) {
+            candidateItems.add(otherPref.getItem());
+          }
+        }
+      }
+    }
+    for (Preference pref : prefs) {
+      candidateItems.remove(pref.getItem());
+    }
+    return candidateItems;
+  }
+
+  @Override
+  public String toString() {
+    return "PreferredItemsNeighborhoodCandidateItemsStrategy";
+  }
+
+}
@@ -18,6 +18,7 @@
 package org.apache.mahout.cf.taste.impl.recommender;
 
 import org.apache.mahout.cf.taste.common.TasteException;
+import org.apache.mahout.cf.taste.impl.common.BoundedScoreHeap;
 import org.apache.mahout.cf.taste.impl.similarity.GenericItemSimilarity;
 import org.apache.mahout.cf.taste.model.Item;
 import org.apache.mahout.cf.taste.model.User;
@@ -27,14 +28,19 @@ import org.apache.mahout.cf.taste.recommender.Rescorer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.PriorityQueue;
-import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * <p>A simple class that refactors the "find top N things" logic that is used in several places.</p>
  */
 public final class TopItems {
 
+  /** Below this many candidates, scoring in parallel costs more than it saves. */
+  private static final int MIN_PARALLEL_CANDIDATES = 64;
+
   private TopItems() {
   }
 
@@ -45,61 +51,181 @@ public final class TopItems {
     if (allItems == null || estimator == null) {
       throw new IllegalArgumentException("argument is null");
     }
-    Queue<RecommendedItem> topItems = new PriorityQueue<RecommendedItem>(howMany + 1, Collections.reverseOrder());
-    boolean full = false;
-    double lowestTopValue = Double.NEGATIVE_INFINITY;
+    BoundedScoreHeap heap = new BoundedScoreHeap(howMany);
+    List<Item> topItems = new ArrayList<Item>();
     for (Item item : allItems) {
       if (item.isRecommendable() && (rescorer == null || !rescorer.isFiltered(item))) {
         double preference = estimator.estimate(item);
         double rescoredPref = rescorer == null ? preference : rescorer.rescore(item, preference);
-        if (!Double.isNaN(rescoredPref) && (!full || rescoredPref > lowestTopValue)) {
-          topItems.add(new GenericRecommendedItem(item, rescoredPref));
-          if (full) {
-            topItems.poll();
-          } else if (topItems.size() > howMany) {
-            full = true;
-            topItems.poll();
-          }
-          lowestTopValue = topItems.peek().getValue();
-        }
+        keep(heap, topItems, item, rescoredPref);
       }
     }
-    List<RecommendedItem> result = new ArrayList<RecommendedItem>(topItems.size());
-    result.addAll(topItems);
-    Collections.sort(result);
+    int[] slots = heap.slotsByDescendingScore();
+    List<RecommendedItem> result = new ArrayList<RecommendedItem>(slots.length);
+    for (int slot : slots) {
+      result.add(new GenericRecommendedItem(topItems.get(slot), heap.getScore(slot)));
+    }
     return result;
   }
 
+  /**
+   * <p>Selects the top items given precomputed scores, without creating any objects for the candidates that don't
+   * make the cut.</p>
+   *
+   * @param howMany maximum number of items to return
+   * @param items candidate items
+   * @param scores score for the item at the same index in <code>items</code>; {@link Double#NaN} excludes it
+   * @return the best items, highest score first
+   * @throws IllegalArgumentException if the arrays are null or differ in length
+   */
+  public static List<RecommendedItem> getTopItems(int howMany, Item[] items, double[] scores) {
+    if (items == null || scores == null) {
+      throw new IllegalArgumentException("argument is null");
+    }
+    if (items.length != scores.length) {
+      throw new IllegalArgumentException("items and scores differ in length");
+    }
+    int[] topIndexes = getTopIndexes(howMany, scores);
+    List<RecommendedItem> result = new ArrayList<RecommendedItem>(topIndexes.length);
+    for (int index : topIndexes) {
+      result.add(new GenericRecommendedItem(items[index], scores[index]));
+    }
+    return result;
+  }
+
+  /**
+   * @param howMany maximum number of indexes to return
+   * @param scores scores to choose from; {@link Double#NaN} values are never chosen
+   * @return indexes into <code>scores</code> of the highest scores, highest first
+   */
+  public static int[] getTopIndexes(int howMany, double[] scores) {
+    if (scores == null) {
+      throw new IllegalArgumentException("scores is null");
+    }
+    BoundedScoreHeap heap = new BoundedScoreHeap(howMany);
+    int[] slotIndexes = new int[Math.min(howMany, scores.length)];
+    for (int i = 0; i < scores.length; i++) {
+      int slot = heap.offer(scores[i]);
+      if (slot >= 0) {
+        slotIndexes[slot] = i;
+      }
+    }
+    int[] slots = heap.slotsByDescendingScore();
+    int[] result = new int[slots.length];
+    for (int i = 0; i < slots.length; i++) {
+      result[i] = slotIndexes[slots[i]];
+    }
+    return result;
+  }
+
+  /**
+   * <p>Like {@link #getTopItems(int, Iterable, Rescorer, Estimator)}, but splits the candidates into
+   * <code>numPartitions</code> slices and scores them concurrently on the given {@link ExecutorService}. Each slice
+   * keeps its own bounded heap of the <code>howMany</code> best items, and the results are merged at the end. The
+   * calling thread scores one of the slices itself.</p>
+   *
+   * <p>The {@link Estimator} and {@link Rescorer} must be safe to call from several threads at once.</p>
+   */
+  public static List<RecommendedItem> getTopItems(int howMany,
+                                                  Iterable<Item> allItems,
+                                                  final Rescorer<Item> rescorer,
+                                                  final Estimator<Item> estimator,
+                                                  ExecutorService executor,
+                                                  int numPartitions) throws TasteException {
+    if (allItems == null || estimator == null || executor == null) {
+      throw new IllegalArgumentException("argument is null");
+    }
+    if (numPartitions < 1) {
+      throw new IllegalArgumentException("numPartitions must be at least 1");
+    }
+    List<Item> candidates = new ArrayList<Item>();
+    for (Item item : allItems) {
+      candidates.add(item);
+    }
+    int numCandidates = candidates.size();
+    int partitionSize = (numCandidates + numPartitions - 1) / numPartitions;
+    if (numPartitions == 1 || numCandidates < MIN_PARALLEL_CANDIDATES) {
+      return getTopItems(howMany, candidates, rescorer, estimator);
+    }
+
+    final int topSize = howMany;
+    List<Future<List<RecommendedItem>>> futures = new ArrayList<Future<List<RecommendedItem>>>(numPartitions);
+    int start = partitionSize;
+    // The first slice is left for the calling thread
+    while (start < numCandidates) {
+      final List<Item> partition = candidates.subList(start, Math.min(start + partitionSize, numCandidates));
+      futures.add(executor.submit(new Callable<List<RecommendedItem>>() {
+        @Override
+        public List<RecommendedItem> call() throws TasteException {
+          return getTopItems(topSize, partition, rescorer, estimator);
+        }
+      }));
+      start += partitionSize;
+    }
+
+    List<List<RecommendedItem>> slices = new ArrayList<List<RecommendedItem>>(futures.size() + 1);
+    int mergedSize = 0;
+    try {
+      List<RecommendedItem> first = getTopItems(howMany, candidates.subList(0, partitionSize), rescorer, estimator);
+      slices.add(first);
+      mergedSize += first.size();
+      for (Future<List<RecommendedItem>> future : futures) {
+        List<RecommendedItem> slice = future.get();
+        slices.add(slice);
+        mergedSize += slice.size();
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new TasteException("Interrupted while scoring candidates", ie);
+    } catch (ExecutionException ee) {
+      Throwable cause = ee.getCause();
+      if (cause instanceof TasteException) {
+        throw (TasteException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new TasteException(cause);
+    } finally {
+      // Don't leave slices running if we bailed out early
+      for (Future<List<RecommendedItem>> future : futures) {
+        future.cancel(true);
+      }
+    }
+
+    // Each slice holds at most min(howMany, slice size) items, so this never exceeds numCandidates
+    List<RecommendedItem> merged = new ArrayList<RecommendedItem>(mergedSize);
+    for (List<RecommendedItem> slice : slices) {
+      merged.addAll(slice);
+    }
+    Collections.sort(merged);
+    if (merged.size() > howMany) {
+      return new ArrayList<RecommendedItem>(merged.subList(0, howMany));
+    }
+    return merged;
+  }
+
   public static List<User> getTopUsers(int howMany,
                                        Iterable<? extends User> allUsers,
                                        Rescorer<User> rescorer,
                                        Estimator<User> estimator) throws TasteException {
-    Queue<SimilarUser> topUsers = new PriorityQueue<SimilarUser>(howMany + 1, Collections.reverseOrder());
-    boolean full = false;
-    double lowestTopValue = Double.NEGATIVE_INFINITY;
+    BoundedScoreHeap heap = new BoundedScoreHeap(howMany);
+    List<User> topUsers = new ArrayList<User>();
     for (User user : allUsers) {
       if (rescorer != null && rescorer.isFiltered(user)) {
         continue;
       }
       double similarity = estimator.estimate(user);
       double rescoredSimilarity = rescorer == null ? similarity : rescorer.rescore(user, similarity);
-      if (!Double.isNaN(rescoredSimilarity) && (!full || rescoredSimilarity > lowestTopValue)) {
-        topUsers.add(new SimilarUser(user, similarity));
-        if (full) {
-          topUsers.poll();
-        } else if (topUsers.size() > howMany) {
-          full = true;
-          topUsers.poll();
-        }
-        lowestTopValue = topUsers.peek().getSimilarity();
-      }
+      keep(heap, topUsers, user, rescoredSimilarity);
     }
-    List<SimilarUser> sorted = new ArrayList<SimilarUser>(topUsers.size());
-    sorted.addAll(topUsers);
-    Collections.sort(sorted);
-    List<User> result = new ArrayList<User>(sorted.size());
-    for (SimilarUser similarUser : sorted) {
-      result.add(similarUser.getUser());
+    int[] slots = heap.slotsByDescendingScore();
+    List<User> result = new ArrayList<User>(slots.length);
+    for (int slot : slots) {
+      result.add(topUsers.get(slot));
     }
     return result;
   }
@@ -113,30 +239,33 @@ public final class TopItems {
    */
   public static List<GenericItemSimilarity.ItemItemSimilarity> getTopItemItemSimilarities(
           int howMany, Iterable<GenericItemSimilarity.ItemItemSimilarity> allSimilarities) {
-    Queue<GenericItemSimilarity.ItemItemSimilarity> topSimilarities =
-            new PriorityQueue<GenericItemSimilarity.ItemItemSimilarity>(howMany + 1, Collections.reverseOrder());
-    boolean full = false;
-    double lowestTopValue = Double.NEGATIVE_INFINITY;
+    BoundedScoreHeap heap = new BoundedScoreHeap(howMany);
+    List<GenericItemSimilarity.ItemItemSimilarity> topSimilarities =
+        new ArrayList<GenericItemSimilarity.ItemItemSimilarity>();
     for (GenericItemSimilarity.ItemItemSimilarity similarity : allSimilarities) {
-      double value = similarity.getValue();
-      if (!full || value > lowestTopValue) {
-        topSimilarities.add(similarity);
-        if (full) {
-          topSimilarities.poll();
-        } else if (topSimilarities.size() > howMany) {
-          full = true;
-          topSimilarities.poll();
-        }
-        lowestTopValue = topSimilarities.peek().getValue();
-      }
+      keep(heap, topSimilarities, similarity, similarity.getValue());
     }
+    int[] slots = heap.slotsByDescendingScore();
     List<GenericItemSimilarity.ItemItemSimilarity> result =
-      new ArrayList<GenericItemSimilarity.ItemItemSimilarity>(topSimilarities.size());
-    result.addAll(topSimilarities);
-    Collections.sort(result);
+      new ArrayList<GenericItemSimilarity.ItemItemSimilarity>(slots.length);
+    for (int slot : slots) {
+      result.add(topSimilarities.get(slot));
+    }
     return result;
   }
 
+  /**
+   * Offers a score to the heap and, if it's accepted, stores the thing it belongs to at the slot the heap gave it.
+   */
+  private static <T> void keep(BoundedScoreHeap heap, List<T> slotted, T thing, double score) {
+    int slot = heap.offer(score);
+    if (slot == slotted.size()) {
+      slotted.add(thing);
+    } else if (slot >= 0) {
+      slotted.set(slot, thing);
+    }
+  }
+
   public interface Estimator<T> {
 
     double estimate(T thing) throws TasteException;
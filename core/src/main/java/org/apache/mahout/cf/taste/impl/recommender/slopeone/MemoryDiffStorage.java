@@ -22,9 +22,11 @@ import org.apache.mahout.cf.taste.common.TasteException;
 import org.apache.mahout.cf.taste.common.Weighting;
 import org.apache.mahout.cf.taste.impl.common.CompactRunningAverage;
 import org.apache.mahout.cf.taste.impl.common.CompactRunningAverageAndStdDev;
+import org.apache.mahout.cf.taste.impl.common.FastByIDMap;
 import org.apache.mahout.cf.taste.impl.common.FastMap;
 import org.apache.mahout.cf.taste.impl.common.FullRunningAverage;
 import org.apache.mahout.cf.taste.impl.common.FullRunningAverageAndStdDev;
+import org.apache.mahout.cf.taste.impl.common.LongPrimitiveIterator;
 import org.apache.mahout.cf.taste.impl.common.RefreshHelper;
 import org.apache.mahout.cf.taste.impl.common.RunningAverage;
 import org.apache.mahout.cf.taste.impl.common.RunningAverageAndStdDev;
@@ -37,30 +39,72 @@ import org.apache.mahout.cf.taste.recommender.slopeone.DiffStorage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * <p>An implementation of {@link DiffStorage} that merely stores item-item diffs in memory.
  * It is fast, but can consume a great deal of memory.</p>
+ *
+ * <p>A preference update only touches the diffs between the changed item and the acting user's other items, so
+ * it costs time proportional to that user's number of preferences. Updates never change an average, or a map
+ * readers can reach, in place; they publish updated copies instead, so readers go on without waiting for them.</p>
+ *
+ * <p>The diffs can be built by several threads. Each thread owns the diffs keyed by a share of the items, so all
+ * threads see every user's preferences but none of them contend on, or have to merge, the same averages. A rebuild
+ * triggered by {@link #refresh(Collection)} builds new diffs on the side and swaps them in when done, so the old ones
+ * keep serving recommendations in the meantime. Preference updates wait for the rebuild to finish, and
+ * {@link SlopeOneRecommender} holds {@link #getUpdateLock()} from before it changes the {@link DataModel}, so a
+ * rebuild never counts a change that is then applied to the new diffs again.</p>
+ *
+ * <p>Each item ID is given a dense index when the diffs are built, or when an item first appears in an update, and
+ * the diffs and averages are kept in maps keyed by those indexes, so that a lookup hashes the two item IDs once
+ * each and otherwise works on primitive keys.</p>
  */
 public final class MemoryDiffStorage implements DiffStorage {
 
   private static final Logger log = LoggerFactory.getLogger(MemoryDiffStorage.class);
 
+  /** Number of users handed to the build threads at a time */
+  private static final int BUILD_BATCH_SIZE = 1000;
+  /** Number of batches that may wait for each build thread before the reader blocks */
+  private static final int BUILD_QUEUE_CAPACITY = 16;
+
   private final DataModel dataModel;
   private final boolean stdDevWeighted;
   private final boolean compactAverages;
   private final long maxEntries;
-  private final FastMap<Object, FastMap<Object, RunningAverage>> averageDiffs;
-  private final Map<Object, RunningAverage> averageItemPref;
-  private final FastSet<Item> allRecommendableItemIDs;
+  private final int numBuildThreads;
+  // These are replaced wholesale, under the write lock, when the diffs are rebuilt, and by updated copies on
+  // preference updates
+  private volatile FastMap<Object, Integer> itemIndexes;
+  /** Item with each index */
+  private volatile List<Item> indexedItems;
+  /** Diffs from the item with one index to items with other indexes */
+  private volatile FastByIDMap<FastByIDMap<RunningAverage>> averageDiffs;
+  private volatile FastByIDMap<RunningAverage> averageItemPref;
+  private volatile FastSet<Item> allRecommendableItemIDs;
   private final ReadWriteLock buildAverageDiffsLock;
+  /** Serializes writers, and keeps them out while the diffs are rebuilt */
+  private final Lock updateLock;
+  private long numDiffs;
   private final RefreshHelper refreshHelper;
 
   /**
@@ -94,20 +138,40 @@ public final class MemoryDiffStorage implements DiffStorage {
                            Weighting stdDevWeighted,
                            boolean compactAverages,
                            long maxEntries) throws TasteException {
+    this(dataModel, stdDevWeighted, compactAverages, maxEntries, 1);
+  }
+
+  /**
+   * <p>Creates a new {@link MemoryDiffStorage} that builds its diffs with <code>numBuildThreads</code> threads.
+   * The {@link DataModel}'s users are still read once, by the calling thread. With more than one thread,
+   * which item-item pairs are kept once <code>maxEntries</code> is reached may vary from build to build.</p>
+   *
+   * @param numBuildThreads number of threads to build diffs with
+   * @throws IllegalArgumentException if <code>maxEntries</code> or <code>numBuildThreads</code> is not positive,
+   * or <code>dataModel</code> is null
+   * @see #MemoryDiffStorage(DataModel, Weighting, boolean, long)
+   */
+  public MemoryDiffStorage(DataModel dataModel,
+                           Weighting stdDevWeighted,
+                           boolean compactAverages,
+                           long maxEntries,
+                           int numBuildThreads) throws TasteException {
     if (dataModel == null) {
       throw new IllegalArgumentException("dataModel is null");
     }
     if (maxEntries <= 0L) {
       throw new IllegalArgumentException("maxEntries must be positive");
     }
+    if (numBuildThreads < 1) {
+      throw new IllegalArgumentException("numBuildThreads must be at least 1");
+    }
     this.dataModel = dataModel;
     this.stdDevWeighted = stdDevWeighted == Weighting.WEIGHTED;
     this.compactAverages = compactAverages;
     this.maxEntries = maxEntries;
-    this.averageDiffs = new FastMap<Object, FastMap<Object, RunningAverage>>();
-    this.averageItemPref = new FastMap<Object, RunningAverage>();
+    this.numBuildThreads = numBuildThreads;
     this.buildAverageDiffsLock = new ReentrantReadWriteLock();
-    this.allRecommendableItemIDs = new FastSet<Item>(dataModel.getNumItems());
+    this.updateLock = new ReentrantLock();
     this.refreshHelper = new RefreshHelper(new Callable<Object>() {
       @Override
       public Object call() throws TasteException {
@@ -121,16 +185,33 @@ public final class MemoryDiffStorage implements DiffStorage {
 
   @Override
   public RunningAverage getDiff(Object itemID1, Object itemID2) {
-    Map<Object, RunningAverage> level2Map = averageDiffs.get(itemID1);
+    try {
+      buildAverageDiffsLock.readLock().lock();
+      return getDiffUnlocked(itemID1, itemID2);
+    } finally {
+      buildAverageDiffsLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Must be called holding the read or write lock.
+   */
+  private RunningAverage getDiffUnlocked(Object itemID1, Object itemID2) {
+    Integer index1 = itemIndexes.get(itemID1);
+    Integer index2 = itemIndexes.get(itemID2);
+    if (index1 == null || index2 == null) {
+      return null;
+    }
+    FastByIDMap<RunningAverage> level2Map = averageDiffs.get(index1);
     RunningAverage average = null;
     if (level2Map != null) {
-      average = level2Map.get(itemID2);
+      average = level2Map.get(index2);
     }
     boolean inverted = false;
     if (average == null) {
-      level2Map = averageDiffs.get(itemID2);
+      level2Map = averageDiffs.get(index2);
       if (level2Map != null) {
-        average = level2Map.get(itemID1);
+        average = level2Map.get(index1);
         inverted = true;
       }
     }
@@ -153,7 +234,7 @@ public final class MemoryDiffStorage implements DiffStorage {
       int size = prefs.length;
       RunningAverage[] result = new RunningAverage[size];
       for (int i = 0; i < size; i++) {
-        result[i] = getDiff(prefs[i].getItem().getID(), itemID);
+        result[i] = getDiffUnlocked(prefs[i].getItem().getID(), itemID);
       }
       return result;
     } finally {
@@ -161,50 +242,274 @@ public final class MemoryDiffStorage implements DiffStorage {
     }
   }
 
+  @Override
+  public void getDiffs(Object userID,
+                       Object itemID,
+                       Preference[] prefs,
+                       int[] counts,
+                       double[] averages,
+                       double[] stdDevs) {
+    try {
+      buildAverageDiffsLock.readLock().lock();
+      for (int i = 0; i < prefs.length; i++) {
+        RunningAverage average = getDiffUnlocked(prefs[i].getItem().getID(), itemID);
+        if (average == null) {
+          counts[i] = 0;
+        } else {
+          counts[i] = average.getCount();
+          averages[i] = average.getAverage();
+          if (stdDevs != null) {
+            stdDevs[i] = stdDevWeighted ?
+                         ((RunningAverageAndStdDev) average).getStandardDeviation() :
+                         Double.NaN;
+          }
+        }
+      }
+    } finally {
+      buildAverageDiffsLock.readLock().unlock();
+    }
+  }
+
   @Override
   public RunningAverage getAverageItemPref(Object itemID) {
-    return averageItemPref.get(itemID);
+    try {
+      buildAverageDiffsLock.readLock().lock();
+      Integer index = itemIndexes.get(itemID);
+      return index == null ? null : averageItemPref.get(index);
+    } finally {
+      buildAverageDiffsLock.readLock().unlock();
+    }
   }
 
   @Override
-  public void updateItemPref(Object itemID, double prefDelta, boolean remove) {
-    if (!remove && stdDevWeighted) {
-      throw new UnsupportedOperationException("Can't update only when stdDevWeighted is set");
+  public void updateItemPref(Object userID, Object itemID, double oldValue, double newValue)
+      throws TasteException {
+    if (Double.isNaN(oldValue) && Double.isNaN(newValue)) {
+      return;
     }
+    Preference[] prefs = dataModel.getUser(userID).getPreferencesAsArray();
     try {
-      buildAverageDiffsLock.readLock().lock();
-      for (Map.Entry<Object, FastMap<Object, RunningAverage>> entry : averageDiffs.entrySet()) {
-        boolean matchesItemID1 = itemID.equals(entry.getKey());
-        for (Map.Entry<Object, RunningAverage> entry2 : entry.getValue().entrySet()) {
-          RunningAverage average = entry2.getValue();
-          if (matchesItemID1) {
-            if (remove) {
-              average.removeDatum(prefDelta);
-            } else {
-              average.changeDatum(-prefDelta);
-            }
-          } else if (itemID.equals(entry2.getKey())) {
-            if (remove) {
-              average.removeDatum(-prefDelta);
-            } else {
-              average.changeDatum(prefDelta);
-            }
+      updateLock.lock();
+      // Readers don't lock out writers, so nothing they can reach is changed in place: a changed average is
+      // replaced by an updated copy, and a map that gains or loses an entry is replaced by an updated copy
+      Integer index = itemIndexes.get(itemID);
+      FastByIDMap<FastByIDMap<RunningAverage>> copiedRows = new FastByIDMap<FastByIDMap<RunningAverage>>();
+      List<Preference> toAdd = new ArrayList<Preference>();
+      for (Preference pref : prefs) {
+        Object otherItemID = pref.getItem().getID();
+        if (otherItemID.equals(itemID)) {
+          continue;
+        }
+        double otherValue = pref.getValue();
+        Integer otherIndex = itemIndexes.get(otherItemID);
+        if (index == null || otherIndex == null) {
+          if (Double.isNaN(oldValue)) {
+            toAdd.add(pref);
           }
+          continue;
+        }
+        // A pair's diff is stored once, under whichever item was seen first, so look in both directions
+        FastByIDMap<RunningAverage> itemDiffs = rowFor(index, copiedRows);
+        RunningAverage average = itemDiffs == null ? null : itemDiffs.get(otherIndex);
+        if (average != null) {
+          replaceDiff(index, otherIndex, updatedCopy(average, otherValue - oldValue, otherValue - newValue),
+                      copiedRows);
+          continue;
+        }
+        FastByIDMap<RunningAverage> otherItemDiffs = rowFor(otherIndex, copiedRows);
+        average = otherItemDiffs == null ? null : otherItemDiffs.get(index);
+        if (average != null) {
+          replaceDiff(otherIndex, index, updatedCopy(average, oldValue - otherValue, newValue - otherValue),
+                      copiedRows);
+        } else if (Double.isNaN(oldValue)) {
+          toAdd.add(pref);
         }
       }
-      RunningAverage itemAverage = averageItemPref.get(itemID);
-      if (itemAverage != null) {
-        itemAverage.changeDatum(prefDelta);
+      addDiffs(itemID, newValue, toAdd, copiedRows);
+      publishRows(copiedRows);
+
+      index = itemIndexes.get(itemID);
+      RunningAverage itemAverage = index == null ? null : averageItemPref.get(index);
+      if (itemAverage == null) {
+        if (!Double.isNaN(newValue)) {
+          itemAverage = buildRunningAverage();
+          itemAverage.addDatum(newValue);
+          FastByIDMap<RunningAverage> newAverageItemPref = averageItemPref.clone();
+          newAverageItemPref.put(indexFor(dataModel.getItem(itemID)), itemAverage);
+          averageItemPref = newAverageItemPref;
+        }
+      } else {
+        RunningAverage updated = updatedCopy(itemAverage, oldValue, newValue);
+        if (updated == null) {
+          FastByIDMap<RunningAverage> newAverageItemPref = averageItemPref.clone();
+          newAverageItemPref.remove(index);
+          averageItemPref = newAverageItemPref;
+        } else {
+          FastByIDMap<RunningAverage> currentAverageItemPref = averageItemPref;
+          currentAverageItemPref.put(index, updated);
+          // Writing the field again publishes the new average to readers that read the field after it
+          averageItemPref = currentAverageItemPref;
+        }
       }
     } finally {
-      buildAverageDiffsLock.readLock().unlock();
+      updateLock.unlock();
+    }
+  }
+
+  /**
+   * @return copy of an average with a change in one datum applied, where <code>NaN</code> means no datum, or
+   * <code>null</code> if the change takes away its last datum
+   */
+  private RunningAverage updatedCopy(RunningAverage average, double oldDatum, double newDatum) {
+    if (Double.isNaN(newDatum) && average.getCount() <= 1) {
+      return null;
+    }
+    RunningAverage copy = copyOf(average);
+    if (Double.isNaN(oldDatum)) {
+      copy.addDatum(newDatum);
+    } else if (Double.isNaN(newDatum)) {
+      copy.removeDatum(oldDatum);
+    } else if (stdDevWeighted) {
+      // Standard deviation can't be adjusted by a delta alone
+      copy.removeDatum(oldDatum);
+      copy.addDatum(newDatum);
+    } else {
+      copy.changeDatum(newDatum - oldDatum);
+    }
+    return copy;
+  }
+
+  private RunningAverage copyOf(RunningAverage average) {
+    if (stdDevWeighted) {
+      return compactAverages ?
+             new CompactRunningAverageAndStdDev((CompactRunningAverageAndStdDev) average) :
+             new FullRunningAverageAndStdDev((FullRunningAverageAndStdDev) average);
+    } else {
+      return compactAverages ?
+             new CompactRunningAverage((CompactRunningAverage) average) :
+             new FullRunningAverage((FullRunningAverage) average);
+    }
+  }
+
+  /**
+   * @return the not yet published copy of an item's diffs if there is one, else its published diffs, if any
+   */
+  private FastByIDMap<RunningAverage> rowFor(long index, FastByIDMap<FastByIDMap<RunningAverage>> copiedRows) {
+    FastByIDMap<RunningAverage> row = copiedRows.get(index);
+    return row == null ? averageDiffs.get(index) : row;
+  }
+
+  /**
+   * Puts an updated diff in place of the current one, or removes the diff if <code>updated</code> is
+   * <code>null</code>. Replacing an existing entry is a single reference write, but a removal is made to a copy of
+   * the diffs, which {@link #publishRows(FastByIDMap)} publishes.
+   */
+  private void replaceDiff(long index,
+                           long otherIndex,
+                           RunningAverage updated,
+                           FastByIDMap<FastByIDMap<RunningAverage>> copiedRows) {
+    FastByIDMap<RunningAverage> row = copiedRows.get(index);
+    if (updated != null) {
+      (row == null ? averageDiffs.get(index) : row).put(otherIndex, updated);
+      return;
+    }
+    if (row == null) {
+      row = averageDiffs.get(index).clone();
+      copiedRows.put(index, row);
+    }
+    row.remove(otherIndex);
+    numDiffs--;
+  }
+
+  private void addDiffs(Object itemID,
+                        double value,
+                        List<Preference> toAdd,
+                        FastByIDMap<FastByIDMap<RunningAverage>> copiedRows) throws TasteException {
+    if (toAdd.isEmpty() || numDiffs >= maxEntries) {
+      return;
+    }
+    Item item = dataModel.getItem(itemID);
+    int index = indexFor(item);
+    FastByIDMap<RunningAverage> itemDiffs = copiedRows.get(index);
+    if (itemDiffs == null) {
+      FastByIDMap<RunningAverage> published = averageDiffs.get(index);
+      itemDiffs = published == null ? new FastByIDMap<RunningAverage>() : published.clone();
+      copiedRows.put(index, itemDiffs);
+    }
+    FastSet<Item> newAllRecommendableItemIDs = allRecommendableItemIDs.clone();
+    newAllRecommendableItemIDs.add(item);
+    for (Preference pref : toAdd) {
+      if (numDiffs >= maxEntries) {
+        break;
+      }
+      RunningAverage average = buildRunningAverage();
+      average.addDatum(pref.getValue() - value);
+      Item otherItem = pref.getItem();
+      itemDiffs.put(indexFor(otherItem), average);
+      newAllRecommendableItemIDs.add(otherItem);
+      numDiffs++;
     }
+    allRecommendableItemIDs = newAllRecommendableItemIDs;
+  }
+
+  /**
+   * Publishes the copied diffs of each item. An item whose diffs are new or now empty changes the outer map, so
+   * then a copy of that is published instead.
+   */
+  private void publishRows(FastByIDMap<FastByIDMap<RunningAverage>> copiedRows) {
+    FastByIDMap<FastByIDMap<RunningAverage>> newAverageDiffs = averageDiffs;
+    LongPrimitiveIterator it = copiedRows.keySetIterator();
+    while (it.hasNext()) {
+      long index = it.nextLong();
+      if (copiedRows.get(index).isEmpty() || !newAverageDiffs.containsKey(index)) {
+        newAverageDiffs = newAverageDiffs.clone();
+        break;
+      }
+    }
+    it = copiedRows.keySetIterator();
+    while (it.hasNext()) {
+      long index = it.nextLong();
+      FastByIDMap<RunningAverage> row = copiedRows.get(index);
+      if (row.isEmpty()) {
+        newAverageDiffs.remove(index);
+      } else {
+        newAverageDiffs.put(index, row);
+      }
+    }
+    // Writing the field, even when it is unchanged, publishes the new diffs to readers that read it after this
+    averageDiffs = newAverageDiffs;
+  }
+
+  /**
+   * Gives an item the next index if it has none yet, publishing a copy of the indexes that includes it.
+   */
+  private int indexFor(Item item) {
+    Integer index = itemIndexes.get(item.getID());
+    if (index == null) {
+      index = indexedItems.size();
+      FastMap<Object, Integer> newItemIndexes = itemIndexes.clone();
+      newItemIndexes.put(item.getID(), index);
+      indexedItems.add(item);
+      itemIndexes = newItemIndexes;
+    }
+    return index;
+  }
+
+  @Override
+  public Lock getUpdateLock() {
+    return updateLock;
   }
 
   @Override
   public Set<Item> getRecommendableItems(Object userID) throws TasteException {
     User user = dataModel.getUser(userID);
-    Set<Item> result = allRecommendableItemIDs.clone();
+    Set<Item> result;
+    try {
+      buildAverageDiffsLock.readLock().lock();
+      result = allRecommendableItemIDs.clone();
+    } finally {
+      buildAverageDiffsLock.readLock().unlock();
+    }
     Iterator<Item> it = result.iterator();
     while (it.hasNext()) {
       if (user.getPreferenceFor(it.next().getID()) != null) {
@@ -217,95 +522,269 @@ public final class MemoryDiffStorage implements DiffStorage {
   private void buildAverageDiffs() throws TasteException {
     log.info("Building average diffs...");
     try {
-      buildAverageDiffsLock.writeLock().lock();
-      averageDiffs.clear();
-      long averageCount = 0L;
-      for (User user : dataModel.getUsers()) {
-        averageCount = processOneUser(averageCount, user);
+      // Keep writers out so that no update is lost, but let readers use the current diffs until the swap
+      updateLock.lock();
+      int numItems = dataModel.getNumItems();
+      FastMap<Object, Integer> newItemIndexes = new FastMap<Object, Integer>(numItems);
+      List<Item> newIndexedItems = new ArrayList<Item>(numItems);
+      for (Item item : dataModel.getItems()) {
+        newItemIndexes.put(item.getID(), newIndexedItems.size());
+        newIndexedItems.add(item);
+      }
+      AtomicLong averageCount = new AtomicLong();
+      DiffShard[] shards = new DiffShard[numBuildThreads];
+      for (int i = 0; i < numBuildThreads; i++) {
+        shards[i] = new DiffShard(i, numBuildThreads, newItemIndexes, averageCount);
+      }
+      if (numBuildThreads == 1) {
+        for (User user : dataModel.getUsers()) {
+          shards[0].processOneUser(user);
+        }
+        shards[0].pruneInconsequentialDiffs();
+      } else {
+        buildShards(shards);
       }
 
-      pruneInconsequentialDiffs();
-      updateAllRecommendableItems();
+      // Shards hold disjoint items, so merging them only moves each item's map, never an individual diff
+      int numItemsWithDiffs = 0;
+      long remaining = 0L;
+      for (DiffShard shard : shards) {
+        numItemsWithDiffs += shard.averageDiffs.size();
+        remaining += shard.remaining;
+      }
+      FastByIDMap<FastByIDMap<RunningAverage>> newAverageDiffs =
+          new FastByIDMap<FastByIDMap<RunningAverage>>(Math.max(numItemsWithDiffs, 1));
+      FastByIDMap<RunningAverage> newAverageItemPref = new FastByIDMap<RunningAverage>(numItems);
+      for (DiffShard shard : shards) {
+        putAll(shard.averageDiffs, newAverageDiffs);
+        putAll(shard.averageItemPref, newAverageItemPref);
+      }
+      FastSet<Item> newAllRecommendableItemIDs = buildAllRecommendableItems(newAverageDiffs, newIndexedItems);
 
+      try {
+        buildAverageDiffsLock.writeLock().lock();
+        itemIndexes = newItemIndexes;
+        indexedItems = newIndexedItems;
+        averageDiffs = newAverageDiffs;
+        averageItemPref = newAverageItemPref;
+        allRecommendableItemIDs = newAllRecommendableItemIDs;
+        numDiffs = remaining;
+      } finally {
+        buildAverageDiffsLock.writeLock().unlock();
+      }
     } finally {
-      buildAverageDiffsLock.writeLock().unlock();
+      updateLock.unlock();
     }
   }
 
-  private void pruneInconsequentialDiffs() {
-    // Go back and prune inconsequential diffs. "Inconsequential" means, here, only represented by one
-    // data point, so possibly unreliable
-    Iterator<FastMap<Object, RunningAverage>> it1 = averageDiffs.values().iterator();
-    while (it1.hasNext()) {
-      FastMap<Object, RunningAverage> map = it1.next();
-      Iterator<RunningAverage> it2 = map.values().iterator();
-      while (it2.hasNext()) {
-        RunningAverage average = it2.next();
-        if (average.getCount() <= 1) {
-          it2.remove();
+  /**
+   * Reads users once, in the calling thread, and hands each batch of them to every shard's thread.
+   */
+  private void buildShards(DiffShard[] shards) throws TasteException {
+    ExecutorService executor = Executors.newFixedThreadPool(numBuildThreads);
+    try {
+      List<BlockingQueue<List<User>>> queues = new ArrayList<BlockingQueue<List<User>>>(numBuildThreads);
+      List<Future<Object>> futures = new ArrayList<Future<Object>>(numBuildThreads);
+      for (final DiffShard shard : shards) {
+        final BlockingQueue<List<User>> queue = new ArrayBlockingQueue<List<User>>(BUILD_QUEUE_CAPACITY);
+        queues.add(queue);
+        futures.add(executor.submit(new Callable<Object>() {
+          @Override
+          public Object call() throws InterruptedException {
+            List<User> batch;
+            // An empty batch marks the end of the users
+            while (!(batch = queue.take()).isEmpty()) {
+              for (User user : batch) {
+                shard.processOneUser(user);
+              }
+            }
+            shard.pruneInconsequentialDiffs();
+            return null;
+          }
+        }));
+      }
+      List<User> batch = new ArrayList<User>(BUILD_BATCH_SIZE);
+      for (User user : dataModel.getUsers()) {
+        batch.add(user);
+        if (batch.size() == BUILD_BATCH_SIZE) {
+          handOff(batch, queues, futures);
+          batch = new ArrayList<User>(BUILD_BATCH_SIZE);
         }
       }
-      if (map.isEmpty()) {
-        it1.remove();
-      } else {
-        map.rehash();
+      if (!batch.isEmpty()) {
+        handOff(batch, queues, futures);
+      }
+      handOff(Collections.<User>emptyList(), queues, futures);
+      for (Future<Object> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new TasteException("Interrupted while building average diffs", ie);
+    } catch (ExecutionException ee) {
+      Throwable cause = ee.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
       }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new TasteException(cause);
+    } finally {
+      executor.shutdownNow();
     }
-    averageDiffs.rehash();
   }
 
-  private void updateAllRecommendableItems() throws TasteException {
-    FastSet<Object> ids = new FastSet<Object>(dataModel.getNumItems());
-    for (Map.Entry<Object, FastMap<Object, RunningAverage>> entry : averageDiffs.entrySet()) {
-      ids.add(entry.getKey());
-      for (Object id : entry.getValue().keySet()) {
-        ids.add(id);
+  private static void handOff(List<User> batch,
+                              List<BlockingQueue<List<User>>> queues,
+                              List<Future<Object>> futures) throws InterruptedException, ExecutionException {
+    for (int i = 0; i < queues.size(); i++) {
+      while (!queues.get(i).offer(batch, 1L, TimeUnit.SECONDS)) {
+        // A thread that has failed stops taking batches; surface its failure rather than wait forever
+        Future<Object> future = futures.get(i);
+        if (future.isDone()) {
+          future.get();
+        }
       }
     }
-    allRecommendableItemIDs.clear();
-    for (Object id : ids) {
-      allRecommendableItemIDs.add(dataModel.getItem(id));
+  }
+
+  private static <V> void putAll(FastByIDMap<V> from, FastByIDMap<V> to) {
+    LongPrimitiveIterator it = from.keySetIterator();
+    while (it.hasNext()) {
+      long key = it.nextLong();
+      to.put(key, from.get(key));
     }
-    allRecommendableItemIDs.rehash();
   }
 
-  private long processOneUser(long averageCount, User user) {
-    log.debug("Processing prefs for user {}", user);
-    // Save off prefs for the life of this loop iteration
-    Preference[] userPreferences = user.getPreferencesAsArray();
-    int length = userPreferences.length;
-    for (int i = 0; i < length; i++) {
-      Preference prefA = userPreferences[i];
-      double prefAValue = prefA.getValue();
-      Object itemIDA = prefA.getItem().getID();
-      FastMap<Object, RunningAverage> aMap = averageDiffs.get(itemIDA);
-      if (aMap == null) {
-        aMap = new FastMap<Object, RunningAverage>();
-        averageDiffs.put(itemIDA, aMap);
+  private static FastSet<Item> buildAllRecommendableItems(FastByIDMap<FastByIDMap<RunningAverage>> diffs,
+                                                          List<Item> items) {
+    boolean[] recommendable = new boolean[items.size()];
+    int numRecommendable = 0;
+    LongPrimitiveIterator it = diffs.keySetIterator();
+    while (it.hasNext()) {
+      long index = it.nextLong();
+      if (!recommendable[(int) index]) {
+        recommendable[(int) index] = true;
+        numRecommendable++;
       }
-      for (int j = i + 1; j < length; j++) {
-        // This is a performance-critical block
-        Preference prefB = userPreferences[j];
-        Object itemIDB = prefB.getItem().getID();
-        RunningAverage average = aMap.get(itemIDB);
-        if (average == null && averageCount < maxEntries) {
-          average = buildRunningAverage();
-          aMap.put(itemIDB, average);
-          averageCount++;
+      LongPrimitiveIterator it2 = diffs.get(index).keySetIterator();
+      while (it2.hasNext()) {
+        int otherIndex = (int) it2.nextLong();
+        if (!recommendable[otherIndex]) {
+          recommendable[otherIndex] = true;
+          numRecommendable++;
         }
-        if (average != null) {
-          average.addDatum(prefB.getValue() - prefAValue);
+      }
+    }
+    FastSet<Item> result = new FastSet<Item>(Math.max(numRecommendable, 1));
+    for (int i = 0; i < recommendable.length; i++) {
+      if (recommendable[i]) {
+        result.add(items.get(i));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Diffs and item averages for the items whose index falls in one shard. A diff is keyed by the first of its two
+   * items in a user's preferences, so each diff belongs to exactly one shard.
+   */
+  private final class DiffShard {
+
+    private final int shard;
+    private final int numShards;
+    /** Shared by all shards, and only read while building */
+    private final FastMap<Object, Integer> itemIndexes;
+    private final AtomicLong averageCount;
+    private final FastByIDMap<FastByIDMap<RunningAverage>> averageDiffs;
+    private final FastByIDMap<RunningAverage> averageItemPref;
+    private long remaining;
+
+    private DiffShard(int shard, int numShards, FastMap<Object, Integer> itemIndexes, AtomicLong averageCount) {
+      this.shard = shard;
+      this.numShards = numShards;
+      this.itemIndexes = itemIndexes;
+      this.averageCount = averageCount;
+      this.averageDiffs = new FastByIDMap<FastByIDMap<RunningAverage>>();
+      this.averageItemPref = new FastByIDMap<RunningAverage>();
+    }
+
+    private void processOneUser(User user) {
+      log.debug("Processing prefs for user {}", user);
+      // Save off prefs for the life of this loop iteration
+      Preference[] userPreferences = user.getPreferencesAsArray();
+      int length = userPreferences.length;
+      int[] indexes = new int[length];
+      for (int i = 0; i < length; i++) {
+        Integer index = itemIndexes.get(userPreferences[i].getItem().getID());
+        // An item added to the model since the index was built is left out, as it would be from the index
+        indexes[i] = index == null ? -1 : index;
+      }
+      for (int i = 0; i < length; i++) {
+        int indexA = indexes[i];
+        if (indexA < 0 || indexA % numShards != shard) {
+          continue;
+        }
+        double prefAValue = userPreferences[i].getValue();
+        FastByIDMap<RunningAverage> aMap = averageDiffs.get(indexA);
+        if (aMap == null) {
+          aMap = new FastByIDMap<RunningAverage>();
+          averageDiffs.put(indexA, aMap);
+        }
+        for (int j = i + 1; j < length; j++) {
+          // This is a performance-critical block
+          int indexB = indexes[j];
+          if (indexB < 0) {
+            continue;
+          }
+          RunningAverage average = aMap.get(indexB);
+          if (average == null && averageCount.get() < maxEntries) {
+            average = buildRunningAverage();
+            aMap.put(indexB, average);
+            averageCount.incrementAndGet();
+          }
+          if (average != null) {
+            average.addDatum(userPreferences[j].getValue() - prefAValue);
+          }
+
+        }
+        RunningAverage itemAverage = averageItemPref.get(indexA);
+        if (itemAverage == null) {
+          itemAverage = buildRunningAverage();
+          averageItemPref.put(indexA, itemAverage);
         }
+        itemAverage.addDatum(prefAValue);
+      }
+    }
 
+    private void pruneInconsequentialDiffs() {
+      // Go back and prune inconsequential diffs. "Inconsequential" means, here, only represented by one
+      // data point, so possibly unreliable
+      remaining = 0L;
+      Iterator<FastByIDMap<RunningAverage>> it1 = averageDiffs.values().iterator();
+      while (it1.hasNext()) {
+        FastByIDMap<RunningAverage> map = it1.next();
+        Iterator<RunningAverage> it2 = map.values().iterator();
+        while (it2.hasNext()) {
+          RunningAverage average = it2.next();
+          if (average.getCount() <= 1) {
+            it2.remove();
+          }
+        }
+        if (map.isEmpty()) {
+          it1.remove();
+        } else {
+          map.rehash();
+          remaining += map.size();
+        }
       }
-      RunningAverage itemAverage = averageItemPref.get(itemIDA);
-      if (itemAverage == null) {
-        itemAverage = buildRunningAverage();
-        averageItemPref.put(itemIDA, itemAverage);
+      // rehash() can't size an empty table, which a shard with no surviving diffs has
+      if (!averageDiffs.isEmpty()) {
+        averageDiffs.rehash();
       }
-      itemAverage.addDatum(prefAValue);
     }
-    return averageCount;
+
   }
 
   private RunningAverage buildRunningAverage() {
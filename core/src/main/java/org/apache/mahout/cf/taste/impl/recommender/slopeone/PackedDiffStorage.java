@@ -0,0 +1,536 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.recommender.slopeone;
+
+import org.apache.mahout.cf.taste.common.Refreshable;
+import org.apache.mahout.cf.taste.common.TasteException;
+import org.apache.mahout.cf.taste.common.Weighting;
+import org.apache.mahout.cf.taste.impl.common.FastByIDDoubleMap;
+import org.apache.mahout.cf.taste.impl.common.FastMap;
+import org.apache.mahout.cf.taste.impl.common.FastSet;
+import org.apache.mahout.cf.taste.impl.common.LongPrimitiveIterator;
+import org.apache.mahout.cf.taste.impl.common.RefreshHelper;
+import org.apache.mahout.cf.taste.impl.common.RunningAverage;
+import org.apache.mahout.cf.taste.impl.common.RunningAverageAndStdDev;
+import org.apache.mahout.cf.taste.model.DataModel;
+import org.apache.mahout.cf.taste.model.Item;
+import org.apache.mahout.cf.taste.model.Preference;
+import org.apache.mahout.cf.taste.model.User;
+import org.apache.mahout.cf.taste.recommender.slopeone.DiffStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * <p>A {@link DiffStorage} that, like {@link MemoryDiffStorage}, keeps item-item diffs in memory, but packs them
+ * into primitive arrays instead of one {@link RunningAverage} object per diff in nested maps. Each item gets an
+ * index, and only the diffs from an item to items with a greater index are stored, as a count, a sum and, when
+ * weighting by standard deviation, a sum of squares. They are laid out row by row, sorted by the other item's
+ * index, so a diff is found by binary search within its row. A diff takes 16 or 24 bytes this way, a fraction of
+ * what {@link MemoryDiffStorage} needs, so there is no limit on the number of diffs tracked.</p>
+ *
+ * <p>{@link #getDiffs(Object, Object, Preference[], int[], double[], double[])} reads the arrays directly and
+ * allocates nothing.</p>
+ *
+ * <p>Diffs are built in two passes over the users: the first finds which pairs are co-rated more than once, and
+ * the second sums up only those. Preference updates adjust existing diffs in place. A pair of items that was not
+ * co-rated at build time, or an item that did not exist then, is only picked up on the next
+ * {@link #refresh(Collection)}, which builds new arrays on the side while the old ones keep serving, holding
+ * {@link #getUpdateLock()} so that no change is both read by the build and applied to its result. Since a diff's
+ * count and sums must be read together, readers take a shared lock that updates hold exclusively.</p>
+ */
+public final class PackedDiffStorage implements DiffStorage {
+
+  private static final Logger log = LoggerFactory.getLogger(PackedDiffStorage.class);
+
+  private final DataModel dataModel;
+  private final boolean stdDevWeighted;
+  private volatile Diffs diffs;
+  /** Guards the counts and sums in {@link #diffs}, which updates change in place */
+  private final ReadWriteLock diffsLock;
+  private final Lock updateLock;
+  private final RefreshHelper refreshHelper;
+
+  /**
+   * @param dataModel
+   * @param stdDevWeighted see {@link SlopeOneRecommender}
+   * @throws IllegalArgumentException if <code>dataModel</code> is null
+   */
+  public PackedDiffStorage(DataModel dataModel, Weighting stdDevWeighted) throws TasteException {
+    if (dataModel == null) {
+      throw new IllegalArgumentException("dataModel is null");
+    }
+    this.dataModel = dataModel;
+    this.stdDevWeighted = stdDevWeighted == Weighting.WEIGHTED;
+    this.diffsLock = new ReentrantReadWriteLock();
+    this.updateLock = new ReentrantLock();
+    this.refreshHelper = new RefreshHelper(new Callable<Object>() {
+      @Override
+      public Object call() throws TasteException {
+        buildAverageDiffs();
+        return null;
+      }
+    });
+    refreshHelper.addDependency(dataModel);
+    buildAverageDiffs();
+  }
+
+  @Override
+  public RunningAverage getDiff(Object itemID1, Object itemID2) {
+    Diffs diffs = this.diffs;
+    Integer index1 = diffs.indexes.get(itemID1);
+    Integer index2 = diffs.indexes.get(itemID2);
+    if (index1 == null || index2 == null) {
+      return null;
+    }
+    int position = diffs.find(index1, index2);
+    if (position < 0) {
+      return null;
+    }
+    try {
+      diffsLock.readLock().lock();
+      int count = diffs.counts[position];
+      if (count == 0) {
+        return null;
+      }
+      double average = diffs.sums[position] / (double) count;
+      return new FixedRunningAverageAndStdDev(count,
+                                              index1 < index2 ? average : -average,
+                                              diffs.getStandardDeviation(position, average));
+    } finally {
+      diffsLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public RunningAverage[] getDiffs(Object userID, Object itemID, Preference[] prefs) {
+    int size = prefs.length;
+    int[] counts = new int[size];
+    double[] averages = new double[size];
+    double[] stdDevs = new double[size];
+    getDiffs(userID, itemID, prefs, counts, averages, stdDevs);
+    RunningAverage[] result = new RunningAverage[size];
+    for (int i = 0; i < size; i++) {
+      if (counts[i] > 0) {
+        result[i] = new FixedRunningAverageAndStdDev(counts[i], averages[i], stdDevs[i]);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public void getDiffs(Object userID,
+                       Object itemID,
+                       Preference[] prefs,
+                       int[] counts,
+                       double[] averages,
+                       double[] stdDevs) {
+    Diffs diffs = this.diffs;
+    Integer index = diffs.indexes.get(itemID);
+    try {
+      diffsLock.readLock().lock();
+      for (int i = 0; i < prefs.length; i++) {
+        Integer otherIndex = index == null ? null : diffs.indexes.get(prefs[i].getItem().getID());
+        int position = otherIndex == null ? -1 : diffs.find(otherIndex, index);
+        int count = position < 0 ? 0 : diffs.counts[position];
+        counts[i] = count;
+        if (count > 0) {
+          // Stored diffs run from the lower index to the higher one; here they must run from the user's item
+          double average = diffs.sums[position] / (double) count;
+          averages[i] = otherIndex < index ? average : -average;
+          if (stdDevs != null) {
+            stdDevs[i] = diffs.getStandardDeviation(position, average);
+          }
+        }
+      }
+    } finally {
+      diffsLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public RunningAverage getAverageItemPref(Object itemID) {
+    Diffs diffs = this.diffs;
+    Integer index = diffs.indexes.get(itemID);
+    if (index == null) {
+      return null;
+    }
+    try {
+      diffsLock.readLock().lock();
+      int count = diffs.itemCounts[index];
+      return count == 0 ?
+             null :
+             new FixedRunningAverageAndStdDev(count, diffs.itemSums[index] / (double) count, Double.NaN);
+    } finally {
+      diffsLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void updateItemPref(Object userID, Object itemID, double oldValue, double newValue)
+      throws TasteException {
+    if (Double.isNaN(oldValue) && Double.isNaN(newValue)) {
+      return;
+    }
+    Preference[] prefs = dataModel.getUser(userID).getPreferencesAsArray();
+    try {
+      updateLock.lock();
+      Diffs diffs = this.diffs;
+      Integer index = diffs.indexes.get(itemID);
+      if (index == null) {
+        // A new item; it will only be known after the next refresh
+        return;
+      }
+      try {
+        diffsLock.writeLock().lock();
+        for (Preference pref : prefs) {
+          Integer otherIndex = diffs.indexes.get(pref.getItem().getID());
+          if (otherIndex == null || otherIndex.equals(index)) {
+            continue;
+          }
+          int position = diffs.find(index, otherIndex);
+          if (position >= 0) {
+            double otherValue = pref.getValue();
+            if (index < otherIndex) {
+              diffs.update(position, otherValue - oldValue, otherValue - newValue);
+            } else {
+              diffs.update(position, oldValue - otherValue, newValue - otherValue);
+            }
+          }
+        }
+        if (Double.isNaN(oldValue)) {
+          diffs.itemCounts[index]++;
+          diffs.itemSums[index] += newValue;
+        } else if (Double.isNaN(newValue)) {
+          diffs.itemCounts[index]--;
+          diffs.itemSums[index] -= oldValue;
+        } else {
+          diffs.itemSums[index] += newValue - oldValue;
+        }
+      } finally {
+        diffsLock.writeLock().unlock();
+      }
+    } finally {
+      updateLock.unlock();
+    }
+  }
+
+  @Override
+  public Lock getUpdateLock() {
+    return updateLock;
+  }
+
+  @Override
+  public Set<Item> getRecommendableItems(Object userID) throws TasteException {
+    User user = dataModel.getUser(userID);
+    Item[] recommendableItems = diffs.recommendableItems;
+    Set<Item> result = new FastSet<Item>(recommendableItems.length);
+    for (Item item : recommendableItems) {
+      if (user.getPreferenceFor(item.getID()) == null) {
+        result.add(item);
+      }
+    }
+    return result;
+  }
+
+  private void buildAverageDiffs() throws TasteException {
+    log.info("Building average diffs...");
+    try {
+      // Keep writers out so that no update is lost, but let readers use the current diffs until the swap
+      updateLock.lock();
+      diffs = new Diffs(dataModel, stdDevWeighted);
+    } finally {
+      updateLock.unlock();
+    }
+  }
+
+  @Override
+  public void refresh(Collection<Refreshable> alreadyRefreshed) {
+    refreshHelper.refresh(alreadyRefreshed);
+  }
+
+  @Override
+  public String toString() {
+    return "PackedDiffStorage";
+  }
+
+  /**
+   * Everything built from one pass of the {@link DataModel}. Only the counts and sums change afterwards.
+   */
+  private static final class Diffs {
+
+    private final FastMap<Object, Integer> indexes;
+    private final Item[] recommendableItems;
+    /** Diffs from item i to items with greater indexes are at positions rowStarts[i] to rowStarts[i+1] */
+    private final int[] rowStarts;
+    /** Index of the other item for each diff, ascending within each row */
+    private final int[] others;
+    private final int[] counts;
+    /** Sum of the other item's preference minus this item's preference */
+    private final double[] sums;
+    /** Sum of squares of the same, or <code>null</code> if standard deviation isn't needed */
+    private final double[] sumSquares;
+    private final int[] itemCounts;
+    private final double[] itemSums;
+
+    private Diffs(DataModel dataModel, boolean stdDevWeighted) throws TasteException {
+      int numItems = dataModel.getNumItems();
+      indexes = new FastMap<Object, Integer>(numItems);
+      Item[] items = new Item[numItems];
+      for (Item item : dataModel.getItems()) {
+        items[indexes.size()] = item;
+        indexes.put(item.getID(), indexes.size());
+      }
+
+      // First pass: count how often each pair is co-rated, per row
+      FastByIDDoubleMap[] pairCounts = new FastByIDDoubleMap[numItems];
+      itemCounts = new int[numItems];
+      itemSums = new double[numItems];
+      for (User user : dataModel.getUsers()) {
+        int[] userIndexes = getSortedIndexes(user.getPreferencesAsArray(), null);
+        int length = userIndexes.length;
+        for (int i = 0; i < length; i++) {
+          int a = userIndexes[i];
+          FastByIDDoubleMap row = pairCounts[a];
+          if (row == null && i + 1 < length) {
+            row = new FastByIDDoubleMap();
+            pairCounts[a] = row;
+          }
+          for (int j = i + 1; j < length; j++) {
+            double count = row.get(userIndexes[j]);
+            row.put(userIndexes[j], Double.isNaN(count) ? 1.0 : count + 1.0);
+          }
+        }
+      }
+
+      // Keep only pairs co-rated more than once, as a single data point is possibly unreliable
+      rowStarts = new int[numItems + 1];
+      long numDiffs = 0L;
+      boolean[] recommendable = new boolean[numItems];
+      int[][] rows = new int[numItems][];
+      for (int a = 0; a < numItems; a++) {
+        rowStarts[a] = (int) numDiffs;
+        FastByIDDoubleMap row = pairCounts[a];
+        if (row == null) {
+          continue;
+        }
+        int[] rowOthers = new int[row.size()];
+        int rowLength = 0;
+        LongPrimitiveIterator it = row.keySetIterator();
+        while (it.hasNext()) {
+          long b = it.nextLong();
+          if (row.get(b) > 1.0) {
+            rowOthers[rowLength++] = (int) b;
+            recommendable[(int) b] = true;
+          }
+        }
+        pairCounts[a] = null;
+        if (rowLength > 0) {
+          recommendable[a] = true;
+          Arrays.sort(rowOthers, 0, rowLength);
+          rows[a] = rowLength == rowOthers.length ? rowOthers : Arrays.copyOf(rowOthers, rowLength);
+          numDiffs += rowLength;
+          if (numDiffs > Integer.MAX_VALUE) {
+            throw new TasteException("Too many item-item diffs to pack: more than " + Integer.MAX_VALUE);
+          }
+        }
+      }
+      rowStarts[numItems] = (int) numDiffs;
+      others = new int[(int) numDiffs];
+      for (int a = 0; a < numItems; a++) {
+        if (rows[a] != null) {
+          System.arraycopy(rows[a], 0, others, rowStarts[a], rows[a].length);
+          rows[a] = null;
+        }
+      }
+      counts = new int[(int) numDiffs];
+      sums = new double[(int) numDiffs];
+      sumSquares = stdDevWeighted ? new double[(int) numDiffs] : null;
+
+      // Second pass: accumulate the diffs that were kept
+      for (User user : dataModel.getUsers()) {
+        Preference[] prefs = user.getPreferencesAsArray();
+        double[] values = new double[prefs.length];
+        int[] userIndexes = getSortedIndexes(prefs, values);
+        int length = userIndexes.length;
+        for (int i = 0; i < length; i++) {
+          int a = userIndexes[i];
+          itemCounts[a]++;
+          itemSums[a] += values[i];
+          for (int j = i + 1; j < length; j++) {
+            // This is a performance-critical block
+            int position = find(a, userIndexes[j]);
+            if (position >= 0) {
+              double diff = values[j] - values[i];
+              counts[position]++;
+              sums[position] += diff;
+              if (sumSquares != null) {
+                sumSquares[position] += diff * diff;
+              }
+            }
+          }
+        }
+      }
+
+      int numRecommendable = 0;
+      for (boolean isRecommendable : recommendable) {
+        if (isRecommendable) {
+          numRecommendable++;
+        }
+      }
+      recommendableItems = new Item[numRecommendable];
+      numRecommendable = 0;
+      for (int a = 0; a < numItems; a++) {
+        if (recommendable[a]) {
+          recommendableItems[numRecommendable++] = items[a];
+        }
+      }
+      log.info("Packed {} item-item diffs", numDiffs);
+    }
+
+    /**
+     * @return the user's item indexes in ascending order, leaving out items added to the model since the indexes
+     *  were made; if <code>values</code> is not null, it receives the matching preference values
+     */
+    private int[] getSortedIndexes(Preference[] prefs, double[] values) {
+      long[] packed = new long[prefs.length];
+      int length = 0;
+      for (int i = 0; i < prefs.length; i++) {
+        Integer index = indexes.get(prefs[i].getItem().getID());
+        if (index != null) {
+          // Index in the high bits, position in the low bits, so sorting orders by index and keeps the position
+          packed[length++] = ((long) index << 32) | (long) i;
+        }
+      }
+      Arrays.sort(packed, 0, length);
+      int[] result = new int[length];
+      for (int i = 0; i < length; i++) {
+        result[i] = (int) (packed[i] >>> 32);
+        if (values != null) {
+          values[i] = prefs[(int) packed[i]].getValue();
+        }
+      }
+      return result;
+    }
+
+    /**
+     * @return position of the diff between the two items, in either order, or a negative value if there is none
+     */
+    private int find(int index1, int index2) {
+      if (index1 == index2) {
+        return -1;
+      }
+      int row = Math.min(index1, index2);
+      return Arrays.binarySearch(others, rowStarts[row], rowStarts[row + 1], Math.max(index1, index2));
+    }
+
+    private double getStandardDeviation(int position, double average) {
+      int count = counts[position];
+      if (sumSquares == null || count <= 1) {
+        return Double.NaN;
+      }
+      // The sign of the average doesn't matter here
+      double variance = (sumSquares[position] - average * average * (double) count) / (double) (count - 1);
+      return Math.sqrt(Math.max(0.0, variance));
+    }
+
+    /**
+     * Applies a change in one datum, where <code>NaN</code> means no datum, to the diff at the given position.
+     */
+    private void update(int position, double oldDiff, double newDiff) {
+      if (Double.isNaN(oldDiff)) {
+        counts[position]++;
+        sums[position] += newDiff;
+        if (sumSquares != null) {
+          sumSquares[position] += newDiff * newDiff;
+        }
+      } else if (Double.isNaN(newDiff)) {
+        if (--counts[position] == 0) {
+          sums[position] = 0.0;
+          if (sumSquares != null) {
+            sumSquares[position] = 0.0;
+          }
+        } else {
+          sums[position] -= oldDiff;
+          if (sumSquares != null) {
+            sumSquares[position] -= oldDiff * oldDiff;
+          }
+        }
+      } else {
+        sums[position] += newDiff - oldDiff;
+        if (sumSquares != null) {
+          sumSquares[position] += newDiff * newDiff - oldDiff * oldDiff;
+        }
+      }
+    }
+
+  }
+
+  private static final class FixedRunningAverageAndStdDev implements RunningAverageAndStdDev {
+
+    private final int count;
+    private final double average;
+    private final double stdDev;
+
+    private FixedRunningAverageAndStdDev(int count, double average, double stdDev) {
+      this.count = count;
+      this.average = average;
+      this.stdDev = stdDev;
+    }
+
+    @Override
+    public void addDatum(double datum) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void removeDatum(double datum) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void changeDatum(double delta) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int getCount() {
+      return count;
+    }
+
+    @Override
+    public double getAverage() {
+      return average;
+    }
+
+    @Override
+    public double getStandardDeviation() {
+      return stdDev;
+    }
+
+  }
+
+}
@@ -23,13 +23,14 @@ import org.apache.mahout.cf.taste.common.Weighting;
 import org.apache.mahout.cf.taste.common.NoSuchUserException;
 import org.apache.mahout.cf.taste.impl.common.RefreshHelper;
 import org.apache.mahout.cf.taste.impl.common.RunningAverage;
-import org.apache.mahout.cf.taste.impl.common.RunningAverageAndStdDev;
 import org.apache.mahout.cf.taste.impl.recommender.AbstractRecommender;
+import org.apache.mahout.cf.taste.impl.recommender.PreferredItemsNeighborhoodCandidateItemsStrategy;
 import org.apache.mahout.cf.taste.impl.recommender.TopItems;
 import org.apache.mahout.cf.taste.model.DataModel;
 import org.apache.mahout.cf.taste.model.Item;
 import org.apache.mahout.cf.taste.model.Preference;
 import org.apache.mahout.cf.taste.model.User;
+import org.apache.mahout.cf.taste.recommender.CandidateItemsStrategy;
 import org.apache.mahout.cf.taste.recommender.RecommendedItem;
 import org.apache.mahout.cf.taste.recommender.Rescorer;
 import org.apache.mahout.cf.taste.recommender.slopeone.DiffStorage;
@@ -39,6 +40,7 @@ import org.slf4j.LoggerFactory;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
 
 /**
  * <p>A basic "slope one" recommender. (See an <a href="http://www.daniel-lemire.com/fr/abstracts/SDM2005.html">
@@ -55,9 +57,11 @@ public final class SlopeOneRecommender extends AbstractRecommender {
   private final boolean weighted;
   private final boolean stdDevWeighted;
   private final DiffStorage diffStorage;
+  private final CandidateItemsStrategy candidateItemsStrategy;
 
   /**
-   * <p>Creates a default (weighted) {@link SlopeOneRecommender} based on the given {@link DataModel}.</p>
+   * <p>Creates a default (weighted) {@link SlopeOneRecommender} based on the given {@link DataModel}. It only
+   * considers items which co-occur with the user's items as recommendations.</p>
    *
    * @param dataModel data model
    */
@@ -65,7 +69,8 @@ public final class SlopeOneRecommender extends AbstractRecommender {
     this(dataModel,
          Weighting.WEIGHTED,
          Weighting.WEIGHTED,
-         new MemoryDiffStorage(dataModel, Weighting.WEIGHTED, false, Long.MAX_VALUE));
+         new MemoryDiffStorage(dataModel, Weighting.WEIGHTED, false, Long.MAX_VALUE),
+         new PreferredItemsNeighborhoodCandidateItemsStrategy());
   }
 
   /**
@@ -85,6 +90,21 @@ public final class SlopeOneRecommender extends AbstractRecommender {
                              Weighting weighting,
                              Weighting stdDevWeighting,
                              DiffStorage diffStorage) {
+    this(dataModel, weighting, stdDevWeighting, diffStorage, null);
+  }
+
+  /**
+   * <p>As above, but only considers the {@link Item}s returned by the given {@link CandidateItemsStrategy}
+   * as recommendations. When it is <code>null</code>, the candidates are the items the {@link DiffStorage}
+   * reports as recommendable.</p>
+   *
+   * @see PreferredItemsNeighborhoodCandidateItemsStrategy
+   */
+  public SlopeOneRecommender(DataModel dataModel,
+                             Weighting weighting,
+                             Weighting stdDevWeighting,
+                             DiffStorage diffStorage,
+                             CandidateItemsStrategy candidateItemsStrategy) {
     super(dataModel);
     if (stdDevWeighting == Weighting.WEIGHTED && weighting == Weighting.UNWEIGHTED) {
       throw new IllegalArgumentException("weighted required when stdDevWeighted is set");
@@ -95,6 +115,7 @@ public final class SlopeOneRecommender extends AbstractRecommender {
     this.weighted = weighting == Weighting.WEIGHTED;
     this.stdDevWeighted = stdDevWeighting == Weighting.WEIGHTED;
     this.diffStorage = diffStorage;
+    this.candidateItemsStrategy = candidateItemsStrategy;
   }
 
   @Override
@@ -110,7 +131,9 @@ public final class SlopeOneRecommender extends AbstractRecommender {
     log.debug("Recommending items for user ID '{}'", userID);
 
     User theUser = getDataModel().getUser(userID);
-    Set<Item> allItems = diffStorage.getRecommendableItems(userID);
+    Set<Item> allItems = candidateItemsStrategy == null ?
+        diffStorage.getRecommendableItems(userID) :
+        candidateItemsStrategy.getCandidateItems(theUser, getDataModel());
 
     TopItems.Estimator<Item> estimator = new Estimator(theUser);
 
@@ -135,16 +158,20 @@ public final class SlopeOneRecommender extends AbstractRecommender {
     double count = 0.0;
     double totalPreference = 0.0;
     Preference[] prefs = theUser.getPreferencesAsArray();
-    RunningAverage[] averages = diffStorage.getDiffs(theUser.getID(), itemID, prefs);
-    for (int i = 0; i < prefs.length; i++) {
-      RunningAverage averageDiff = averages[i];
-      if (averageDiff != null) {
+    int size = prefs.length;
+    int[] diffCounts = new int[size];
+    double[] averageDiffs = new double[size];
+    double[] stdDevs = stdDevWeighted ? new double[size] : null;
+    diffStorage.getDiffs(theUser.getID(), itemID, prefs, diffCounts, averageDiffs, stdDevs);
+    for (int i = 0; i < size; i++) {
+      int diffCount = diffCounts[i];
+      if (diffCount > 0) {
         Preference pref = prefs[i];
-        double averageDiffValue = averageDiff.getAverage();
+        double averageDiffValue = averageDiffs[i];
         if (weighted) {
-          double weight = (double) averageDiff.getCount();
+          double weight = (double) diffCount;
           if (stdDevWeighted) {
-            double stdev = ((RunningAverageAndStdDev) averageDiff).getStandardDeviation();
+            double stdev = stdDevs[i];
             if (!Double.isNaN(stdev)) {
               weight /= 1.0 + stdev;
             }
@@ -173,26 +200,39 @@ public final class SlopeOneRecommender extends AbstractRecommender {
   @Override
   public void setPreference(Object userID, Object itemID, double value) throws TasteException {
     DataModel dataModel = getDataModel();
-    double prefDelta;
+    // Keep a rebuild of the diffs from reading the new value and then having it applied again
+    Lock updateLock = diffStorage.getUpdateLock();
     try {
-      User theUser = dataModel.getUser(userID);
-      Preference oldPref = theUser.getPreferenceFor(itemID);
-      prefDelta = oldPref == null ? value : value - oldPref.getValue();
-    } catch (NoSuchUserException nsee) {
-      prefDelta = value;
+      updateLock.lock();
+      double oldValue;
+      try {
+        User theUser = dataModel.getUser(userID);
+        Preference oldPref = theUser.getPreferenceFor(itemID);
+        oldValue = oldPref == null ? Double.NaN : oldPref.getValue();
+      } catch (NoSuchUserException nsee) {
+        oldValue = Double.NaN;
+      }
+      super.setPreference(userID, itemID, value);
+      diffStorage.updateItemPref(userID, itemID, oldValue, value);
+    } finally {
+      updateLock.unlock();
     }
-    super.setPreference(userID, itemID, value);
-    diffStorage.updateItemPref(itemID, prefDelta, false);
   }
 
   @Override
   public void removePreference(Object userID, Object itemID) throws TasteException {
     DataModel dataModel = getDataModel();
-    User theUser = dataModel.getUser(userID);
-    Preference oldPref = theUser.getPreferenceFor(itemID);
-    super.removePreference(userID, itemID);
-    if (oldPref != null) {
-      diffStorage.updateItemPref(itemID, oldPref.getValue(), true);
+    Lock updateLock = diffStorage.getUpdateLock();
+    try {
+      updateLock.lock();
+      User theUser = dataModel.getUser(userID);
+      Preference oldPref = theUser.getPreferenceFor(itemID);
+      super.removePreference(userID, itemID);
+      if (oldPref != null) {
+        diffStorage.updateItemPref(userID, itemID, oldPref.getValue(), Double.NaN);
+      }
+    } finally {
+      updateLock.unlock();
     }
   }
 
@@ -35,9 +35,12 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * <p>A  {@link DiffStorage} which stores diffs in a database. Database-specific implementations subclass
@@ -67,6 +70,8 @@ public abstract class AbstractJDBCDiffStorage implements DiffStorage {
   private final String createDiffsSQL;
   private final String diffsExistSQL;
   private final int minDiffCount;
+  /** Held while the diffs are recomputed from the preference table */
+  private final Lock updateLock;
   private final RefreshHelper refreshHelper;
 
   protected AbstractJDBCDiffStorage(JDBCDataModel dataModel,
@@ -98,6 +103,7 @@ public abstract class AbstractJDBCDiffStorage implements DiffStorage {
     this.createDiffsSQL = createDiffsSQL;
     this.diffsExistSQL = diffsExistSQL;
     this.minDiffCount = minDiffCount;
+    this.updateLock = new ReentrantLock();
     this.refreshHelper = new RefreshHelper(new Callable<Object>() {
       @Override
       public Object call() throws TasteException {
@@ -141,7 +147,29 @@ public abstract class AbstractJDBCDiffStorage implements DiffStorage {
   public RunningAverage[] getDiffs(Object userID, Object itemID, Preference[] prefs)
           throws TasteException {
     int size = prefs.length;
+    int[] counts = new int[size];
+    double[] averages = new double[size];
+    getDiffs(userID, itemID, prefs, counts, averages, null);
     RunningAverage[] result = new RunningAverage[size];
+    for (int i = 0; i < size; i++) {
+      if (counts[i] > 0) {
+        result[i] = new FixedRunningAverage(counts[i], averages[i]);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public void getDiffs(Object userID,
+                       Object itemID,
+                       Preference[] prefs,
+                       int[] counts,
+                       double[] averages,
+                       double[] stdDevs) throws TasteException {
+    Arrays.fill(counts, 0, prefs.length, 0);
+    if (stdDevs != null) {
+      Arrays.fill(stdDevs, 0, prefs.length, Double.NaN);
+    }
     Connection conn = null;
     PreparedStatement stmt = null;
     ResultSet rs = null;
@@ -153,16 +181,17 @@ public abstract class AbstractJDBCDiffStorage implements DiffStorage {
       log.debug("Executing SQL query: {}", getDiffsSQL);
       rs = stmt.executeQuery();
       // We should have up to one result for each Preference in prefs
-      // They are both ordered by item. Step through and create a RunningAverage[]
-      // with nulls for Preferences that have no corresponding result row
+      // They are both ordered by item. Step through and leave a count of 0
+      // for Preferences that have no corresponding result row
       int i = 0;
       while (rs.next()) {
         String nextResultItemID = rs.getString(3);
         while (!prefs[i].getItem().getID().equals(nextResultItemID)) {
           i++;
-          // result[i] is null for these values of i
+          // counts[i] is 0 for these values of i
         }
-        result[i] = new FixedRunningAverage(rs.getInt(1), rs.getDouble(2));
+        counts[i] = rs.getInt(1);
+        averages[i] = rs.getDouble(2);
         i++;
       }
     } catch (SQLException sqle) {
@@ -171,7 +200,6 @@ public abstract class AbstractJDBCDiffStorage implements DiffStorage {
     } finally {
       IOUtils.quietClose(rs, stmt, conn);
     }
-    return result;
   }
 
   @Override
@@ -200,11 +228,25 @@ public abstract class AbstractJDBCDiffStorage implements DiffStorage {
     }
   }
 
+  /**
+   * <p>Updates the diffs of every pair involving the item in SQL; the user is not taken into account. A new
+   * preference is treated as a change from 0.</p>
+   */
   @Override
-  public void updateItemPref(Object itemID, double prefDelta, boolean remove)
+  public void updateItemPref(Object userID, Object itemID, double oldValue, double newValue)
           throws TasteException {
+    boolean remove = Double.isNaN(newValue);
+    double prefDelta;
+    if (remove) {
+      prefDelta = oldValue;
+    } else if (Double.isNaN(oldValue)) {
+      prefDelta = newValue;
+    } else {
+      prefDelta = newValue - oldValue;
+    }
     Connection conn = null;
     try {
+      updateLock.lock();
       conn = dataSource.getConnection();
       if (remove) {
         doPartialUpdate(removeDiffSQLs[0], itemID, prefDelta, conn);
@@ -218,9 +260,15 @@ public abstract class AbstractJDBCDiffStorage implements DiffStorage {
       throw new TasteException(sqle);
     } finally {
       IOUtils.quietClose(conn);
+      updateLock.unlock();
     }
   }
 
+  @Override
+  public Lock getUpdateLock() {
+    return updateLock;
+  }
+
   private static void doPartialUpdate(String sql, Object itemID, double prefDelta, Connection conn)
       throws SQLException {
     PreparedStatement stmt = conn.prepareStatement(sql);
@@ -263,6 +311,8 @@ public abstract class AbstractJDBCDiffStorage implements DiffStorage {
   private void buildAverageDiffs() throws TasteException {
     Connection conn = null;
     try {
+      // Keep out updates, which would otherwise be applied on top of diffs that already include them
+      updateLock.lock();
       conn = dataSource.getConnection();
       PreparedStatement stmt = null;
       try {
@@ -285,6 +335,7 @@ public abstract class AbstractJDBCDiffStorage implements DiffStorage {
       throw new TasteException(sqle);
     } finally {
       IOUtils.quietClose(conn);
+      updateLock.unlock();
     }
   }
 
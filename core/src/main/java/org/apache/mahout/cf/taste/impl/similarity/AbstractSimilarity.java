@@ -24,6 +24,8 @@ import org.apache.mahout.cf.taste.similarity.ItemSimilarity;
 import org.apache.mahout.cf.taste.similarity.PreferenceInferrer;
 import org.apache.mahout.cf.taste.similarity.UserSimilarity;
 import org.apache.mahout.cf.taste.impl.common.RefreshHelper;
+import org.apache.mahout.cf.taste.impl.model.CompactItem;
+import org.apache.mahout.cf.taste.impl.model.CompactUser;
 import org.apache.mahout.cf.taste.model.DataModel;
 import org.apache.mahout.cf.taste.model.Item;
 import org.apache.mahout.cf.taste.model.Preference;
@@ -150,6 +152,11 @@ abstract class AbstractSimilarity implements UserSimilarity, ItemSimilarity {
       throw new IllegalArgumentException("user1 or user2 is null");
     }
 
+    if (inferrer == null && prefTransform == null && user1 instanceof CompactUser && user2 instanceof CompactUser
+        && ((CompactUser) user1).belongsTo(dataModel) && ((CompactUser) user2).belongsTo(dataModel)) {
+      return compactUserSimilarity((CompactUser) user1, (CompactUser) user2);
+    }
+
     Preference[] xPrefs = user1.getPreferencesAsArray();
     Preference[] yPrefs = user2.getPreferencesAsArray();
 
@@ -228,18 +235,7 @@ abstract class AbstractSimilarity implements UserSimilarity, ItemSimilarity {
       }
     }
 
-    // "Center" the data. If my math is correct, this'll do it.
-    double n = (double) count;
-    double meanX = sumX / n;
-    double meanY = sumY / n;
-    // double centeredSumXY = sumXY - meanY * sumX - meanX * sumY + n * meanX * meanY;
-    double centeredSumXY = sumXY - meanY * sumX;
-    // double centeredSumX2 = sumX2 - 2.0 * meanX * sumX + n * meanX * meanX;
-    double centeredSumX2 = sumX2 - meanX * sumX;
-    // double centeredSumY2 = sumY2 - 2.0 * meanY * sumY + n * meanY * meanY;
-    double centeredSumY2 = sumY2 - meanY * sumY;
-
-    double result = computeResult(count, centeredSumXY, centeredSumX2, centeredSumY2, sumXYdiff2);
+    double result = computeCenteredResult(count, sumX, sumX2, sumY, sumY2, sumXY, sumXYdiff2);
 
     if (similarityTransform != null) {
       result = similarityTransform.transformSimilarity(user1, user2, result);
@@ -258,6 +254,11 @@ abstract class AbstractSimilarity implements UserSimilarity, ItemSimilarity {
       throw new IllegalArgumentException("item1 or item2 is null");
     }
 
+    if (item1 instanceof CompactItem && item2 instanceof CompactItem
+        && ((CompactItem) item1).belongsTo(dataModel) && ((CompactItem) item2).belongsTo(dataModel)) {
+      return compactItemSimilarity((CompactItem) item1, (CompactItem) item2);
+    }
+
     Preference[] xPrefs = dataModel.getPreferencesForItemAsArray(item1.getID());
     Preference[] yPrefs = dataModel.getPreferencesForItemAsArray(item2.getID());
 
@@ -313,18 +314,116 @@ abstract class AbstractSimilarity implements UserSimilarity, ItemSimilarity {
       }
     }
 
-    // See comments above on these computations
-    double n = (double) count;
-    double meanX = sumX / n;
-    double meanY = sumY / n;
-    // double centeredSumXY = sumXY - meanY * sumX - meanX * sumY + n * meanX * meanY;
-    double centeredSumXY = sumXY - meanY * sumX;
-    // double centeredSumX2 = sumX2 - 2.0 * meanX * sumX + n * meanX * meanX;
-    double centeredSumX2 = sumX2 - meanX * sumX;
-    // double centeredSumY2 = sumY2 - 2.0 * meanY * sumY + n * meanY * meanY;
-    double centeredSumY2 = sumY2 - meanY * sumY;
+    double result = computeCenteredResult(count, sumX, sumX2, sumY, sumY2, sumXY, sumXYdiff2);
+
+    if (similarityTransform != null) {
+      result = similarityTransform.transformSimilarity(item1, item2, result);
+    }
+
+    if (!Double.isNaN(result)) {
+      result = normalizeWeightResult(result, count, cachedNumUsers);
+    }
+    return result;
+  }
+
+  /**
+   * <p>Computes the similarity of two users of a {@link org.apache.mahout.cf.taste.impl.model.CompactDataModel}
+   * like {@link #userSimilarity(User, User)} does without an inferrer or preference transform, but by merging
+   * their item indexes and values directly instead of going through {@link Preference} objects.</p>
+   */
+  private double compactUserSimilarity(CompactUser user1, CompactUser user2) throws TasteException {
+    int xLength = user1.getNumPreferences();
+    int yLength = user2.getNumPreferences();
+    if (xLength == 0 || yLength == 0) {
+      return Double.NaN;
+    }
+
+    double sumX = 0.0;
+    double sumX2 = 0.0;
+    double sumY = 0.0;
+    double sumY2 = 0.0;
+    double sumXY = 0.0;
+    double sumXYdiff2 = 0.0;
+    int count = 0;
+
+    int i = 0;
+    int j = 0;
+    while (i < xLength && j < yLength) {
+      int xIndex = user1.getItemIndex(i);
+      int yIndex = user2.getItemIndex(j);
+      if (xIndex < yIndex) {
+        i++;
+      } else if (xIndex > yIndex) {
+        j++;
+      } else {
+        double x = user1.getValue(i++);
+        double y = user2.getValue(j++);
+        sumXY += x * y;
+        sumX += x;
+        sumX2 += x * x;
+        sumY += y;
+        sumY2 += y * y;
+        double diff = x - y;
+        sumXYdiff2 += diff * diff;
+        count++;
+      }
+    }
+
+    double result = computeCenteredResult(count, sumX, sumX2, sumY, sumY2, sumXY, sumXYdiff2);
+
+    if (similarityTransform != null) {
+      result = similarityTransform.transformSimilarity(user1, user2, result);
+    }
+
+    if (!Double.isNaN(result)) {
+      result = normalizeWeightResult(result, count, cachedNumItems);
+    }
+    return result;
+  }
+
+  /**
+   * <p>The counterpart of {@link #compactUserSimilarity(CompactUser, CompactUser)} for
+   * {@link #itemSimilarity(Item, Item)}.</p>
+   */
+  private double compactItemSimilarity(CompactItem item1, CompactItem item2) throws TasteException {
+    int xLength = item1.getNumPreferences();
+    int yLength = item2.getNumPreferences();
+    if (xLength == 0 || yLength == 0) {
+      return Double.NaN;
+    }
+
+    double sumX = 0.0;
+    double sumX2 = 0.0;
+    double sumY = 0.0;
+    double sumY2 = 0.0;
+    double sumXY = 0.0;
+    double sumXYdiff2 = 0.0;
+    int count = 0;
+
+    int i = 0;
+    int j = 0;
+    while (i < xLength && j < yLength) {
+      int xIndex = item1.getUserIndex(i);
+      int yIndex = item2.getUserIndex(j);
+      if (xIndex < yIndex) {
+        i++;
+      } else if (xIndex > yIndex) {
+        j++;
+      } else {
+        double x = item1.getValue(i++);
+        double y = item2.getValue(j++);
+        sumXY += x * y;
+        sumX += x;
+        sumX2 += x * x;
+        sumY += y;
+        sumY2 += y * y;
+        double diff = x - y;
+        sumXYdiff2 += diff * diff;
+        count++;
+      }
+    }
 
-    double result = computeResult(count, centeredSumXY, centeredSumX2, centeredSumY2, sumXYdiff2);
+    double result = computeCenteredResult(count, sumX, sumX2, sumY, sumY2, sumXY, sumXYdiff2);
 
     if (similarityTransform != null) {
       result = similarityTransform.transformSimilarity(item1, item2, result);
@@ -336,6 +435,26 @@ abstract class AbstractSimilarity implements UserSimilarity, ItemSimilarity {
     return result;
   }
 
+  /**
+   * <p>"Centers" the sums computed over the users or items preferred by both, so that X and Y's mean are 0, and
+   * passes them to {@link #computeResult(int, double, double, double, double, double)}.</p>
+   */
+  private double computeCenteredResult(int count, double sumX, double sumX2, double sumY, double sumY2,
+                                       double sumXY, double sumXYdiff2) {
+    // If my math is correct, this'll do it.
+    double n = (double) count;
+    double meanX = sumX / n;
+    double meanY = sumY / n;
+    // double centeredSumXY = sumXY - meanY * sumX - meanX * sumY + n * meanX * meanY;
+    double centeredSumXY = sumXY - meanY * sumX;
+    // double centeredSumX2 = sumX2 - 2.0 * meanX * sumX + n * meanX * meanX;
+    double centeredSumX2 = sumX2 - meanX * sumX;
+    // double centeredSumY2 = sumY2 - 2.0 * meanY * sumY + n * meanY * meanY;
+    double centeredSumY2 = sumY2 - meanY * sumY;
+
+    return computeResult(count, centeredSumXY, centeredSumX2, centeredSumY2, sumXYdiff2);
+  }
+
   final double normalizeWeightResult(double result, int count, int num) {
     if (weighted) {
       double scaleFactor = 1.0 - (double) count / (double) (num + 1);
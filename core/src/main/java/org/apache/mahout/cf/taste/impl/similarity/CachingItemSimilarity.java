@@ -26,13 +26,17 @@ import org.apache.mahout.cf.taste.impl.common.RefreshHelper;
 import org.apache.mahout.cf.taste.impl.common.Retriever;
 import org.apache.mahout.cf.taste.model.DataModel;
 import org.apache.mahout.cf.taste.model.Item;
+import org.apache.mahout.cf.taste.model.PreferenceChangeListener;
 
+import java.util.Arrays;
 import java.util.Collection;
 
 /**
  * Caches the results from an underlying {@link org.apache.mahout.cf.taste.similarity.ItemSimilarity} implementation.
+ * When registered as a {@link PreferenceChangeListener}, it uncaches just the similarities of an item whose
+ * preferences change.
  */
-public final class CachingItemSimilarity implements ItemSimilarity {
+public final class CachingItemSimilarity implements ItemSimilarity, PreferenceChangeListener {
 
   private final ItemSimilarity similarity;
   private final Cache<Pair<Item, Item>, Double> similarityCache;
@@ -43,7 +47,9 @@ public final class CachingItemSimilarity implements ItemSimilarity {
     }
     this.similarity = similarity;
     int maxCacheSize = dataModel.getNumItems(); // just a dumb heuristic for sizing
-    this.similarityCache = new Cache<Pair<Item, Item>, Double>(new SimilarityRetriever(similarity), maxCacheSize);
+    this.similarityCache = new Cache<Pair<Item, Item>, Double>(new SimilarityRetriever(similarity),
+                                                           maxCacheSize,
+                                                           new ItemPairTagger());
   }
 
   @Override
@@ -54,6 +60,20 @@ public final class CachingItemSimilarity implements ItemSimilarity {
     return similarityCache.get(key);
   }
 
+  /**
+   * <p>Uncaches all similarities involving the given item.</p>
+   *
+   * @param itemID ID of item whose similarities should be uncached
+   */
+  public void clearCacheForItem(Object itemID) {
+    similarityCache.removeTagged(itemID);
+  }
+
+  @Override
+  public void preferenceChanged(Object userID, Object itemID) {
+    clearCacheForItem(itemID);
+  }
+
   @Override
   public void refresh(Collection<Refreshable> alreadyRefreshed) {
     similarityCache.clear();
@@ -61,6 +81,16 @@ public final class CachingItemSimilarity implements ItemSimilarity {
     RefreshHelper.maybeRefresh(alreadyRefreshed, similarity);
   }
 
+  /**
+   * Tags each cached similarity with the IDs of its two items.
+   */
+  private static final class ItemPairTagger implements Cache.Tagger<Pair<Item, Item>, Double> {
+    @Override
+    public Collection<?> getTags(Pair<Item, Item> pair, Double similarity) {
+      return Arrays.asList(pair.getFirst().getID(), pair.getSecond().getID());
+    }
+  }
+
   private static final class SimilarityRetriever implements Retriever<Pair<Item, Item>, Double> {
     private final ItemSimilarity similarity;
 
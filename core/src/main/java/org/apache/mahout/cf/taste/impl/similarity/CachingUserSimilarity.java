@@ -26,14 +26,18 @@ import org.apache.mahout.cf.taste.impl.common.Pair;
 import org.apache.mahout.cf.taste.impl.common.RefreshHelper;
 import org.apache.mahout.cf.taste.impl.common.Retriever;
 import org.apache.mahout.cf.taste.model.DataModel;
+import org.apache.mahout.cf.taste.model.PreferenceChangeListener;
 import org.apache.mahout.cf.taste.model.User;
 
+import java.util.Arrays;
 import java.util.Collection;
 
 /**
  * Caches the results from an underlying {@link org.apache.mahout.cf.taste.similarity.UserSimilarity} implementation.
+ * When registered as a {@link PreferenceChangeListener}, it uncaches just the similarities of a user whose
+ * preferences change.
  */
-public final class CachingUserSimilarity implements UserSimilarity {
+public final class CachingUserSimilarity implements UserSimilarity, PreferenceChangeListener {
 
   private final UserSimilarity similarity;
   private final Cache<Pair<User, User>, Double> similarityCache;
@@ -44,7 +48,9 @@ public final class CachingUserSimilarity implements UserSimilarity {
     }
     this.similarity = similarity;
     int maxCacheSize = dataModel.getNumUsers(); // just a dumb heuristic for sizing    
-    this.similarityCache = new Cache<Pair<User, User>, Double>(new SimilarityRetriever(similarity), maxCacheSize);
+    this.similarityCache = new Cache<Pair<User, User>, Double>(new SimilarityRetriever(similarity),
+                                                           maxCacheSize,
+                                                           new UserPairTagger());
   }
 
   @Override
@@ -61,6 +67,20 @@ public final class CachingUserSimilarity implements UserSimilarity {
     similarity.setPreferenceInferrer(inferrer);
   }
 
+  /**
+   * <p>Uncaches all similarities involving the given user.</p>
+   *
+   * @param userID ID of user whose similarities should be uncached
+   */
+  public void clearCacheForUser(Object userID) {
+    similarityCache.removeTagged(userID);
+  }
+
+  @Override
+  public void preferenceChanged(Object userID, Object itemID) {
+    clearCacheForUser(userID);
+  }
+
   @Override
   public void refresh(Collection<Refreshable> alreadyRefreshed) {
     similarityCache.clear();
@@ -68,6 +88,16 @@ public final class CachingUserSimilarity implements UserSimilarity {
     RefreshHelper.maybeRefresh(alreadyRefreshed, similarity);
   }
 
+  /**
+   * Tags each cached similarity with the IDs of its two users.
+   */
+  private static final class UserPairTagger implements Cache.Tagger<Pair<User, User>, Double> {
+    @Override
+    public Collection<?> getTags(Pair<User, User> pair, Double similarity) {
+      return Arrays.asList(pair.getFirst().getID(), pair.getSecond().getID());
+    }
+  }
+
   private static final class SimilarityRetriever implements Retriever<Pair<User, User>, Double> {
     private final UserSimilarity similarity;
 
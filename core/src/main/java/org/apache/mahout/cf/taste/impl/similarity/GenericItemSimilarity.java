@@ -20,6 +20,7 @@ package org.apache.mahout.cf.taste.impl.similarity;
 import org.apache.mahout.cf.taste.common.Refreshable;
 import org.apache.mahout.cf.taste.common.TasteException;
 import org.apache.mahout.cf.taste.similarity.ItemSimilarity;
+import org.apache.mahout.cf.taste.impl.common.FastByIDDoubleMap;
 import org.apache.mahout.cf.taste.impl.common.FastMap;
 import org.apache.mahout.cf.taste.impl.common.IteratorIterable;
 import org.apache.mahout.cf.taste.impl.common.IteratorUtils;
@@ -31,7 +32,6 @@ import org.apache.mahout.cf.taste.model.Item;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.NoSuchElementException;
 
 /**
@@ -43,10 +43,15 @@ import java.util.NoSuchElementException;
  * {@link org.apache.mahout.cf.taste.impl.recommender.GenericItemBasedRecommender}, for now, since the point of item-based
  * recommenders is that they can take advantage of the fact that item similarity is relatively static,
  * can be precomputed, and then used in computation to gain a significant performance advantage.</p>
+ *
+ * <p>Each item ID is given a dense index once, and each similarity is stored unboxed under the pair of indexes,
+ * so that a similarity costs two primitive slots rather than two references and a {@link Double}.</p>
  */
 public final class GenericItemSimilarity implements ItemSimilarity {
 
-  private final Map<Item, Map<Item, Double>> similarityMaps = new FastMap<Item, Map<Item, Double>>();
+  private final FastMap<Object, Integer> itemIndexes = new FastMap<Object, Integer>();
+  /** Similarities keyed by {@link #pairKey(int, int)} of the two items' indexes */
+  private final FastByIDDoubleMap pairSimilarities = new FastByIDDoubleMap();
 
   /**
    * <p>Creates a {@link GenericItemSimilarity} from a precomputed list of
@@ -128,27 +133,35 @@ public final class GenericItemSimilarity implements ItemSimilarity {
     for (ItemItemSimilarity iic : similarities) {
       Item similarityItem1 = iic.getItem1();
       Item similarityItem2 = iic.getItem2();
-      int compare = similarityItem1.compareTo(similarityItem2);
-      if (compare != 0) {
-        // Order them -- first key should be the "smaller" one
-        Item item1;
-        Item item2;
-        if (compare < 0) {
-          item1 = similarityItem1;
-          item2 = similarityItem2;
-        } else {
-          item1 = similarityItem2;
-          item2 = similarityItem1;
-        }
-        Map<Item, Double> map = similarityMaps.get(item1);
-        if (map == null) {
-          map = new FastMap<Item, Double>();
-          similarityMaps.put(item1, map);
-        }
-        map.put(item2, iic.getValue());
+      if (similarityItem1.compareTo(similarityItem2) != 0) {
+        int index1 = indexFor(similarityItem1.getID());
+        int index2 = indexFor(similarityItem2.getID());
+        pairSimilarities.put(pairKey(index1, index2), iic.getValue());
       }
       // else similarity between item and itself already assumed to be 1.0
     }
+    // rehash() can't size an empty table
+    if (!pairSimilarities.isEmpty()) {
+      pairSimilarities.rehash();
+    }
+  }
+
+  private int indexFor(Object itemID) {
+    Integer index = itemIndexes.get(itemID);
+    if (index == null) {
+      index = itemIndexes.size();
+      itemIndexes.put(itemID, index);
+    }
+    return index;
+  }
+
+  /**
+   * @return key for a pair of item indexes, the same whichever order they are given in
+   */
+  private static long pairKey(int index1, int index2) {
+    return index1 < index2 ?
+           ((long) index1 << 32) | (long) index2 :
+           ((long) index2 << 32) | (long) index1;
   }
 
   /**
@@ -162,25 +175,18 @@ public final class GenericItemSimilarity implements ItemSimilarity {
    */
   @Override
   public double itemSimilarity(Item item1, Item item2) {
-    int compare = item1.compareTo(item2);
-    if (compare == 0) {
+    if (item1.compareTo(item2) == 0) {
       return 1.0;
     }
-    Item first;
-    Item second;
-    if (compare < 0) {
-      first = item1;
-      second = item2;
-    } else {
-      first = item2;
-      second = item1;
+    Integer index1 = itemIndexes.get(item1.getID());
+    if (index1 == null) {
+      return Double.NaN;
     }
-    Map<Item, Double> nextMap = similarityMaps.get(first);
-    if (nextMap == null) {
+    Integer index2 = itemIndexes.get(item2.getID());
+    if (index2 == null) {
       return Double.NaN;
     }
-    Double similarity = nextMap.get(second);
-    return similarity == null ? Double.NaN : similarity;
+    return pairSimilarities.get(pairKey(index1, index2));
   }
 
   @Override
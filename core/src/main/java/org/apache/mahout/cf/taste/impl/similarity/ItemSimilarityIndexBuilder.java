@@ -0,0 +1,247 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.similarity;
+
+import org.apache.mahout.cf.taste.common.TasteException;
+import org.apache.mahout.cf.taste.impl.common.BoundedScoreHeap;
+import org.apache.mahout.cf.taste.impl.common.FastSet;
+import org.apache.mahout.cf.taste.model.DataModel;
+import org.apache.mahout.cf.taste.model.Item;
+import org.apache.mahout.cf.taste.similarity.ItemSimilarity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <p>Computes, offline, the top <code>neighborsPerItem</code> most similar items for every item in a
+ * {@link DataModel} according to any {@link ItemSimilarity}, and writes them to an index file that
+ * {@link MappedItemSimilarity} serves from.</p>
+ *
+ * <p>Every pair of items is compared, so this takes time quadratic in the number of items, spread over
+ * <code>numThreads</code> threads. The similarity must therefore be thread-safe.</p>
+ *
+ * <p>The file holds a header, the item IDs in modified UTF-8, an offset per item into the neighbor entries, and
+ * then the entries themselves: a neighbor's index and the similarity, ordered by neighbor index within each item
+ * so that they can be binary searched. It is written to a temporary file which then replaces
+ * <code>indexFile</code>, so a server never sees a partly written index.</p>
+ */
+public final class ItemSimilarityIndexBuilder {
+
+  private static final Logger log = LoggerFactory.getLogger(ItemSimilarityIndexBuilder.class);
+
+  private final DataModel dataModel;
+  private final ItemSimilarity similarity;
+  private final int neighborsPerItem;
+  private final int numThreads;
+
+  /**
+   * @param dataModel items to index
+   * @param similarity similarity to compute between items
+   * @param neighborsPerItem number of most similar items to keep per item
+   * @param numThreads number of threads to compute similarities with
+   * @throws IllegalArgumentException if dataModel or similarity is null, or neighborsPerItem or numThreads is less
+   *  than 1
+   */
+  public ItemSimilarityIndexBuilder(DataModel dataModel,
+                                    ItemSimilarity similarity,
+                                    int neighborsPerItem,
+                                    int numThreads) {
+    if (dataModel == null || similarity == null) {
+      throw new IllegalArgumentException("dataModel or similarity is null");
+    }
+    if (neighborsPerItem < 1) {
+      throw new IllegalArgumentException("neighborsPerItem must be at least 1");
+    }
+    if (numThreads < 1) {
+      throw new IllegalArgumentException("numThreads must be at least 1");
+    }
+    this.dataModel = dataModel;
+    this.similarity = similarity;
+    this.neighborsPerItem = neighborsPerItem;
+    this.numThreads = numThreads;
+  }
+
+  /**
+   * @param indexFile file to write the index to, replacing it if it exists
+   * @throws TasteException if an error occurs while computing similarities
+   * @throws IOException if the index can't be written
+   */
+  public void build(File indexFile) throws TasteException, IOException {
+    long start = System.currentTimeMillis();
+    List<Item> itemList = new ArrayList<Item>(dataModel.getNumItems());
+    Set<String> itemIDs = new FastSet<String>(dataModel.getNumItems());
+    for (Item item : dataModel.getItems()) {
+      if (!itemIDs.add(String.valueOf(item.getID()))) {
+        throw new IllegalStateException("Item IDs are not distinct as strings: " + item.getID());
+      }
+      itemList.add(item);
+    }
+    Item[] items = itemList.toArray(new Item[itemList.size()]);
+
+    int[][] neighbors = new int[items.length][];
+    double[][] similarities = new double[items.length][];
+    computeNeighbors(items, neighbors, similarities);
+    log.info("Computed neighbors of {} items in {}ms", items.length, System.currentTimeMillis() - start);
+
+    write(items, neighbors, similarities, indexFile);
+  }
+
+  private void computeNeighbors(final Item[] items,
+                                final int[][] neighbors,
+                                final double[][] similarities) throws TasteException {
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    try {
+      List<Future<Object>> futures = new ArrayList<Future<Object>>(numThreads);
+      for (int thread = 0; thread < numThreads; thread++) {
+        final int first = thread;
+        futures.add(executor.submit(new Callable<Object>() {
+          @Override
+          public Object call() throws TasteException {
+            BoundedScoreHeap heap = new BoundedScoreHeap(neighborsPerItem);
+            int[] slotNeighbors = new int[Math.min(neighborsPerItem, items.length)];
+            // Stride over the items so that each thread gets a similar mix of work
+            for (int i = first; i < items.length; i += numThreads) {
+              heap.clear();
+              for (int j = 0; j < items.length; j++) {
+                if (j != i) {
+                  int slot = heap.offer(similarity.itemSimilarity(items[i], items[j]));
+                  if (slot >= 0) {
+                    slotNeighbors[slot] = j;
+                  }
+                }
+              }
+              sortByNeighbor(heap, slotNeighbors, i, neighbors, similarities);
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Object> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new TasteException("Interrupted while computing similarities", ie);
+    } catch (ExecutionException ee) {
+      Throwable cause = ee.getCause();
+      if (cause instanceof TasteException) {
+        throw (TasteException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new TasteException(cause);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static void sortByNeighbor(BoundedScoreHeap heap,
+                                     int[] slotNeighbors,
+                                     int itemIndex,
+                                     int[][] neighbors,
+                                     double[][] similarities) {
+    int size = heap.size();
+    // Pack neighbor index above slot so that sorting by neighbor keeps track of the slot
+    long[] packed = new long[size];
+    for (int slot = 0; slot < size; slot++) {
+      packed[slot] = ((long) slotNeighbors[slot] << 32) | (long) slot;
+    }
+    Arrays.sort(packed);
+    int[] itemNeighbors = new int[size];
+    double[] itemSimilarities = new double[size];
+    for (int k = 0; k < size; k++) {
+      itemNeighbors[k] = (int) (packed[k] >>> 32);
+      itemSimilarities[k] = heap.getScore((int) packed[k]);
+    }
+    neighbors[itemIndex] = itemNeighbors;
+    similarities[itemIndex] = itemSimilarities;
+  }
+
+  private static void write(Item[] items, int[][] neighbors, double[][] similarities, File indexFile)
+      throws IOException {
+    ByteArrayOutputStream idTable = new ByteArrayOutputStream();
+    DataOutputStream idOut = new DataOutputStream(idTable);
+    for (Item item : items) {
+      idOut.writeUTF(String.valueOf(item.getID()));
+    }
+    idOut.flush();
+
+    long numEntries = 0L;
+    for (int[] itemNeighbors : neighbors) {
+      numEntries += itemNeighbors.length;
+    }
+    long fileLength = MappedItemSimilarity.HEADER_BYTES + idTable.size() + 4L * (items.length + 1) +
+        MappedItemSimilarity.ENTRY_BYTES * numEntries;
+    if (fileLength > Integer.MAX_VALUE) {
+      throw new IOException("Index would be too large to map: " + fileLength + " bytes");
+    }
+
+    File tempFile = new File(indexFile.getPath() + ".tmp");
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16));
+    try {
+      out.writeInt(MappedItemSimilarity.MAGIC);
+      out.writeInt(MappedItemSimilarity.VERSION);
+      out.writeInt(items.length);
+      out.writeInt(idTable.size());
+      idTable.writeTo(out);
+      int offset = 0;
+      out.writeInt(offset);
+      for (int[] itemNeighbors : neighbors) {
+        offset += itemNeighbors.length;
+        out.writeInt(offset);
+      }
+      for (int i = 0; i < items.length; i++) {
+        int[] itemNeighbors = neighbors[i];
+        double[] itemSimilarities = similarities[i];
+        for (int k = 0; k < itemNeighbors.length; k++) {
+          out.writeInt(itemNeighbors[k]);
+          out.writeDouble(itemSimilarities[k]);
+        }
+      }
+    } finally {
+      out.close();
+    }
+    if (indexFile.exists() && !indexFile.delete()) {
+      throw new IOException("Could not delete " + indexFile);
+    }
+    if (!tempFile.renameTo(indexFile)) {
+      throw new IOException("Could not rename " + tempFile + " to " + indexFile);
+    }
+    log.info("Wrote similarity index {} with {} entries", indexFile, numEntries);
+  }
+
+}
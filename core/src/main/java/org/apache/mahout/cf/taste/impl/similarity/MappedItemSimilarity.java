@@ -0,0 +1,153 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.similarity;
+
+import org.apache.mahout.cf.taste.common.Refreshable;
+import org.apache.mahout.cf.taste.impl.common.FastMap;
+import org.apache.mahout.cf.taste.model.Item;
+import org.apache.mahout.cf.taste.similarity.ItemSimilarity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * <p>An {@link ItemSimilarity} backed by a neighbor index file written by {@link ItemSimilarityIndexBuilder}.
+ * The file is memory-mapped, so the neighbor lists cost no heap and are shared with the operating system's page
+ * cache, and the index survives restarts without being recomputed. Only the table of item IDs is read onto the
+ * heap.</p>
+ *
+ * <p>The similarity of two items is found by binary search in the first item's neighbor list, and then in the
+ * second's, since each list only holds that item's top neighbors. Pairs in neither list have similarity
+ * {@link Double#NaN}, just as with a {@link GenericItemSimilarity} that was given only the top similarities.</p>
+ *
+ * <p>Items are matched by the {@link String} form of their ID, so IDs should have distinct string forms.</p>
+ */
+public final class MappedItemSimilarity implements ItemSimilarity {
+
+  private static final Logger log = LoggerFactory.getLogger(MappedItemSimilarity.class);
+
+  static final int MAGIC = 0x4d495349; // "MISI"
+  static final int VERSION = 1;
+  /** magic, version, number of items, ID table length */
+  static final int HEADER_BYTES = 16;
+  /** neighbor index (int) and similarity (double) */
+  static final int ENTRY_BYTES = 12;
+
+  private final File indexFile;
+  private final MappedByteBuffer buffer;
+  private final Map<String, Integer> itemIndexes;
+  private final int offsetsStart;
+  private final int entriesStart;
+
+  /**
+   * @param indexFile file written by {@link ItemSimilarityIndexBuilder#build(File)}
+   * @throws IOException if the file can't be read or is not a valid index
+   */
+  public MappedItemSimilarity(File indexFile) throws IOException {
+    if (indexFile == null) {
+      throw new IllegalArgumentException("indexFile is null");
+    }
+    this.indexFile = indexFile;
+    RandomAccessFile raf = new RandomAccessFile(indexFile, "r");
+    try {
+      // The mapping stays valid after the file is closed
+      buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0L, raf.length());
+    } finally {
+      raf.close();
+    }
+    if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+      throw new IOException("Not a similarity index: " + indexFile);
+    }
+    int numItems = buffer.getInt(8);
+    int idTableLength = buffer.getInt(12);
+    offsetsStart = HEADER_BYTES + idTableLength;
+    entriesStart = offsetsStart + 4 * (numItems + 1);
+    if (numItems < 0 || idTableLength < 0 || entriesStart > buffer.capacity() ||
+        entriesStart + (long) ENTRY_BYTES * buffer.getInt(offsetsStart + 4 * numItems) != buffer.capacity()) {
+      throw new IOException("Corrupt similarity index: " + indexFile);
+    }
+
+    byte[] idTable = new byte[idTableLength];
+    buffer.position(HEADER_BYTES);
+    buffer.get(idTable);
+    DataInputStream ids = new DataInputStream(new ByteArrayInputStream(idTable));
+    itemIndexes = new FastMap<String, Integer>(numItems);
+    for (int i = 0; i < numItems; i++) {
+      itemIndexes.put(ids.readUTF(), i);
+    }
+    log.info("Mapped similarity index {} for {} items", indexFile, numItems);
+  }
+
+  public int getNumItems() {
+    return itemIndexes.size();
+  }
+
+  @Override
+  public double itemSimilarity(Item item1, Item item2) {
+    Object itemID1 = item1.getID();
+    Object itemID2 = item2.getID();
+    if (itemID1.equals(itemID2)) {
+      return 1.0;
+    }
+    Integer index1 = itemIndexes.get(String.valueOf(itemID1));
+    Integer index2 = itemIndexes.get(String.valueOf(itemID2));
+    if (index1 == null || index2 == null) {
+      return Double.NaN;
+    }
+    double similarity = lookup(index1, index2);
+    return Double.isNaN(similarity) ? lookup(index2, index1) : similarity;
+  }
+
+  private double lookup(int fromIndex, int toIndex) {
+    int low = buffer.getInt(offsetsStart + 4 * fromIndex);
+    int high = buffer.getInt(offsetsStart + 4 * (fromIndex + 1)) - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int entry = entriesStart + ENTRY_BYTES * mid;
+      int neighbor = buffer.getInt(entry);
+      if (neighbor < toIndex) {
+        low = mid + 1;
+      } else if (neighbor > toIndex) {
+        high = mid - 1;
+      } else {
+        return buffer.getDouble(entry + 4);
+      }
+    }
+    return Double.NaN;
+  }
+
+  @Override
+  public void refresh(Collection<Refreshable> alreadyRefreshed) {
+    // Do nothing; rebuild the index offline and open a new instance instead
+  }
+
+  @Override
+  public String toString() {
+    return "MappedItemSimilarity[indexFile:" + indexFile + ", numItems:" + itemIndexes.size() + ']';
+  }
+
+}
@@ -0,0 +1,38 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.model;
+
+/**
+ * <p>Implementations are told when a {@link Preference} in a {@link DataModel} changes, so that they may
+ * discard just the state which depends on it, rather than everything as
+ * {@link org.apache.mahout.cf.taste.common.Refreshable#refresh(java.util.Collection)} does.</p>
+ *
+ * @see org.apache.mahout.cf.taste.impl.model.ConcurrentDataModel#addPreferenceChangeListener(PreferenceChangeListener)
+ */
+public interface PreferenceChangeListener {
+
+  /**
+   * <p>Called after a user's preference for an item has been set or removed. This may be called from
+   * many threads at once.</p>
+   *
+   * @param userID ID of the user whose preference changed
+   * @param itemID ID of the item the preference is for
+   */
+  void preferenceChanged(Object userID, Object itemID);
+
+}
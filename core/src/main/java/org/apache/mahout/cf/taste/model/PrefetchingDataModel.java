@@ -0,0 +1,49 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.model;
+
+import java.util.Collection;
+
+/**
+ * <p>A {@link DataModel} which can look up data about many items with one query, for example one backed by a
+ * database. A caller about to look up the preferences, or numbers of preferences, for one {@link Item} and for its
+ * pairs with each of several other items -- as an item-based recommender does when estimating a preference -- can
+ * announce that first with {@link #prefetch(Object, Collection)}. The first lookup of each kind then fetches that
+ * kind of data for all the announced items at once, and the following ones are served from it.</p>
+ *
+ * <p>Announcements are per thread, and hold until {@link #clearPrefetched()} is called on the same thread, so
+ * callers should clear them in a <code>finally</code> block.</p>
+ */
+public interface PrefetchingDataModel extends DataModel {
+
+  /**
+   * <p>Announces that the calling thread is about to look up data about the given item and the given other
+   * items, and about the pairs of the former with each of the latter. Nothing is fetched until it is needed.
+   * This replaces any previous announcement on the thread.</p>
+   *
+   * @param itemID item which will be paired with each of the others
+   * @param otherItemIDs other items
+   */
+  void prefetch(Object itemID, Collection<?> otherItemIDs);
+
+  /**
+   * <p>Drops the calling thread's announcement, and anything fetched for it.</p>
+   */
+  void clearPrefetched();
+
+}
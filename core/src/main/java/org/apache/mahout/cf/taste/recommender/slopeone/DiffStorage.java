@@ -25,6 +25,7 @@ import org.apache.mahout.cf.taste.model.Preference;
 
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
 
 /**
  * <p>Implementations store item-item preference diffs for a
@@ -56,6 +57,27 @@ public interface DiffStorage extends Refreshable {
    */
   RunningAverage[] getDiffs(Object userID, Object itemID, Preference[] prefs) throws TasteException;
 
+  /**
+   * <p>Like {@link #getDiffs(Object, Object, Preference[])}, but writes each diff into primitive arrays parallel to
+   * <code>prefs</code> instead of returning objects. A count of 0 means there is no diff for that preference's
+   * item.</p>
+   *
+   * @param userID user ID to get diffs for
+   * @param itemID itemID to assess
+   * @param prefs user's preferences
+   * @param counts receives the number of data in each diff
+   * @param averages receives the average of each diff
+   * @param stdDevs receives the standard deviation of each diff, or {@link Double#NaN} if not known;
+   *  may be <code>null</code> if not needed
+   * @throws TasteException
+   */
+  void getDiffs(Object userID,
+                Object itemID,
+                Preference[] prefs,
+                int[] counts,
+                double[] averages,
+                double[] stdDevs) throws TasteException;
+
   /**
    * @param itemID
    * @return {@link RunningAverage} encapsulating the average preference for the given item
@@ -64,14 +86,28 @@ public interface DiffStorage extends Refreshable {
   RunningAverage getAverageItemPref(Object itemID) throws TasteException;
 
   /**
-   * <p>Updates internal data structures to reflect an update in a preference value for an item.</p>
+   * <p>Updates internal data structures to reflect a change in one user's preference for an item. This is called
+   * after the {@link org.apache.mahout.cf.taste.model.DataModel} has been updated, so the user's other preferences
+   * there are current, and with {@link #getUpdateLock()} held since before that update.</p>
    *
-   * @param itemID item to update preference value for
-   * @param prefDelta amount by which preference value changed (or its old value, if being removed
-   * @param remove if <code>true</code>, operation reflects a removal rather than change of preference
+   * @param userID user whose preference changed
+   * @param itemID item whose preference changed
+   * @param oldValue previous preference value, or {@link Double#NaN} if the preference is new
+   * @param newValue new preference value, or {@link Double#NaN} if the preference was removed
    * @throws TasteException
    */
-  void updateItemPref(Object itemID, double prefDelta, boolean remove) throws TasteException;
+  void updateItemPref(Object userID, Object itemID, double oldValue, double newValue) throws TasteException;
+
+  /**
+   * <p>Returns the lock that a rebuild of the diffs holds while it reads the
+   * {@link org.apache.mahout.cf.taste.model.DataModel}. A caller changing a preference holds it from before it
+   * changes the {@link org.apache.mahout.cf.taste.model.DataModel} until
+   * {@link #updateItemPref(Object, Object, double, double)} returns, so that a rebuild never reads a change and then
+   * has the same change applied on top of it.</p>
+   *
+   * @return lock ordering preference updates against rebuilds
+   */
+  Lock getUpdateLock();
 
   /**
    * @param userID
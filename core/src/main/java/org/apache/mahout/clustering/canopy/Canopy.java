@@ -18,11 +18,14 @@
 package org.apache.mahout.clustering.canopy;
 
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.OutputCollector;
 import org.apache.mahout.matrix.AbstractVector;
+import org.apache.mahout.matrix.IntDoubleProcedure;
 import org.apache.mahout.matrix.SparseVector;
 import org.apache.mahout.matrix.Vector;
+import org.apache.mahout.matrix.VectorWritable;
 import org.apache.mahout.utils.DistanceMeasure;
 
 import java.io.IOException;
@@ -172,7 +175,7 @@ public class Canopy {
    *            an OutputCollector in which to emit the point
    */
   public static void emitPointToNewCanopies(Vector point,
-      List<Canopy> canopies, OutputCollector<Text, Text> collector)
+      List<Canopy> canopies, OutputCollector<Text, VectorWritable> collector)
       throws IOException {
     boolean pointStronglyBound = false;
     for (Canopy canopy : canopies) {
@@ -204,9 +207,9 @@ public class Canopy {
    * @param collector
    *            an OutputCollector in which to emit the point
    */
-  public static void emitPointToExistingCanopies(Vector point,
-      List<Canopy> canopies, Text writable,
-      OutputCollector<Text, Text> collector) throws IOException {
+  public static <W extends Writable> void emitPointToExistingCanopies(
+      Vector point, List<Canopy> canopies, W writable,
+      OutputCollector<Text, W> collector) throws IOException {
     double minDist = Double.MAX_VALUE;
     Canopy closest = null;
     boolean isCovered = false;
@@ -263,8 +266,7 @@ public class Canopy {
    */
   public void addPoint(Vector point) {
     numPoints++;
-    for (int i = 0; i < point.cardinality(); i++)
-      pointTotal.set(i, point.get(i) + pointTotal.get(i));
+    point.addTo(pointTotal);
   }
 
   /**
@@ -274,10 +276,9 @@ public class Canopy {
    * @param point
    *            a point to emit.
    */
-  public void emitPoint(Vector point, OutputCollector<Text, Text> collector)
+  public void emitPoint(Vector point, OutputCollector<Text, VectorWritable> collector)
       throws IOException {
-    collector.collect(new Text(this.getIdentifier()), new Text(point
-        .asFormatString()));
+    collector.collect(new Text(this.getIdentifier()), new VectorWritable(point));
   }
 
   @Override
@@ -317,9 +318,16 @@ public class Canopy {
    * @return a point which is the new centroid
    */
   public Vector computeCentroid() {
-    Vector result = new SparseVector(pointTotal.cardinality());
-    for (int i = 0; i < pointTotal.cardinality(); i++)
-      result.set(i, pointTotal.get(i) / numPoints);
+    final Vector result = new SparseVector(pointTotal.cardinality());
+    final int n = numPoints;
+    // zero totals stay zero, so only the non-zero elements need dividing
+    pointTotal.foreachNonZero(new IntDoubleProcedure() {
+      @Override
+      public boolean apply(int index, double value) {
+        result.setQuick(index, value / n);
+        return true;
+      }
+    });
     return result;
   }
 
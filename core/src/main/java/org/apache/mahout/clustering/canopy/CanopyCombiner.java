@@ -18,34 +18,31 @@
 package org.apache.mahout.clustering.canopy;
 
 import org.apache.hadoop.io.Text;
-import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.MapReduceBase;
 import org.apache.hadoop.mapred.OutputCollector;
 import org.apache.hadoop.mapred.Reducer;
 import org.apache.hadoop.mapred.Reporter;
-import org.apache.mahout.matrix.AbstractVector;
 import org.apache.mahout.matrix.Vector;
+import org.apache.mahout.matrix.VectorWritable;
 
 import java.io.IOException;
 import java.util.Iterator;
 
 public class CanopyCombiner extends MapReduceBase implements
-    Reducer<Text, Text, Text, Text> {
+    Reducer<Text, VectorWritable, Text, VectorWritable> {
 
   @Override
-  public void reduce(Text key, Iterator<Text> values,
-      OutputCollector<Text, Text> output, Reporter reporter) throws IOException {
-    Writable value = values.next();
-    Vector center = AbstractVector.decodeVector(value.toString());
+  public void reduce(Text key, Iterator<VectorWritable> values,
+      OutputCollector<Text, VectorWritable> output, Reporter reporter) throws IOException {
+    Vector center = values.next().get();
     Canopy canopy = new Canopy(center);
     while (values.hasNext()) {
-      value = values.next();
-      Vector point = AbstractVector.decodeVector(value.toString());
+      Vector point = values.next().get();
       canopy.addPoint(point);
     }
-    output.collect(new Text("centroid"), new Text(canopy.computeCentroid()
-        .asFormatString()));
+    output.collect(new Text("centroid"), new VectorWritable(canopy
+        .computeCentroid()));
   }
 
   @Override
@@ -20,11 +20,12 @@ package org.apache.mahout.clustering.canopy;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
-import org.apache.hadoop.mapred.FileInputFormat;
 import org.apache.hadoop.mapred.FileOutputFormat;
 import org.apache.hadoop.mapred.JobClient;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.SequenceFileOutputFormat;
+import org.apache.mahout.matrix.VectorWritable;
+import org.apache.mahout.utils.VectorInputUtil;
 
 import java.io.IOException;
 
@@ -60,10 +61,12 @@ public class CanopyDriver {
     conf.set(Canopy.T1_KEY, String.valueOf(t1));
     conf.set(Canopy.T2_KEY, String.valueOf(t2));
 
+    conf.setMapOutputKeyClass(Text.class);
+    conf.setMapOutputValueClass(VectorWritable.class);
     conf.setOutputKeyClass(Text.class);
     conf.setOutputValueClass(Text.class);
 
-    FileInputFormat.setInputPaths(conf, new Path(input));
+    VectorInputUtil.configureInput(conf, new Path(input));
     Path outPath = new Path(output);
     FileOutputFormat.setOutputPath(conf, outPath);
 
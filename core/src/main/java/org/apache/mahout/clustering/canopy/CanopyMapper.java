@@ -18,28 +18,29 @@
 package org.apache.mahout.clustering.canopy;
 
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableComparable;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.MapReduceBase;
 import org.apache.hadoop.mapred.Mapper;
 import org.apache.hadoop.mapred.OutputCollector;
 import org.apache.hadoop.mapred.Reporter;
-import org.apache.mahout.matrix.AbstractVector;
 import org.apache.mahout.matrix.Vector;
+import org.apache.mahout.matrix.VectorWritable;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 public class CanopyMapper extends MapReduceBase implements
-        Mapper<WritableComparable<?>, Text, Text, Text> {
+        Mapper<WritableComparable<?>, Writable, Text, VectorWritable> {
 
   private final List<Canopy> canopies = new ArrayList<Canopy>();
 
   @Override
-  public void map(WritableComparable<?> key, Text values,
-                  OutputCollector<Text, Text> output, Reporter reporter) throws IOException {
-    Vector point = AbstractVector.decodeVector(values.toString());
+  public void map(WritableComparable<?> key, Writable values,
+                  OutputCollector<Text, VectorWritable> output, Reporter reporter) throws IOException {
+    Vector point = VectorWritable.asVector(values);
     Canopy.emitPointToNewCanopies(point, canopies, output);
   }
 
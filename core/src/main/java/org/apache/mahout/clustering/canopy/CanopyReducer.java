@@ -23,8 +23,8 @@ import org.apache.hadoop.mapred.MapReduceBase;
 import org.apache.hadoop.mapred.OutputCollector;
 import org.apache.hadoop.mapred.Reducer;
 import org.apache.hadoop.mapred.Reporter;
-import org.apache.mahout.matrix.AbstractVector;
 import org.apache.mahout.matrix.Vector;
+import org.apache.mahout.matrix.VectorWritable;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -32,16 +32,15 @@ import java.util.Iterator;
 import java.util.List;
 
 public class CanopyReducer extends MapReduceBase implements
-        Reducer<Text, Text, Text, Text> {
+        Reducer<Text, VectorWritable, Text, Text> {
 
   private final List<Canopy> canopies = new ArrayList<Canopy>();
 
   @Override
-  public void reduce(Text key, Iterator<Text> values,
+  public void reduce(Text key, Iterator<VectorWritable> values,
                      OutputCollector<Text, Text> output, Reporter reporter) throws IOException {
     while (values.hasNext()) {
-      Text value = values.next();
-      Vector point = AbstractVector.decodeVector(value.toString());
+      Vector point = values.next().get();
       Canopy.addPointToCanopies(point, canopies);
     }
     for (Canopy canopy : canopies)
@@ -20,11 +20,13 @@ package org.apache.mahout.clustering.canopy;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
-import org.apache.hadoop.mapred.FileInputFormat;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapred.FileOutputFormat;
 import org.apache.hadoop.mapred.JobClient;
 import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.SequenceFileOutputFormat;
 import org.apache.hadoop.mapred.lib.IdentityReducer;
+import org.apache.mahout.utils.VectorInputUtil;
 
 import java.io.IOException;
 
@@ -64,10 +66,13 @@ public class ClusterDriver {
     conf.set(Canopy.T2_KEY, String.valueOf(t2));
     conf.set(Canopy.CANOPY_PATH_KEY, canopies);
 
+    // the points are passed through unchanged, so binary input gives binary output
+    Class<? extends Writable> pointClass = VectorInputUtil.configureInput(conf, new Path(points));
     conf.setOutputKeyClass(Text.class);
-    conf.setOutputValueClass(Text.class);
+    conf.setOutputValueClass(pointClass);
+    if (pointClass != Text.class)
+      conf.setOutputFormat(SequenceFileOutputFormat.class);
 
-    FileInputFormat.setInputPaths(conf, new Path(points));
     Path outPath = new Path(output + "/clusters");
     FileOutputFormat.setOutputPath(conf, outPath);
 
@@ -21,28 +21,29 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableComparable;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.MapReduceBase;
 import org.apache.hadoop.mapred.Mapper;
 import org.apache.hadoop.mapred.OutputCollector;
 import org.apache.hadoop.mapred.Reporter;
-import org.apache.mahout.matrix.AbstractVector;
 import org.apache.mahout.matrix.Vector;
+import org.apache.mahout.matrix.VectorWritable;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 public class ClusterMapper extends MapReduceBase implements
-        Mapper<WritableComparable<?>, Text, Text, Text> {
+        Mapper<WritableComparable<?>, Writable, Text, Writable> {
 
   private List<Canopy> canopies;
 
   @Override
-  public void map(WritableComparable<?> key, Text values,
-                  OutputCollector<Text, Text> output, Reporter reporter) throws IOException {
-    Vector point = AbstractVector.decodeVector(values.toString());
+  public void map(WritableComparable<?> key, Writable values,
+                  OutputCollector<Text, Writable> output, Reporter reporter) throws IOException {
+    Vector point = VectorWritable.asVector(values);
     Canopy.emitPointToExistingCanopies(point, canopies, values, output);
   }
 
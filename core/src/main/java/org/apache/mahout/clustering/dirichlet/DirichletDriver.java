@@ -24,7 +24,6 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.io.Text;
-import org.apache.hadoop.mapred.FileInputFormat;
 import org.apache.hadoop.mapred.FileOutputFormat;
 import org.apache.hadoop.mapred.JobClient;
 import org.apache.hadoop.mapred.JobConf;
@@ -32,6 +31,8 @@ import org.apache.hadoop.mapred.SequenceFileOutputFormat;
 import org.apache.mahout.clustering.dirichlet.models.ModelDistribution;
 import org.apache.mahout.clustering.kmeans.KMeansDriver;
 import org.apache.mahout.matrix.Vector;
+import org.apache.mahout.matrix.VectorWritable;
+import org.apache.mahout.utils.VectorInputUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -146,10 +147,11 @@ public class DirichletDriver {
     JobClient client = new JobClient();
     JobConf conf = new JobConf(DirichletDriver.class);
 
+    conf.setMapOutputKeyClass(Text.class);
+    conf.setMapOutputValueClass(VectorWritable.class);
     conf.setOutputKeyClass(Text.class);
     conf.setOutputValueClass(Text.class);
 
-    FileInputFormat.setInputPaths(conf, new Path(input));
     Path outPath = new Path(stateOut);
     FileOutputFormat.setOutputPath(conf, outPath);
 
@@ -164,6 +166,7 @@ public class DirichletDriver {
 
     client.setConf(conf);
     try {
+      VectorInputUtil.configureInput(conf, new Path(input));
       JobClient.runJob(conf);
     } catch (IOException e) {
       log.warn(e.toString(), e);
@@ -182,9 +185,8 @@ public class DirichletDriver {
     JobConf conf = new JobConf(DirichletDriver.class);
 
     conf.setOutputKeyClass(Text.class);
-    conf.setOutputValueClass(Text.class);
+    conf.setOutputValueClass(VectorWritable.class);
 
-    FileInputFormat.setInputPaths(conf, new Path(input));
     Path outPath = new Path(output);
     FileOutputFormat.setOutputPath(conf, outPath);
 
@@ -193,6 +195,9 @@ public class DirichletDriver {
 
     client.setConf(conf);
     try {
+      // binary input points are written back out in binary
+      if (VectorInputUtil.configureInput(conf, new Path(input)) != Text.class)
+        conf.setOutputFormat(SequenceFileOutputFormat.class);
       JobClient.runJob(conf);
     } catch (IOException e) {
       log.warn(e.toString(), e);
@@ -24,6 +24,7 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableComparable;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.MapReduceBase;
@@ -33,22 +34,23 @@ import org.apache.hadoop.mapred.Reporter;
 import org.apache.mahout.matrix.DenseVector;
 import org.apache.mahout.matrix.TimesFunction;
 import org.apache.mahout.matrix.Vector;
+import org.apache.mahout.matrix.VectorWritable;
 
 public class DirichletMapper extends MapReduceBase implements
-    Mapper<WritableComparable<?>, Text, Text, Text> {
+    Mapper<WritableComparable<?>, Writable, Text, VectorWritable> {
 
   DirichletState<Vector> state;
 
   @Override
-  public void map(WritableComparable<?> key, Text values,
-      OutputCollector<Text, Text> output, Reporter reporter) throws IOException {
-    Vector v = DenseVector.decodeFormat(values.toString());
+  public void map(WritableComparable<?> key, Writable values,
+      OutputCollector<Text, VectorWritable> output, Reporter reporter) throws IOException {
+    Vector v = VectorWritable.asVector(values);
     // compute a normalized vector of probabilities that v is described by each model
     Vector pi = normalizedProbabilities(state, v);
     // then pick one model by sampling a Multinomial distribution based upon them
     // see: http://en.wikipedia.org/wiki/Multinomial_distribution
     int k = UncommonDistributions.rMultinom(pi);
-    output.collect(new Text(String.valueOf(k)), values);
+    output.collect(new Text(String.valueOf(k)), new VectorWritable(v));
   }
 
   public void configure(DirichletState<Vector> state) {
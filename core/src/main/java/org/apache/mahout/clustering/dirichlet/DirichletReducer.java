@@ -27,23 +27,23 @@ import org.apache.hadoop.mapred.OutputCollector;
 import org.apache.hadoop.mapred.Reducer;
 import org.apache.hadoop.mapred.Reporter;
 import org.apache.mahout.clustering.dirichlet.models.Model;
-import org.apache.mahout.matrix.DenseVector;
 import org.apache.mahout.matrix.Vector;
+import org.apache.mahout.matrix.VectorWritable;
 
 public class DirichletReducer extends MapReduceBase implements
-    Reducer<Text, Text, Text, Text> {
+    Reducer<Text, VectorWritable, Text, Text> {
 
   DirichletState<Vector> state;
 
   public Model<Vector>[] newModels;
 
   @Override
-  public void reduce(Text key, Iterator<Text> values,
+  public void reduce(Text key, Iterator<VectorWritable> values,
       OutputCollector<Text, Text> output, Reporter reporter) throws IOException {
     Integer k = new Integer(key.toString());
     Model<Vector> model = newModels[k];
     while (values.hasNext()) {
-      Vector v = DenseVector.decodeFormat(values.next().toString());
+      Vector v = values.next().get();
       model.observe(v);
     }
     model.computeParameters();
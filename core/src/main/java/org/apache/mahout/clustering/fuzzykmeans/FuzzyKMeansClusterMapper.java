@@ -18,20 +18,55 @@
 package org.apache.mahout.clustering.fuzzykmeans;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.Mapper;
 import org.apache.hadoop.mapred.OutputCollector;
 import org.apache.hadoop.mapred.Reporter;
-import org.apache.mahout.matrix.AbstractVector;
 import org.apache.mahout.matrix.Vector;
+import org.apache.mahout.matrix.VectorWritable;
+
+public class FuzzyKMeansClusterMapper extends MapReduceBase implements
+    Mapper<WritableComparable<?>, Writable, Writable, Text> {
+
+  protected List<SoftCluster> clusters;
 
-public class FuzzyKMeansClusterMapper extends FuzzyKMeansMapper {
   @Override
-  public void map(WritableComparable<?> key, Text values,
-      OutputCollector<Text, Text> output, Reporter reporter) throws IOException
+  public void map(WritableComparable<?> key, Writable values,
+      OutputCollector<Writable, Text> output, Reporter reporter) throws IOException
   {
-    Vector point = AbstractVector.decodeVector(values.toString());
-    SoftCluster.outputPointWithClusterProbabilities(key.toString(), point, clusters, values, output);
-  }  
+    Vector point = VectorWritable.asVector(values);
+    SoftCluster.outputPointWithClusterProbabilities(point, clusters, values, output);
+  }
+
+  /**
+   * Configure the mapper by providing its clusters. Used by unit tests.
+   * 
+   * @param clusters a List<Cluster>
+   */
+  void config(List<SoftCluster> clusters) {
+    this.clusters = clusters;
+  }
+
+  @Override
+  public void configure(JobConf job) {
+
+    super.configure(job);
+    SoftCluster.configure(job);
+
+    clusters = new ArrayList<SoftCluster>();
+
+    FuzzyKMeansUtil.configureWithClusterInfo(job
+        .get(SoftCluster.CLUSTER_PATH_KEY), clusters);
+
+    if (clusters.isEmpty())
+      throw new NullPointerException("Cluster is empty!!!");
+  }
+
 }
@@ -28,12 +28,12 @@ import org.apache.hadoop.fs.FileUtil;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.PathFilter;
 import org.apache.hadoop.io.Text;
-import org.apache.hadoop.mapred.FileInputFormat;
 import org.apache.hadoop.mapred.FileOutputFormat;
 import org.apache.hadoop.mapred.FileSplit;
 import org.apache.hadoop.mapred.JobClient;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.KeyValueLineRecordReader;
+import org.apache.mahout.utils.VectorInputUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -142,10 +142,11 @@ public class FuzzyKMeansDriver {
     JobConf conf = new JobConf(FuzzyKMeansJob.class);
     conf.setJobName("Fuzzy K Means{" + iterationNumber + '}');
 
+    conf.setMapOutputKeyClass(Text.class);
+    conf.setMapOutputValueClass(FuzzyKMeansInfo.class);
     conf.setOutputKeyClass(Text.class);
     conf.setOutputValueClass(Text.class);
 
-    FileInputFormat.setInputPaths(conf, new Path(input));
     Path outPath = new Path(clustersOut);
     FileOutputFormat.setOutputPath(conf, outPath);
 
@@ -164,6 +165,7 @@ public class FuzzyKMeansDriver {
     // conf.set("mapred.job.tracker", "local");
 
     try {
+      VectorInputUtil.configureInput(conf, new Path(input));
       JobClient.runJob(conf);
       FileSystem fs = FileSystem.get(conf);
       return isConverged(clustersOut, conf, fs);
@@ -190,10 +192,8 @@ public class FuzzyKMeansDriver {
     JobConf conf = new JobConf(FuzzyKMeansDriver.class);
     conf.setJobName("Fuzzy K Means Clustering");
 
-    conf.setOutputKeyClass(Text.class);
     conf.setOutputValueClass(Text.class);
 
-    FileInputFormat.setInputPaths(conf, new Path(input));
     Path outPath = new Path(output);
     FileOutputFormat.setOutputPath(conf, outPath);
 
@@ -208,6 +208,8 @@ public class FuzzyKMeansDriver {
     conf.set(SoftCluster.CLUSTER_CONVERGENCE_KEY, convergenceDelta);
     conf.set(SoftCluster.M_KEY, String.valueOf(m));
     try {
+      VectorInputUtil.configurePointOutput(conf,
+          VectorInputUtil.configureInput(conf, new Path(input)));
       JobClient.runJob(conf);
     } catch (IOException e) {
       log.warn(e.toString(), e);
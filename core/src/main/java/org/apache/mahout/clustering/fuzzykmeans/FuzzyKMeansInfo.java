@@ -0,0 +1,94 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.clustering.fuzzykmeans;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.mahout.matrix.Vector;
+import org.apache.mahout.matrix.VectorWritable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Value passed from the mappers through the combiners to the reducers. As emitted by the mapper it holds a single
+ * point and its probability of belonging to the cluster; once combined it holds the partial sum of the weighted
+ * points and the partial sum of their weights.
+ */
+public class FuzzyKMeansInfo implements Writable {
+
+  private double probability;
+
+  private Vector pointTotal;
+
+  private boolean combined;
+
+  public FuzzyKMeansInfo() {
+  }
+
+  public FuzzyKMeansInfo(double probability, Vector pointTotal, boolean combined) {
+    this.probability = probability;
+    this.pointTotal = pointTotal;
+    this.combined = combined;
+  }
+
+  /**
+   * @return the probability of the point if not combined, otherwise the partial sum of the weights
+   */
+  public double getProbability() {
+    return probability;
+  }
+
+  /**
+   * @return the point if not combined, otherwise the partial sum of the weighted points
+   */
+  public Vector getPointTotal() {
+    return pointTotal;
+  }
+
+  /**
+   * @return true if this value has been through a combiner
+   */
+  public boolean isCombined() {
+    return combined;
+  }
+
+  @Override
+  public void write(DataOutput out) throws IOException {
+    out.writeDouble(probability);
+    out.writeBoolean(combined);
+    new VectorWritable(pointTotal).write(out);
+  }
+
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    probability = in.readDouble();
+    combined = in.readBoolean();
+    VectorWritable temp = new VectorWritable();
+    temp.readFields(in);
+    pointTotal = temp.get();
+  }
+
+  @Override
+  public String toString() {
+    return probability
+        + (combined ? FuzzyKMeansDriver.COMBINER_VALUE_SEPARATOR : FuzzyKMeansDriver.MAPPER_VALUE_SEPARATOR)
+        + pointTotal.asFormatString();
+  }
+
+}
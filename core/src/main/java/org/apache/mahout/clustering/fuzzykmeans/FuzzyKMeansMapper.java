@@ -22,29 +22,30 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableComparable;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.MapReduceBase;
 import org.apache.hadoop.mapred.Mapper;
 import org.apache.hadoop.mapred.OutputCollector;
 import org.apache.hadoop.mapred.Reporter;
-import org.apache.mahout.matrix.AbstractVector;
 import org.apache.mahout.matrix.Vector;
+import org.apache.mahout.matrix.VectorWritable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class FuzzyKMeansMapper extends MapReduceBase implements
-    Mapper<WritableComparable<?>, Text, Text, Text> {
+    Mapper<WritableComparable<?>, Writable, Text, FuzzyKMeansInfo> {
 
   private static final Logger log = LoggerFactory.getLogger(FuzzyKMeansMapper.class);
 
   protected List<SoftCluster> clusters;
 
   @Override
-  public void map(WritableComparable<?> key, Text values,
-      OutputCollector<Text, Text> output, Reporter reporter) throws IOException {
-    Vector point = AbstractVector.decodeVector(values.toString());
-    SoftCluster.emitPointProbToCluster(point, clusters, values, output);
+  public void map(WritableComparable<?> key, Writable values,
+      OutputCollector<Text, FuzzyKMeansInfo> output, Reporter reporter) throws IOException {
+    Vector point = VectorWritable.asVector(values);
+    SoftCluster.emitPointProbToCluster(point, clusters, output);
   }
 
   /**
@@ -30,43 +30,25 @@ import org.apache.hadoop.mapred.MapReduceBase;
 import org.apache.hadoop.mapred.OutputCollector;
 import org.apache.hadoop.mapred.Reducer;
 import org.apache.hadoop.mapred.Reporter;
-import org.apache.mahout.matrix.AbstractVector;
-import org.apache.mahout.matrix.Vector;
 
 public class FuzzyKMeansReducer extends MapReduceBase implements
-    Reducer<Text, Text, Text, Text> {
+    Reducer<Text, FuzzyKMeansInfo, Text, Text> {
 
   protected Map<String, SoftCluster> clusterMap;
 
   @Override
-  public void reduce(Text key, Iterator<Text> values,
+  public void reduce(Text key, Iterator<FuzzyKMeansInfo> values,
       OutputCollector<Text, Text> output, Reporter reporter) throws IOException {
 
     SoftCluster cluster = clusterMap.get(key.toString());
 
     while (values.hasNext()) {
-      String value = values.next().toString();
-      int mapperSepIndex = value
-          .indexOf(FuzzyKMeansDriver.MAPPER_VALUE_SEPARATOR); // tild separator
-      // is used in
-      // mapper
-      int combinerSepIndex = value
-          .indexOf(FuzzyKMeansDriver.COMBINER_VALUE_SEPARATOR); // tab separator
-      // is used in
-      // combiner
-      int index = mapperSepIndex == -1 ? combinerSepIndex : mapperSepIndex;// needed
-      // to
-      // split
-      // prob and vector
-      double partialSumPtProb = new Double(value.substring(0, index));
-      Vector total = AbstractVector.decodeVector(value.substring(index + 1));
-      if (mapperSepIndex != -1) // escaped from combiner
-      {
-        cluster.addPoint(total, Math.pow(partialSumPtProb, SoftCluster.getM()));
-      } else {
-        cluster.addPoints(total, partialSumPtProb);
+      FuzzyKMeansInfo info = values.next();
+      if (info.isCombined()) {
+        cluster.addPoints(info.getPointTotal(), info.getProbability());
+      } else { // escaped from combiner
+        cluster.addPoint(info.getPointTotal(), Math.pow(info.getProbability(), SoftCluster.getM()));
       }
-
     }
     // force convergence calculation
     cluster.computeConvergence();
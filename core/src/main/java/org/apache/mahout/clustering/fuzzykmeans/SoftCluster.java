@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.OutputCollector;
 import org.apache.mahout.matrix.AbstractVector;
@@ -146,14 +147,12 @@ public class SoftCluster {
    * 
    * @param point a point
    * @param clusters a List<SoftCluster>
-   * @param values a Writable containing the input point and possible other
-   *        values of interest (payload)
    * @param output the OutputCollector to emit into
    * @throws IOException
    */
   public static void emitPointProbToCluster(Vector point,
-      List<SoftCluster> clusters, Text values,
-      OutputCollector<Text, Text> output) throws IOException {
+      List<SoftCluster> clusters,
+      OutputCollector<Text, FuzzyKMeansInfo> output) throws IOException {
     List<Double> clusterDistanceList = new ArrayList<Double>();
     for (SoftCluster cluster : clusters) {
       clusterDistanceList.add(measure.distance(cluster.getCenter(), point));
@@ -166,9 +165,7 @@ public class SoftCluster {
                                                             // identifier,avoids
                                                             // too much data
                                                             // traffic
-      Text value = new Text(Double.toString(probWeight)
-          + FuzzyKMeansDriver.MAPPER_VALUE_SEPARATOR + values.toString());
-      output.collect(key, value);
+      output.collect(key, new FuzzyKMeansInfo(probWeight, point, false));
     }
   }
 
@@ -177,16 +174,16 @@ public class SoftCluster {
    * 
    * @param point a point
    * @param clusters a List<SoftCluster> to test
-   * @param values a Writable containing the input point and possible other
-   *        values of interest (payload)
+   * @param values the Writable the point was read from, which becomes the key
    * @param output the OutputCollector to emit into
    * @throws IOException
    */
-  public static void outputPointWithClusterProbabilities(String key,
-      Vector point, List<SoftCluster> clusters, Text values,
-      OutputCollector<Text, Text> output) throws IOException {
+  public static void outputPointWithClusterProbabilities(Vector point,
+      List<SoftCluster> clusters, Writable values,
+      OutputCollector<Writable, Text> output) throws IOException {
 
-    String outputKey = values.toString();
+    Writable outputKey = values instanceof Text ? new Text(values.toString()
+        .trim()) : values;
     StringBuilder outputValue = new StringBuilder("[");
     List<Double> clusterDistanceList = new ArrayList<Double>();
 
@@ -202,7 +199,7 @@ public class SoftCluster {
       outputValue.append(clusters.get(i).clusterId).append(':').append(
           probWeight).append(' ');
     }
-    output.collect(new Text(outputKey.trim()), new Text(outputValue.toString()
+    output.collect(outputKey, new Text(outputValue.toString()
         .trim()
         + ']'));
   }
@@ -304,9 +301,9 @@ public class SoftCluster {
     centroid = null;
     pointProbSum += ptProb;
     if (weightedPointTotal == null)
-      weightedPointTotal = point.copy().times(ptProb);
+      weightedPointTotal = point.times(ptProb);
     else
-      weightedPointTotal = weightedPointTotal.plus(point.times(ptProb));
+      weightedPointTotal.axpy(ptProb, point);
   }
 
   /**
@@ -320,7 +317,7 @@ public class SoftCluster {
     if (weightedPointTotal == null)
       weightedPointTotal = delta.copy();
     else
-      weightedPointTotal = weightedPointTotal.plus(delta);
+      delta.addTo(weightedPointTotal);
   }
 
   public Vector getCenter() {
@@ -355,6 +352,9 @@ public class SoftCluster {
     return weightedPointTotal;
   }
 
+  /**
+   * The vector is used as is: the points added later are summed into it in place.
+   */
   public void setWeightedPointTotal(Vector v) {
     this.weightedPointTotal = v;
   }
@@ -17,6 +17,7 @@
 package org.apache.mahout.clustering.kmeans;
 
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.OutputCollector;
 import org.apache.mahout.matrix.AbstractVector;
@@ -131,13 +132,11 @@ public class Cluster {
    * 
    * @param point a point
    * @param clusters a List<Cluster> to test
-   * @param values a Writable containing the input point and possible other
-   *        values of interest (payload)
    * @param output the OutputCollector to emit into
    * @throws IOException
    */
   public static void emitPointToNearestCluster(Vector point,
-      List<Cluster> clusters, Text values, OutputCollector<Text, Text> output)
+      List<Cluster> clusters, OutputCollector<Text, KMeansInfo> output)
       throws IOException {
     Cluster nearestCluster = null;
     double nearestDistance = Double.MAX_VALUE;
@@ -150,13 +149,21 @@ public class Cluster {
     }
     // emit only clusterID
     String outKey = nearestCluster.getIdentifier();
-    String value = "1\t" + values.toString();
-    output.collect(new Text(outKey), new Text(value));
+    output.collect(new Text(outKey), new KMeansInfo(1, point));
   }
 
-  public static void outputPointWithClusterInfo(String key, Vector point,
-      List<Cluster> clusters, Text values, OutputCollector<Text, Text> output)
-      throws IOException {
+  /**
+   * Emit the point, keyed by itself, with the id of its nearest cluster
+   *
+   * @param point a point
+   * @param clusters a List<Cluster> to test
+   * @param values the Writable the point was read from, which becomes the key
+   * @param output the OutputCollector to emit into
+   * @throws IOException
+   */
+  public static <W extends Writable> void outputPointWithClusterInfo(
+      Vector point, List<Cluster> clusters, W values,
+      OutputCollector<W, Text> output) throws IOException {
     Cluster nearestCluster = null;
     double nearestDistance = Double.MAX_VALUE;
     for (Cluster cluster : clusters) {
@@ -166,7 +173,7 @@ public class Cluster {
         nearestDistance = distance;
       }
     }
-    output.collect(new Text(key), new Text(Integer
+    output.collect(values, new Text(Integer
         .toString(nearestCluster.clusterId)));
   }
 
@@ -254,7 +261,7 @@ public class Cluster {
     if (pointTotal == null)
       pointTotal = delta.copy();
     else
-      pointTotal = pointTotal.plus(delta);
+      delta.addTo(pointTotal);
   }
 
   public Vector getCenter() {
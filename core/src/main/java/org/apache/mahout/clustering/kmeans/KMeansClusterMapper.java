@@ -17,21 +17,53 @@ package org.apache.mahout.clustering.kmeans;
  */
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.Mapper;
 import org.apache.hadoop.mapred.OutputCollector;
 import org.apache.hadoop.mapred.Reporter;
-import org.apache.mahout.matrix.AbstractVector;
 import org.apache.mahout.matrix.Vector;
+import org.apache.mahout.matrix.VectorWritable;
+
+public class KMeansClusterMapper extends MapReduceBase implements
+    Mapper<WritableComparable<?>, Writable, Writable, Text> {
+
+  protected List<Cluster> clusters;
+
+  @Override
+  public void map(WritableComparable<?> key, Writable values,
+      OutputCollector<Writable, Text> output, Reporter reporter) throws IOException {
+    Vector point = VectorWritable.asVector(values);
+    Cluster.outputPointWithClusterInfo(point, clusters, values, output);
+  }
+
+  /**
+   * Configure the mapper by providing its clusters. Used by unit tests.
+   * 
+   * @param clusters a List<Cluster>
+   */
+  void config(List<Cluster> clusters) {
+    this.clusters = clusters;
+  }
 
-public class KMeansClusterMapper extends KMeansMapper {
   @Override
-  public void map(WritableComparable<?> key, Text values,
-      OutputCollector<Text, Text> output, Reporter reporter) throws IOException {
-    Vector point = AbstractVector.decodeVector(values.toString());
-    Cluster.outputPointWithClusterInfo(values.toString(), point, clusters,
-        values, output);
+  public void configure(JobConf job) {
+    super.configure(job);
+    Cluster.configure(job);
+
+    clusters = new ArrayList<Cluster>();
+
+    KMeansUtil.configureWithClusterInfo(job.get(Cluster.CLUSTER_PATH_KEY),
+        clusters);
+
+    if (clusters.isEmpty())
+      throw new NullPointerException("Cluster is empty!!!");
   }
 
 }
@@ -25,13 +25,13 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.FileUtil;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
-import org.apache.hadoop.mapred.FileInputFormat;
 import org.apache.hadoop.mapred.FileOutputFormat;
 import org.apache.hadoop.mapred.FileSplit;
 import org.apache.hadoop.mapred.JobClient;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.mapred.SequenceFileOutputFormat;
+import org.apache.mahout.utils.VectorInputUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -101,10 +101,11 @@ public class KMeansDriver {
       int numReduceTasks) {
     JobClient client = new JobClient();
     JobConf conf = new JobConf(KMeansDriver.class);
+    conf.setMapOutputKeyClass(Text.class);
+    conf.setMapOutputValueClass(KMeansInfo.class);
     conf.setOutputKeyClass(Text.class);
     conf.setOutputValueClass(Text.class);
 
-    FileInputFormat.setInputPaths(conf, new Path(input));
     Path outPath = new Path(clustersOut);
     FileOutputFormat.setOutputPath(conf, outPath);
 
@@ -124,6 +125,7 @@ public class KMeansDriver {
 
     client.setConf(conf);
     try {
+      VectorInputUtil.configureInput(conf, new Path(input));
       JobClient.runJob(conf);
       FileSystem fs = FileSystem.get(conf);
       return isConverged(clustersOut + "/part-00000", conf, fs);
@@ -147,10 +149,8 @@ public class KMeansDriver {
     JobClient client = new JobClient();
     JobConf conf = new JobConf(KMeansDriver.class);
 
-    conf.setOutputKeyClass(Text.class);
     conf.setOutputValueClass(Text.class);
 
-    FileInputFormat.setInputPaths(conf, new Path(input));
     Path outPath = new Path(output);
     FileOutputFormat.setOutputPath(conf, outPath);
 
@@ -165,6 +165,8 @@ public class KMeansDriver {
     // conf.set("mapred.job.tracker", "local");
 //    conf.set("mapred.child.java.opts", "-Xmx1536m");
     try {
+      VectorInputUtil.configurePointOutput(conf,
+          VectorInputUtil.configureInput(conf, new Path(input)));
       JobClient.runJob(conf);
     } catch (IOException e) {
       log.warn(e.toString(), e);
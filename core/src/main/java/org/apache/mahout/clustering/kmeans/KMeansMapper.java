@@ -21,25 +21,26 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableComparable;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.MapReduceBase;
 import org.apache.hadoop.mapred.Mapper;
 import org.apache.hadoop.mapred.OutputCollector;
 import org.apache.hadoop.mapred.Reporter;
-import org.apache.mahout.matrix.AbstractVector;
 import org.apache.mahout.matrix.Vector;
+import org.apache.mahout.matrix.VectorWritable;
 
 public class KMeansMapper extends MapReduceBase implements
-    Mapper<WritableComparable<?>, Text, Text, Text> {
+    Mapper<WritableComparable<?>, Writable, Text, KMeansInfo> {
 
   protected List<Cluster> clusters;
 
   @Override
-  public void map(WritableComparable<?> key, Text values,
-      OutputCollector<Text, Text> output, Reporter reporter) throws IOException {
-    Vector point = AbstractVector.decodeVector(values.toString());
-    Cluster.emitPointToNearestCluster(point, clusters, values, output);
+  public void map(WritableComparable<?> key, Writable values,
+      OutputCollector<Text, KMeansInfo> output, Reporter reporter) throws IOException {
+    Vector point = VectorWritable.asVector(values);
+    Cluster.emitPointToNearestCluster(point, clusters, output);
   }
 
   /**
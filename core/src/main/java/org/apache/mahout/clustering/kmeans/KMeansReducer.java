@@ -29,23 +29,20 @@ import org.apache.hadoop.mapred.MapReduceBase;
 import org.apache.hadoop.mapred.OutputCollector;
 import org.apache.hadoop.mapred.Reducer;
 import org.apache.hadoop.mapred.Reporter;
-import org.apache.mahout.matrix.AbstractVector;
 
 public class KMeansReducer extends MapReduceBase implements
-    Reducer<Text, Text, Text, Text> {
+    Reducer<Text, KMeansInfo, Text, Text> {
 
   protected Map<String, Cluster> clusterMap;
 
   @Override
-  public void reduce(Text key, Iterator<Text> values,
+  public void reduce(Text key, Iterator<KMeansInfo> values,
       OutputCollector<Text, Text> output, Reporter reporter) throws IOException {
     Cluster cluster = clusterMap.get(key.toString());
 
     while (values.hasNext()) {
-      String value = values.next().toString();
-      String[] numNValue = value.split("\t");
-      cluster.addPoints(Integer.parseInt(numNValue[0].trim()), AbstractVector
-          .decodeVector(numNValue[1].trim()));
+      KMeansInfo delta = values.next();
+      cluster.addPoints(delta.getPoints(), delta.getPointTotal());
     }
     // force convergence calculation
     cluster.computeConvergence();
@@ -277,8 +277,10 @@ public class MeanShiftCanopy {
    */
   void addPoints(Vector point, int nPoints) {
     numPoints += nPoints;
-    Vector subTotal = (nPoints == 1) ? point.copy() : point.times(nPoints);
-    pointTotal = (pointTotal == null) ? subTotal : pointTotal.plus(subTotal);
+    if (pointTotal == null)
+      pointTotal = (nPoints == 1) ? point.copy() : point.times(nPoints);
+    else
+      pointTotal.axpy(nPoints, point);
   }
 
   /**
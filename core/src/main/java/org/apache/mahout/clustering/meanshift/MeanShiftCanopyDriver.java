@@ -19,12 +19,12 @@ package org.apache.mahout.clustering.meanshift;
 
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
-import org.apache.hadoop.mapred.FileInputFormat;
 import org.apache.hadoop.mapred.FileOutputFormat;
 import org.apache.hadoop.mapred.JobClient;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.SequenceFileInputFormat;
 import org.apache.hadoop.mapred.SequenceFileOutputFormat;
+import org.apache.mahout.utils.VectorInputUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,7 +56,9 @@ public class MeanShiftCanopyDriver {
    * @param t1 the T1 distance threshold
    * @param t2 the T2 distance threshold
    * @param convergenceDelta the double convergence criteria
-   * @param inputIsSequenceFile true if input is sequence file encoded
+   * @param inputIsSequenceFile true if input is sequence file encoded. Input
+   *        in SequenceFiles, including VectorWritable points, is also detected
+   *        from the files themselves
    */
   public static void runJob(String input, String output,
       String measureClassName, double t1, double t2, double convergenceDelta,
@@ -68,7 +70,6 @@ public class MeanShiftCanopyDriver {
     conf.setOutputKeyClass(Text.class);
     conf.setOutputValueClass(Text.class);
 
-    FileInputFormat.setInputPaths(conf, new Path(input));
     Path outPath = new Path(output);
     FileOutputFormat.setOutputPath(conf, outPath);
 
@@ -86,6 +87,7 @@ public class MeanShiftCanopyDriver {
 
     client.setConf(conf);
     try {
+      VectorInputUtil.configureInput(conf, new Path(input));
       JobClient.runJob(conf);
     } catch (IOException e) {
       log.warn(e.toString(), e);
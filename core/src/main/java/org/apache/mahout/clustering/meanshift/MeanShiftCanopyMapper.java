@@ -18,27 +18,34 @@
 package org.apache.mahout.clustering.meanshift;
 
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableComparable;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.MapReduceBase;
 import org.apache.hadoop.mapred.Mapper;
 import org.apache.hadoop.mapred.OutputCollector;
 import org.apache.hadoop.mapred.Reporter;
+import org.apache.mahout.matrix.VectorWritable;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 public class MeanShiftCanopyMapper extends MapReduceBase implements
-    Mapper<WritableComparable<?>, Text, Text, WritableComparable<?>> {
+    Mapper<WritableComparable<?>, Writable, Text, WritableComparable<?>> {
 
   private final List<MeanShiftCanopy> canopies = new ArrayList<MeanShiftCanopy>();
 
   @Override
-  public void map(WritableComparable<?> key, Text values,
+  public void map(WritableComparable<?> key, Writable values,
       OutputCollector<Text, WritableComparable<?>> output, Reporter reporter)
       throws IOException {
-    MeanShiftCanopy canopy = MeanShiftCanopy.decodeCanopy(values.toString());
+    MeanShiftCanopy canopy;
+    if (values instanceof VectorWritable)
+      // raw input points start out as a canopy of their own
+      canopy = new MeanShiftCanopy(((VectorWritable) values).get());
+    else
+      canopy = MeanShiftCanopy.decodeCanopy(values.toString());
     MeanShiftCanopy.mergeCanopy(canopy, canopies, output);
   }
 
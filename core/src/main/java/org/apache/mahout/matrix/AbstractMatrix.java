@@ -88,38 +88,28 @@ public abstract class AbstractMatrix implements Matrix {
 
   @Override
   public double determinant() {
-    int[] card = cardinality();
-    int rowSize = card[ROW];
-    int columnSize = card[COL];
-    if (rowSize != columnSize)
-      throw new CardinalityException();
-
-    if (rowSize == 2)
-      return getQuick(0, 0) * getQuick(1, 1) - getQuick(0, 1) * getQuick(1, 0);
-    else {
-      int sign = 1;
-      double ret = 0;
-
-      for (int i = 0; i < columnSize; i++) {
-        Matrix minor = new DenseMatrix(rowSize - 1, columnSize - 1);
-        for (int j = 1; j < rowSize; j++) {
-          boolean flag = false; /* column offset flag */
-          for (int k = 0; k < columnSize; k++) {
-            if (k == i) {
-              flag = true;
-              continue;
-            }
-            minor.set(j - 1, flag ? k - 1 : k, getQuick(j, k));
-          }
-        }
-        ret += getQuick(0, i) * sign * minor.determinant();
-        sign *= -1;
+    return new LUDecomposition(this).determinant();
+  }
 
-      }
+  @Override
+  public Matrix inverse() {
+    return new LUDecomposition(this).inverse();
+  }
 
-      return ret;
-    }
+  @Override
+  public Matrix solve(Matrix b) {
+    int[] c = cardinality();
+    if (c[ROW] == c[COL])
+      return new LUDecomposition(this).solve(b);
+    return new QRDecomposition(this).solve(b);
+  }
 
+  @Override
+  public Vector solve(Vector b) {
+    int[] c = cardinality();
+    if (c[ROW] == c[COL])
+      return new LUDecomposition(this).solve(b);
+    return new QRDecomposition(this).solve(b);
   }
 
   @Override
@@ -208,20 +198,66 @@ public abstract class AbstractMatrix implements Matrix {
     return result;
   }
 
+  @Override
+  public Matrix scaleInPlace(double alpha) {
+    int[] c = cardinality();
+    for (int row = 0; row < c[ROW]; row++)
+      for (int col = 0; col < c[COL]; col++)
+        setQuick(row, col, getQuick(row, col) * alpha);
+    return this;
+  }
+
+  @Override
+  public Matrix axpy(double alpha, Matrix other) {
+    int[] c = cardinality();
+    int[] o = other.cardinality();
+    if (c[ROW] != o[ROW] || c[COL] != o[COL])
+      throw new CardinalityException();
+    for (int row = 0; row < c[ROW]; row++)
+      for (int col = 0; col < c[COL]; col++)
+        setQuick(row, col, getQuick(row, col) + alpha * other.getQuick(row, col));
+    return this;
+  }
+
   @Override
   public Matrix times(Matrix other) {
     int[] c = cardinality();
     int[] o = other.cardinality();
     if (c[COL] != o[ROW])
       throw new CardinalityException();
-    Matrix result = like(c[ROW], o[COL]);
+    return times(other, like(c[ROW], o[COL]));
+  }
+
+  @Override
+  public Matrix times(Matrix other, Matrix result) {
+    int[] c = cardinality();
+    int[] o = other.cardinality();
+    int[] r = result.cardinality();
+    if (c[COL] != o[ROW] || r[ROW] != c[ROW] || r[COL] != o[COL])
+      throw new CardinalityException();
+    // cells of the operands must not be overwritten while they are still needed
+    Matrix target = result.haveSharedCells(this) || result.haveSharedCells(other)
+        ? like(c[ROW], o[COL]) : result;
     for (int row = 0; row < c[ROW]; row++)
       for (int col = 0; col < o[COL]; col++) {
         double sum = 0;
         for (int k = 0; k < c[COL]; k++)
           sum += getQuick(row, k) * other.getQuick(k, col);
-        result.setQuick(row, col, sum);
+        target.setQuick(row, col, sum);
       }
+    if (target != result)
+      result.assign(target);
+    return result;
+  }
+
+  @Override
+  public Vector times(Vector v) {
+    int[] c = cardinality();
+    if (c[COL] != v.cardinality())
+      throw new CardinalityException();
+    Vector result = new DenseVector(c[ROW]);
+    for (int row = 0; row < c[ROW]; row++)
+      result.setQuick(row, getRow(row).dot(v));
     return result;
   }
 
@@ -245,4 +281,45 @@ public abstract class AbstractMatrix implements Matrix {
     return result;
   }
 
+  @Override
+  public boolean foreachNonZero(IntIntDoubleProcedure procedure) {
+    int[] c = cardinality();
+    for (int row = 0; row < c[ROW]; row++)
+      for (int col = 0; col < c[COL]; col++) {
+        double value = getQuick(row, col);
+        if (value != 0.0 && !procedure.apply(row, col, value))
+          return false;
+      }
+    return true;
+  }
+
+  @Override
+  public double aggregate(BinaryFunction aggregator, UnaryFunction map) {
+    int[] c = cardinality();
+    if (c[ROW] == 0 || c[COL] == 0)
+      return 0.0;
+    double result = map.apply(getQuick(0, 0));
+    for (int row = 0; row < c[ROW]; row++)
+      for (int col = row == 0 ? 1 : 0; col < c[COL]; col++)
+        result = aggregator.apply(result, map.apply(getQuick(row, col)));
+    return result;
+  }
+
+  @Override
+  public double aggregate(Matrix other, BinaryFunction aggregator,
+      BinaryFunction combiner) {
+    int[] c = cardinality();
+    int[] o = other.cardinality();
+    if (c[ROW] != o[ROW] || c[COL] != o[COL])
+      throw new CardinalityException();
+    if (c[ROW] == 0 || c[COL] == 0)
+      return 0.0;
+    double result = combiner.apply(getQuick(0, 0), other.getQuick(0, 0));
+    for (int row = 0; row < c[ROW]; row++)
+      for (int col = row == 0 ? 1 : 0; col < c[COL]; col++)
+        result = aggregator.apply(result, combiner.apply(getQuick(row, col),
+            other.getQuick(row, col)));
+    return result;
+  }
+
 }
@@ -86,6 +86,8 @@ public abstract class AbstractVector implements Vector {
   public double dot(Vector x) {
     if (cardinality() != x.cardinality())
       throw new CardinalityException();
+    if (SparseKernels.isSparse(this) || SparseKernels.isSparse(x))
+      return SparseKernels.dot(this, x);
     double result = 0;
     for (int i = 0; i < cardinality(); i++)
       result += getQuick(i) * x.getQuick(i);
@@ -105,6 +107,10 @@ public abstract class AbstractVector implements Vector {
     if (cardinality() != x.cardinality())
       throw new CardinalityException();
     Vector result = copy();
+    if (SparseKernels.isSparse(this) || SparseKernels.isSparse(x)) {
+      SparseKernels.axpy(-1.0, x, result);
+      return result;
+    }
     for (int i = 0; i < result.cardinality(); i++)
       result.setQuick(i, getQuick(i) - x.getQuick(i));
     return result;
@@ -116,6 +122,11 @@ public abstract class AbstractVector implements Vector {
     return divide(divSq);
   }
 
+  @Override
+  public Vector normalizeInPlace() {
+    return scaleInPlace(1.0 / Math.sqrt(dot(this)));
+  }
+
   @Override
   public Vector plus(double x) {
     Vector result = copy();
@@ -129,11 +140,33 @@ public abstract class AbstractVector implements Vector {
     if (cardinality() != x.cardinality())
       throw new CardinalityException();
     Vector result = copy();
+    if (SparseKernels.isSparse(this) || SparseKernels.isSparse(x)) {
+      SparseKernels.axpy(1.0, x, result);
+      return result;
+    }
     for (int i = 0; i < result.cardinality(); i++)
       result.setQuick(i, getQuick(i) + x.getQuick(i));
     return result;
   }
 
+  @Override
+  public Vector addTo(Vector x) {
+    return x.axpy(1.0, this);
+  }
+
+  @Override
+  public Vector axpy(double alpha, Vector x) {
+    if (cardinality() != x.cardinality())
+      throw new CardinalityException();
+    if (SparseKernels.isSparse(x) || SparseKernels.isSparse(this)) {
+      SparseKernels.axpy(alpha, x, this);
+      return this;
+    }
+    for (int i = 0; i < cardinality(); i++)
+      setQuick(i, getQuick(i) + alpha * x.getQuick(i));
+    return this;
+  }
+
   @Override
   public void set(int index, double value) {
     if (index >= 0 && index < cardinality())
@@ -150,10 +183,23 @@ public abstract class AbstractVector implements Vector {
     return result;
   }
 
+  @Override
+  public Vector scaleInPlace(double alpha) {
+    if (SparseKernels.isSparse(this)) {
+      SparseKernels.scale(alpha, this);
+      return this;
+    }
+    for (int i = 0; i < cardinality(); i++)
+      setQuick(i, getQuick(i) * alpha);
+    return this;
+  }
+
   @Override
   public Vector times(Vector x) {
     if (cardinality() != x.cardinality())
       throw new CardinalityException();
+    if (SparseKernels.isSparse(this) || SparseKernels.isSparse(x))
+      return SparseKernels.times(this, x);
     Vector result = copy();
     for (int i = 0; i < result.cardinality(); i++)
       result.setQuick(i, getQuick(i) * x.getQuick(i));
@@ -168,6 +214,55 @@ public abstract class AbstractVector implements Vector {
     return result;
   }
 
+  @Override
+  public boolean foreachNonZero(IntDoubleProcedure procedure) {
+    if (SparseKernels.isSparse(this))
+      return SparseKernels.foreachNonZero(this, procedure);
+    for (int i = 0; i < cardinality(); i++) {
+      double value = getQuick(i);
+      if (value != 0.0 && !procedure.apply(i, value))
+        return false;
+    }
+    return true;
+  }
+
+  @Override
+  public double aggregate(BinaryFunction aggregator, UnaryFunction map) {
+    if (aggregator instanceof PlusFunction && SparseKernels.isSparse(this)
+        && map.apply(0.0) == 0.0)
+      return SparseKernels.sum(this, map);
+    int cardinality = cardinality();
+    if (cardinality == 0)
+      return 0.0;
+    double result = map.apply(getQuick(0));
+    for (int i = 1; i < cardinality; i++)
+      result = aggregator.apply(result, map.apply(getQuick(i)));
+    return result;
+  }
+
+  @Override
+  public double aggregate(Vector other, BinaryFunction aggregator,
+      BinaryFunction combiner) {
+    if (cardinality() != other.cardinality())
+      throw new CardinalityException();
+    if (aggregator instanceof PlusFunction) {
+      if (combiner instanceof TimesFunction
+          && (SparseKernels.isSparse(this) || SparseKernels.isSparse(other)))
+        return SparseKernels.dot(this, other);
+      if (SparseKernels.isSparse(this) && SparseKernels.isSparse(other)
+          && combiner.apply(0.0, 0.0) == 0.0)
+        return SparseKernels.sum(this, other, combiner);
+    }
+    int cardinality = cardinality();
+    if (cardinality == 0)
+      return 0.0;
+    double result = combiner.apply(getQuick(0), other.getQuick(0));
+    for (int i = 1; i < cardinality; i++)
+      result = aggregator.apply(result, combiner.apply(getQuick(i), other
+          .getQuick(i)));
+    return result;
+  }
+
   @Override
   public Vector assign(double value) {
     for (int i = 0; i < cardinality(); i++)
@@ -208,10 +303,22 @@ public abstract class AbstractVector implements Vector {
     return this;
   }
 
+  /**
+   * When one side is sparse, {@link PlusFunction} and {@link TimesFunction} only visit the non-zeros that can
+   * change the result; any other function is applied to every element.
+   */
   @Override
   public Vector assign(Vector other, BinaryFunction function) {
     if (other.cardinality() != cardinality())
       throw new CardinalityException();
+    if (function instanceof PlusFunction && SparseKernels.isSparse(other)) {
+      SparseKernels.axpy(1.0, other, this);
+      return this;
+    }
+    if (function instanceof TimesFunction && SparseKernels.isSparse(this)) {
+      SparseKernels.timesAssign(this, other);
+      return this;
+    }
     for (int i = 0; i < cardinality(); i++)
       setQuick(i, function.apply(getQuick(i), other.getQuick(i)));
     return this;
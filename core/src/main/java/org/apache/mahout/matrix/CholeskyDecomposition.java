@@ -0,0 +1,213 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.matrix;
+
+/**
+ * Cholesky decomposition of a symmetric positive definite matrix, such as a
+ * covariance matrix, so that <code>A = L L'</code> with L lower triangular.
+ * Only the lower triangle of the matrix is read. It costs half as much as an
+ * {@link LUDecomposition} and needs no pivoting; like it, the factor is
+ * computed once and may be used for any number of solves.
+ */
+public class CholeskyDecomposition {
+
+  private static final int ROW = AbstractMatrix.ROW;
+
+  private static final int COL = AbstractMatrix.COL;
+
+  /** rows of L, row i holding its i+1 non-zero values */
+  private final double[][] l;
+
+  private final boolean positiveDefinite;
+
+  private final int n;
+
+  /**
+   * Decompose the given matrix, which is not modified
+   * 
+   * @param a a square Matrix
+   * @throws CardinalityException if the matrix is not square
+   */
+  public CholeskyDecomposition(Matrix a) {
+    int[] c = a.cardinality();
+    if (c[ROW] != c[COL])
+      throw new CardinalityException();
+    n = c[ROW];
+    l = new double[n][];
+    boolean isPositiveDefinite = true;
+    for (int i = 0; i < n && isPositiveDefinite; i++) {
+      double[] li = new double[i + 1];
+      l[i] = li;
+      for (int j = 0; j <= i; j++) {
+        double[] lj = l[j];
+        double sum = a.getQuick(i, j);
+        for (int k = 0; k < j; k++)
+          sum -= li[k] * lj[k];
+        if (j < i)
+          li[j] = sum / lj[j];
+        else if (sum > 0.0)
+          li[i] = Math.sqrt(sum);
+        else
+          isPositiveDefinite = false;
+      }
+    }
+    positiveDefinite = isPositiveDefinite;
+  }
+
+  /**
+   * @return true if the matrix is positive definite; otherwise the factor is
+   *         incomplete and cannot be used
+   */
+  public boolean isPositiveDefinite() {
+    return positiveDefinite;
+  }
+
+  private void checkPositiveDefinite() {
+    if (!positiveDefinite)
+      throw new SingularMatrixException();
+  }
+
+  /**
+   * @return the lower triangular factor L
+   * @throws SingularMatrixException if the matrix is not positive definite
+   */
+  public Matrix getL() {
+    checkPositiveDefinite();
+    Matrix result = new DenseMatrix(n, n);
+    for (int i = 0; i < n; i++)
+      for (int j = 0; j <= i; j++)
+        result.setQuick(i, j, l[i][j]);
+    return result;
+  }
+
+  /**
+   * @return the determinant of the matrix, zero if it is not positive definite
+   */
+  public double determinant() {
+    if (!positiveDefinite)
+      return 0.0;
+    double result = 1.0;
+    for (int i = 0; i < n; i++)
+      result *= l[i][i] * l[i][i];
+    return result;
+  }
+
+  /**
+   * The natural logarithm of the determinant, which unlike the determinant
+   * itself does not overflow or underflow for large matrices
+   * 
+   * @return the log of the determinant of the matrix
+   * @throws SingularMatrixException if the matrix is not positive definite
+   */
+  public double logDeterminant() {
+    checkPositiveDefinite();
+    double result = 0.0;
+    for (int i = 0; i < n; i++)
+      result += Math.log(l[i][i]);
+    return 2.0 * result;
+  }
+
+  /**
+   * Solve <code>A X = B</code>
+   * 
+   * @param b a Matrix with as many rows as the decomposed matrix
+   * @return a new Matrix X
+   * @throws CardinalityException if the row counts differ
+   * @throws SingularMatrixException if the matrix is not positive definite
+   */
+  public Matrix solve(Matrix b) {
+    int[] c = b.cardinality();
+    if (c[ROW] != n)
+      throw new CardinalityException();
+    checkPositiveDefinite();
+    int columns = c[COL];
+    double[][] x = b.toArray();
+    // solve L Y = B, then L' X = Y, by rows
+    for (int k = 0; k < n; k++) {
+      double[] xk = x[k];
+      double[] lk = l[k];
+      for (int i = 0; i < k; i++) {
+        double factor = lk[i];
+        if (factor != 0.0) {
+          double[] xi = x[i];
+          for (int j = 0; j < columns; j++)
+            xk[j] -= factor * xi[j];
+        }
+      }
+      for (int j = 0; j < columns; j++)
+        xk[j] /= lk[k];
+    }
+    for (int k = n - 1; k >= 0; k--) {
+      double[] xk = x[k];
+      double[] lk = l[k];
+      for (int j = 0; j < columns; j++)
+        xk[j] /= lk[k];
+      for (int i = 0; i < k; i++) {
+        double factor = lk[i];
+        if (factor != 0.0) {
+          double[] xi = x[i];
+          for (int j = 0; j < columns; j++)
+            xi[j] -= factor * xk[j];
+        }
+      }
+    }
+    return new DenseMatrix(x);
+  }
+
+  /**
+   * Solve <code>A x = b</code>
+   * 
+   * @param b a Vector with as many elements as the decomposed matrix has rows
+   * @return a new Vector x
+   * @throws CardinalityException if the cardinalities differ
+   * @throws SingularMatrixException if the matrix is not positive definite
+   */
+  public Vector solve(Vector b) {
+    if (b.cardinality() != n)
+      throw new CardinalityException();
+    checkPositiveDefinite();
+    double[] x = new double[n];
+    for (int i = 0; i < n; i++) {
+      double[] li = l[i];
+      double sum = b.getQuick(i);
+      for (int k = 0; k < i; k++)
+        sum -= li[k] * x[k];
+      x[i] = sum / li[i];
+    }
+    for (int i = n - 1; i >= 0; i--) {
+      x[i] /= l[i][i];
+      double xi = x[i];
+      double[] li = l[i];
+      for (int k = 0; k < i; k++)
+        x[k] -= li[k] * xi;
+    }
+    return new DenseVector(x);
+  }
+
+  /**
+   * @return the inverse of the matrix
+   * @throws SingularMatrixException if the matrix is not positive definite
+   */
+  public Matrix inverse() {
+    Matrix identity = new DenseMatrix(n, n);
+    for (int i = 0; i < n; i++)
+      identity.setQuick(i, i, 1.0);
+    return solve(identity);
+  }
+
+}
@@ -0,0 +1,570 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.matrix;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Immutable sparse matrix in compressed sparse row (CSR) or compressed sparse
+ * column (CSC) form: the non-zero values and their minor indexes are held in
+ * two flat arrays, sorted by major then minor index, with a third array giving
+ * where each row (or column) starts. This takes 12 bytes per non-zero plus 4
+ * per row, several times less than a {@link SparseRowMatrix}, and is meant for
+ * large matrices which are built once, with a {@link Builder}, and then only
+ * read.
+ *
+ * Scanning a row of a CSR matrix, or a column of a CSC one, is O(number of
+ * non-zeros); {@link #transpose()} is O(1) since it just reinterprets a CSR
+ * matrix as a CSC one, and {@link #toColumnMajor()} and {@link #toRowMajor()}
+ * convert between the two forms in O(non-zeros). Any operation that would
+ * modify the matrix throws UnsupportedOperationException.
+ */
+public class CompressedSparseMatrix extends AbstractMatrix implements Writable {
+
+  private int[] cardinality;
+
+  /** true for CSR, false for CSC */
+  private boolean rowMajor;
+
+  /** offsets[i] is the position in indices and values of the first value of row (column) i */
+  private int[] offsets;
+
+  /** column (row) of each value */
+  private int[] indices;
+
+  private double[] values;
+
+  /**
+   * For deserialization only
+   */
+  public CompressedSparseMatrix() {
+  }
+
+  private CompressedSparseMatrix(int rows, int columns, boolean rowMajor,
+      int[] offsets, int[] indices, double[] values) {
+    this.cardinality = new int[2];
+    cardinality[ROW] = rows;
+    cardinality[COL] = columns;
+    this.rowMajor = rowMajor;
+    this.offsets = offsets;
+    this.indices = indices;
+    this.values = values;
+  }
+
+  /**
+   * Construct a CSR copy of the given matrix
+   *
+   * @param other a Matrix
+   * @return a new CompressedSparseMatrix
+   */
+  public static CompressedSparseMatrix valueOf(Matrix other) {
+    if (other instanceof CompressedSparseMatrix)
+      return ((CompressedSparseMatrix) other).toRowMajor();
+    int[] c = other.cardinality();
+    Builder builder = new Builder(c[ROW], c[COL]);
+    for (int row = 0; row < c[ROW]; row++)
+      builder.addRow(row, other.getRow(row));
+    return builder.build();
+  }
+
+  /**
+   * @return true if the matrix is in CSR form, false if it is in CSC form
+   */
+  public boolean isRowMajor() {
+    return rowMajor;
+  }
+
+  /**
+   * @return the number of stored non-zero values
+   */
+  public int getNumNonZeros() {
+    return offsets[offsets.length - 1];
+  }
+
+  @Override
+  public WritableComparable<?> asWritableComparable() {
+    return new Text(asFormatString());
+  }
+
+  @Override
+  public String asFormatString() {
+    StringBuilder out = new StringBuilder();
+    out.append("[[, ");
+    for (int row = 0; row < cardinality[ROW]; row++) {
+      for (int col = 0; col < cardinality[COL]; col++)
+        out.append(getQuick(row, col)).append(", ");
+      out.append("], ");
+    }
+    out.append("] ");
+    return out.toString();
+  }
+
+  @Override
+  public int[] cardinality() {
+    return cardinality.clone();
+  }
+
+  /**
+   * @return a new, mutable SparseRowMatrix with the same values, since a copy
+   *         is what the element-wise operations of AbstractMatrix modify
+   */
+  @Override
+  public Matrix copy() {
+    Matrix result = like();
+    int majorSize = offsets.length - 1;
+    for (int major = 0; major < majorSize; major++)
+      for (int i = offsets[major]; i < offsets[major + 1]; i++)
+        if (rowMajor)
+          result.setQuick(major, indices[i], values[i]);
+        else
+          result.setQuick(indices[i], major, values[i]);
+    return result;
+  }
+
+  @Override
+  public double getQuick(int row, int column) {
+    int major = rowMajor ? row : column;
+    int minor = rowMajor ? column : row;
+    int low = offsets[major];
+    int high = offsets[major + 1] - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int index = indices[mid];
+      if (index < minor)
+        low = mid + 1;
+      else if (index > minor)
+        high = mid - 1;
+      else
+        return values[mid];
+    }
+    return 0.0;
+  }
+
+  @Override
+  public boolean haveSharedCells(Matrix other) {
+    // only a view can share cells with a matrix of another class
+    if (other instanceof MatrixView)
+      return other.haveSharedCells(this);
+    return other == this;
+  }
+
+  /**
+   * @return a new, mutable SparseRowMatrix, since this class is immutable
+   */
+  @Override
+  public Matrix like() {
+    return new SparseRowMatrix(cardinality);
+  }
+
+  /**
+   * @return a new, mutable SparseRowMatrix, since this class is immutable
+   */
+  @Override
+  public Matrix like(int rows, int columns) {
+    int[] c = new int[2];
+    c[ROW] = rows;
+    c[COL] = columns;
+    return new SparseRowMatrix(c);
+  }
+
+  @Override
+  public void setQuick(int row, int column, double value) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public Matrix assignColumn(int column, Vector other) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public Matrix assignRow(int row, Vector other) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public int[] size() {
+    int[] result = new int[2];
+    int major = rowMajor ? ROW : COL;
+    result[major] = cardinality[major];
+    for (int i = 0; i < cardinality[major]; i++)
+      result[1 - major] = Math.max(result[1 - major], offsets[i + 1] - offsets[i]);
+    return result;
+  }
+
+  @Override
+  public double[][] toArray() {
+    double[][] result = new double[cardinality[ROW]][cardinality[COL]];
+    int majorSize = offsets.length - 1;
+    for (int major = 0; major < majorSize; major++)
+      for (int i = offsets[major]; i < offsets[major + 1]; i++)
+        if (rowMajor)
+          result[major][indices[i]] = values[i];
+        else
+          result[indices[i]][major] = values[i];
+    return result;
+  }
+
+  @Override
+  public Matrix viewPart(int[] offset, int[] size) {
+    if (size[ROW] > cardinality[ROW] || size[COL] > cardinality[COL])
+      throw new CardinalityException();
+    if (offset[ROW] < 0 || offset[ROW] + size[ROW] > cardinality[ROW]
+        || offset[COL] < 0 || offset[COL] + size[COL] > cardinality[COL])
+      throw new IndexException();
+    return new MatrixView(this, offset, size);
+  }
+
+  /**
+   * @return a SequentialAccessSparseVector holding the row, in O(non-zeros of
+   *         the row) for a CSR matrix
+   */
+  @Override
+  public Vector getRow(int row) {
+    if (row < 0 || row >= cardinality[ROW])
+      throw new IndexException();
+    return rowMajor ? slice(row, cardinality[COL]) : cross(row, cardinality[COL]);
+  }
+
+  /**
+   * @return a SequentialAccessSparseVector holding the column, in O(non-zeros
+   *         of the column) for a CSC matrix
+   */
+  @Override
+  public Vector getColumn(int column) {
+    if (column < 0 || column >= cardinality[COL])
+      throw new IndexException();
+    return rowMajor ? cross(column, cardinality[ROW]) : slice(column, cardinality[ROW]);
+  }
+
+  private Vector slice(int major, int size) {
+    int start = offsets[major];
+    int length = offsets[major + 1] - start;
+    int[] sliceIndices = new int[length];
+    double[] sliceValues = new double[length];
+    System.arraycopy(indices, start, sliceIndices, 0, length);
+    System.arraycopy(values, start, sliceValues, 0, length);
+    return new SequentialAccessSparseVector(size,
+        new OrderedIntDoubleMapping(sliceIndices, sliceValues, length));
+  }
+
+  private Vector cross(int minor, int size) {
+    Vector result = new SequentialAccessSparseVector(size);
+    for (int major = 0; major < size; major++) {
+      double value = getQuick(rowMajor ? major : minor, rowMajor ? minor : major);
+      if (value != 0.0)
+        result.setQuick(major, value);
+    }
+    return result;
+  }
+
+  /**
+   * O(1): the transpose of a CSR matrix is the same storage read as a CSC
+   * matrix, and vice versa
+   */
+  @Override
+  public Matrix transpose() {
+    return new CompressedSparseMatrix(cardinality[COL], cardinality[ROW],
+        !rowMajor, offsets, indices, values);
+  }
+
+  /**
+   * @return this matrix in CSR form, converting it in O(non-zeros) if needed
+   */
+  public CompressedSparseMatrix toRowMajor() {
+    return rowMajor ? this : convert();
+  }
+
+  /**
+   * @return this matrix in CSC form, converting it in O(non-zeros) if needed
+   */
+  public CompressedSparseMatrix toColumnMajor() {
+    return rowMajor ? convert() : this;
+  }
+
+  private CompressedSparseMatrix convert() {
+    int majorSize = offsets.length - 1;
+    int nonZeros = getNumNonZeros();
+    int[] majors = new int[nonZeros];
+    for (int major = 0; major < majorSize; major++)
+      for (int i = offsets[major]; i < offsets[major + 1]; i++)
+        majors[i] = major;
+    // entries are already in major order, so a single stable sort by minor index suffices
+    int minorSize = rowMajor ? cardinality[COL] : cardinality[ROW];
+    int[] newOffsets = new int[minorSize + 1];
+    int[] newIndices = new int[nonZeros];
+    double[] newValues = new double[nonZeros];
+    countingSort(indices, majors, values, nonZeros, minorSize, newOffsets,
+        newIndices, newValues);
+    return new CompressedSparseMatrix(cardinality[ROW], cardinality[COL],
+        !rowMajor, newOffsets, newIndices, newValues);
+  }
+
+  /**
+   * Stable counting sort of n entries by key, filling the offsets of each key
+   * and the sorted other indexes and values
+   */
+  private static void countingSort(int[] keys, int[] others, double[] vals,
+      int n, int keySize, int[] sortedOffsets, int[] sortedOthers,
+      double[] sortedValues) {
+    for (int i = 0; i < n; i++)
+      sortedOffsets[keys[i] + 1]++;
+    for (int key = 0; key < keySize; key++)
+      sortedOffsets[key + 1] += sortedOffsets[key];
+    int[] next = new int[keySize];
+    System.arraycopy(sortedOffsets, 0, next, 0, keySize);
+    for (int i = 0; i < n; i++) {
+      int position = next[keys[i]]++;
+      sortedOthers[position] = others[i];
+      sortedValues[position] = vals[i];
+    }
+  }
+
+  /**
+   * Sparse matrix times vector in O(non-zeros), reading the backing array of a
+   * DenseVector directly
+   */
+  @Override
+  public Vector times(Vector v) {
+    if (cardinality[COL] != v.cardinality())
+      throw new CardinalityException();
+    double[] x = v instanceof DenseVector ? ((DenseVector) v).getValues() : v.toArray();
+    DenseVector result = new DenseVector(cardinality[ROW]);
+    double[] y = result.getValues();
+    int majorSize = offsets.length - 1;
+    if (rowMajor) {
+      for (int row = 0; row < majorSize; row++) {
+        double sum = 0.0;
+        for (int i = offsets[row]; i < offsets[row + 1]; i++)
+          sum += values[i] * x[indices[i]];
+        y[row] = sum;
+      }
+    } else {
+      for (int col = 0; col < majorSize; col++) {
+        double xj = x[col];
+        if (xj != 0.0)
+          for (int i = offsets[col]; i < offsets[col + 1]; i++)
+            y[indices[i]] += values[i] * xj;
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public double zSum() {
+    double result = 0.0;
+    for (int i = 0; i < getNumNonZeros(); i++)
+      result += values[i];
+    return result;
+  }
+
+  @Override
+  public boolean foreachNonZero(IntIntDoubleProcedure procedure) {
+    int majorSize = offsets.length - 1;
+    for (int major = 0; major < majorSize; major++)
+      for (int i = offsets[major]; i < offsets[major + 1]; i++) {
+        boolean more = rowMajor
+            ? procedure.apply(major, indices[i], values[i])
+            : procedure.apply(indices[i], major, values[i]);
+        if (!more)
+          return false;
+      }
+    return true;
+  }
+
+  /**
+   * Visits only the stored values when the aggregator is plus and map(0) is 0
+   */
+  @Override
+  public double aggregate(BinaryFunction aggregator, UnaryFunction map) {
+    if (!(aggregator instanceof PlusFunction) || map.apply(0.0) != 0.0)
+      return super.aggregate(aggregator, map);
+    double result = 0.0;
+    for (int i = 0; i < getNumNonZeros(); i++)
+      result += map.apply(values[i]);
+    return result;
+  }
+
+  @Override
+  public void write(DataOutput out) throws IOException {
+    out.writeInt(cardinality[ROW]);
+    out.writeInt(cardinality[COL]);
+    out.writeBoolean(rowMajor);
+    int majorSize = offsets.length - 1;
+    for (int major = 1; major <= majorSize; major++)
+      out.writeInt(offsets[major]);
+    for (int i = 0; i < getNumNonZeros(); i++) {
+      out.writeInt(indices[i]);
+      out.writeDouble(values[i]);
+    }
+  }
+
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    cardinality = new int[2];
+    cardinality[ROW] = in.readInt();
+    cardinality[COL] = in.readInt();
+    rowMajor = in.readBoolean();
+    int majorSize = rowMajor ? cardinality[ROW] : cardinality[COL];
+    offsets = new int[majorSize + 1];
+    for (int major = 1; major <= majorSize; major++)
+      offsets[major] = in.readInt();
+    int nonZeros = offsets[majorSize];
+    indices = new int[nonZeros];
+    values = new double[nonZeros];
+    for (int i = 0; i < nonZeros; i++) {
+      indices[i] = in.readInt();
+      values[i] = in.readDouble();
+    }
+  }
+
+  /**
+   * Builds a CSR {@link CompressedSparseMatrix} from values added in any order.
+   * Values added more than once for the same cell are summed, and cells which
+   * end up zero are not stored.
+   */
+  public static class Builder {
+
+    private final int rows;
+
+    private final int columns;
+
+    private int[] rowIndexes = new int[16];
+
+    private int[] columnIndexes = new int[16];
+
+    private double[] vals = new double[16];
+
+    private int size;
+
+    public Builder(int rows, int columns) {
+      this.rows = rows;
+      this.columns = columns;
+    }
+
+    /**
+     * Add the value to the given cell
+     *
+     * @return this builder
+     * @throws IndexException if the cell is outside the matrix
+     */
+    public Builder add(int row, int column, double value) {
+      if (row < 0 || row >= rows || column < 0 || column >= columns)
+        throw new IndexException();
+      if (value == 0.0)
+        return this;
+      if (size == vals.length) {
+        int capacity = size << 1;
+        int[] newRowIndexes = new int[capacity];
+        int[] newColumnIndexes = new int[capacity];
+        double[] newVals = new double[capacity];
+        System.arraycopy(rowIndexes, 0, newRowIndexes, 0, size);
+        System.arraycopy(columnIndexes, 0, newColumnIndexes, 0, size);
+        System.arraycopy(vals, 0, newVals, 0, size);
+        rowIndexes = newRowIndexes;
+        columnIndexes = newColumnIndexes;
+        vals = newVals;
+      }
+      rowIndexes[size] = row;
+      columnIndexes[size] = column;
+      vals[size] = value;
+      size++;
+      return this;
+    }
+
+    /**
+     * Add the non-zero values of the vector to the given row
+     *
+     * @return this builder
+     * @throws CardinalityException if the vector does not have one value per
+     *         column
+     */
+    public Builder addRow(int row, Vector vector) {
+      if (vector.cardinality() != columns)
+        throw new CardinalityException();
+      // sparse vectors iterate over their non-zeros only
+      for (Vector.Element element : vector)
+        add(row, element.index(), element.get());
+      return this;
+    }
+
+    /**
+     * @return a new CSR CompressedSparseMatrix holding the added values
+     */
+    public CompressedSparseMatrix build() {
+      // sort by column then, stably, by row, both in linear time
+      int[] byColumnOffsets = new int[columns + 1];
+      int[] byColumnRows = new int[size];
+      double[] byColumnValues = new double[size];
+      countingSort(columnIndexes, rowIndexes, vals, size, columns,
+          byColumnOffsets, byColumnRows, byColumnValues);
+      int[] byColumnColumns = new int[size];
+      for (int col = 0; col < columns; col++)
+        for (int i = byColumnOffsets[col]; i < byColumnOffsets[col + 1]; i++)
+          byColumnColumns[i] = col;
+      int[] offsets = new int[rows + 1];
+      int[] indices = new int[size];
+      double[] values = new double[size];
+      countingSort(byColumnRows, byColumnColumns, byColumnValues, size, rows,
+          offsets, indices, values);
+      // sum duplicates and drop zeros, compacting in place
+      int n = 0;
+      int start = 0;
+      for (int row = 0; row < rows; row++) {
+        int end = offsets[row + 1];
+        int rowStart = n;
+        for (int i = start; i < end; i++) {
+          if (n > rowStart && indices[n - 1] == indices[i])
+            values[n - 1] += values[i];
+          else {
+            indices[n] = indices[i];
+            values[n++] = values[i];
+          }
+        }
+        int kept = rowStart;
+        for (int i = rowStart; i < n; i++)
+          if (values[i] != 0.0) {
+            indices[kept] = indices[i];
+            values[kept++] = values[i];
+          }
+        n = kept;
+        offsets[row] = rowStart;
+        start = end;
+      }
+      offsets[rows] = n;
+      if (n < size) {
+        int[] trimmedIndices = new int[n];
+        double[] trimmedValues = new double[n];
+        System.arraycopy(indices, 0, trimmedIndices, 0, n);
+        System.arraycopy(values, 0, trimmedValues, 0, n);
+        indices = trimmedIndices;
+        values = trimmedValues;
+      }
+      return new CompressedSparseMatrix(rows, columns, true, offsets, indices,
+          values);
+    }
+
+  }
+
+}
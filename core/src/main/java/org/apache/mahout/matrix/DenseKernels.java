@@ -0,0 +1,205 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.matrix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Kernels for the products of {@link DenseMatrix} with dense matrices and vectors. They work directly on the
+ * backing <code>double[][]</code> arrays.
+ *
+ * The matrix product visits its operands in i-k-j order, so that the inner loop streams a row of the right
+ * operand into a row of the result instead of striding down a column, and is blocked over k and j so that the
+ * block of the right operand being used stays in cache while a whole panel of rows goes past it. Large products
+ * are split into panels of rows which are computed in parallel on the executor set with
+ * {@link DenseMatrix#setExecutor(ExecutorService)}, by default a pool with one thread per processor.
+ *
+ * Callers are responsible for checking cardinalities and for making sure the result does not share storage with
+ * either operand.
+ */
+final class DenseKernels {
+
+  /** Size of the k and j blocks; a 64x64 block of doubles is 32KB. */
+  static final int BLOCK_SIZE = 64;
+
+  /** Products with fewer multiply-adds than this are computed in the calling thread. */
+  static final long PARALLEL_THRESHOLD = 1L << 20;
+
+  private static ExecutorService executor;
+
+  private DenseKernels() {
+  }
+
+  static synchronized void setExecutor(ExecutorService executorService) {
+    executor = executorService;
+  }
+
+  static synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+        private int count;
+
+        @Override
+        public synchronized Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "DenseMatrix-" + count++);
+          // never keep the JVM alive just for an idle pool
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return executor;
+  }
+
+  /**
+   * Sets c to the product of a and b.
+   *
+   * @param a the rows of the left operand
+   * @param b the rows of the right operand
+   * @param c the rows of the result, which are overwritten
+   * @param inner the number of columns of a and rows of b
+   * @param columns the number of columns of b and c
+   */
+  static void times(final double[][] a, final double[][] b, final double[][] c, final int inner,
+                    final int columns) {
+    int rows = a.length;
+    if ((long) rows * inner * columns < PARALLEL_THRESHOLD || rows < 2) {
+      timesPanel(a, b, c, 0, rows, inner, columns);
+      return;
+    }
+    inParallel(rows, new Panel() {
+      @Override
+      public void compute(int from, int to) {
+        timesPanel(a, b, c, from, to, inner, columns);
+      }
+    });
+  }
+
+  private static void timesPanel(double[][] a, double[][] b, double[][] c, int from, int to, int inner,
+                                 int columns) {
+    for (int row = from; row < to; row++) {
+      Arrays.fill(c[row], 0, columns, 0.0);
+    }
+    for (int kBlock = 0; kBlock < inner; kBlock += BLOCK_SIZE) {
+      int kEnd = Math.min(kBlock + BLOCK_SIZE, inner);
+      for (int jBlock = 0; jBlock < columns; jBlock += BLOCK_SIZE) {
+        int jEnd = Math.min(jBlock + BLOCK_SIZE, columns);
+        for (int row = from; row < to; row++) {
+          double[] aRow = a[row];
+          double[] cRow = c[row];
+          for (int k = kBlock; k < kEnd; k++) {
+            double aik = aRow[k];
+            if (aik == 0.0) {
+              continue;
+            }
+            double[] bRow = b[k];
+            for (int j = jBlock; j < jEnd; j++) {
+              cRow[j] += aik * bRow[j];
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Sets y to the product of a and x.
+   *
+   * @param a the rows of the matrix
+   * @param x the vector, whose length is the number of columns of a
+   * @param y the result, whose length is the number of rows of a
+   */
+  static void times(final double[][] a, final double[] x, final double[] y) {
+    int rows = a.length;
+    if ((long) rows * x.length < PARALLEL_THRESHOLD || rows < 2) {
+      timesPanel(a, x, y, 0, rows);
+      return;
+    }
+    inParallel(rows, new Panel() {
+      @Override
+      public void compute(int from, int to) {
+        timesPanel(a, x, y, from, to);
+      }
+    });
+  }
+
+  private static void timesPanel(double[][] a, double[] x, double[] y, int from, int to) {
+    for (int row = from; row < to; row++) {
+      double[] aRow = a[row];
+      double sum = 0.0;
+      for (int col = 0; col < x.length; col++) {
+        sum += aRow[col] * x[col];
+      }
+      y[row] = sum;
+    }
+  }
+
+  private interface Panel {
+    void compute(int from, int to);
+  }
+
+  /**
+   * Splits the rows into a few panels per thread, so that an uneven split costs little, and waits for them all.
+   */
+  private static void inParallel(int rows, final Panel panel) {
+    ExecutorService executorService = getExecutor();
+    int panels = Math.min(rows, 4 * Runtime.getRuntime().availableProcessors());
+    int panelSize = (rows + panels - 1) / panels;
+    List<Future<Void>> futures = new ArrayList<Future<Void>>(panels);
+    for (int from = 0; from < rows; from += panelSize) {
+      final int start = from;
+      final int end = Math.min(from + panelSize, rows);
+      futures.add(executorService.submit(new Callable<Void>() {
+        @Override
+        public Void call() {
+          panel.compute(start, end);
+          return null;
+        }
+      }));
+    }
+    try {
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException ie) {
+      for (Future<Void> future : futures) {
+        future.cancel(true);
+      }
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while multiplying", ie);
+    } catch (ExecutionException ee) {
+      Throwable cause = ee.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
+}
@@ -20,8 +20,13 @@ package org.apache.mahout.matrix;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.WritableComparable;
 
+import java.util.concurrent.ExecutorService;
+
 /**
- * Matrix of doubles implemented using a 2-d array
+ * Matrix of doubles implemented using a 2-d array. Products with other dense
+ * matrices and vectors use cache-blocked kernels, and large ones are split
+ * across the threads of the executor set with
+ * {@link #setExecutor(ExecutorService)}.
  * 
  */
 public class DenseMatrix extends AbstractMatrix {
@@ -98,10 +103,20 @@ public class DenseMatrix extends AbstractMatrix {
 
   @Override
   public boolean haveSharedCells(Matrix other) {
-    if (other instanceof DenseMatrix)
-      return other == this;
-    else
+    // only a view can share cells with a matrix of another class
+    if (other instanceof MatrixView)
       return other.haveSharedCells(this);
+    return other == this;
+  }
+
+  /**
+   * Set the executor used to compute large products in parallel. By default a
+   * pool with one daemon thread per processor is created on first use.
+   * 
+   * @param executor an ExecutorService, or null to use the default
+   */
+  public static void setExecutor(ExecutorService executor) {
+    DenseKernels.setExecutor(executor);
   }
 
   @Override
@@ -119,6 +134,75 @@ public class DenseMatrix extends AbstractMatrix {
     values[row][column] = value;
   }
 
+  @Override
+  public Matrix scaleInPlace(double alpha) {
+    for (double[] row : values)
+      for (int col = 0; col < row.length; col++)
+        row[col] *= alpha;
+    return this;
+  }
+
+  @Override
+  public Matrix axpy(double alpha, Matrix other) {
+    if (!(other instanceof DenseMatrix))
+      return super.axpy(alpha, other);
+    int[] o = other.cardinality();
+    if (rowSize() != o[ROW] || columnSize() != o[COL])
+      throw new CardinalityException();
+    double[][] otherValues = ((DenseMatrix) other).values;
+    for (int row = 0; row < values.length; row++) {
+      double[] thisRow = values[row];
+      double[] otherRow = otherValues[row];
+      for (int col = 0; col < thisRow.length; col++)
+        thisRow[col] += alpha * otherRow[col];
+    }
+    return this;
+  }
+
+  @Override
+  public Matrix times(Matrix other) {
+    if (!(other instanceof DenseMatrix))
+      return super.times(other);
+    int[] o = other.cardinality();
+    if (columnSize() != o[ROW])
+      throw new CardinalityException();
+    DenseMatrix result = new DenseMatrix(rowSize(), o[COL]);
+    DenseKernels.times(values, ((DenseMatrix) other).values, result.values,
+        columnSize(), o[COL]);
+    return result;
+  }
+
+  @Override
+  public Matrix times(Matrix other, Matrix result) {
+    if (!(other instanceof DenseMatrix) || !(result instanceof DenseMatrix))
+      return super.times(other, result);
+    int[] o = other.cardinality();
+    int[] r = result.cardinality();
+    if (columnSize() != o[ROW] || r[ROW] != rowSize() || r[COL] != o[COL])
+      throw new CardinalityException();
+    double[][] target = ((DenseMatrix) result).values;
+    if (result == this || result == other)
+      target = new double[r[ROW]][r[COL]];
+    DenseKernels.times(values, ((DenseMatrix) other).values, target,
+        columnSize(), o[COL]);
+    if (target != ((DenseMatrix) result).values)
+      for (int row = 0; row < r[ROW]; row++)
+        ((DenseMatrix) result).values[row] = target[row];
+    return result;
+  }
+
+  @Override
+  public Vector times(Vector v) {
+    if (!(v instanceof DenseVector))
+      return super.times(v);
+    if (columnSize() != v.cardinality())
+      throw new CardinalityException();
+    DenseVector result = new DenseVector(rowSize());
+    DenseKernels.times(values, ((DenseVector) v).getValues(),
+        result.getValues());
+    return result;
+  }
+
   @Override
   public int[] size() {
     return cardinality();
@@ -141,6 +141,32 @@ public class DenseVector extends AbstractVector {
     return values.clone();
   }
 
+  /**
+   * @return the backing array itself, for the kernels of {@link DenseMatrix}
+   */
+  double[] getValues() {
+    return values;
+  }
+
+  @Override
+  public Vector axpy(double alpha, Vector x) {
+    if (!(x instanceof DenseVector))
+      return super.axpy(alpha, x);
+    double[] xValues = ((DenseVector) x).values;
+    if (xValues.length != values.length)
+      throw new CardinalityException();
+    for (int i = 0; i < values.length; i++)
+      values[i] += alpha * xValues[i];
+    return this;
+  }
+
+  @Override
+  public Vector scaleInPlace(double alpha) {
+    for (int i = 0; i < values.length; i++)
+      values[i] *= alpha;
+    return this;
+  }
+
   @Override
   public Vector viewPart(int offset, int length) {
     if (length > values.length)
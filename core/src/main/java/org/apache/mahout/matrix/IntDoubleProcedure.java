@@ -0,0 +1,37 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.matrix;
+
+/**
+ * This interface allows the formulation of procedures to be applied to the
+ * index and value of the non-zero elements of a vector, as by
+ * {@link Vector#foreachNonZero(IntDoubleProcedure)}.
+ * 
+ */
+public interface IntDoubleProcedure {
+
+  /**
+   * Apply the procedure to the element
+   * 
+   * @param index the index of the element
+   * @param value the non-zero value of the element
+   * @return true to continue with the next element, false to stop
+   */
+  boolean apply(int index, double value);
+
+}
@@ -0,0 +1,239 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.matrix;
+
+/**
+ * LU decomposition of a square matrix with partial pivoting, so that
+ * <code>P A = L U</code> with L unit lower triangular and U upper triangular.
+ * The factors are computed once by the constructor in O(n^3) and may then be
+ * used for any number of determinants and solves, each O(n^2) per right hand
+ * side.
+ */
+public class LUDecomposition {
+
+  private static final int ROW = AbstractMatrix.ROW;
+
+  private static final int COL = AbstractMatrix.COL;
+
+  /** L below the diagonal, U on and above it, in pivoted row order */
+  private final double[][] lu;
+
+  private final int[] pivot;
+
+  private final int pivotSign;
+
+  private final int n;
+
+  /**
+   * Decompose the given matrix, which is not modified
+   * 
+   * @param a a square Matrix
+   * @throws CardinalityException if the matrix is not square
+   */
+  public LUDecomposition(Matrix a) {
+    int[] c = a.cardinality();
+    if (c[ROW] != c[COL])
+      throw new CardinalityException();
+    n = c[ROW];
+    lu = a.toArray();
+    pivot = new int[n];
+    for (int i = 0; i < n; i++)
+      pivot[i] = i;
+    int sign = 1;
+    for (int k = 0; k < n; k++) {
+      int p = k;
+      double max = Math.abs(lu[k][k]);
+      for (int i = k + 1; i < n; i++) {
+        double value = Math.abs(lu[i][k]);
+        if (value > max) {
+          max = value;
+          p = i;
+        }
+      }
+      if (p != k) {
+        double[] row = lu[p];
+        lu[p] = lu[k];
+        lu[k] = row;
+        int index = pivot[p];
+        pivot[p] = pivot[k];
+        pivot[k] = index;
+        sign = -sign;
+      }
+      double[] luk = lu[k];
+      double pivotValue = luk[k];
+      if (pivotValue == 0.0)
+        continue;
+      // eliminate below the pivot one whole row at a time
+      for (int i = k + 1; i < n; i++) {
+        double[] lui = lu[i];
+        double factor = lui[k] / pivotValue;
+        lui[k] = factor;
+        if (factor != 0.0)
+          for (int j = k + 1; j < n; j++)
+            lui[j] -= factor * luk[j];
+      }
+    }
+    pivotSign = sign;
+  }
+
+  /**
+   * @return true if U, and so the matrix, is singular
+   */
+  public boolean isSingular() {
+    for (int i = 0; i < n; i++)
+      if (lu[i][i] == 0.0)
+        return true;
+    return false;
+  }
+
+  /**
+   * @return the determinant of the matrix
+   */
+  public double determinant() {
+    double result = pivotSign;
+    for (int i = 0; i < n; i++)
+      result *= lu[i][i];
+    return result;
+  }
+
+  /**
+   * @return the unit lower triangular factor L
+   */
+  public Matrix getL() {
+    Matrix result = new DenseMatrix(n, n);
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < i; j++)
+        result.setQuick(i, j, lu[i][j]);
+      result.setQuick(i, i, 1.0);
+    }
+    return result;
+  }
+
+  /**
+   * @return the upper triangular factor U
+   */
+  public Matrix getU() {
+    Matrix result = new DenseMatrix(n, n);
+    for (int i = 0; i < n; i++)
+      for (int j = i; j < n; j++)
+        result.setQuick(i, j, lu[i][j]);
+    return result;
+  }
+
+  /**
+   * @return the row permutation P: row i of L U is row pivot[i] of the matrix
+   */
+  public int[] getPivot() {
+    return pivot.clone();
+  }
+
+  /**
+   * Solve <code>A X = B</code>
+   * 
+   * @param b a Matrix with as many rows as the decomposed matrix
+   * @return a new Matrix X
+   * @throws CardinalityException if the row counts differ
+   * @throws SingularMatrixException if the matrix is singular
+   */
+  public Matrix solve(Matrix b) {
+    int[] c = b.cardinality();
+    if (c[ROW] != n)
+      throw new CardinalityException();
+    if (isSingular())
+      throw new SingularMatrixException();
+    int columns = c[COL];
+    double[][] x = new double[n][];
+    for (int i = 0; i < n; i++) {
+      x[i] = new double[columns];
+      for (int j = 0; j < columns; j++)
+        x[i][j] = b.getQuick(pivot[i], j);
+    }
+    // forward substitution with L, then back substitution with U, by rows
+    for (int k = 0; k < n; k++) {
+      double[] xk = x[k];
+      for (int i = k + 1; i < n; i++) {
+        double factor = lu[i][k];
+        if (factor != 0.0) {
+          double[] xi = x[i];
+          for (int j = 0; j < columns; j++)
+            xi[j] -= factor * xk[j];
+        }
+      }
+    }
+    for (int k = n - 1; k >= 0; k--) {
+      double[] xk = x[k];
+      double diagonal = lu[k][k];
+      for (int j = 0; j < columns; j++)
+        xk[j] /= diagonal;
+      for (int i = 0; i < k; i++) {
+        double factor = lu[i][k];
+        if (factor != 0.0) {
+          double[] xi = x[i];
+          for (int j = 0; j < columns; j++)
+            xi[j] -= factor * xk[j];
+        }
+      }
+    }
+    return new DenseMatrix(x);
+  }
+
+  /**
+   * Solve <code>A x = b</code>
+   * 
+   * @param b a Vector with as many elements as the decomposed matrix has rows
+   * @return a new Vector x
+   * @throws CardinalityException if the cardinalities differ
+   * @throws SingularMatrixException if the matrix is singular
+   */
+  public Vector solve(Vector b) {
+    if (b.cardinality() != n)
+      throw new CardinalityException();
+    if (isSingular())
+      throw new SingularMatrixException();
+    double[] x = new double[n];
+    for (int i = 0; i < n; i++)
+      x[i] = b.getQuick(pivot[i]);
+    for (int i = 0; i < n; i++) {
+      double[] lui = lu[i];
+      double sum = x[i];
+      for (int k = 0; k < i; k++)
+        sum -= lui[k] * x[k];
+      x[i] = sum;
+    }
+    for (int i = n - 1; i >= 0; i--) {
+      double[] lui = lu[i];
+      double sum = x[i];
+      for (int k = i + 1; k < n; k++)
+        sum -= lui[k] * x[k];
+      x[i] = sum / lui[i];
+    }
+    return new DenseVector(x);
+  }
+
+  /**
+   * @return the inverse of the matrix
+   * @throws SingularMatrixException if the matrix is singular
+   */
+  public Matrix inverse() {
+    Matrix identity = new DenseMatrix(n, n);
+    for (int i = 0; i < n; i++)
+      identity.setQuick(i, i, 1.0);
+    return solve(identity);
+  }
+
+}
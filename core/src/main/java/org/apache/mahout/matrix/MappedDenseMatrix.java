@@ -0,0 +1,301 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.matrix;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Matrix of doubles held in DoubleBuffers outside the Java heap: either direct
+ * buffers or a memory-mapped file, row after row. A mapped file is loaded
+ * lazily by the operating system, and all the JVMs on a node mapping the same
+ * file share a single copy of it in the page cache. Since a single buffer is
+ * limited to 2GB, the rows are spread over as many buffers as needed.
+ * 
+ * The file format is the number of rows and of columns as ints followed by
+ * the values, row by row, as big-endian doubles, so a matrix written with a
+ * DataOutputStream can be mapped as is. Rows returned by {@link #getRow(int)}
+ * are {@link MappedDenseVector}s on the same storage, so no values are copied
+ * and changes to either are seen by the other.
+ */
+public class MappedDenseMatrix extends AbstractMatrix {
+
+  static final int HEADER_SIZE = 8;
+
+  private final int rows;
+
+  private final int columns;
+
+  private final int rowsPerSegment;
+
+  private final DoubleBuffer[] segments;
+
+  /**
+   * Construct an empty matrix of the given size in direct buffers
+   * 
+   * @param rows
+   * @param columns
+   */
+  public MappedDenseMatrix(int rows, int columns) {
+    this.rows = rows;
+    this.columns = columns;
+    this.rowsPerSegment = rowsPerSegment(columns);
+    this.segments = new DoubleBuffer[numSegments(rows, rowsPerSegment)];
+    for (int segment = 0; segment < segments.length; segment++)
+      segments[segment] = ByteBuffer.allocateDirect(
+          segmentRows(segment) * columns * 8).order(ByteOrder.nativeOrder())
+          .asDoubleBuffer();
+  }
+
+  private MappedDenseMatrix(int rows, int columns, DoubleBuffer[] segments) {
+    this.rows = rows;
+    this.columns = columns;
+    this.rowsPerSegment = rowsPerSegment(columns);
+    this.segments = segments;
+  }
+
+  private static int rowsPerSegment(int columns) {
+    int result = Integer.MAX_VALUE / 8 / Math.max(columns, 1);
+    if (result == 0)
+      throw new CardinalityException();
+    return result;
+  }
+
+  private static int numSegments(int rows, int rowsPerSegment) {
+    return (rows + rowsPerSegment - 1) / rowsPerSegment;
+  }
+
+  private int segmentRows(int segment) {
+    return Math.min(rowsPerSegment, rows - segment * rowsPerSegment);
+  }
+
+  /**
+   * Map a matrix file
+   * 
+   * @param file a File in the format described above
+   * @param readOnly if true, any attempt to set a value throws
+   *          java.nio.ReadOnlyBufferException
+   * @return a new MappedDenseMatrix
+   * @throws IOException if the file could not be mapped
+   */
+  public static MappedDenseMatrix map(File file, boolean readOnly)
+      throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, readOnly ? "r" : "rw");
+    try {
+      int rows = raf.readInt();
+      int columns = raf.readInt();
+      return map(raf, readOnly, rows, columns);
+    } finally {
+      // the mappings stay valid after the file is closed
+      raf.close();
+    }
+  }
+
+  /**
+   * Create a matrix file of the given size, all zeros, and map it
+   * 
+   * @param file the File to create, replacing any existing one
+   * @param rows
+   * @param columns
+   * @return a new MappedDenseMatrix
+   * @throws IOException if the file could not be created or mapped
+   */
+  public static MappedDenseMatrix create(File file, int rows, int columns)
+      throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.setLength(0);
+      raf.writeInt(rows);
+      raf.writeInt(columns);
+      raf.setLength(HEADER_SIZE + (long) rows * columns * 8);
+      return map(raf, false, rows, columns);
+    } finally {
+      raf.close();
+    }
+  }
+
+  private static MappedDenseMatrix map(RandomAccessFile raf, boolean readOnly,
+      int rows, int columns) throws IOException {
+    FileChannel channel = raf.getChannel();
+    FileChannel.MapMode mode = readOnly ? FileChannel.MapMode.READ_ONLY
+        : FileChannel.MapMode.READ_WRITE;
+    int rowsPerSegment = rowsPerSegment(columns);
+    DoubleBuffer[] segments = new DoubleBuffer[numSegments(rows, rowsPerSegment)];
+    long rowBytes = (long) columns * 8;
+    for (int segment = 0; segment < segments.length; segment++) {
+      int segmentRows = Math.min(rowsPerSegment, rows - segment * rowsPerSegment);
+      segments[segment] = channel.map(mode,
+          HEADER_SIZE + segment * rowsPerSegment * rowBytes,
+          segmentRows * rowBytes).asDoubleBuffer();
+    }
+    return new MappedDenseMatrix(rows, columns, segments);
+  }
+
+  @Override
+  public WritableComparable<?> asWritableComparable() {
+    return new Text(asFormatString());
+  }
+
+  @Override
+  public String asFormatString() {
+    StringBuilder out = new StringBuilder();
+    out.append("[[, ");
+    for (int row = 0; row < rows; row++) {
+      for (int col = 0; col < columns; col++)
+        out.append(getQuick(row, col)).append(", ");
+      out.append("], ");
+    }
+    out.append("] ");
+    return out.toString();
+  }
+
+  @Override
+  public int[] cardinality() {
+    int[] result = new int[2];
+    result[ROW] = rows;
+    result[COL] = columns;
+    return result;
+  }
+
+  /**
+   * @return a new MappedDenseMatrix in direct buffers
+   */
+  @Override
+  public Matrix copy() {
+    MappedDenseMatrix copy = new MappedDenseMatrix(rows, columns);
+    for (int segment = 0; segment < segments.length; segment++) {
+      copy.segments[segment].put(segments[segment].duplicate());
+      copy.segments[segment].clear();
+    }
+    return copy;
+  }
+
+  @Override
+  public double getQuick(int row, int column) {
+    return segments[row / rowsPerSegment].get(
+        (row % rowsPerSegment) * columns + column);
+  }
+
+  @Override
+  public boolean haveSharedCells(Matrix other) {
+    // only a view can share cells with a matrix of another class
+    if (other instanceof MatrixView)
+      return other.haveSharedCells(this);
+    return other == this;
+  }
+
+  @Override
+  public Matrix like() {
+    return like(rows, columns);
+  }
+
+  /**
+   * @return a new MappedDenseMatrix in direct buffers
+   */
+  @Override
+  public Matrix like(int rows, int columns) {
+    return new MappedDenseMatrix(rows, columns);
+  }
+
+  @Override
+  public void setQuick(int row, int column, double value) {
+    segments[row / rowsPerSegment].put(
+        (row % rowsPerSegment) * columns + column, value);
+  }
+
+  @Override
+  public int[] size() {
+    return cardinality();
+  }
+
+  @Override
+  public double[][] toArray() {
+    double[][] result = new double[rows][columns];
+    for (int row = 0; row < rows; row++)
+      rowBuffer(row).get(result[row]);
+    return result;
+  }
+
+  /**
+   * @return a new buffer positioned on the given row
+   */
+  private DoubleBuffer rowBuffer(int row) {
+    DoubleBuffer buffer = segments[row / rowsPerSegment].duplicate();
+    int start = (row % rowsPerSegment) * columns;
+    buffer.limit(start + columns);
+    buffer.position(start);
+    return buffer;
+  }
+
+  @Override
+  public Matrix viewPart(int[] offset, int[] size) {
+    if (size[ROW] > rows || size[COL] > columns)
+      throw new CardinalityException();
+    if (offset[ROW] < 0 || offset[ROW] + size[ROW] > rows
+        || offset[COL] < 0 || offset[COL] + size[COL] > columns)
+      throw new IndexException();
+    return new MatrixView(this, offset, size);
+  }
+
+  @Override
+  public Matrix assignColumn(int column, Vector other) {
+    if (other.cardinality() != rows || column >= columns)
+      throw new CardinalityException();
+    for (int row = 0; row < rows; row++)
+      setQuick(row, column, other.getQuick(row));
+    return this;
+  }
+
+  @Override
+  public Matrix assignRow(int row, Vector other) {
+    if (row >= rows || other.cardinality() != columns)
+      throw new CardinalityException();
+    rowBuffer(row).put(other.toArray());
+    return this;
+  }
+
+  @Override
+  public Vector getColumn(int column) {
+    if (column < 0 || column >= columns)
+      throw new IndexException();
+    double[] col = new double[rows];
+    for (int row = 0; row < rows; row++)
+      col[row] = getQuick(row, column);
+    return new DenseVector(col);
+  }
+
+  /**
+   * @return a MappedDenseVector on the storage of the row
+   */
+  @Override
+  public Vector getRow(int row) {
+    if (row < 0 || row >= rows)
+      throw new IndexException();
+    return new MappedDenseVector(rowBuffer(row).slice(),
+        segments[row / rowsPerSegment]);
+  }
+
+}
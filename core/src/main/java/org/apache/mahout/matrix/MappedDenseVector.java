@@ -0,0 +1,285 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.matrix;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.util.NoSuchElementException;
+
+/**
+ * Implements vector as a DoubleBuffer outside the Java heap: either a direct
+ * buffer or a memory-mapped file. A mapped file is loaded lazily by the
+ * operating system, and all the JVMs on a node mapping the same file share a
+ * single copy of it in the page cache.
+ * 
+ * The file format is that of {@link DenseVector#write(DataOutput)}: the
+ * cardinality as an int followed by the values as big-endian doubles, so a
+ * vector written with a DataOutputStream can be mapped as is. A vector may
+ * hold at most Integer.MAX_VALUE / 8 values.
+ */
+public class MappedDenseVector extends AbstractVector {
+
+  static final int HEADER_SIZE = 4;
+
+  private DoubleBuffer values;
+
+  /** the buffer values was sliced from, to detect shared cells */
+  private Object storage;
+
+  /** For serialization purposes only */
+  public MappedDenseVector() {
+  }
+
+  /**
+   * Construct a new instance of the given cardinality in a direct buffer
+   * 
+   * @param cardinality
+   */
+  public MappedDenseVector(int cardinality) {
+    this(allocate(cardinality));
+  }
+
+  /**
+   * Construct a new instance on the remaining values of the given buffer,
+   * without copying them: changes to either are seen by the other
+   * 
+   * @param values
+   */
+  public MappedDenseVector(DoubleBuffer values) {
+    this(values.slice(), values);
+  }
+
+  MappedDenseVector(DoubleBuffer values, Object storage) {
+    this.values = values;
+    this.storage = storage;
+  }
+
+  static DoubleBuffer allocate(int cardinality) {
+    if (cardinality > Integer.MAX_VALUE / 8)
+      throw new CardinalityException();
+    return ByteBuffer.allocateDirect(cardinality * 8).order(
+        ByteOrder.nativeOrder()).asDoubleBuffer();
+  }
+
+  /**
+   * Map a vector file
+   * 
+   * @param file a File in the format written by {@link DenseVector#write(DataOutput)}
+   * @param readOnly if true, any attempt to set a value throws
+   *          java.nio.ReadOnlyBufferException
+   * @return a new MappedDenseVector
+   * @throws IOException if the file could not be mapped
+   */
+  public static MappedDenseVector map(File file, boolean readOnly)
+      throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, readOnly ? "r" : "rw");
+    try {
+      int cardinality = raf.readInt();
+      return map(raf, readOnly, cardinality);
+    } finally {
+      // the mapping stays valid after the file is closed
+      raf.close();
+    }
+  }
+
+  /**
+   * Create a vector file of the given cardinality, all zeros, and map it
+   * 
+   * @param file the File to create, replacing any existing one
+   * @param cardinality
+   * @return a new MappedDenseVector
+   * @throws IOException if the file could not be created or mapped
+   */
+  public static MappedDenseVector create(File file, int cardinality)
+      throws IOException {
+    if (cardinality > Integer.MAX_VALUE / 8)
+      throw new CardinalityException();
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.setLength(0);
+      raf.writeInt(cardinality);
+      raf.setLength(HEADER_SIZE + (long) cardinality * 8);
+      return map(raf, false, cardinality);
+    } finally {
+      raf.close();
+    }
+  }
+
+  private static MappedDenseVector map(RandomAccessFile raf, boolean readOnly,
+      int cardinality) throws IOException {
+    FileChannel channel = raf.getChannel();
+    ByteBuffer bytes = channel.map(readOnly ? FileChannel.MapMode.READ_ONLY
+        : FileChannel.MapMode.READ_WRITE, HEADER_SIZE, (long) cardinality * 8);
+    return new MappedDenseVector(bytes.asDoubleBuffer());
+  }
+
+  @Override
+  protected Matrix matrixLike(int rows, int columns) {
+    return new MappedDenseMatrix(rows, columns);
+  }
+
+  @Override
+  public WritableComparable<?> asWritableComparable() {
+    return new Text(asFormatString());
+  }
+
+  @Override
+  public String asFormatString() {
+    StringBuilder out = new StringBuilder();
+    out.append("[, ");
+    for (int i = 0; i < values.limit(); i++) {
+      out.append(values.get(i)).append(", ");
+    }
+    out.append("] ");
+    return out.toString();
+  }
+
+  @Override
+  public int cardinality() {
+    return values.limit();
+  }
+
+  /**
+   * @return a new MappedDenseVector in a direct buffer
+   */
+  @Override
+  public MappedDenseVector copy() {
+    DoubleBuffer copy = allocate(cardinality());
+    copy.put(values.duplicate());
+    copy.clear();
+    return new MappedDenseVector(copy, copy);
+  }
+
+  @Override
+  public double getQuick(int index) {
+    return values.get(index);
+  }
+
+  @Override
+  public MappedDenseVector like() {
+    return new MappedDenseVector(cardinality());
+  }
+
+  @Override
+  public Vector like(int cardinality) {
+    return new MappedDenseVector(cardinality);
+  }
+
+  @Override
+  public void setQuick(int index, double value) {
+    values.put(index, value);
+  }
+
+  @Override
+  public int size() {
+    return values.limit();
+  }
+
+  @Override
+  public double[] toArray() {
+    double[] result = new double[cardinality()];
+    values.duplicate().get(result);
+    return result;
+  }
+
+  @Override
+  public Vector viewPart(int offset, int length) {
+    if (length > cardinality())
+      throw new CardinalityException();
+    if (offset < 0 || offset + length > cardinality())
+      throw new IndexException();
+    return new VectorView(this, offset, length);
+  }
+
+  @Override
+  public boolean haveSharedCells(Vector other) {
+    if (other instanceof MappedDenseVector)
+      return other == this || ((MappedDenseVector) other).storage == storage;
+    if (other instanceof VectorView)
+      return other.haveSharedCells(this);
+    return false;
+  }
+
+  /**
+   * Returns an iterator that traverses this Vector from 0 to cardinality-1, in
+   * that order.
+   * 
+   * @see java.lang.Iterable#iterator
+   */
+  @Override
+  public java.util.Iterator<Vector.Element> iterator() {
+    return new Iterator();
+  }
+
+  private class Iterator implements java.util.Iterator<Vector.Element> {
+    private int ind;
+
+    private Iterator() {
+      ind = 0;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return ind < values.limit();
+    }
+
+    @Override
+    public Vector.Element next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return new Element(ind++);
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  @Override
+  public void write(DataOutput dataOutput) throws IOException {
+    dataOutput.writeInt(cardinality());
+    for (int i = 0; i < values.limit(); i++) {
+      dataOutput.writeDouble(values.get(i));
+    }
+  }
+
+  /**
+   * Reads the values into a new direct buffer
+   */
+  @Override
+  public void readFields(DataInput dataInput) throws IOException {
+    DoubleBuffer values = allocate(dataInput.readInt());
+    for (int i = 0; i < values.limit(); i++) {
+      values.put(i, dataInput.readDouble());
+    }
+    this.values = values;
+    this.storage = values;
+  }
+}
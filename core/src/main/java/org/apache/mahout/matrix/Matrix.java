@@ -116,11 +116,13 @@ public interface Matrix {
    */
   Matrix copy();
 
-    /**
-     * Returns matrix determinator using Laplace theorem
-     *
-     * @return a matrix determinator
-     */
+  /**
+   * Return the determinant of the recipient, computed from an
+   * {@link LUDecomposition}
+   * 
+   * @return the determinant
+   * @throws CardinalityException if the recipient is not square
+   */
   double determinant();
 
   /**
@@ -222,6 +224,17 @@ public interface Matrix {
    */
   Matrix plus(Matrix x);
 
+  /**
+   * Add alpha times the argument to the recipient, element by element and in
+   * place, without allocating a new matrix
+   * 
+   * @param alpha a double multiplier
+   * @param x a Matrix
+   * @return the recipient
+   * @throws CardinalityException if the cardinalities differ
+   */
+  Matrix axpy(double alpha, Matrix x);
+
   /**
    * Set the value at the given index
    * 
@@ -259,6 +272,15 @@ public interface Matrix {
    */
   Matrix times(double x);
 
+  /**
+   * Multiply each value of the recipient by the argument, in place, without
+   * allocating a new matrix
+   * 
+   * @param alpha a double argument
+   * @return the recipient
+   */
+  Matrix scaleInPlace(double alpha);
+
   /**
    * Return a new matrix containing the product of the recipient and the
    * argument
@@ -269,6 +291,27 @@ public interface Matrix {
    */
   Matrix times(Matrix x);
 
+  /**
+   * Store the product of the recipient and the argument in the given result
+   * matrix, which may be the recipient or the argument
+   * 
+   * @param x a Matrix argument
+   * @param result the Matrix to hold the product
+   * @return the result
+   * @throws CardinalityException if the cardinalities are incompatible
+   */
+  Matrix times(Matrix x, Matrix result);
+
+  /**
+   * Return a new vector containing the product of the recipient and the
+   * argument
+   * 
+   * @param v a Vector argument
+   * @return a new Vector
+   * @throws CardinalityException if the cardinalities are incompatible
+   */
+  Vector times(Vector v);
+
   /**
    * Return a new matrix that is the transpose of the receiver
    * 
@@ -283,6 +326,41 @@ public interface Matrix {
    */
   double[][] toArray();
 
+  /**
+   * Return a new matrix that is the inverse of the recipient
+   * 
+   * @return a new Matrix
+   * @throws CardinalityException if the recipient is not square
+   * @throws SingularMatrixException if the recipient is singular
+   */
+  Matrix inverse();
+
+  /**
+   * Return the solution X of <code>recipient X = b</code>. A square recipient
+   * is solved with an {@link LUDecomposition}; one with more rows than columns
+   * gives the least squares solution from a {@link QRDecomposition}. Use the
+   * decompositions directly to solve many systems with the same recipient.
+   * 
+   * @param b a Matrix with as many rows as the recipient
+   * @return a new Matrix
+   * @throws CardinalityException if the cardinalities are incompatible
+   * @throws SingularMatrixException if the recipient is singular or rank
+   *         deficient
+   */
+  Matrix solve(Matrix b);
+
+  /**
+   * Return the solution x of <code>recipient x = b</code>, as for
+   * {@link #solve(Matrix)}
+   * 
+   * @param b a Vector with as many elements as the recipient has rows
+   * @return a new Vector
+   * @throws CardinalityException if the cardinalities are incompatible
+   * @throws SingularMatrixException if the recipient is singular or rank
+   *         deficient
+   */
+  Vector solve(Vector b);
+
   /**
    * Return a new matrix containing the subset of the recipient
    * 
@@ -303,15 +381,57 @@ public interface Matrix {
    */
   double zSum();
 
+  /**
+   * Apply the procedure to the row, column and value of each non-zero cell of
+   * the receiver, in no particular order, until it returns false. Sparse
+   * matrices visit only their stored cells.
+   * 
+   * @param procedure
+   *            an IntIntDoubleProcedure to apply
+   * @return false if the procedure stopped the traversal, true otherwise
+   */
+  boolean foreachNonZero(IntIntDoubleProcedure procedure);
+
+  /**
+   * Combine the mapped cells of the receiver with the aggregator, which must
+   * be associative and commutative since the cells may be visited in any
+   * order. When the aggregator is {@link BinaryFunction#plus} and map(0) is 0
+   * only the non-zeros of a sparse matrix are visited.
+   * 
+   * @param aggregator
+   *            a BinaryFunction combining the mapped cells
+   * @param map
+   *            a UnaryFunction applied to each cell
+   * @return the aggregate, or 0 if the receiver has no cells
+   */
+  double aggregate(BinaryFunction aggregator, UnaryFunction map);
+
+  /**
+   * Combine the pairs of corresponding cells of the receiver and the other
+   * matrix with the aggregator, which must be associative and commutative
+   * since the cells may be visited in any order. When the aggregator is
+   * {@link BinaryFunction#plus} a matrix of sparse rows or columns aggregates
+   * them as by {@link Vector#aggregate(Vector, BinaryFunction, BinaryFunction)},
+   * so the same sparse specialisations apply.
+   * 
+   * @param other
+   *            a Matrix
+   * @param aggregator
+   *            a BinaryFunction combining the combined cells
+   * @param combiner
+   *            a BinaryFunction applied to each pair of cells
+   * @return the aggregate, or 0 if the receiver has no cells
+   * @throws CardinalityException
+   *             if the cardinalities differ
+   */
+  double aggregate(Matrix other, BinaryFunction aggregator,
+      BinaryFunction combiner);
+
   /*
    * Need stories for these but keeping them here for now.
    * 
    */
   // void getNonZeros(IntArrayList jx, DoubleArrayList values);
-  // void foreachNonZero(IntDoubleFunction f);
-  // double aggregate(DoubleDoubleFunction aggregator, DoubleFunction map);
-  // double aggregate(Matrix other, DoubleDoubleFunction aggregator,
-  // DoubleDoubleFunction map);
   // NewMatrix assign(Matrix y, DoubleDoubleFunction function, IntArrayList
   // nonZeroIndexes);
 }
@@ -0,0 +1,264 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.matrix;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from int keys to double values, used as the backing store of {@link SparseVector}.
+ * Keys and values live in parallel primitive arrays so that no boxing or entry objects are needed. Slots are
+ * exposed through {@link #slots()}, {@link #isFull(int)}, {@link #keyAt(int)} and {@link #valueAt(int)} so that
+ * callers can traverse the non-zeros without an iterator object.
+ *
+ * This class is not thread-safe.
+ */
+final class OpenIntDoubleHashMap implements Cloneable {
+
+  private static final byte FREE = 0;
+  private static final byte FULL = 1;
+  private static final byte REMOVED = 2;
+
+  private static final int MIN_CAPACITY = 8;
+
+  private int[] keys;
+  private double[] values;
+  private byte[] states;
+  private int numEntries;
+  private int numSlotsUsed;
+
+  OpenIntDoubleHashMap() {
+    this(MIN_CAPACITY);
+  }
+
+  /**
+   * @param size number of entries the map can hold without rehashing
+   */
+  OpenIntDoubleHashMap(int size) {
+    if (size < 0) {
+      throw new IllegalArgumentException("size must be non-negative");
+    }
+    allocate(tableSizeFor(size));
+  }
+
+  private static int tableSizeFor(int size) {
+    int capacity = MIN_CAPACITY;
+    // keep the load factor at or below one half
+    while (capacity < size << 1) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  private void allocate(int capacity) {
+    keys = new int[capacity];
+    values = new double[capacity];
+    states = new byte[capacity];
+    numEntries = 0;
+    numSlotsUsed = 0;
+  }
+
+  /**
+   * Same spreading as {@link java.util.HashMap}, so small indexes keep their natural order within the table and
+   * a traversal of a small vector visits them in increasing order, as it did with the HashMap based store.
+   */
+  private static int hash(int key) {
+    return key ^ (key >>> 16);
+  }
+
+  /**
+   * @return the slot holding key, or the first free slot of its probe sequence if it is absent
+   */
+  private int find(int key) {
+    int mask = keys.length - 1;
+    int index = hash(key) & mask;
+    int firstRemoved = -1;
+    while (states[index] != FREE) {
+      if (states[index] == FULL) {
+        if (keys[index] == key) {
+          return index;
+        }
+      } else if (firstRemoved < 0) {
+        firstRemoved = index;
+      }
+      index = (index + 1) & mask;
+    }
+    return firstRemoved < 0 ? index : firstRemoved;
+  }
+
+  double get(int key) {
+    int index = find(key);
+    return states[index] == FULL ? values[index] : 0.0;
+  }
+
+  boolean containsKey(int key) {
+    return states[find(key)] == FULL;
+  }
+
+  void put(int key, double value) {
+    int index = find(key);
+    if (states[index] == FULL) {
+      values[index] = value;
+      return;
+    }
+    if (numSlotsUsed + 1 > keys.length >> 1) {
+      // grow if the table is genuinely busy, otherwise just sweep out REMOVED slots
+      rehash(numEntries + 1 > keys.length >> 2 ? keys.length << 1 : keys.length);
+      index = find(key);
+    }
+    if (states[index] == FREE) {
+      numSlotsUsed++;
+    }
+    keys[index] = key;
+    values[index] = value;
+    states[index] = FULL;
+    numEntries++;
+  }
+
+  /**
+   * Adds delta to the value mapped by key, inserting it if absent.
+   *
+   * @return the new value
+   */
+  double adjust(int key, double delta) {
+    int index = find(key);
+    if (states[index] == FULL) {
+      return values[index] += delta;
+    }
+    put(key, delta);
+    return delta;
+  }
+
+  void remove(int key) {
+    int index = find(key);
+    if (states[index] == FULL) {
+      removeAt(index);
+    }
+  }
+
+  /**
+   * Removes the entry in the given slot. Slots are never moved by a removal, so this is safe during a traversal.
+   */
+  void removeAt(int slot) {
+    states[slot] = REMOVED;
+    values[slot] = 0.0;
+    numEntries--;
+  }
+
+  int size() {
+    return numEntries;
+  }
+
+  void clear() {
+    Arrays.fill(states, FREE);
+    Arrays.fill(values, 0.0);
+    numEntries = 0;
+    numSlotsUsed = 0;
+  }
+
+  /**
+   * @return number of slots in the table; valid slot indexes are 0 to slots()-1
+   */
+  int slots() {
+    return keys.length;
+  }
+
+  boolean isFull(int slot) {
+    return states[slot] == FULL;
+  }
+
+  int keyAt(int slot) {
+    return keys[slot];
+  }
+
+  double valueAt(int slot) {
+    return values[slot];
+  }
+
+  void setValueAt(int slot, double value) {
+    values[slot] = value;
+  }
+
+  private void rehash(int newCapacity) {
+    int[] oldKeys = keys;
+    double[] oldValues = values;
+    byte[] oldStates = states;
+    allocate(newCapacity);
+    int mask = newCapacity - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldStates[i] == FULL) {
+        int index = hash(oldKeys[i]) & mask;
+        while (states[index] != FREE) {
+          index = (index + 1) & mask;
+        }
+        keys[index] = oldKeys[i];
+        values[index] = oldValues[i];
+        states[index] = FULL;
+        numEntries++;
+      }
+    }
+    numSlotsUsed = numEntries;
+  }
+
+  @Override
+  public OpenIntDoubleHashMap clone() {
+    OpenIntDoubleHashMap clone;
+    try {
+      clone = (OpenIntDoubleHashMap) super.clone();
+    } catch (CloneNotSupportedException cnse) {
+      throw new AssertionError();
+    }
+    clone.keys = keys.clone();
+    clone.values = values.clone();
+    clone.states = states.clone();
+    return clone;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof OpenIntDoubleHashMap)) return false;
+    OpenIntDoubleHashMap that = (OpenIntDoubleHashMap) o;
+    if (numEntries != that.numEntries) return false;
+    for (int i = 0; i < keys.length; i++) {
+      if (states[i] == FULL) {
+        int index = that.find(keys[i]);
+        if (that.states[index] != FULL
+            || Double.doubleToLongBits(that.values[index]) != Double.doubleToLongBits(values[i])) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Same value as {@link java.util.Map#hashCode()} of the equivalent <code>Map&lt;Integer, Double&gt;</code>.
+   */
+  @Override
+  public int hashCode() {
+    int result = 0;
+    for (int i = 0; i < keys.length; i++) {
+      if (states[i] == FULL) {
+        long bits = Double.doubleToLongBits(values[i]);
+        result += keys[i] ^ (int) (bits ^ (bits >>> 32));
+      }
+    }
+    return result;
+  }
+
+}
@@ -0,0 +1,330 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.matrix;
+
+import java.util.Arrays;
+
+/**
+ * Mapping from int indexes to double values held as two parallel arrays sorted by index. Lookups are a binary
+ * search; appending in increasing index order is amortized constant time, while inserting or removing in the
+ * middle shifts the tail of the arrays. Used as the backing store of {@link SequentialAccessSparseVector}.
+ *
+ * This class is not thread-safe.
+ */
+final class OrderedIntDoubleMapping implements Cloneable {
+
+  private static final int DEFAULT_CAPACITY = 11;
+
+  private int[] indices;
+  private double[] values;
+  private int numMappings;
+
+  OrderedIntDoubleMapping() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  OrderedIntDoubleMapping(int capacity) {
+    indices = new int[capacity];
+    values = new double[capacity];
+  }
+
+  /**
+   * Wraps the given arrays, which must already be sorted by index and hold no duplicate indexes.
+   */
+  OrderedIntDoubleMapping(int[] indices, double[] values, int numMappings) {
+    if (indices.length != values.length || numMappings > indices.length) {
+      throw new IllegalArgumentException("indices and values must have room for numMappings entries");
+    }
+    this.indices = indices;
+    this.values = values;
+    this.numMappings = numMappings;
+  }
+
+  /**
+   * Sorts the first n entries of the parallel arrays by index.
+   */
+  static void sortByIndex(int[] indices, double[] values, int n) {
+    boolean sorted = true;
+    for (int i = 1; i < n && sorted; i++) {
+      sorted = indices[i - 1] < indices[i];
+    }
+    if (sorted) {
+      return;
+    }
+    long[] packed = new long[n];
+    for (int i = 0; i < n; i++) {
+      // index in the high word, original position in the low word
+      packed[i] = ((long) indices[i] << 32) | i;
+    }
+    Arrays.sort(packed);
+    double[] sortedValues = new double[n];
+    for (int i = 0; i < n; i++) {
+      indices[i] = (int) (packed[i] >>> 32);
+      sortedValues[i] = values[(int) packed[i]];
+    }
+    System.arraycopy(sortedValues, 0, values, 0, n);
+  }
+
+  int[] getIndices() {
+    return indices;
+  }
+
+  double[] getValues() {
+    return values;
+  }
+
+  int getNumMappings() {
+    return numMappings;
+  }
+
+  int indexAt(int offset) {
+    return indices[offset];
+  }
+
+  double valueAt(int offset) {
+    return values[offset];
+  }
+
+  void setValueAt(int offset, double value) {
+    values[offset] = value;
+  }
+
+  /**
+   * @return the offset of index if present, otherwise <code>-(insertion point) - 1</code> as in
+   *  {@link java.util.Arrays#binarySearch(int[], int)}
+   */
+  int find(int index) {
+    int low = 0;
+    int high = numMappings - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int midIndex = indices[mid];
+      if (midIndex < index) {
+        low = mid + 1;
+      } else if (midIndex > index) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(low + 1);
+  }
+
+  double get(int index) {
+    int offset = find(index);
+    return offset >= 0 ? values[offset] : 0.0;
+  }
+
+  /**
+   * Sets the value at index; a zero value removes the mapping.
+   */
+  void set(int index, double value) {
+    // fast path for building in increasing index order
+    if (numMappings == 0 || index > indices[numMappings - 1]) {
+      if (value != 0.0) {
+        insertAt(numMappings, index, value);
+      }
+      return;
+    }
+    int offset = find(index);
+    if (offset >= 0) {
+      if (value == 0.0) {
+        removeAt(offset);
+      } else {
+        values[offset] = value;
+      }
+    } else if (value != 0.0) {
+      insertAt(-offset - 1, index, value);
+    }
+  }
+
+  private void insertAt(int offset, int index, double value) {
+    if (numMappings >= indices.length) {
+      int newCapacity = Math.max(DEFAULT_CAPACITY, (numMappings * 3) / 2 + 1);
+      int[] newIndices = new int[newCapacity];
+      double[] newValues = new double[newCapacity];
+      System.arraycopy(indices, 0, newIndices, 0, offset);
+      System.arraycopy(values, 0, newValues, 0, offset);
+      System.arraycopy(indices, offset, newIndices, offset + 1, numMappings - offset);
+      System.arraycopy(values, offset, newValues, offset + 1, numMappings - offset);
+      indices = newIndices;
+      values = newValues;
+    } else if (offset < numMappings) {
+      System.arraycopy(indices, offset, indices, offset + 1, numMappings - offset);
+      System.arraycopy(values, offset, values, offset + 1, numMappings - offset);
+    }
+    indices[offset] = index;
+    values[offset] = value;
+    numMappings++;
+  }
+
+  private void removeAt(int offset) {
+    numMappings--;
+    System.arraycopy(indices, offset + 1, indices, offset, numMappings - offset);
+    System.arraycopy(values, offset + 1, values, offset, numMappings - offset);
+  }
+
+  /**
+   * Drops mappings whose value has become zero through {@link #setValueAt(int, double)}.
+   */
+  void compact() {
+    int to = 0;
+    for (int from = 0; from < numMappings; from++) {
+      if (values[from] != 0.0) {
+        indices[to] = indices[from];
+        values[to] = values[from];
+        to++;
+      }
+    }
+    numMappings = to;
+  }
+
+  /**
+   * Adds factor times the other mapping, given as the first otherNum entries of two parallel arrays sorted by
+   * index, to this one. Runs in time linear in the number of mappings of both. The result is merged into the
+   * existing arrays, from the back so that no entry is overwritten before it is read; new arrays are only
+   * allocated when they lack room for the indexes the other mapping adds.
+   */
+  void addAll(int[] otherIndices, double[] otherValues, int otherNum, double factor) {
+    int merged = numMappings;
+    int i = 0;
+    for (int j = 0; j < otherNum; j++) {
+      while (i < numMappings && indices[i] < otherIndices[j]) {
+        i++;
+      }
+      if (i == numMappings || indices[i] != otherIndices[j]) {
+        merged++;
+      }
+    }
+    if (merged > indices.length) {
+      addAllGrowing(otherIndices, otherValues, otherNum, factor,
+                    Math.max(merged, (numMappings * 3) / 2 + 1));
+      return;
+    }
+    i = numMappings - 1;
+    int j = otherNum - 1;
+    boolean zeros = false;
+    // once the other mapping is used up, the rest of this one is already in place
+    for (int n = merged - 1; j >= 0; n--) {
+      if (i >= 0 && indices[i] > otherIndices[j]) {
+        indices[n] = indices[i];
+        values[n] = values[i--];
+      } else if (i < 0 || otherIndices[j] > indices[i]) {
+        indices[n] = otherIndices[j];
+        values[n] = factor * otherValues[j--];
+      } else {
+        indices[n] = indices[i];
+        values[n] = values[i--] + factor * otherValues[j--];
+      }
+      zeros |= values[n] == 0.0;
+    }
+    numMappings = merged;
+    if (zeros) {
+      compact();
+    }
+  }
+
+  private void addAllGrowing(int[] otherIndices, double[] otherValues, int otherNum, double factor, int capacity) {
+    int[] newIndices = new int[capacity];
+    double[] newValues = new double[capacity];
+    int i = 0;
+    int j = 0;
+    int n = 0;
+    while (i < numMappings || j < otherNum) {
+      int index;
+      double value;
+      if (j == otherNum || (i < numMappings && indices[i] < otherIndices[j])) {
+        index = indices[i];
+        value = values[i++];
+      } else if (i == numMappings || otherIndices[j] < indices[i]) {
+        index = otherIndices[j];
+        value = factor * otherValues[j++];
+      } else {
+        index = indices[i];
+        value = values[i++] + factor * otherValues[j++];
+      }
+      if (value != 0.0) {
+        newIndices[n] = index;
+        newValues[n] = value;
+        n++;
+      }
+    }
+    indices = newIndices;
+    values = newValues;
+    numMappings = n;
+  }
+
+  void clear() {
+    numMappings = 0;
+  }
+
+  @Override
+  public OrderedIntDoubleMapping clone() {
+    int[] newIndices = new int[numMappings];
+    double[] newValues = new double[numMappings];
+    System.arraycopy(indices, 0, newIndices, 0, numMappings);
+    System.arraycopy(values, 0, newValues, 0, numMappings);
+    return new OrderedIntDoubleMapping(newIndices, newValues, numMappings);
+  }
+
+  /**
+   * Mappings whose value was set to zero through {@link #setValueAt(int, double)} are ignored.
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof OrderedIntDoubleMapping)) return false;
+    OrderedIntDoubleMapping that = (OrderedIntDoubleMapping) o;
+    int i = 0;
+    int j = 0;
+    while (true) {
+      while (i < numMappings && values[i] == 0.0) {
+        i++;
+      }
+      while (j < that.numMappings && that.values[j] == 0.0) {
+        j++;
+      }
+      if (i == numMappings || j == that.numMappings) {
+        return i == numMappings && j == that.numMappings;
+      }
+      if (indices[i] != that.indices[j]
+          || Double.doubleToLongBits(values[i]) != Double.doubleToLongBits(that.values[j])) {
+        return false;
+      }
+      i++;
+      j++;
+    }
+  }
+
+  /**
+   * Same value as {@link java.util.Map#hashCode()} of the equivalent <code>Map&lt;Integer, Double&gt;</code>
+   * holding only the non-zero mappings.
+   */
+  @Override
+  public int hashCode() {
+    int result = 0;
+    for (int i = 0; i < numMappings; i++) {
+      if (values[i] != 0.0) {
+        long bits = Double.doubleToLongBits(values[i]);
+        result += indices[i] ^ (int) (bits ^ (bits >>> 32));
+      }
+    }
+    return result;
+  }
+
+}
@@ -0,0 +1,205 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.matrix;
+
+/**
+ * QR decomposition by Householder reflections of a matrix with at least as many
+ * rows as columns, so that <code>A = Q R</code> with Q having orthonormal
+ * columns and R upper triangular. It is more stable than an
+ * {@link LUDecomposition} and also gives least squares solutions of
+ * overdetermined systems. The factors are computed once and may be used for
+ * any number of solves.
+ */
+public class QRDecomposition {
+
+  private static final int ROW = AbstractMatrix.ROW;
+
+  private static final int COL = AbstractMatrix.COL;
+
+  /**
+   * columns of the decomposed matrix: the Householder vectors on and below the
+   * diagonal, R above it. Stored by column so that the reflections stream
+   * through contiguous arrays.
+   */
+  private final double[][] qrColumns;
+
+  private final double[] rDiagonal;
+
+  private final int m;
+
+  private final int n;
+
+  /**
+   * Decompose the given matrix, which is not modified
+   * 
+   * @param a a Matrix with at least as many rows as columns
+   * @throws CardinalityException if the matrix has fewer rows than columns
+   */
+  public QRDecomposition(Matrix a) {
+    int[] c = a.cardinality();
+    m = c[ROW];
+    n = c[COL];
+    if (m < n)
+      throw new CardinalityException();
+    qrColumns = new double[n][m];
+    for (int i = 0; i < m; i++)
+      for (int j = 0; j < n; j++)
+        qrColumns[j][i] = a.getQuick(i, j);
+    rDiagonal = new double[n];
+    for (int k = 0; k < n; k++) {
+      double[] qrk = qrColumns[k];
+      double norm = 0.0;
+      for (int i = k; i < m; i++)
+        norm = Math.hypot(norm, qrk[i]);
+      if (norm != 0.0) {
+        if (qrk[k] < 0.0)
+          norm = -norm;
+        for (int i = k; i < m; i++)
+          qrk[i] /= norm;
+        qrk[k] += 1.0;
+        for (int j = k + 1; j < n; j++)
+          reflect(k, qrColumns[j]);
+      }
+      rDiagonal[k] = -norm;
+    }
+  }
+
+  /**
+   * Apply the k-th Householder reflection to the given column
+   */
+  private void reflect(int k, double[] column) {
+    double[] qrk = qrColumns[k];
+    double sum = 0.0;
+    for (int i = k; i < m; i++)
+      sum += qrk[i] * column[i];
+    sum = -sum / qrk[k];
+    for (int i = k; i < m; i++)
+      column[i] += sum * qrk[i];
+  }
+
+  /**
+   * @return true if R, and so the matrix, has full column rank
+   */
+  public boolean isFullRank() {
+    for (int j = 0; j < n; j++)
+      if (rDiagonal[j] == 0.0)
+        return false;
+    return true;
+  }
+
+  /**
+   * @return the upper triangular factor R, with as many rows as columns
+   */
+  public Matrix getR() {
+    Matrix result = new DenseMatrix(n, n);
+    for (int i = 0; i < n; i++) {
+      result.setQuick(i, i, rDiagonal[i]);
+      for (int j = i + 1; j < n; j++)
+        result.setQuick(i, j, qrColumns[j][i]);
+    }
+    return result;
+  }
+
+  /**
+   * @return the factor Q, with orthonormal columns and the shape of the matrix
+   */
+  public Matrix getQ() {
+    double[][] columns = new double[n][m];
+    for (int k = n - 1; k >= 0; k--) {
+      columns[k][k] = 1.0;
+      if (qrColumns[k][k] != 0.0)
+        for (int j = k; j < n; j++)
+          reflect(k, columns[j]);
+    }
+    Matrix result = new DenseMatrix(m, n);
+    for (int j = 0; j < n; j++)
+      for (int i = 0; i < m; i++)
+        result.setQuick(i, j, columns[j][i]);
+    return result;
+  }
+
+  /**
+   * Find the X minimizing the Frobenius norm of <code>A X - B</code>, which is
+   * the exact solution of <code>A X = B</code> for a square matrix
+   * 
+   * @param b a Matrix with as many rows as the decomposed matrix
+   * @return a new Matrix X with as many rows as the decomposed matrix has
+   *         columns
+   * @throws CardinalityException if the row counts differ
+   * @throws SingularMatrixException if the matrix is rank deficient
+   */
+  public Matrix solve(Matrix b) {
+    int[] c = b.cardinality();
+    if (c[ROW] != m)
+      throw new CardinalityException();
+    if (!isFullRank())
+      throw new SingularMatrixException();
+    int columns = c[COL];
+    Matrix result = new DenseMatrix(n, columns);
+    double[] column = new double[m];
+    for (int j = 0; j < columns; j++) {
+      for (int i = 0; i < m; i++)
+        column[i] = b.getQuick(i, j);
+      solveInPlace(column);
+      for (int i = 0; i < n; i++)
+        result.setQuick(i, j, column[i]);
+    }
+    return result;
+  }
+
+  /**
+   * Find the x minimizing the Euclidean norm of <code>A x - b</code>, which is
+   * the exact solution of <code>A x = b</code> for a square matrix
+   * 
+   * @param b a Vector with as many elements as the decomposed matrix has rows
+   * @return a new Vector x with as many elements as the decomposed matrix has
+   *         columns
+   * @throws CardinalityException if the cardinalities differ
+   * @throws SingularMatrixException if the matrix is rank deficient
+   */
+  public Vector solve(Vector b) {
+    if (b.cardinality() != m)
+      throw new CardinalityException();
+    if (!isFullRank())
+      throw new SingularMatrixException();
+    double[] column = new double[m];
+    for (int i = 0; i < m; i++)
+      column[i] = b.getQuick(i);
+    solveInPlace(column);
+    Vector result = new DenseVector(n);
+    for (int i = 0; i < n; i++)
+      result.setQuick(i, column[i]);
+    return result;
+  }
+
+  /**
+   * Overwrite the first n elements of the column with the solution: apply Q'
+   * and then back substitute with R
+   */
+  private void solveInPlace(double[] column) {
+    for (int k = 0; k < n; k++)
+      reflect(k, column);
+    for (int k = n - 1; k >= 0; k--) {
+      column[k] /= rDiagonal[k];
+      double[] qrk = qrColumns[k];
+      for (int i = 0; i < k; i++)
+        column[i] -= column[k] * qrk[i];
+    }
+  }
+
+}
@@ -0,0 +1,333 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.matrix;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+/**
+ * Implements vector that only stores non-zero doubles, as a pair of parallel arrays of indexes and values kept
+ * sorted by index. Iteration visits the non-zeros in increasing index order and touches no objects other than the
+ * arrays, which makes this the better choice for vectors that are built once and then mostly read, such as
+ * document vectors. Random access writes cost a binary search plus an array shift; use {@link SparseVector} for
+ * vectors that are updated in random order. Both classes share the same String and Writable formats.
+ */
+public class SequentialAccessSparseVector extends AbstractVector {
+
+  /** For serialization purposes only. */
+  public SequentialAccessSparseVector() {
+  }
+
+  private OrderedIntDoubleMapping values;
+
+  private int cardinality;
+
+  /**
+   * Decode a new instance from the formatted string
+   *
+   * @param formattedString
+   *            a string produced by the asFormatString method
+   * @return a SequentialAccessSparseVector
+   */
+  public static Vector decodeFormat(String formattedString) {
+    return new SequentialAccessSparseVector(SparseVector.decodeFormat(formattedString));
+  }
+
+  public SequentialAccessSparseVector(int cardinality) {
+    this(cardinality, 11);
+  }
+
+  /**
+   * Construct a new instance with room for the given number of non-zero values before it needs to grow
+   *
+   * @param cardinality
+   * @param size expected number of non-zero values
+   */
+  public SequentialAccessSparseVector(int cardinality, int size) {
+    values = new OrderedIntDoubleMapping(size);
+    this.cardinality = cardinality;
+  }
+
+  /**
+   * Construct a new instance holding the non-zero values of the argument
+   *
+   * @param other a Vector
+   */
+  public SequentialAccessSparseVector(Vector other) {
+    this(other.cardinality(), other.size());
+    if (other instanceof SequentialAccessSparseVector) {
+      values = ((SequentialAccessSparseVector) other).values.clone();
+    } else if (other instanceof SparseVector) {
+      // iteration order is arbitrary: gather then sort once
+      int[] indices = new int[other.size()];
+      double[] vals = new double[other.size()];
+      int n = 0;
+      for (Vector.Element element : other) {
+        indices[n] = element.index();
+        vals[n] = element.get();
+        n++;
+      }
+      OrderedIntDoubleMapping.sortByIndex(indices, vals, n);
+      values = new OrderedIntDoubleMapping(indices, vals, n);
+    } else {
+      for (int i = 0; i < cardinality; i++) {
+        double value = other.getQuick(i);
+        if (value != 0.0) {
+          values.set(i, value);
+        }
+      }
+    }
+  }
+
+  SequentialAccessSparseVector(int cardinality, OrderedIntDoubleMapping values) {
+    this.values = values;
+    this.cardinality = cardinality;
+  }
+
+  @Override
+  protected Matrix matrixLike(int rows, int columns) {
+    int[] cardinality = { rows, columns };
+    return new SparseRowMatrix(cardinality);
+  }
+
+  @Override
+  public WritableComparable<?> asWritableComparable() {
+    String out = asFormatString();
+    return new Text(out);
+  }
+
+  @Override
+  public String asFormatString() {
+    StringBuilder out = new StringBuilder();
+    out.append("[s").append(cardinality).append(", ");
+    int numMappings = values.getNumMappings();
+    for (int i = 0; i < numMappings; i++) {
+      double value = values.valueAt(i);
+      if (value != 0.0) {
+        out.append(values.indexAt(i)).append(':').append(value).append(", ");
+      }
+    }
+    out.append("] ");
+    return out.toString();
+  }
+
+  @Override
+  public int cardinality() {
+    return cardinality;
+  }
+
+  @Override
+  public SequentialAccessSparseVector copy() {
+    return new SequentialAccessSparseVector(cardinality, values.clone());
+  }
+
+  @Override
+  public double getQuick(int index) {
+    return values.get(index);
+  }
+
+  @Override
+  public void setQuick(int index, double value) {
+    values.set(index, value);
+  }
+
+  @Override
+  public int size() {
+    return values.getNumMappings();
+  }
+
+  @Override
+  public double[] toArray() {
+    double[] result = new double[cardinality];
+    int numMappings = values.getNumMappings();
+    for (int i = 0; i < numMappings; i++) {
+      result[values.indexAt(i)] = values.valueAt(i);
+    }
+    return result;
+  }
+
+  @Override
+  public Vector viewPart(int offset, int length) {
+    if (length > cardinality)
+      throw new CardinalityException();
+    if (offset < 0 || offset + length > cardinality)
+      throw new IndexException();
+    return new VectorView(this, offset, length);
+  }
+
+  @Override
+  public boolean haveSharedCells(Vector other) {
+    if (other instanceof SequentialAccessSparseVector)
+      return other == this;
+    else
+      return other.haveSharedCells(this);
+  }
+
+  @Override
+  public SequentialAccessSparseVector like() {
+    return new SequentialAccessSparseVector(cardinality, values.getNumMappings());
+  }
+
+  @Override
+  public Vector like(int newCardinality) {
+    return new SequentialAccessSparseVector(newCardinality);
+  }
+
+  /**
+   * Returns an iterator over the non-zero values of this Vector, in increasing index order. Setting an element to
+   * zero through the iterator leaves an explicit zero behind rather than shifting the arrays under the iterator.
+   */
+  @Override
+  public java.util.Iterator<Vector.Element> iterator() {
+    return new Iterator();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    SequentialAccessSparseVector that = (SequentialAccessSparseVector) o;
+
+    return cardinality == that.cardinality && (values == null ? that.values == null : values.equals(that.values));
+  }
+
+  @Override
+  public int hashCode() {
+    int result = (values != null ? values.hashCode() : 0);
+    result = 31 * result + cardinality;
+    return result;
+  }
+
+  private class Iterator implements java.util.Iterator<Vector.Element> {
+    private int offset;
+
+    @Override
+    public boolean hasNext() {
+      return offset < values.getNumMappings();
+    }
+
+    @Override
+    public Vector.Element next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return new Element(offset++);
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /**
+   * Element bound to an array offset, so reading and writing it needs no search.
+   */
+  private class Element implements Vector.Element {
+    private final int offset;
+
+    Element(int offset) {
+      this.offset = offset;
+    }
+
+    @Override
+    public double get() {
+      return values.valueAt(offset);
+    }
+
+    @Override
+    public int index() {
+      return values.indexAt(offset);
+    }
+
+    @Override
+    public void set(double value) {
+      values.setValueAt(offset, value);
+    }
+  }
+
+  OrderedIntDoubleMapping getValues() {
+    return values;
+  }
+
+  @Override
+  public double zSum() {
+    double result = 0.0;
+    double[] vals = values.getValues();
+    int numMappings = values.getNumMappings();
+    for (int i = 0; i < numMappings; i++) {
+      result += vals[i];
+    }
+    return result;
+  }
+
+  /**
+   * Writes the same format as {@link SparseVector#write(DataOutput)}, with the entries in increasing index order.
+   */
+  @Override
+  public void write(DataOutput dataOutput) throws IOException {
+    int[] indices = values.getIndices();
+    double[] vals = values.getValues();
+    int numMappings = values.getNumMappings();
+    int numNonZeros = 0;
+    for (int i = 0; i < numMappings; i++) {
+      if (vals[i] != 0.0) {
+        numNonZeros++;
+      }
+    }
+    dataOutput.writeInt(cardinality());
+    dataOutput.writeInt(numNonZeros);
+    for (int i = 0; i < numMappings; i++) {
+      if (vals[i] != 0.0) {
+        dataOutput.writeInt(indices[i]);
+        dataOutput.writeDouble(vals[i]);
+      }
+    }
+  }
+
+  /**
+   * Reads the format written by either sparse vector class; entries need not arrive in index order.
+   */
+  @Override
+  public void readFields(DataInput dataInput) throws IOException {
+    int cardinality = dataInput.readInt();
+    int size = dataInput.readInt();
+    int[] indices = new int[size];
+    double[] vals = new double[size];
+    int n = 0;
+    for (int i = 0; i < size; i++) {
+      int index = dataInput.readInt();
+      double value = dataInput.readDouble();
+      if (value != 0.0) {
+        indices[n] = index;
+        vals[n] = value;
+        n++;
+      }
+    }
+    OrderedIntDoubleMapping.sortByIndex(indices, vals, n);
+    this.cardinality = cardinality;
+    this.values = new OrderedIntDoubleMapping(indices, vals, n);
+  }
+
+}
@@ -100,9 +100,10 @@ public class SparseColumnMatrix extends AbstractMatrix {
 
   @Override
   public boolean haveSharedCells(Matrix other) {
-    if (other instanceof SparseColumnMatrix)
-      return other == this;
-    return other.haveSharedCells(this);
+    // only a view can share cells with a matrix of another class
+    if (other instanceof MatrixView)
+      return other.haveSharedCells(this);
+    return other == this;
   }
 
   @Override
@@ -189,4 +190,44 @@ public class SparseColumnMatrix extends AbstractMatrix {
     return new DenseVector(d);
   }
 
+  @Override
+  public boolean foreachNonZero(final IntIntDoubleProcedure procedure) {
+    for (int col = 0; col < cardinality[COL]; col++) {
+      final int fixed = col;
+      boolean more = columns[col].foreachNonZero(new IntDoubleProcedure() {
+        @Override
+        public boolean apply(int index, double value) {
+          return procedure.apply(index, fixed, value);
+        }
+      });
+      if (!more)
+        return false;
+    }
+    return true;
+  }
+
+  @Override
+  public double aggregate(BinaryFunction aggregator, UnaryFunction map) {
+    if (!(aggregator instanceof PlusFunction))
+      return super.aggregate(aggregator, map);
+    double result = 0.0;
+    for (int col = 0; col < cardinality[COL]; col++)
+      result += columns[col].aggregate(aggregator, map);
+    return result;
+  }
+
+  @Override
+  public double aggregate(Matrix other, BinaryFunction aggregator,
+      BinaryFunction combiner) {
+    int[] c = other.cardinality();
+    if (c[ROW] != cardinality[ROW] || c[COL] != cardinality[COL])
+      throw new CardinalityException();
+    if (!(aggregator instanceof PlusFunction))
+      return super.aggregate(other, aggregator, combiner);
+    double result = 0.0;
+    for (int col = 0; col < cardinality[COL]; col++)
+      result += columns[col].aggregate(other.getColumn(col), aggregator, combiner);
+    return result;
+  }
+
 }
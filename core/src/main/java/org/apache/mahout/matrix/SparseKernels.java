@@ -0,0 +1,431 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.matrix;
+
+/**
+ * Kernels for the element-wise operations and aggregates of {@link AbstractVector} when at least one operand is a
+ * {@link SparseVector} or a {@link SequentialAccessSparseVector}. They work directly on the primitive backing
+ * stores and touch only the non-zero values, so their cost is proportional to the number of non-zeros rather than
+ * to the cardinality. Sparse&times;sparse products merge-join two {@link SequentialAccessSparseVector}s and
+ * otherwise iterate the operand with fewer non-zeros while probing the other.
+ *
+ * Callers are responsible for checking cardinalities.
+ */
+final class SparseKernels {
+
+  private SparseKernels() {
+  }
+
+  static boolean isSparse(Vector v) {
+    return v instanceof SparseVector || v instanceof SequentialAccessSparseVector;
+  }
+
+  /**
+   * @return the dot product of x and y, one of which is sparse
+   */
+  static double dot(Vector x, Vector y) {
+    if (x instanceof SequentialAccessSparseVector && y instanceof SequentialAccessSparseVector) {
+      return dot(((SequentialAccessSparseVector) x).getValues(), ((SequentialAccessSparseVector) y).getValues());
+    }
+    // iterate the operand with fewer non-zeros, probe the other
+    if (!isSparse(x) || (isSparse(y) && y.size() < x.size())) {
+      Vector tmp = x;
+      x = y;
+      y = tmp;
+    }
+    double result = 0.0;
+    if (x instanceof SparseVector) {
+      OpenIntDoubleHashMap values = ((SparseVector) x).getValues();
+      for (int slot = 0; slot < values.slots(); slot++) {
+        if (values.isFull(slot)) {
+          result += values.valueAt(slot) * y.getQuick(values.keyAt(slot));
+        }
+      }
+    } else {
+      OrderedIntDoubleMapping values = ((SequentialAccessSparseVector) x).getValues();
+      int[] indices = values.getIndices();
+      double[] vals = values.getValues();
+      int numMappings = values.getNumMappings();
+      for (int i = 0; i < numMappings; i++) {
+        result += vals[i] * y.getQuick(indices[i]);
+      }
+    }
+    return result;
+  }
+
+  private static double dot(OrderedIntDoubleMapping x, OrderedIntDoubleMapping y) {
+    int[] xIndices = x.getIndices();
+    double[] xValues = x.getValues();
+    int xNum = x.getNumMappings();
+    int[] yIndices = y.getIndices();
+    double[] yValues = y.getValues();
+    int yNum = y.getNumMappings();
+    double result = 0.0;
+    int i = 0;
+    int j = 0;
+    while (i < xNum && j < yNum) {
+      int xIndex = xIndices[i];
+      int yIndex = yIndices[j];
+      if (xIndex < yIndex) {
+        i++;
+      } else if (xIndex > yIndex) {
+        j++;
+      } else {
+        result += xValues[i++] * yValues[j++];
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Applies the procedure to the non-zeros of the sparse vector x until it returns false.
+   *
+   * @return false if the procedure stopped the traversal
+   */
+  static boolean foreachNonZero(Vector x, IntDoubleProcedure procedure) {
+    if (x instanceof SparseVector) {
+      OpenIntDoubleHashMap values = ((SparseVector) x).getValues();
+      for (int slot = 0; slot < values.slots(); slot++) {
+        if (values.isFull(slot) && values.valueAt(slot) != 0.0
+            && !procedure.apply(values.keyAt(slot), values.valueAt(slot))) {
+          return false;
+        }
+      }
+    } else {
+      OrderedIntDoubleMapping values = ((SequentialAccessSparseVector) x).getValues();
+      int[] indices = values.getIndices();
+      double[] vals = values.getValues();
+      int numMappings = values.getNumMappings();
+      for (int i = 0; i < numMappings; i++) {
+        if (vals[i] != 0.0 && !procedure.apply(indices[i], vals[i])) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the sum of map over the non-zeros of the sparse vector x, which is its sum over all elements when
+   *         map(0) is 0
+   */
+  static double sum(Vector x, UnaryFunction map) {
+    double result = 0.0;
+    if (x instanceof SparseVector) {
+      OpenIntDoubleHashMap values = ((SparseVector) x).getValues();
+      for (int slot = 0; slot < values.slots(); slot++) {
+        if (values.isFull(slot)) {
+          result += map.apply(values.valueAt(slot));
+        }
+      }
+    } else {
+      OrderedIntDoubleMapping values = ((SequentialAccessSparseVector) x).getValues();
+      double[] vals = values.getValues();
+      int numMappings = values.getNumMappings();
+      for (int i = 0; i < numMappings; i++) {
+        result += map.apply(vals[i]);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the sum of combiner(x[i], y[i]) over the indexes where either of the sparse vectors x and y has a
+   *         non-zero, which is its sum over all indexes when combiner(0, 0) is 0
+   */
+  static double sum(Vector x, Vector y, BinaryFunction combiner) {
+    if (x instanceof SequentialAccessSparseVector && y instanceof SequentialAccessSparseVector) {
+      return sum(((SequentialAccessSparseVector) x).getValues(), ((SequentialAccessSparseVector) y).getValues(),
+          combiner);
+    }
+    return sumOver(x, y, combiner, false) + sumOver(y, x, combiner, true);
+  }
+
+  private static double sum(OrderedIntDoubleMapping x, OrderedIntDoubleMapping y, BinaryFunction combiner) {
+    int[] xIndices = x.getIndices();
+    double[] xValues = x.getValues();
+    int xNum = x.getNumMappings();
+    int[] yIndices = y.getIndices();
+    double[] yValues = y.getValues();
+    int yNum = y.getNumMappings();
+    double result = 0.0;
+    int i = 0;
+    int j = 0;
+    while (i < xNum || j < yNum) {
+      if (j == yNum || (i < xNum && xIndices[i] < yIndices[j])) {
+        result += combiner.apply(xValues[i++], 0.0);
+      } else if (i == xNum || yIndices[j] < xIndices[i]) {
+        result += combiner.apply(0.0, yValues[j++]);
+      } else {
+        result += combiner.apply(xValues[i++], yValues[j++]);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Sums combiner(x[i], y[i]) over the non-zeros of the sparse vector x or, when x is the second operand, sums
+   * combiner(0, x[i]) over the non-zeros of x at which y is zero, so that the two calls made by
+   * {@link #sum(Vector, Vector, BinaryFunction)} visit each index once.
+   */
+  private static double sumOver(Vector x, Vector y, BinaryFunction combiner, boolean second) {
+    double result = 0.0;
+    if (x instanceof SparseVector) {
+      OpenIntDoubleHashMap values = ((SparseVector) x).getValues();
+      for (int slot = 0; slot < values.slots(); slot++) {
+        if (values.isFull(slot)) {
+          result += combine(values.keyAt(slot), values.valueAt(slot), y, combiner, second);
+        }
+      }
+    } else {
+      OrderedIntDoubleMapping values = ((SequentialAccessSparseVector) x).getValues();
+      int[] indices = values.getIndices();
+      double[] vals = values.getValues();
+      int numMappings = values.getNumMappings();
+      for (int i = 0; i < numMappings; i++) {
+        result += combine(indices[i], vals[i], y, combiner, second);
+      }
+    }
+    return result;
+  }
+
+  private static double combine(int index, double value, Vector y, BinaryFunction combiner, boolean second) {
+    // a stored zero is left to the other operand, or contributes combiner(0, 0) = 0
+    if (value == 0.0) {
+      return 0.0;
+    }
+    double other = y.getQuick(index);
+    if (!second) {
+      return combiner.apply(value, other);
+    }
+    return other == 0.0 ? combiner.apply(0.0, value) : 0.0;
+  }
+
+  /**
+   * Adds alpha times x to y, in place. Only the non-zeros of x are visited when x is sparse.
+   */
+  static void axpy(double alpha, Vector x, Vector y) {
+    if (y instanceof SequentialAccessSparseVector) {
+      OrderedIntDoubleMapping yValues = ((SequentialAccessSparseVector) y).getValues();
+      OrderedIntDoubleMapping xValues = x instanceof SequentialAccessSparseVector
+          ? ((SequentialAccessSparseVector) x).getValues()
+          : sortedNonZeros(x);
+      yValues.addAll(xValues.getIndices(), xValues.getValues(), xValues.getNumMappings(), alpha);
+    } else if (x instanceof SparseVector) {
+      OpenIntDoubleHashMap xValues = ((SparseVector) x).getValues();
+      for (int slot = 0; slot < xValues.slots(); slot++) {
+        if (xValues.isFull(slot)) {
+          add(y, xValues.keyAt(slot), alpha * xValues.valueAt(slot));
+        }
+      }
+    } else if (x instanceof SequentialAccessSparseVector) {
+      OrderedIntDoubleMapping xValues = ((SequentialAccessSparseVector) x).getValues();
+      int[] indices = xValues.getIndices();
+      double[] vals = xValues.getValues();
+      int numMappings = xValues.getNumMappings();
+      for (int i = 0; i < numMappings; i++) {
+        add(y, indices[i], alpha * vals[i]);
+      }
+    } else {
+      int cardinality = x.cardinality();
+      for (int i = 0; i < cardinality; i++) {
+        double value = x.getQuick(i);
+        if (value != 0.0) {
+          add(y, i, alpha * value);
+        }
+      }
+    }
+  }
+
+  private static void add(Vector y, int index, double delta) {
+    if (y instanceof SparseVector) {
+      OpenIntDoubleHashMap values = ((SparseVector) y).getValues();
+      if (values.adjust(index, delta) == 0.0) {
+        values.remove(index);
+      }
+    } else {
+      y.setQuick(index, y.getQuick(index) + delta);
+    }
+  }
+
+  /**
+   * @return the non-zeros of v as a mapping sorted by index
+   */
+  private static OrderedIntDoubleMapping sortedNonZeros(Vector v) {
+    if (v instanceof SparseVector) {
+      OpenIntDoubleHashMap values = ((SparseVector) v).getValues();
+      int[] indices = new int[values.size()];
+      double[] vals = new double[values.size()];
+      int n = 0;
+      for (int slot = 0; slot < values.slots(); slot++) {
+        if (values.isFull(slot)) {
+          indices[n] = values.keyAt(slot);
+          vals[n] = values.valueAt(slot);
+          n++;
+        }
+      }
+      OrderedIntDoubleMapping.sortByIndex(indices, vals, n);
+      return new OrderedIntDoubleMapping(indices, vals, n);
+    }
+    OrderedIntDoubleMapping result = new OrderedIntDoubleMapping();
+    int cardinality = v.cardinality();
+    for (int i = 0; i < cardinality; i++) {
+      double value = v.getQuick(i);
+      if (value != 0.0) {
+        result.set(i, value);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return a new vector, like x, holding the element-wise product of x and y, one of which is sparse
+   */
+  static Vector times(Vector x, Vector y) {
+    int cardinality = x.cardinality();
+    if (x instanceof SequentialAccessSparseVector) {
+      OrderedIntDoubleMapping xValues = ((SequentialAccessSparseVector) x).getValues();
+      int[] indices = xValues.getIndices();
+      double[] vals = xValues.getValues();
+      int numMappings = xValues.getNumMappings();
+      // indices are visited in increasing order, so every set below is an append
+      OrderedIntDoubleMapping result = new OrderedIntDoubleMapping(Math.min(numMappings, y.size()));
+      if (y instanceof SequentialAccessSparseVector) {
+        OrderedIntDoubleMapping yValues = ((SequentialAccessSparseVector) y).getValues();
+        int[] yIndices = yValues.getIndices();
+        double[] yVals = yValues.getValues();
+        int yNum = yValues.getNumMappings();
+        int i = 0;
+        int j = 0;
+        while (i < numMappings && j < yNum) {
+          if (indices[i] < yIndices[j]) {
+            i++;
+          } else if (indices[i] > yIndices[j]) {
+            j++;
+          } else {
+            result.set(indices[i], vals[i++] * yVals[j++]);
+          }
+        }
+      } else {
+        for (int i = 0; i < numMappings; i++) {
+          result.set(indices[i], vals[i] * y.getQuick(indices[i]));
+        }
+      }
+      return new SequentialAccessSparseVector(cardinality, result);
+    }
+    if (x instanceof SparseVector) {
+      OpenIntDoubleHashMap xValues = ((SparseVector) x).getValues();
+      if (y instanceof SparseVector && y.size() < x.size()) {
+        OpenIntDoubleHashMap yValues = ((SparseVector) y).getValues();
+        OpenIntDoubleHashMap result = new OpenIntDoubleHashMap(yValues.size());
+        for (int slot = 0; slot < yValues.slots(); slot++) {
+          if (yValues.isFull(slot)) {
+            double value = yValues.valueAt(slot) * xValues.get(yValues.keyAt(slot));
+            if (value != 0.0) {
+              result.put(yValues.keyAt(slot), value);
+            }
+          }
+        }
+        return new SparseVector(cardinality, result);
+      }
+      OpenIntDoubleHashMap result = new OpenIntDoubleHashMap(xValues.size());
+      for (int slot = 0; slot < xValues.slots(); slot++) {
+        if (xValues.isFull(slot)) {
+          double value = xValues.valueAt(slot) * y.getQuick(xValues.keyAt(slot));
+          if (value != 0.0) {
+            result.put(xValues.keyAt(slot), value);
+          }
+        }
+      }
+      return new SparseVector(cardinality, result);
+    }
+    // x is not sparse, so y is: only y's non-zeros can give a non-zero product
+    Vector result = x.like(cardinality);
+    if (y instanceof SparseVector) {
+      OpenIntDoubleHashMap yValues = ((SparseVector) y).getValues();
+      for (int slot = 0; slot < yValues.slots(); slot++) {
+        if (yValues.isFull(slot)) {
+          int index = yValues.keyAt(slot);
+          result.setQuick(index, x.getQuick(index) * yValues.valueAt(slot));
+        }
+      }
+    } else {
+      OrderedIntDoubleMapping yValues = ((SequentialAccessSparseVector) y).getValues();
+      int[] indices = yValues.getIndices();
+      double[] vals = yValues.getValues();
+      int numMappings = yValues.getNumMappings();
+      for (int i = 0; i < numMappings; i++) {
+        result.setQuick(indices[i], x.getQuick(indices[i]) * vals[i]);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Multiplies the sparse vector x by alpha, in place, visiting only its non-zeros.
+   */
+  static void scale(double alpha, Vector x) {
+    if (x instanceof SparseVector) {
+      OpenIntDoubleHashMap values = ((SparseVector) x).getValues();
+      if (alpha == 0.0) {
+        values.clear();
+        return;
+      }
+      for (int slot = 0; slot < values.slots(); slot++) {
+        if (values.isFull(slot)) {
+          values.setValueAt(slot, alpha * values.valueAt(slot));
+        }
+      }
+    } else {
+      OrderedIntDoubleMapping values = ((SequentialAccessSparseVector) x).getValues();
+      double[] vals = values.getValues();
+      int numMappings = values.getNumMappings();
+      for (int i = 0; i < numMappings; i++) {
+        vals[i] *= alpha;
+      }
+      values.compact();
+    }
+  }
+
+  /**
+   * Multiplies the sparse vector x element-wise by y, in place, visiting only the non-zeros of x.
+   */
+  static void timesAssign(Vector x, Vector y) {
+    if (x instanceof SparseVector) {
+      OpenIntDoubleHashMap values = ((SparseVector) x).getValues();
+      for (int slot = 0; slot < values.slots(); slot++) {
+        if (values.isFull(slot)) {
+          double value = values.valueAt(slot) * y.getQuick(values.keyAt(slot));
+          if (value == 0.0) {
+            values.removeAt(slot);
+          } else {
+            values.setValueAt(slot, value);
+          }
+        }
+      }
+    } else {
+      OrderedIntDoubleMapping values = ((SequentialAccessSparseVector) x).getValues();
+      int numMappings = values.getNumMappings();
+      for (int i = 0; i < numMappings; i++) {
+        values.setValueAt(i, values.valueAt(i) * y.getQuick(values.indexAt(i)));
+      }
+      values.compact();
+    }
+  }
+
+}
@@ -101,10 +101,10 @@ public class SparseMatrix extends AbstractMatrix {
 
   @Override
   public boolean haveSharedCells(Matrix other) {
-    if (other instanceof SparseMatrix)
-      return other == this;
-    else
+    // only a view can share cells with a matrix of another class
+    if (other instanceof MatrixView)
       return other.haveSharedCells(this);
+    return other == this;
   }
 
   @Override
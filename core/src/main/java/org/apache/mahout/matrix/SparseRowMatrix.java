@@ -100,9 +100,10 @@ public class SparseRowMatrix extends AbstractMatrix {
 
   @Override
   public boolean haveSharedCells(Matrix other) {
-    if (other instanceof SparseRowMatrix)
-      return other == this;
-    return other.haveSharedCells(this);
+    // only a view can share cells with a matrix of another class
+    if (other instanceof MatrixView)
+      return other.haveSharedCells(this);
+    return other == this;
   }
 
   @Override
@@ -185,4 +186,44 @@ public class SparseRowMatrix extends AbstractMatrix {
     return rows[row];
   }
 
+  @Override
+  public boolean foreachNonZero(final IntIntDoubleProcedure procedure) {
+    for (int row = 0; row < cardinality[ROW]; row++) {
+      final int fixed = row;
+      boolean more = rows[row].foreachNonZero(new IntDoubleProcedure() {
+        @Override
+        public boolean apply(int index, double value) {
+          return procedure.apply(fixed, index, value);
+        }
+      });
+      if (!more)
+        return false;
+    }
+    return true;
+  }
+
+  @Override
+  public double aggregate(BinaryFunction aggregator, UnaryFunction map) {
+    if (!(aggregator instanceof PlusFunction))
+      return super.aggregate(aggregator, map);
+    double result = 0.0;
+    for (int row = 0; row < cardinality[ROW]; row++)
+      result += rows[row].aggregate(aggregator, map);
+    return result;
+  }
+
+  @Override
+  public double aggregate(Matrix other, BinaryFunction aggregator,
+      BinaryFunction combiner) {
+    int[] c = other.cardinality();
+    if (c[ROW] != cardinality[ROW] || c[COL] != cardinality[COL])
+      throw new CardinalityException();
+    if (!(aggregator instanceof PlusFunction))
+      return super.aggregate(other, aggregator, combiner);
+    double result = 0.0;
+    for (int row = 0; row < cardinality[ROW]; row++)
+      result += rows[row].aggregate(other.getRow(row), aggregator, combiner);
+    return result;
+  }
+
 }
@@ -23,13 +23,13 @@ import org.apache.hadoop.io.WritableComparable;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Arrays;
-import java.util.Comparator;
+import java.util.NoSuchElementException;
 
 /**
- * Implements vector that only stores non-zero doubles
+ * Implements vector that only stores non-zero doubles. The non-zeros are held in an open addressing hash table of
+ * primitive ints and doubles, so random access reads and writes are cheap. For vectors that are mostly traversed
+ * in index order, see {@link SequentialAccessSparseVector}.
  */
 public class SparseVector extends AbstractVector {
 
@@ -37,8 +37,7 @@ public class SparseVector extends AbstractVector {
   public SparseVector() {
   }
 
-  private Map<Integer, Double> values;
-
+  private OpenIntDoubleHashMap values;
 
   private int cardinality;
 
@@ -67,7 +66,7 @@ public class SparseVector extends AbstractVector {
       String pt = pt1.trim();
       if (pt.startsWith("[s")) {
         int c = Integer.parseInt(pt1.substring(2));
-        result = new SparseVector(c);
+        result = new SparseVector(c, pts.length - 2);
       } else if (pt.charAt(0) != ']') {
         int ix = pt.indexOf(':');
         int index = Integer.parseInt(pt.substring(0, ix).trim());
@@ -79,7 +78,22 @@ public class SparseVector extends AbstractVector {
   }
 
   public SparseVector(int cardinality) {
-    values = new HashMap<Integer, Double>();
+    this(cardinality, 0);
+  }
+
+  /**
+   * Construct a new instance with room for the given number of non-zero values before it needs to grow
+   *
+   * @param cardinality
+   * @param size expected number of non-zero values
+   */
+  public SparseVector(int cardinality, int size) {
+    values = new OpenIntDoubleHashMap(size);
+    this.cardinality = cardinality;
+  }
+
+  SparseVector(int cardinality, OpenIntDoubleHashMap values) {
+    this.values = values;
     this.cardinality = cardinality;
   }
 
@@ -96,19 +110,19 @@ public class SparseVector extends AbstractVector {
   }
 
   @Override
-  @SuppressWarnings("unchecked")  
   public String asFormatString() {
     StringBuilder out = new StringBuilder();
     out.append("[s").append(cardinality).append(", ");
-    Map.Entry<Integer, Double>[] entries = (Map.Entry<Integer, Double>[]) values.entrySet().toArray(new Map.Entry[values.size()]);
-    Arrays.sort(entries, new Comparator<Map.Entry<Integer, Double>>(){
-      @Override
-      public int compare(Map.Entry<Integer, Double> e1, Map.Entry<Integer, Double> e2) {
-        return e1.getKey().compareTo(e2.getKey());
+    int[] indices = new int[values.size()];
+    int i = 0;
+    for (int slot = 0; slot < values.slots(); slot++) {
+      if (values.isFull(slot)) {
+        indices[i++] = values.keyAt(slot);
       }
-    });
-    for (Map.Entry<Integer, Double> entry : entries) {
-      out.append(entry.getKey()).append(':').append(entry.getValue()).append(", ");
+    }
+    Arrays.sort(indices);
+    for (int index : indices) {
+      out.append(index).append(':').append(values.get(index)).append(", ");
     }
     out.append("] ");
     return out.toString();
@@ -121,17 +135,12 @@ public class SparseVector extends AbstractVector {
 
   @Override
   public SparseVector copy() {
-    SparseVector result = like();
-    for (Map.Entry<Integer, Double> entry : values.entrySet()) {
-      result.setQuick(entry.getKey(), entry.getValue());
-    }
-    return result;
+    return new SparseVector(cardinality, values.clone());
   }
 
   @Override
   public double getQuick(int index) {
-    Double value = values.get(index);
-    return value == null ? 0.0 : value;
+    return values.get(index);
   }
 
   @Override
@@ -150,8 +159,10 @@ public class SparseVector extends AbstractVector {
   @Override
   public double[] toArray() {
     double[] result = new double[cardinality];
-    for (Map.Entry<Integer, Double> entry : values.entrySet()) {
-      result[entry.getKey()] = entry.getValue();
+    for (int slot = 0; slot < values.slots(); slot++) {
+      if (values.isFull(slot)) {
+        result[values.keyAt(slot)] = values.valueAt(slot);
+      }
     }
     return result;
   }
@@ -175,7 +186,7 @@ public class SparseVector extends AbstractVector {
 
   @Override
   public SparseVector like() {
-    return new SparseVector(cardinality);
+    return new SparseVector(cardinality, values.size());
   }
 
   @Override
@@ -183,6 +194,9 @@ public class SparseVector extends AbstractVector {
     return new SparseVector(newCardinality);
   }
 
+  /**
+   * Returns an iterator over the non-zero values of this Vector, in no particular order.
+   */
   @Override
   public java.util.Iterator<Vector.Element> iterator() {
     return new Iterator();
@@ -207,20 +221,33 @@ public class SparseVector extends AbstractVector {
   }
 
   private class Iterator implements java.util.Iterator<Vector.Element> {
-    private final java.util.Iterator<Map.Entry<Integer, Double>> it;
+    private int slot;
 
     Iterator() {
-      it = values.entrySet().iterator();
+      slot = nextFull(0);
+    }
+
+    private int nextFull(int from) {
+      int slots = values.slots();
+      while (from < slots && !values.isFull(from)) {
+        from++;
+      }
+      return from;
     }
 
     @Override
     public boolean hasNext() {
-      return it.hasNext();
+      return slot < values.slots();
     }
 
     @Override
     public Element next() {
-      return new Element(it.next().getKey());
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Element result = new Element(slot);
+      slot = nextFull(slot + 1);
+      return result;
     }
 
     @Override
@@ -229,34 +256,58 @@ public class SparseVector extends AbstractVector {
     }
   }
 
-  @Override
-  public double zSum() {
-    double result = 0.0;
-    for (Double value : values.values()) {
-      result += value;
+  /**
+   * Element bound to a hash table slot, so reading and writing it does not probe the table again.
+   */
+  private class Element implements Vector.Element {
+    private final int slot;
+
+    Element(int slot) {
+      this.slot = slot;
+    }
+
+    @Override
+    public double get() {
+      return values.valueAt(slot);
+    }
+
+    @Override
+    public int index() {
+      return values.keyAt(slot);
+    }
+
+    @Override
+    public void set(double value) {
+      if (!values.isFull(slot))
+        setQuick(index(), value);
+      else if (value == 0.0)
+        values.removeAt(slot);
+      else
+        values.setValueAt(slot, value);
     }
-    return result;
   }
 
   @Override
-  public double dot(Vector x) {
-    if (cardinality() != x.cardinality())
-      throw new CardinalityException();
+  public double zSum() {
     double result = 0.0;
-    for (Map.Entry<Integer, Double> entry : values.entrySet()) {
-      result += entry.getValue() * x.getQuick(entry.getKey());
+    for (int slot = 0; slot < values.slots(); slot++) {
+      result += values.valueAt(slot);
     }
     return result;
   }
 
+  OpenIntDoubleHashMap getValues() {
+    return values;
+  }
+
   @Override
   public void write(DataOutput dataOutput) throws IOException {
     dataOutput.writeInt(cardinality());
     dataOutput.writeInt(size());
-    for (Vector.Element element : this) {
-      if (element.get() != 0.0d) {
-        dataOutput.writeInt(element.index());
-        dataOutput.writeDouble(element.get());
+    for (int slot = 0; slot < values.slots(); slot++) {
+      if (values.isFull(slot)) {
+        dataOutput.writeInt(values.keyAt(slot));
+        dataOutput.writeDouble(values.valueAt(slot));
       }
     }
   }
@@ -265,9 +316,13 @@ public class SparseVector extends AbstractVector {
   public void readFields(DataInput dataInput) throws IOException {
     int cardinality = dataInput.readInt();
     int size = dataInput.readInt();
-    Map<Integer, Double> values = new HashMap<Integer, Double>(size);
+    OpenIntDoubleHashMap values = new OpenIntDoubleHashMap(size);
     for (int i = 0; i < size; i++) {
-      values.put(dataInput.readInt(), dataInput.readDouble());
+      int index = dataInput.readInt();
+      double value = dataInput.readDouble();
+      if (value != 0.0) {
+        values.put(index, value);
+      }
     }
     this.cardinality = cardinality;
     this.values = values;
@@ -229,6 +229,13 @@ public interface Vector extends Iterable<Vector.Element>, Writable {
    */
   Vector normalize();
 
+  /**
+   * Normalize the recipient in place, without allocating a new vector
+   *
+   * @return the recipient
+   */
+  Vector normalizeInPlace();
+
   /**
    * Return a new matrix containing the sum of each value of the recipient and
    * the argument
@@ -251,6 +258,34 @@ public interface Vector extends Iterable<Vector.Element>, Writable {
    */
   Vector plus(Vector x);
 
+  /**
+   * Add the recipient to the argument, element by element and in place,
+   * without allocating a new vector. Only the non-zeros of a sparse recipient
+   * are visited.
+   *
+   * @param x
+   *            the Vector to add to
+   * @return the argument
+   * @throws CardinalityException
+   *             if the cardinalities differ
+   */
+  Vector addTo(Vector x);
+
+  /**
+   * Add alpha times the argument to the recipient, element by element and in
+   * place, without allocating a new vector. Only the non-zeros of a sparse
+   * argument are visited.
+   *
+   * @param alpha
+   *            a double multiplier
+   * @param x
+   *            a Vector
+   * @return the recipient
+   * @throws CardinalityException
+   *             if the cardinalities differ
+   */
+  Vector axpy(double alpha, Vector x);
+
   /**
    * Set the value at the given index
    *
@@ -290,6 +325,16 @@ public interface Vector extends Iterable<Vector.Element>, Writable {
    */
   Vector times(double x);
 
+  /**
+   * Multiply each value of the recipient by the argument, in place, without
+   * allocating a new vector
+   *
+   * @param alpha
+   *            a double argument
+   * @return the recipient
+   */
+  Vector scaleInPlace(double alpha);
+
   /**
    * Return a new matrix containing the element-wise product of the recipient
    * and the argument
@@ -341,15 +386,60 @@ public interface Vector extends Iterable<Vector.Element>, Writable {
    */
   Matrix cross(Vector other);
 
+  /**
+   * Apply the procedure to the index and value of each non-zero element of the
+   * receiver, in no particular order, until it returns false. Sparse vectors
+   * visit only their stored elements.
+   * 
+   * @param procedure
+   *            an IntDoubleProcedure to apply
+   * @return false if the procedure stopped the traversal, true otherwise
+   */
+  boolean foreachNonZero(IntDoubleProcedure procedure);
+
+  /**
+   * Combine the mapped elements of the receiver with the aggregator, i.e.
+   * aggregator(...aggregator(map(x[0]), map(x[1]))..., map(x[n-1])). The
+   * aggregator must be associative and commutative since the elements may be
+   * visited in any order. When the aggregator is {@link BinaryFunction#plus}
+   * and map(0) is 0 only the non-zeros of a sparse vector are visited.
+   * 
+   * @param aggregator
+   *            a BinaryFunction combining the mapped elements
+   * @param map
+   *            a UnaryFunction applied to each element
+   * @return the aggregate, or 0 if the cardinality is 0
+   */
+  double aggregate(BinaryFunction aggregator, UnaryFunction map);
+
+  /**
+   * Combine the pairs of corresponding elements of the receiver and the other
+   * vector with the aggregator, i.e. aggregator(...aggregator(combiner(x[0],
+   * y[0]), combiner(x[1], y[1]))..., combiner(x[n-1], y[n-1])). The aggregator
+   * must be associative and commutative since the elements may be visited in
+   * any order. When the aggregator is {@link BinaryFunction#plus} and
+   * combiner(0, 0) is 0 only the indexes where either sparse vector has a
+   * non-zero are visited, and a {@link BinaryFunction#times} combiner only
+   * visits the non-zeros of a sparse operand.
+   * 
+   * @param other
+   *            a Vector
+   * @param aggregator
+   *            a BinaryFunction combining the combined elements
+   * @param combiner
+   *            a BinaryFunction applied to each pair of elements
+   * @return the aggregate, or 0 if the cardinality is 0
+   * @throws CardinalityException
+   *             if the cardinalities differ
+   */
+  double aggregate(Vector other, BinaryFunction aggregator,
+      BinaryFunction combiner);
+
   /*
    * Need stories for these but keeping them here for now.
    *
    */
   // void getNonZeros(IntArrayList jx, DoubleArrayList values);
-  // void foreachNonZero(IntDoubleFunction f);
-  // double aggregate(DoubleDoubleFunction aggregator, DoubleFunction map);
-  // double aggregate(Vector other, DoubleDoubleFunction aggregator,
-  // DoubleDoubleFunction map);
   // NewVector assign(Vector y, DoubleDoubleFunction function, IntArrayList
   // nonZeroIndexes);
 }
@@ -0,0 +1,127 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.matrix;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary Writable holder for any {@link Vector}, suitable as a SequenceFile value or an intermediate map output.
+ * The vector is written as a one byte layout tag followed by the vector's own Writable form, so reading it back
+ * needs no knowledge of the concrete class and no number parsing. {@link DenseVector}, {@link SparseVector} and
+ * {@link SequentialAccessSparseVector} have dedicated tags; any other Vector is written with its class name.
+ */
+public class VectorWritable implements Writable {
+
+  private static final byte DENSE = 0;
+  private static final byte SPARSE = 1;
+  private static final byte SEQUENTIAL_SPARSE = 2;
+  private static final byte OTHER = 3;
+
+  private Vector vector;
+
+  /** For serialization purposes only. */
+  public VectorWritable() {
+  }
+
+  public VectorWritable(Vector vector) {
+    this.vector = vector;
+  }
+
+  public Vector get() {
+    return vector;
+  }
+
+  public void set(Vector vector) {
+    this.vector = vector;
+  }
+
+  /**
+   * Returns the point held by a value read from a clustering input, which may be a VectorWritable or, for the
+   * older text format, any Writable whose String form was produced by {@link Vector#asFormatString()}.
+   *
+   * @param value a VectorWritable or a Text
+   * @return the Vector
+   */
+  public static Vector asVector(Writable value) {
+    if (value instanceof VectorWritable)
+      return ((VectorWritable) value).get();
+    return AbstractVector.decodeVector(value.toString());
+  }
+
+  @Override
+  public void write(DataOutput dataOutput) throws IOException {
+    if (vector instanceof DenseVector) {
+      dataOutput.writeByte(DENSE);
+    } else if (vector instanceof SparseVector) {
+      dataOutput.writeByte(SPARSE);
+    } else if (vector instanceof SequentialAccessSparseVector) {
+      dataOutput.writeByte(SEQUENTIAL_SPARSE);
+    } else {
+      dataOutput.writeByte(OTHER);
+      Text.writeString(dataOutput, vector.getClass().getName());
+    }
+    vector.write(dataOutput);
+  }
+
+  @Override
+  public void readFields(DataInput dataInput) throws IOException {
+    byte layout = dataInput.readByte();
+    Vector vector;
+    switch (layout) {
+      case DENSE:
+        vector = new DenseVector();
+        break;
+      case SPARSE:
+        vector = new SparseVector();
+        break;
+      case SEQUENTIAL_SPARSE:
+        vector = new SequentialAccessSparseVector();
+        break;
+      case OTHER:
+        String vectorClassName = Text.readString(dataInput);
+        try {
+          vector = Class.forName(vectorClassName).asSubclass(Vector.class).newInstance();
+        } catch (ClassNotFoundException e) {
+          throw new IOException(e.toString());
+        } catch (IllegalAccessException e) {
+          throw new IOException(e.toString());
+        } catch (InstantiationException e) {
+          throw new IOException(e.toString());
+        }
+        break;
+      default:
+        throw new IOException("Unknown vector layout " + layout);
+    }
+    vector.readFields(dataInput);
+    this.vector = vector;
+  }
+
+  /**
+   * @return the text format of the vector, so that text output formats remain readable
+   */
+  @Override
+  public String toString() {
+    return vector == null ? "null" : vector.asFormatString();
+  }
+
+}
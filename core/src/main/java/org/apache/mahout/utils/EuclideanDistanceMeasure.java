@@ -18,6 +18,7 @@
 package org.apache.mahout.utils;
 
 import org.apache.hadoop.mapred.JobConf;
+import org.apache.mahout.matrix.BinaryFunction;
 import org.apache.mahout.matrix.CardinalityException;
 import org.apache.mahout.matrix.Vector;
 import org.apache.mahout.utils.parameters.Parameter;
@@ -31,6 +32,18 @@ import java.util.Collections;
  */
 public class EuclideanDistanceMeasure implements DistanceMeasure {
 
+  /**
+   * (b - a)^2, which is 0 where both coordinates are 0 so that sparse vectors
+   * are only aggregated over their non-zeros
+   */
+  private static final BinaryFunction SQUARED_DIFFERENCE = new BinaryFunction() {
+    @Override
+    public double apply(double a, double b) {
+      double delta = b - a;
+      return delta * delta;
+    }
+  };
+
   @Override
   public void configure(JobConf job) {
     // nothing to do
@@ -59,12 +72,7 @@ public class EuclideanDistanceMeasure implements DistanceMeasure {
   public double distance(Vector v1, Vector v2) {
     if (v1.cardinality() != v2.cardinality())
       throw new CardinalityException();
-    double result = 0;
-    for (int i = 0; i < v1.cardinality(); i++) {
-      double delta = v2.getQuick(i) - v1.getQuick(i);
-      result += delta * delta;
-    }
-    return Math.sqrt(result);
+    return Math.sqrt(v1.aggregate(v2, BinaryFunction.plus, SQUARED_DIFFERENCE));
   }
 
 }
@@ -18,6 +18,7 @@
 package org.apache.mahout.utils;
 
 import org.apache.hadoop.mapred.JobConf;
+import org.apache.mahout.matrix.BinaryFunction;
 import org.apache.mahout.matrix.CardinalityException;
 import org.apache.mahout.matrix.Vector;
 import org.apache.mahout.utils.parameters.Parameter;
@@ -31,6 +32,17 @@ import java.util.Collections;
  */
 public class ManhattanDistanceMeasure implements DistanceMeasure {
 
+  /**
+   * |b - a|, which is 0 where both coordinates are 0 so that sparse vectors are
+   * only aggregated over their non-zeros
+   */
+  private static final BinaryFunction ABSOLUTE_DIFFERENCE = new BinaryFunction() {
+    @Override
+    public double apply(double a, double b) {
+      return Math.abs(b - a);
+    }
+  };
+
   public static double distance(double[] p1, double[] p2) {
     double result = 0.0;
     for (int i = 0; i < p1.length; i++)
@@ -57,10 +69,7 @@ public class ManhattanDistanceMeasure implements DistanceMeasure {
  public double distance(Vector v1, Vector v2) {
     if (v1.cardinality() != v2.cardinality())
       throw new CardinalityException();
-    double result = 0;
-    for (int i = 0; i < v1.cardinality(); i++)
-      result += Math.abs(v2.getQuick(i) - v1.getQuick(i));
-    return result;
+    return v1.aggregate(v2, BinaryFunction.plus, ABSOLUTE_DIFFERENCE);
   }
 
 }
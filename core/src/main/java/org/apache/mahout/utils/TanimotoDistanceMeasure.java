@@ -17,12 +17,10 @@
 
 package org.apache.mahout.utils;
 
+import org.apache.mahout.matrix.BinaryFunction;
+import org.apache.mahout.matrix.UnaryFunction;
 import org.apache.mahout.matrix.Vector;
 
-import java.util.HashSet;
-import java.util.Set;
-
-
 /**
  * Tanimoto coefficient implementation.
  *
@@ -30,63 +28,51 @@ import java.util.Set;
  */
 public class TanimotoDistanceMeasure extends WeightedDistanceMeasure {
 
+  private static final UnaryFunction SQUARE = new UnaryFunction() {
+    @Override
+    public double apply(double x) {
+      return x * x;
+    }
+  };
 
   /**
    * Calculates the distance between two vectors.
    *
    * ((a^2 + b^2 - ab) / ab) - 1;
    *
+   * Without weights ab is the dot product and a^2 and b^2 the squared norms,
+   * each computed in a single pass over the non-zeros of sparse vectors.
+   *
    * @param vector0
    * @param vector1
    * @return 0 for perfect match, > 0 for greater distance
    */
   @Override
   public double distance(Vector vector0, Vector vector1) {
-
-    // this whole distance measurent thing
-    // should be evaluated using an intermediate vector and BinaryFunction or something?
-    
-    Set<Integer> featuresSeen = new HashSet<Integer>((int)((vector0.size() + vector1.size()) * 0.75));
-
-    double ab = 0.0;
-    double a2 = 0.0;
-    double b2 = 0.0;
-
-    for (Vector.Element feature : vector0) {
-      if (!featuresSeen.add(feature.index())) {
-
+    Vector weights = getWeights();
+    double ab;
+    double a2;
+    double b2;
+    if (weights == null) {
+      ab = vector0.dot(vector1);
+      a2 = vector0.aggregate(BinaryFunction.plus, SQUARE);
+      b2 = vector1.aggregate(BinaryFunction.plus, SQUARE);
+    } else {
+      ab = 0.0;
+      a2 = 0.0;
+      b2 = 0.0;
+      for (Vector.Element feature : vector0) {
         double a = feature.get();
-
-        double b = vector1.get(feature.index());
-
-        Vector weights = getWeights();
-        double weight = weights == null ? 1.0 : weights.get(feature.index());
-
-        ab += a * b * weight;
+        double weight = weights.get(feature.index());
+        ab += a * vector1.get(feature.index()) * weight;
         a2 += a * a * weight;
-        b2 += b * b * weight;
       }
-    }
-
-
-    for (Vector.Element feature : vector1) {
-      if (!featuresSeen.add(feature.index())) {
-
-        double a = vector0.get(feature.index());
-
+      for (Vector.Element feature : vector1) {
         double b = feature.get();
-
-        Vector weights = getWeights();
-        double weight = weights == null ? 1.0 : weights.get(feature.index());
-
-        ab += a * b * weight;
-        a2 += a * a * weight;
-        b2 += b * b * weight;
+        b2 += b * b * weights.get(feature.index());
       }
     }
-
     return ((a2 + b2 - ab) / ab) - 1.0;
   }
 
 }
-
@@ -0,0 +1,82 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.utils;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapred.FileInputFormat;
+import org.apache.hadoop.mapred.FileOutputFormat;
+import org.apache.hadoop.mapred.JobClient;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.SequenceFileOutputFormat;
+import org.apache.hadoop.mapred.TextInputFormat;
+import org.apache.mahout.matrix.VectorWritable;
+
+import java.io.IOException;
+
+/**
+ * One-shot, map-only job converting clustering input points from the text format, one
+ * {@link org.apache.mahout.matrix.Vector#asFormatString()} per line, to SequenceFiles of {@link VectorWritable}.
+ * The output can be given directly as the input of any of the clustering drivers.
+ */
+public final class TextToVectorWritableDriver {
+
+  private TextToVectorWritableDriver() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: TextToVectorWritableDriver <input> <output>");
+      return;
+    }
+    runJob(args[0], args[1]);
+  }
+
+  /**
+   * Run the job
+   *
+   * @param input the directory pathname for the text input points
+   * @param output the directory pathname for the SequenceFile output points
+   * @throws IOException if the job failed
+   */
+  public static void runJob(String input, String output) throws IOException {
+    JobClient client = new JobClient();
+    JobConf conf = new JobConf(TextToVectorWritableDriver.class);
+
+    conf.setOutputKeyClass(LongWritable.class);
+    conf.setOutputValueClass(VectorWritable.class);
+
+    FileInputFormat.setInputPaths(conf, new Path(input));
+    Path outPath = new Path(output);
+    FileOutputFormat.setOutputPath(conf, outPath);
+
+    conf.setInputFormat(TextInputFormat.class);
+    conf.setOutputFormat(SequenceFileOutputFormat.class);
+    conf.setMapperClass(TextToVectorWritableMapper.class);
+    conf.setNumReduceTasks(0);
+
+    FileSystem fs = FileSystem.get(conf);
+    if (fs.exists(outPath)) {
+      fs.delete(outPath, true);
+    }
+    client.setConf(conf);
+    JobClient.runJob(conf);
+  }
+
+}
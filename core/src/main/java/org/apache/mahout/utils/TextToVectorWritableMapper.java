@@ -0,0 +1,51 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.utils;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.Mapper;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.mahout.matrix.AbstractVector;
+import org.apache.mahout.matrix.VectorWritable;
+
+import java.io.IOException;
+
+/**
+ * Decodes each line of {@link org.apache.mahout.matrix.Vector#asFormatString()} text into a
+ * {@link VectorWritable}, keyed by the line's offset.
+ */
+public class TextToVectorWritableMapper extends MapReduceBase implements
+    Mapper<LongWritable, Text, LongWritable, VectorWritable> {
+
+  private final VectorWritable vectorWritable = new VectorWritable();
+
+  @Override
+  public void map(LongWritable key, Text value,
+      OutputCollector<LongWritable, VectorWritable> output, Reporter reporter) throws IOException {
+    String line = value.toString().trim();
+    if (line.length() == 0) {
+      return;
+    }
+    vectorWritable.set(AbstractVector.decodeVector(line));
+    output.collect(key, vectorWritable);
+  }
+
+}
@@ -0,0 +1,132 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.utils;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapred.FileInputFormat;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.SequenceFileInputFormat;
+import org.apache.hadoop.mapred.SequenceFileOutputFormat;
+
+import java.io.IOException;
+
+/**
+ * Sets up the input of a clustering job so that its points may be either text files of
+ * {@link org.apache.mahout.matrix.Vector#asFormatString()} lines or SequenceFiles of
+ * {@link org.apache.mahout.matrix.VectorWritable} values, as written by {@link TextToVectorWritableDriver}.
+ */
+public final class VectorInputUtil {
+
+  private static final byte[] SEQUENCE_FILE_MAGIC = {'S', 'E', 'Q'};
+
+  private VectorInputUtil() {
+  }
+
+  /**
+   * Adds the input path to the job and selects SequenceFileInputFormat when the input is a SequenceFile.
+   *
+   * @param conf the JobConf
+   * @param input the file or directory holding the input points
+   * @return the class of the point values the mappers will see: Text for text input, otherwise the value class
+   *         of the SequenceFile
+   * @throws IOException if the input could not be read
+   */
+  public static Class<? extends Writable> configureInput(JobConf conf, Path input) throws IOException {
+    FileInputFormat.setInputPaths(conf, input);
+    Class<? extends Writable> valueClass = getPointClass(conf, input);
+    if (valueClass != Text.class) {
+      conf.setInputFormat(SequenceFileInputFormat.class);
+    }
+    return valueClass;
+  }
+
+  /**
+   * Configures a job whose map output keys are the input points, such as the final clustering pass of the
+   * clustering jobs: binary input points are written to a SequenceFile, text points to a text file as before.
+   *
+   * @param conf the JobConf
+   * @param pointClass the point class returned by {@link #configureInput(JobConf, Path)}
+   */
+  public static void configurePointOutput(JobConf conf, Class<? extends Writable> pointClass) {
+    conf.setOutputKeyClass(pointClass);
+    if (pointClass != Text.class) {
+      conf.setOutputFormat(SequenceFileOutputFormat.class);
+    }
+  }
+
+  /**
+   * @param conf the Configuration
+   * @param input the file or directory holding the input points
+   * @return Text.class if the input is text, otherwise the value class of the SequenceFile
+   * @throws IOException if the input could not be read
+   */
+  public static Class<? extends Writable> getPointClass(JobConf conf, Path input) throws IOException {
+    FileSystem fs = input.getFileSystem(conf);
+    Path file = firstFile(fs, input);
+    if (file == null || !isSequenceFile(fs, file)) {
+      return Text.class;
+    }
+    SequenceFile.Reader reader = new SequenceFile.Reader(fs, file, conf);
+    try {
+      return reader.getValueClass().asSubclass(Writable.class);
+    } finally {
+      reader.close();
+    }
+  }
+
+  private static Path firstFile(FileSystem fs, Path input) throws IOException {
+    FileStatus[] statuses = fs.globStatus(input);
+    if (statuses == null) {
+      return null;
+    }
+    for (FileStatus status : statuses) {
+      if (!status.isDir()) {
+        return status.getPath();
+      }
+      for (FileStatus child : fs.listStatus(status.getPath())) {
+        String name = child.getPath().getName();
+        // skip job logs and hidden files such as checksums
+        if (!child.isDir() && !name.startsWith("_") && !name.startsWith(".")) {
+          return child.getPath();
+        }
+      }
+    }
+    return null;
+  }
+
+  private static boolean isSequenceFile(FileSystem fs, Path file) throws IOException {
+    FSDataInputStream in = fs.open(file);
+    try {
+      for (byte b : SEQUENCE_FILE_MAGIC) {
+        if (in.read() != b) {
+          return false;
+        }
+      }
+      return true;
+    } finally {
+      in.close();
+    }
+  }
+
+}
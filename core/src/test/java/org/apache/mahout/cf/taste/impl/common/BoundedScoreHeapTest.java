@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.common;
+
+import org.apache.mahout.cf.taste.impl.TasteTestCase;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * <p>Tests {@link BoundedScoreHeap}.</p>
+ */
+public final class BoundedScoreHeapTest extends TasteTestCase {
+
+  public void testKeepsHighest() {
+    BoundedScoreHeap heap = new BoundedScoreHeap(2);
+    assertEquals(0, heap.offer(1.0));
+    assertEquals(1, heap.offer(3.0));
+    assertEquals(1.0, heap.lowestAcceptedScore(), EPSILON);
+    // 2.0 evicts 1.0 and takes over its slot
+    assertEquals(0, heap.offer(2.0));
+    assertEquals(-1, heap.offer(0.5));
+    assertEquals(-1, heap.offer(2.0));
+    int[] slots = heap.slotsByDescendingScore();
+    assertEquals(2, slots.length);
+    assertEquals(3.0, heap.getScore(slots[0]), EPSILON);
+    assertEquals(2.0, heap.getScore(slots[1]), EPSILON);
+  }
+
+  public void testNaN() {
+    BoundedScoreHeap heap = new BoundedScoreHeap(2);
+    assertFalse(heap.wouldAccept(Double.NaN));
+    assertEquals(-1, heap.offer(Double.NaN));
+    assertTrue(heap.isEmpty());
+  }
+
+  public void testClear() {
+    BoundedScoreHeap heap = new BoundedScoreHeap(2);
+    heap.offer(1.0);
+    heap.clear();
+    assertTrue(heap.isEmpty());
+    assertEquals(Double.NEGATIVE_INFINITY, heap.lowestAcceptedScore());
+    assertEquals(0, heap.offer(5.0));
+  }
+
+  public void testHugeCapacity() {
+    BoundedScoreHeap heap = new BoundedScoreHeap(Integer.MAX_VALUE);
+    for (int i = 0; i < 100; i++) {
+      assertEquals(i, heap.offer(i));
+    }
+    assertEquals(100, heap.size());
+    assertEquals(99.0, heap.getScore(heap.slotsByDescendingScore()[0]), EPSILON);
+  }
+
+  public void testVersusSort() {
+    Random r = RandomUtils.getRandom();
+    for (int capacity = 1; capacity <= 50; capacity += 7) {
+      BoundedScoreHeap heap = new BoundedScoreHeap(capacity);
+      double[] scores = new double[1000];
+      for (int i = 0; i < scores.length; i++) {
+        scores[i] = r.nextDouble();
+        heap.offer(scores[i]);
+      }
+      Arrays.sort(scores);
+      int[] slots = heap.slotsByDescendingScore();
+      assertEquals(capacity, slots.length);
+      for (int i = 0; i < capacity; i++) {
+        assertEquals(scores[scores.length - 1 - i], heap.getScore(slots[i]));
+      }
+    }
+  }
+
+}
@@ -0,0 +1,278 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.common;
+
+import org.apache.mahout.cf.taste.common.TasteException;
+import org.apache.mahout.cf.taste.impl.TasteTestCase;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>Tests {@link Cache}.</p>
+ */
+public final class CacheTest extends TasteTestCase {
+
+  public void testLazy() throws Exception {
+    CountingRetriever retriever = new CountingRetriever();
+    Cache<Integer, Integer> cache = new Cache<Integer, Integer>(retriever);
+    assertEquals(2, cache.get(1).intValue());
+    assertEquals(2, cache.get(1).intValue());
+    assertEquals(1, retriever.count.get());
+    cache.remove(1);
+    assertEquals(2, cache.get(1).intValue());
+    assertEquals(2, retriever.count.get());
+    cache.get(2);
+    assertEquals(3, retriever.count.get());
+    cache.clear();
+    cache.get(2);
+    assertEquals(4, retriever.count.get());
+  }
+
+  public void testRemoveTagged() throws Exception {
+    CountingRetriever retriever = new CountingRetriever();
+    // Each key is tagged with its remainders mod 2 and mod 3
+    Cache<Integer, Integer> cache = new Cache<Integer, Integer>(retriever, 1000, new Cache.Tagger<Integer, Integer>() {
+      @Override
+      public Collection<?> getTags(Integer key, Integer value) {
+        return Arrays.asList("mod2:" + (key % 2), "mod3:" + (key % 3));
+      }
+    });
+    for (int i = 0; i < 6; i++) {
+      cache.get(i);
+    }
+    assertEquals(6, retriever.count.get());
+    cache.removeTagged("mod2:1");
+    for (int i = 0; i < 6; i++) {
+      cache.get(i);
+    }
+    // 1, 3 and 5 were uncached
+    assertEquals(9, retriever.count.get());
+    cache.removeTagged("mod3:0");
+    cache.removeTagged("nothing");
+    for (int i = 0; i < 6; i++) {
+      cache.get(i);
+    }
+    // 0 and 3 were uncached
+    assertEquals(11, retriever.count.get());
+    cache.clear();
+    cache.removeTagged("mod2:0");
+    for (int i = 0; i < 6; i++) {
+      cache.get(i);
+    }
+    assertEquals(17, retriever.count.get());
+  }
+
+  public void testRemoveTaggedDuringRetrieval() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch proceed = new CountDownLatch(1);
+    final AtomicInteger count = new AtomicInteger();
+    final Cache<Integer, Integer> cache = new Cache<Integer, Integer>(new Retriever<Integer, Integer>() {
+      @Override
+      public Integer get(Integer key) throws TasteException {
+        if (count.incrementAndGet() == 1) {
+          started.countDown();
+          try {
+            proceed.await();
+          } catch (InterruptedException ie) {
+            throw new TasteException(ie);
+          }
+        }
+        return key;
+      }
+    }, 1000, new Cache.Tagger<Integer, Integer>() {
+      @Override
+      public Collection<?> getTags(Integer key, Integer value) {
+        return Collections.singleton(key);
+      }
+    });
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        try {
+          cache.get(1);
+        } catch (TasteException te) {
+          // fails the assertion on count below
+        }
+      }
+    };
+    thread.start();
+    started.await();
+    // The value being retrieved may predate this, so it must not be cached
+    cache.removeTagged(1);
+    proceed.countDown();
+    thread.join();
+    assertEquals(1, cache.get(1).intValue());
+    assertEquals(2, count.get());
+  }
+
+  public void testBounded() throws Exception {
+    CountingRetriever retriever = new CountingRetriever();
+    Cache<Integer, Integer> cache = new Cache<Integer, Integer>(retriever, 1000);
+    for (int i = 0; i < 100000; i++) {
+      cache.get(i);
+    }
+    // after a scan of many keys, the cache holds no more than its maximum
+    retriever.count.set(0);
+    for (int i = 0; i < 100000; i++) {
+      cache.get(i);
+    }
+    assertTrue(retriever.count.get() >= 100000 - 1000);
+  }
+
+  public void testFrequentKeysSurviveScan() throws Exception {
+    CountingRetriever retriever = new CountingRetriever();
+    Cache<Integer, Integer> cache = new Cache<Integer, Integer>(retriever, 1000);
+    for (int round = 0; round < 5; round++) {
+      for (int i = 0; i < 500; i++) {
+        cache.get(i);
+      }
+    }
+    for (int i = 1000000; i < 1005000; i++) {
+      cache.get(i);
+    }
+    retriever.count.set(0);
+    for (int i = 0; i < 500; i++) {
+      cache.get(i);
+    }
+    // LRU would have lost all of them
+    assertTrue(retriever.count.get() < 50);
+  }
+
+  public void testWeights() throws Exception {
+    CountingRetriever retriever = new CountingRetriever();
+    Cache<Integer, Integer> cache = new Cache<Integer, Integer>(retriever, 100L, new Cache.Weigher<Integer, Integer>() {
+      @Override
+      public int weigh(Integer key, Integer value) {
+        return key;
+      }
+    });
+    // too heavy to cache at all
+    cache.get(101);
+    cache.get(101);
+    assertEquals(2, retriever.count.get());
+    cache.get(60);
+    cache.get(60);
+    assertEquals(3, retriever.count.get());
+    cache.get(50);
+    cache.get(50);
+    cache.get(60);
+    // both can't fit
+    assertTrue(retriever.count.get() >= 5);
+  }
+
+  public void testSingleFlight() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch proceed = new CountDownLatch(1);
+    final AtomicInteger count = new AtomicInteger();
+    final Cache<Integer, Integer> cache = new Cache<Integer, Integer>(new Retriever<Integer, Integer>() {
+      @Override
+      public Integer get(Integer key) throws TasteException {
+        count.incrementAndGet();
+        started.countDown();
+        try {
+          proceed.await();
+        } catch (InterruptedException ie) {
+          throw new TasteException(ie);
+        }
+        return key;
+      }
+    });
+    final AtomicInteger sum = new AtomicInteger();
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            sum.addAndGet(cache.get(7));
+          } catch (TasteException te) {
+            // fails the assertion on sum below
+          }
+        }
+      };
+      threads[i].start();
+    }
+    started.await();
+    Thread.sleep(100L); // let the other threads block on the same load
+    proceed.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(1, count.get());
+    assertEquals(8 * 7, sum.get());
+  }
+
+  public void testRemoveAfterRetrievalNotCached() throws Exception {
+    CountingRetriever retriever = new CountingRetriever();
+    final AtomicReference<Cache<Integer, Integer>> cacheRef = new AtomicReference<Cache<Integer, Integer>>();
+    // Weighing happens after the retrieval is done, just before the value is cached
+    Cache<Integer, Integer> cache = new Cache<Integer, Integer>(retriever, 100L, new Cache.Weigher<Integer, Integer>() {
+      @Override
+      public int weigh(Integer key, Integer value) {
+        if (key == 1) {
+          cacheRef.get().remove(key);
+        }
+        return 1;
+      }
+    });
+    cacheRef.set(cache);
+    assertEquals(2, cache.get(1).intValue());
+    assertEquals(2, cache.get(1).intValue());
+    assertEquals(2, retriever.count.get());
+    // Other keys are still cached
+    cache.get(2);
+    cache.get(2);
+    assertEquals(3, retriever.count.get());
+  }
+
+  public void testFailedRetrievalNotCached() throws Exception {
+    final AtomicInteger count = new AtomicInteger();
+    Cache<Integer, Integer> cache = new Cache<Integer, Integer>(new Retriever<Integer, Integer>() {
+      @Override
+      public Integer get(Integer key) throws TasteException {
+        if (count.incrementAndGet() == 1) {
+          throw new TasteException("first time");
+        }
+        return key;
+      }
+    });
+    try {
+      cache.get(1);
+      fail("Should have thrown TasteException");
+    } catch (TasteException te) {
+      // good
+    }
+    assertEquals(1, cache.get(1).intValue());
+    assertEquals(2, count.get());
+  }
+
+  private static final class CountingRetriever implements Retriever<Integer, Integer> {
+    private final AtomicInteger count = new AtomicInteger();
+    @Override
+    public Integer get(Integer key) {
+      count.incrementAndGet();
+      return 2 * key;
+    }
+  }
+
+}
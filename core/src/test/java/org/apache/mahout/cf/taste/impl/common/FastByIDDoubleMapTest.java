@@ -0,0 +1,151 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.common;
+
+import org.apache.mahout.cf.taste.impl.TasteTestCase;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * <p>Tests {@link FastByIDDoubleMap}.</p>
+ */
+public final class FastByIDDoubleMapTest extends TasteTestCase {
+
+  public void testPutAndGet() {
+    FastByIDDoubleMap map = new FastByIDDoubleMap();
+    assertTrue(Double.isNaN(map.get(500000L)));
+    map.put(500000L, 2.0);
+    assertEquals(2.0, map.get(500000L), EPSILON);
+  }
+
+  public void testRemove() {
+    FastByIDDoubleMap map = new FastByIDDoubleMap();
+    map.put(-1L, 2.0);
+    assertEquals(2.0, map.remove(-1L), EPSILON);
+    assertEquals(0, map.size());
+    assertTrue(map.isEmpty());
+    assertTrue(Double.isNaN(map.get(-1L)));
+    assertTrue(Double.isNaN(map.remove(-1L)));
+  }
+
+  public void testClear() {
+    FastByIDDoubleMap map = new FastByIDDoubleMap();
+    map.put(-1L, 2.0);
+    map.clear();
+    assertEquals(0, map.size());
+    assertTrue(map.isEmpty());
+    assertTrue(Double.isNaN(map.get(-1L)));
+  }
+
+  public void testContains() {
+    FastByIDDoubleMap map = buildTestFastMap();
+    assertTrue(map.containsKey(500000L));
+    assertTrue(map.containsKey(47L));
+    assertTrue(map.containsKey(2L));
+    assertFalse(map.containsKey(999L));
+  }
+
+  public void testInvalid() {
+    FastByIDDoubleMap map = new FastByIDDoubleMap();
+    try {
+      map.put(Long.MIN_VALUE, 1.0);
+      fail("Should have thrown IllegalArgumentException");
+    } catch (IllegalArgumentException iae) {
+      // good
+    }
+    try {
+      map.put(1L, Double.NaN);
+      fail("Should have thrown IllegalArgumentException");
+    } catch (IllegalArgumentException iae) {
+      // good
+    }
+    assertTrue(Double.isNaN(map.get(Long.MAX_VALUE)));
+  }
+
+  public void testRehash() {
+    FastByIDDoubleMap map = buildTestFastMap();
+    map.remove(500000L);
+    map.rehash();
+    assertTrue(Double.isNaN(map.get(500000L)));
+    assertEquals(3.0, map.get(47L), EPSILON);
+  }
+
+  public void testGrow() {
+    FastByIDDoubleMap map = new FastByIDDoubleMap(1, FastByIDDoubleMap.NO_MAX_SIZE);
+    map.put(500000L, 2.0);
+    map.put(47L, 3.0);
+    assertEquals(2.0, map.get(500000L), EPSILON);
+    assertEquals(3.0, map.get(47L), EPSILON);
+  }
+
+  public void testClone() {
+    FastByIDDoubleMap map = buildTestFastMap();
+    FastByIDDoubleMap clone = map.clone();
+    clone.put(47L, 5.0);
+    assertEquals(3.0, map.get(47L), EPSILON);
+    assertEquals(5.0, clone.get(47L), EPSILON);
+  }
+
+  public void testVersusHashMap() {
+    FastByIDDoubleMap actual = new FastByIDDoubleMap(1, 1000000);
+    Map<Long, Double> expected = new HashMap<Long, Double>(1000000);
+    Random r = RandomUtils.getRandom();
+    for (int i = 0; i < 1000000; i++) {
+      double d = r.nextDouble();
+      Long key = (long) r.nextInt(100);
+      if (d < 0.4) {
+        assertEquals(toNaN(expected.get(key)), actual.get(key));
+      } else {
+        if (d < 0.7) {
+          assertEquals(toNaN(expected.put(key, 3.0)), actual.put(key, 3.0));
+        } else {
+          assertEquals(toNaN(expected.remove(key)), actual.remove(key));
+        }
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+      }
+    }
+  }
+
+  public void testMaxSize() {
+    FastByIDDoubleMap map = new FastByIDDoubleMap(1, 1);
+    map.put(4L, 3.0);
+    assertEquals(1, map.size());
+    map.put(47L, 3.0);
+    assertEquals(1, map.size());
+    assertTrue(Double.isNaN(map.get(4L)));
+    map.put(47L, 5.0);
+    assertEquals(1, map.size());
+    assertEquals(5.0, map.get(47L), EPSILON);
+  }
+
+  private static double toNaN(Double value) {
+    return value == null ? Double.NaN : value;
+  }
+
+  private static FastByIDDoubleMap buildTestFastMap() {
+    FastByIDDoubleMap map = new FastByIDDoubleMap();
+    map.put(500000L, 2.0);
+    map.put(47L, 3.0);
+    map.put(2L, 5.0);
+    return map;
+  }
+
+}
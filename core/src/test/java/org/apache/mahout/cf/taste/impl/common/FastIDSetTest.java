@@ -0,0 +1,153 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.common;
+
+import org.apache.mahout.cf.taste.impl.TasteTestCase;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * <p>Tests {@link FastIDSet}.</p>
+ */
+public final class FastIDSetTest extends TasteTestCase {
+
+  public void testContainsAndAdd() {
+    FastIDSet set = new FastIDSet();
+    assertFalse(set.contains(1L));
+    assertTrue(set.add(1L));
+    assertTrue(set.contains(1L));
+    assertFalse(set.add(1L));
+  }
+
+  public void testRemove() {
+    FastIDSet set = new FastIDSet();
+    set.add(-1L);
+    assertTrue(set.remove(-1L));
+    assertEquals(0, set.size());
+    assertTrue(set.isEmpty());
+    assertFalse(set.contains(-1L));
+    assertFalse(set.remove(-1L));
+  }
+
+  public void testClear() {
+    FastIDSet set = new FastIDSet();
+    set.add(1L);
+    set.clear();
+    assertEquals(0, set.size());
+    assertTrue(set.isEmpty());
+    assertFalse(set.contains(1L));
+  }
+
+  public void testInvalid() {
+    FastIDSet set = new FastIDSet();
+    try {
+      set.add(Long.MIN_VALUE);
+      fail("Should have thrown IllegalArgumentException");
+    } catch (IllegalArgumentException iae) {
+      // good
+    }
+    assertFalse(set.contains(Long.MAX_VALUE));
+  }
+
+  public void testRehash() {
+    FastIDSet set = buildTestFastSet();
+    set.remove(500000L);
+    set.rehash();
+    assertFalse(set.contains(500000L));
+    assertTrue(set.contains(47L));
+  }
+
+  public void testGrow() {
+    FastIDSet set = new FastIDSet(1);
+    set.add(500000L);
+    set.add(47L);
+    assertTrue(set.contains(500000L));
+    assertTrue(set.contains(47L));
+  }
+
+  public void testIterator() {
+    FastIDSet set = buildTestFastSet();
+    Set<Long> expected = new HashSet<Long>(3);
+    expected.add(500000L);
+    expected.add(47L);
+    expected.add(2L);
+    LongPrimitiveIterator it = set.iterator();
+    while (it.hasNext()) {
+      assertTrue(expected.remove(it.nextLong()));
+    }
+    assertTrue(expected.isEmpty());
+  }
+
+  public void testToArray() {
+    long[] array = buildTestFastSet().toArray();
+    Arrays.sort(array);
+    assertEquals(3, array.length);
+    assertEquals(2L, array[0]);
+    assertEquals(47L, array[1]);
+    assertEquals(500000L, array[2]);
+  }
+
+  public void testSetOperations() {
+    FastIDSet set = buildTestFastSet();
+    FastIDSet other = new FastIDSet();
+    other.add(47L);
+    other.add(3L);
+    assertEquals(1, set.intersectionSize(other));
+    assertEquals(1, other.intersectionSize(set));
+    FastIDSet union = set.clone();
+    assertTrue(union.addAll(other));
+    assertEquals(4, union.size());
+    assertEquals(3, set.size());
+    assertTrue(set.retainAll(other));
+    assertEquals(1, set.size());
+    assertTrue(set.contains(47L));
+  }
+
+  public void testVersusHashSet() {
+    FastIDSet actual = new FastIDSet(1);
+    Set<Long> expected = new HashSet<Long>(1000000);
+    Random r = RandomUtils.getRandom();
+    for (int i = 0; i < 1000000; i++) {
+      double d = r.nextDouble();
+      long key = r.nextInt(100);
+      if (d < 0.4) {
+        assertEquals(expected.contains(key), actual.contains(key));
+      } else {
+        if (d < 0.7) {
+          assertEquals(expected.add(key), actual.add(key));
+        } else {
+          assertEquals(expected.remove(key), actual.remove(key));
+        }
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+      }
+    }
+  }
+
+  private static FastIDSet buildTestFastSet() {
+    FastIDSet set = new FastIDSet();
+    set.add(500000L);
+    set.add(47L);
+    set.add(2L);
+    return set;
+  }
+
+}
@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.model;
+
+import org.apache.mahout.cf.taste.common.NoSuchItemException;
+import org.apache.mahout.cf.taste.common.NoSuchUserException;
+import org.apache.mahout.cf.taste.common.Weighting;
+import org.apache.mahout.cf.taste.impl.TasteTestCase;
+import org.apache.mahout.cf.taste.impl.similarity.PearsonCorrelationSimilarity;
+import org.apache.mahout.cf.taste.model.DataModel;
+import org.apache.mahout.cf.taste.model.Item;
+import org.apache.mahout.cf.taste.model.Preference;
+import org.apache.mahout.cf.taste.model.User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * <p>Tests {@link CompactDataModel}.</p>
+ */
+public final class CompactDataModelTest extends TasteTestCase {
+
+  private List<User> users;
+  private CompactDataModel model;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    // values which floats represent exactly, so results can be compared with GenericDataModel's
+    users = Arrays.asList(
+        getUser("test3", 4.0, null, 2.5, 1.0),
+        getUser("test1", 1.0, 3.0, null, -2.0),
+        getUser("test4", 0.5, 3.0, 5.0, null),
+        getUser("test2", null, -1.0, 2.0, 4.5),
+        getUser("test5"));
+    model = new CompactDataModel(users);
+  }
+
+  public void testUsersAndItems() throws Exception {
+    assertEquals(5, model.getNumUsers());
+    assertEquals(4, model.getNumItems());
+    Iterator<? extends User> userIterator = model.getUsers().iterator();
+    for (int i = 1; i <= 5; i++) {
+      assertEquals("test" + i, userIterator.next().getID());
+    }
+    assertFalse(userIterator.hasNext());
+    Iterator<? extends Item> itemIterator = model.getItems().iterator();
+    for (int i = 0; i < 4; i++) {
+      assertEquals(String.valueOf(i), itemIterator.next().getID());
+    }
+    assertFalse(itemIterator.hasNext());
+    assertEquals(model.getUser("test2"), users.get(3));
+    assertEquals("2", model.getItem("2").getID());
+  }
+
+  public void testPreferences() throws Exception {
+    User user = model.getUser("test2");
+    Preference[] prefs = user.getPreferencesAsArray();
+    assertEquals(3, prefs.length);
+    assertEquals("1", prefs[0].getItem().getID());
+    assertEquals(-1.0, prefs[0].getValue());
+    assertEquals("3", prefs[2].getItem().getID());
+    assertEquals(4.5, prefs[2].getValue());
+    assertEquals(user, prefs[1].getUser());
+    assertEquals(2.0, user.getPreferenceFor("2").getValue());
+    assertNull(user.getPreferenceFor("0"));
+    assertNull(user.getPreferenceFor("nothing"));
+    assertEquals(0, model.getUser("test5").getPreferencesAsArray().length);
+  }
+
+  public void testPreferencesForItem() throws Exception {
+    Preference[] prefs = model.getPreferencesForItemAsArray("2");
+    assertEquals(3, prefs.length);
+    assertEquals("test2", prefs[0].getUser().getID());
+    assertEquals(2.0, prefs[0].getValue());
+    assertEquals("test3", prefs[1].getUser().getID());
+    assertEquals(2.5, prefs[1].getValue());
+    assertEquals("test4", prefs[2].getUser().getID());
+    assertEquals(5.0, prefs[2].getValue());
+    assertEquals(0, model.getPreferencesForItemAsArray("nothing").length);
+    assertEquals(3, model.getNumUsersWithPreferenceFor("2"));
+    assertEquals(2, model.getNumUsersWithPreferenceFor("2", "3"));
+    assertEquals(0, model.getNumUsersWithPreferenceFor("2", "nothing"));
+  }
+
+  public void testNoSuchUserOrItem() throws Exception {
+    try {
+      model.getUser("nothing");
+      fail();
+    } catch (NoSuchUserException nsue) {
+      // good
+    }
+    try {
+      model.getItem("nothing");
+      fail();
+    } catch (NoSuchItemException nsie) {
+      // good
+    }
+  }
+
+  public void testImmutable() throws Exception {
+    try {
+      model.setPreference("test1", "2", 1.0);
+      fail();
+    } catch (UnsupportedOperationException uoe) {
+      // good
+    }
+    try {
+      model.getUser("test1").getPreferencesAsArray()[0].setValue(2.0);
+      fail();
+    } catch (UnsupportedOperationException uoe) {
+      // good
+    }
+  }
+
+  public void testSimilarityMatchesGenericDataModel() throws Exception {
+    DataModel genericModel = new GenericDataModel(users);
+    PearsonCorrelationSimilarity compactSimilarity =
+        new PearsonCorrelationSimilarity(model, Weighting.WEIGHTED);
+    PearsonCorrelationSimilarity genericSimilarity =
+        new PearsonCorrelationSimilarity(genericModel, Weighting.WEIGHTED);
+    List<User> compactUsers = new ArrayList<User>();
+    for (User user : model.getUsers()) {
+      compactUsers.add(user);
+    }
+    for (User user1 : compactUsers) {
+      for (User user2 : compactUsers) {
+        double expected = genericSimilarity.userSimilarity(genericModel.getUser(user1.getID()),
+                                                           genericModel.getUser(user2.getID()));
+        assertEquals(user1 + " " + user2, expected, compactSimilarity.userSimilarity(user1, user2));
+      }
+    }
+    for (Item item1 : model.getItems()) {
+      for (Item item2 : model.getItems()) {
+        double expected = genericSimilarity.itemSimilarity(genericModel.getItem(item1.getID()),
+                                                           genericModel.getItem(item2.getID()));
+        assertEquals(item1 + " " + item2, expected, compactSimilarity.itemSimilarity(item1, item2));
+      }
+    }
+  }
+
+}
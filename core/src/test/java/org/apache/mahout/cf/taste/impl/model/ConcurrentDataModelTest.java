@@ -0,0 +1,220 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.model;
+
+import org.apache.mahout.cf.taste.common.NoSuchUserException;
+import org.apache.mahout.cf.taste.common.Refreshable;
+import org.apache.mahout.cf.taste.common.TasteException;
+import org.apache.mahout.cf.taste.impl.TasteTestCase;
+import org.apache.mahout.cf.taste.impl.neighborhood.CachingUserNeighborhood;
+import org.apache.mahout.cf.taste.impl.similarity.CachingUserSimilarity;
+import org.apache.mahout.cf.taste.model.DataModel;
+import org.apache.mahout.cf.taste.model.Item;
+import org.apache.mahout.cf.taste.model.Preference;
+import org.apache.mahout.cf.taste.model.PreferenceChangeListener;
+import org.apache.mahout.cf.taste.model.User;
+import org.apache.mahout.cf.taste.neighborhood.UserNeighborhood;
+import org.apache.mahout.cf.taste.similarity.PreferenceInferrer;
+import org.apache.mahout.cf.taste.similarity.UserSimilarity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Tests {@link ConcurrentDataModel}.</p>
+ */
+public final class ConcurrentDataModelTest extends TasteTestCase {
+
+  public void testCopy() throws Exception {
+    DataModel model = new ConcurrentDataModel(getDataModel());
+    assertEquals(4, model.getNumUsers());
+    assertEquals(3, model.getNumItems());
+    assertEquals(0.5, model.getUser("test3").getPreferenceFor("2").getValue(), EPSILON);
+    assertNull(model.getUser("test1").getPreferenceFor("2"));
+    assertEquals(4, model.getPreferencesForItemAsArray("1").length);
+    assertEquals(3, model.getNumUsersWithPreferenceFor("0", "2"));
+  }
+
+  public void testSetAndRemove() throws Exception {
+    ConcurrentDataModel model = new ConcurrentDataModel();
+    model.setPreference("u2", "b", 2.0);
+    model.setPreference("u1", "b", 1.0);
+    model.setPreference("u1", "a", 3.0);
+    User u1 = model.getUser("u1");
+    Preference[] snapshot = u1.getPreferencesAsArray();
+    assertEquals(2, snapshot.length);
+    assertEquals("a", snapshot[0].getItem().getID());
+    assertEquals("b", snapshot[1].getItem().getID());
+
+    model.setPreference("u1", "b", 4.0);
+    assertEquals(4.0, u1.getPreferenceFor("b").getValue(), EPSILON);
+    // an earlier snapshot is unchanged
+    assertEquals(1.0, snapshot[1].getValue(), EPSILON);
+
+    Preference[] prefsForB = model.getPreferencesForItemAsArray("b");
+    assertEquals(2, prefsForB.length);
+    assertEquals("u1", prefsForB[0].getUser().getID());
+    assertEquals("u2", prefsForB[1].getUser().getID());
+    assertEquals(1, model.getNumUsersWithPreferenceFor("a", "b"));
+
+    model.removePreference("u1", "a");
+    assertNull(u1.getPreferenceFor("a"));
+    assertEquals(1, model.getNumItems());
+    model.removePreference("u2", "b");
+    assertEquals(1, model.getNumUsers());
+    try {
+      model.getUser("u2");
+      fail("Should have thrown NoSuchUserException");
+    } catch (NoSuchUserException nsue) {
+      // good
+    }
+    Iterator<? extends Item> items = model.getItems().iterator();
+    assertEquals("b", items.next().getID());
+    assertFalse(items.hasNext());
+  }
+
+  public void testListeners() throws Exception {
+    ConcurrentDataModel model = new ConcurrentDataModel(getDataModel());
+    final List<String> changes = new ArrayList<String>();
+    model.addPreferenceChangeListener(new PreferenceChangeListener() {
+      @Override
+      public void preferenceChanged(Object userID, Object itemID) {
+        changes.add(userID + ":" + itemID);
+      }
+    });
+    model.setPreference("test1", "2", 1.0);
+    model.removePreference("test1", "0");
+    // not there; no change
+    model.removePreference("test1", "5");
+    assertEquals(2, changes.size());
+    assertEquals("test1:2", changes.get(0));
+    assertEquals("test1:0", changes.get(1));
+  }
+
+  public void testCachingUserSimilarityInvalidation() throws Exception {
+    ConcurrentDataModel model = new ConcurrentDataModel(getDataModel());
+    final AtomicInteger computed = new AtomicInteger();
+    UserSimilarity counting = new UserSimilarity() {
+      @Override
+      public double userSimilarity(User user1, User user2) {
+        computed.incrementAndGet();
+        return 0.5;
+      }
+      @Override
+      public void setPreferenceInferrer(PreferenceInferrer inferrer) {
+      }
+      @Override
+      public void refresh(Collection<Refreshable> alreadyRefreshed) {
+      }
+    };
+    CachingUserSimilarity similarity = new CachingUserSimilarity(counting, model);
+    model.addPreferenceChangeListener(similarity);
+    similarity.userSimilarity(model.getUser("test1"), model.getUser("test2"));
+    similarity.userSimilarity(model.getUser("test3"), model.getUser("test4"));
+    assertEquals(2, computed.get());
+    model.setPreference("test1", "1", 0.9);
+    similarity.userSimilarity(model.getUser("test1"), model.getUser("test2"));
+    similarity.userSimilarity(model.getUser("test3"), model.getUser("test4"));
+    assertEquals(3, computed.get());
+  }
+
+  public void testCachingUserNeighborhoodInvalidation() throws Exception {
+    final ConcurrentDataModel model = new ConcurrentDataModel(getDataModel());
+    final AtomicInteger computed = new AtomicInteger();
+    // Each user's neighborhood is the next user
+    UserNeighborhood counting = new UserNeighborhood() {
+      @Override
+      public Collection<User> getUserNeighborhood(Object userID) throws TasteException {
+        computed.incrementAndGet();
+        int next = Integer.parseInt(userID.toString().substring(4)) % 4 + 1;
+        return Collections.singletonList(model.getUser("test" + next));
+      }
+      @Override
+      public void refresh(Collection<Refreshable> alreadyRefreshed) {
+      }
+    };
+    CachingUserNeighborhood neighborhood = new CachingUserNeighborhood(counting, model);
+    model.addPreferenceChangeListener(neighborhood);
+    for (int i = 1; i <= 4; i++) {
+      neighborhood.getUserNeighborhood("test" + i);
+    }
+    assertEquals(4, computed.get());
+    // test2's own neighborhood, and test1's, which includes test2
+    model.setPreference("test2", "1", 0.9);
+    for (int i = 1; i <= 4; i++) {
+      neighborhood.getUserNeighborhood("test" + i);
+    }
+    assertEquals(6, computed.get());
+  }
+
+  public void testConcurrentWrites() throws Exception {
+    final ConcurrentDataModel model = new ConcurrentDataModel();
+    final int numThreads = 8;
+    final int perThread = 5000;
+    final AtomicInteger failures = new AtomicInteger();
+    Thread[] threads = new Thread[numThreads];
+    for (int t = 0; t < numThreads; t++) {
+      final int thread = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          Random random = new Random(thread);
+          try {
+            for (int i = 0; i < perThread; i++) {
+              // each thread writes its own users, but all threads share items
+              String userID = "u" + thread + '_' + random.nextInt(50);
+              model.setPreference(userID, "i" + random.nextInt(100), 1.0);
+              // readers must always see a consistently ordered snapshot
+              Preference[] prefs = model.getUser(userID).getPreferencesAsArray();
+              for (int j = 1; j < prefs.length; j++) {
+                if (prefs[j - 1].getItem().compareTo(prefs[j].getItem()) >= 0) {
+                  failures.incrementAndGet();
+                }
+              }
+            }
+          } catch (TasteException te) {
+            failures.incrementAndGet();
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(0, failures.get());
+
+    int byUser = 0;
+    for (User user : model.getUsers()) {
+      byUser += user.getPreferencesAsArray().length;
+    }
+    int byItem = 0;
+    for (Item item : model.getItems()) {
+      byItem += model.getPreferencesForItemAsArray(item.getID()).length;
+    }
+    assertEquals(byUser, byItem);
+    assertEquals(numThreads * 50, model.getNumUsers());
+    assertEquals(100, model.getNumItems());
+  }
+
+}
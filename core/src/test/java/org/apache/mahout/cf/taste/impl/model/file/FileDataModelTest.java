@@ -26,6 +26,7 @@ import org.apache.mahout.cf.taste.impl.recommender.GenericUserBasedRecommender;
 import org.apache.mahout.cf.taste.model.DataModel;
 import org.apache.mahout.cf.taste.model.Item;
 import org.apache.mahout.cf.taste.model.Preference;
+import org.apache.mahout.cf.taste.model.User;
 import org.apache.mahout.cf.taste.neighborhood.UserNeighborhood;
 import org.apache.mahout.cf.taste.recommender.Recommender;
 
@@ -34,8 +35,11 @@ import java.io.PrintWriter;
 import java.io.FileOutputStream;
 import java.io.OutputStreamWriter;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.nio.charset.Charset;
 
 /**
@@ -55,6 +59,7 @@ public final class FileDataModelTest extends TasteTestCase {
           "C345,234,0.5",
           "D456,456,0.1"};
 
+  private File testFile;
   private DataModel model;
 
   @Override
@@ -63,7 +68,7 @@ public final class FileDataModelTest extends TasteTestCase {
     File tmpDir = new File(System.getProperty("java.io.tmpdir"));
     File tmpLoc = new File(tmpDir, "fileDataModel");
     tmpLoc.mkdirs();
-    File testFile = File.createTempFile("test", ".txt", tmpLoc);
+    testFile = File.createTempFile("test", ".txt", tmpLoc);
     testFile.deleteOnExit();
     PrintWriter writer =
         new PrintWriter(new OutputStreamWriter(new FileOutputStream(testFile), Charset.forName("UTF-8")));
@@ -179,6 +184,76 @@ public final class FileDataModelTest extends TasteTestCase {
     assertEquals(4, model.getNumUsers());
   }
 
+  public void testApplyNewUpdateFile() throws Exception {
+    final AtomicInteger filesRead = new AtomicInteger();
+    FileDataModel fileModel = new FileDataModel(testFile) {
+      @Override
+      protected void processFile(File dataOrUpdateFile, Map<String, List<Preference>> data) {
+        filesRead.incrementAndGet();
+        super.processFile(dataOrUpdateFile, data);
+      }
+    };
+    assertEquals(4, fileModel.getNumUsers());
+    assertEquals(1, filesRead.get());
+    User oldUser = fileModel.getUser("A123");
+
+    String name = testFile.getName();
+    File updateFile = new File(testFile.getParentFile(), name.substring(0, name.indexOf('.')) + ".1.txt");
+    PrintWriter writer =
+        new PrintWriter(new OutputStreamWriter(new FileOutputStream(updateFile), Charset.forName("UTF-8")));
+    try {
+      writer.println("A123,456,");
+      writer.println("A123,999,0.9");
+      writer.println("B234,234,");
+      writer.println("C345,234,");
+      writer.println("E567,123,0.3");
+    } finally {
+      writer.close();
+    }
+    try {
+      // newer than the reload interval
+      updateFile.setLastModified(System.currentTimeMillis() + 120000L);
+      fileModel.refresh(null);
+      assertEquals(2, filesRead.get());
+
+      assertEquals(5, fileModel.getNumUsers());
+      User user = fileModel.getUser("A123");
+      assertNull(user.getPreferenceFor("456"));
+      assertEquals(0.6, user.getPreferenceFor("789").getValue(), EPSILON);
+      assertEquals(0.9, user.getPreferenceFor("999").getValue(), EPSILON);
+      assertSame(user, user.getPreferenceFor("789").getUser());
+      assertEquals(1, fileModel.getNumUsersWithPreferenceFor("456"));
+      assertEquals(3, fileModel.getNumUsersWithPreferenceFor("123"));
+      assertEquals(0, fileModel.getNumUsersWithPreferenceFor("234"));
+      assertEquals(0.3, fileModel.getUser("E567").getPreferenceFor("123").getValue(), EPSILON);
+      assertEquals(1, fileModel.getNumUsersWithPreferenceFor("999"));
+
+      // the old user is untouched
+      assertNotNull(oldUser.getPreferenceFor("456"));
+      assertSame(oldUser, oldUser.getPreferenceFor("789").getUser());
+
+      // same as reading everything again
+      DataModel reloaded = new FileDataModel(testFile);
+      assertEquals(reloaded.getNumItems(), fileModel.getNumItems());
+      Iterator<? extends Item> reloadedItems = reloaded.getItems().iterator();
+      for (Item item : fileModel.getItems()) {
+        assertEquals(reloadedItems.next(), item);
+        assertEquals(reloaded.getNumUsersWithPreferenceFor(item.getID()),
+                     fileModel.getNumUsersWithPreferenceFor(item.getID()));
+      }
+      assertFalse(reloadedItems.hasNext());
+      Iterator<? extends User> reloadedUsers = reloaded.getUsers().iterator();
+      for (User fileUser : fileModel.getUsers()) {
+        User reloadedUser = reloadedUsers.next();
+        assertEquals(reloadedUser, fileUser);
+        assertEquals(reloadedUser.getPreferencesAsArray().length, fileUser.getPreferencesAsArray().length);
+      }
+      assertFalse(reloadedUsers.hasNext());
+    } finally {
+      updateFile.delete();
+    }
+  }
+
   public void testToString() {
     assertTrue(model.toString().length() > 0);
   }
@@ -0,0 +1,215 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.model.file;
+
+import org.apache.mahout.cf.taste.impl.TasteTestCase;
+import org.apache.mahout.cf.taste.impl.model.CompactDataModel;
+import org.apache.mahout.cf.taste.model.DataModel;
+import org.apache.mahout.cf.taste.model.Preference;
+import org.apache.mahout.cf.taste.model.User;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <p>Tests {@link ParallelFileLoader}.</p>
+ */
+public final class ParallelFileLoaderTest extends TasteTestCase {
+
+  private File tmpDir;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    tmpDir = File.createTempFile("parallelFileLoader", "");
+    tmpDir.delete();
+    tmpDir.mkdirs();
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    for (File file : tmpDir.listFiles()) {
+      file.delete();
+    }
+    tmpDir.delete();
+    super.tearDown();
+  }
+
+  public void testSameAsFileDataModel() throws Exception {
+    // large enough to be split into several ranges; values which floats represent exactly
+    Random random = new Random(0xdeadbeefL);
+    String[] lines = new String[200000];
+    for (int i = 0; i < lines.length; i++) {
+      lines[i] = "u" + random.nextInt(5000) + ",i" + random.nextInt(2000) + ',' + random.nextInt(20) / 4.0;
+    }
+    // the same user and item twice would give FileDataModel a duplicate preference
+    File dataFile = writeFile("data.txt", dedupe(lines));
+    assertTrue(dataFile.length() > 2L << 20);
+    assertSameData(new FileDataModel(dataFile), new ParallelFileLoader(dataFile, false, 4).load());
+  }
+
+  public void testUpdateFiles() throws Exception {
+    File dataFile = writeFile("data.txt",
+        "A,1,1.0",
+        "A,2,2.0",
+        "B,1,3.0",
+        "C,3",
+        "B,1,5.0");
+    File updateFile = writeFile("data.1.txt",
+        "A,2,",
+        "B,2,-1.5",
+        "C,3,",
+        "D,4,",
+        "E,5,2.5e1");
+    CompactDataModel model = new ParallelFileLoader(dataFile, false, 2).load(Arrays.asList(updateFile));
+    assertEquals(5, model.getNumUsers());
+    // item 3 has no preferences left, and item 4 was only ever removed
+    assertEquals(3, model.getNumItems());
+    assertPreferences(model.getUser("A"), "1", 1.0);
+    assertPreferences(model.getUser("B"), "1", 5.0, "2", -1.5);
+    assertPreferences(model.getUser("C"));
+    assertPreferences(model.getUser("D"));
+    assertPreferences(model.getUser("E"), "5", 25.0);
+
+    assertSameData(model, new FileDataModel(dataFile, true));
+  }
+
+  public void testTabsAndBooleanPreferences() throws Exception {
+    File dataFile = writeFile("data.txt.gz", "A\t1", "A\t2\t", "B\t2\t0.5");
+    CompactDataModel model = new ParallelFileLoader(dataFile).load();
+    assertPreferences(model.getUser("A"), "1", 1.0);
+    assertPreferences(model.getUser("B"), "2", 0.5);
+  }
+
+  public void testSnapshot() throws Exception {
+    File dataFile = writeFile("data.txt", "A,1,1.0", "A,2,2.0", "B,1,3.0");
+    ParallelFileLoader loader = new ParallelFileLoader(dataFile, true, 2);
+    File snapshotFile = loader.getSnapshotFile();
+    assertFalse(snapshotFile.exists());
+    CompactDataModel model = loader.load();
+    assertTrue(snapshotFile.exists());
+    assertSameData(model, loader.load());
+
+    // the snapshot, not the data file, is read as long as the data file is unchanged
+    long lastModified = dataFile.lastModified();
+    writeFile("data.txt", "A,1,4.0", "A,2,2.0", "B,1,3.0");
+    dataFile.setLastModified(lastModified);
+    assertPreferences(loader.load().getUser("A"), "1", 1.0, "2", 2.0);
+
+    // and is replaced once it changes
+    dataFile.setLastModified(lastModified - 10000L);
+    assertPreferences(loader.load().getUser("A"), "1", 4.0, "2", 2.0);
+    assertPreferences(loader.load().getUser("A"), "1", 4.0, "2", 2.0);
+
+    // FileDataModel uses the same snapshot
+    assertSameData(loader.load(), new FileDataModel(dataFile, true));
+  }
+
+  public void testParseDouble() {
+    for (String value : new String[] {
+        "0", "-0", "1", "0.1", "-2.5", "+3", ".5", "5.", "1e3", "1.5E-7", "-2e+2", "123456789.123456789",
+        "0.000000000000000000000001", "1e300", "1e-300", "NaN", "-Infinity", "1d", " 2.5", "0x1p3",
+        "12345678901234567890"}) {
+      byte[] bytes = ('#' + value + '#').getBytes(Charset.forName("UTF-8"));
+      double expected = Double.parseDouble(value);
+      double actual = ParallelFileLoader.parseDouble(ByteBuffer.wrap(bytes), 1, bytes.length - 1);
+      assertEquals(value, Double.doubleToLongBits(expected), Double.doubleToLongBits(actual));
+    }
+    try {
+      ParallelFileLoader.parseDouble(ByteBuffer.wrap(new byte[] {'x'}), 0, 1);
+      fail("Should have thrown NumberFormatException");
+    } catch (NumberFormatException nfe) {
+      // good
+    }
+  }
+
+  public void testBadLine() throws Exception {
+    File dataFile = writeFile("data.txt", "A,1,1.0", "nodelimiter");
+    try {
+      new ParallelFileLoader(dataFile).load();
+      fail("Should have thrown IllegalArgumentException");
+    } catch (IllegalArgumentException iae) {
+      // good
+    }
+  }
+
+  private static String[] dedupe(String[] lines) {
+    Map<String, String> byUserAndItem = new LinkedHashMap<String, String>();
+    for (String line : lines) {
+      byUserAndItem.put(line.substring(0, line.lastIndexOf(',')), line);
+    }
+    return byUserAndItem.values().toArray(new String[byUserAndItem.size()]);
+  }
+
+  private File writeFile(String name, String... lines) throws IOException {
+    File file = new File(tmpDir, name);
+    OutputStream out = new FileOutputStream(file);
+    if (name.endsWith(".gz")) {
+      out = new GZIPOutputStream(out);
+    }
+    PrintWriter writer = new PrintWriter(new OutputStreamWriter(out, Charset.forName("UTF-8")));
+    try {
+      for (String line : lines) {
+        writer.println(line);
+      }
+    } finally {
+      writer.close();
+    }
+    return file;
+  }
+
+  private static void assertPreferences(User user, Object... itemsAndValues) {
+    Preference[] prefs = user.getPreferencesAsArray();
+    assertEquals(itemsAndValues.length / 2, prefs.length);
+    for (int i = 0; i < prefs.length; i++) {
+      assertEquals(itemsAndValues[2 * i], prefs[i].getItem().getID());
+      assertEquals(itemsAndValues[2 * i + 1], prefs[i].getValue());
+    }
+  }
+
+  private static void assertSameData(DataModel expected, DataModel actual) throws Exception {
+    assertEquals(expected.getNumUsers(), actual.getNumUsers());
+    assertEquals(expected.getNumItems(), actual.getNumItems());
+    Iterator<? extends User> actualUsers = actual.getUsers().iterator();
+    for (User expectedUser : expected.getUsers()) {
+      User actualUser = actualUsers.next();
+      assertEquals(expectedUser.getID(), actualUser.getID());
+      Preference[] expectedPrefs = expectedUser.getPreferencesAsArray();
+      Preference[] actualPrefs = actualUser.getPreferencesAsArray();
+      assertEquals(expectedPrefs.length, actualPrefs.length);
+      for (int i = 0; i < expectedPrefs.length; i++) {
+        assertEquals(expectedPrefs[i].getItem().getID(), actualPrefs[i].getItem().getID());
+        assertEquals(expectedPrefs[i].getValue(), actualPrefs[i].getValue());
+      }
+    }
+    assertFalse(actualUsers.hasNext());
+  }
+
+}
@@ -0,0 +1,127 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.model.jdbc;
+
+import org.apache.mahout.cf.taste.common.TasteException;
+import org.apache.mahout.cf.taste.impl.TasteTestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tests {@link CoalescingLoader}.
+ */
+public final class CoalescingLoaderTest extends TasteTestCase {
+
+  public void testGet() throws Exception {
+    CoalescingLoader<String, Integer> loader = new CoalescingLoader<String, Integer>(10, 1) {
+      @Override
+      Map<String, Integer> load(List<String> keys) {
+        Map<String, Integer> values = new HashMap<String, Integer>();
+        for (String key : keys) {
+          if (!"missing".equals(key)) {
+            values.put(key, key.length());
+          }
+        }
+        return values;
+      }
+    };
+    assertEquals(3, loader.get("foo").intValue());
+    assertNull(loader.get("missing"));
+  }
+
+  public void testCoalesce() throws Exception {
+    final CountDownLatch firstLoadStarted = new CountDownLatch(1);
+    final CountDownLatch releaseFirstLoad = new CountDownLatch(1);
+    final List<List<String>> batches = Collections.synchronizedList(new ArrayList<List<String>>());
+    final CoalescingLoader<String, String> loader = new CoalescingLoader<String, String>(10, 1) {
+      @Override
+      Map<String, String> load(List<String> keys) throws TasteException {
+        if (batches.isEmpty()) {
+          firstLoadStarted.countDown();
+          try {
+            releaseFirstLoad.await();
+          } catch (InterruptedException ie) {
+            throw new TasteException(ie);
+          }
+        }
+        batches.add(keys);
+        Map<String, String> values = new HashMap<String, String>();
+        for (String key : keys) {
+          values.put(key, key.toUpperCase());
+        }
+        return values;
+      }
+    };
+    ExecutorService executor = Executors.newFixedThreadPool(6);
+    try {
+      Future<String> first = executor.submit(get(loader, "a"));
+      firstLoadStarted.await();
+      // These all queue up behind the first load, and "b" is asked for twice
+      List<Future<String>> others = new ArrayList<Future<String>>();
+      for (String key : new String[] {"b", "c", "d", "e", "b"}) {
+        others.add(executor.submit(get(loader, key)));
+      }
+      Thread.sleep(200L);
+      releaseFirstLoad.countDown();
+      assertEquals("A", first.get());
+      assertEquals("B", others.get(0).get());
+      assertEquals("C", others.get(1).get());
+      assertEquals("D", others.get(2).get());
+      assertEquals("E", others.get(3).get());
+      assertEquals("B", others.get(4).get());
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(2, batches.size());
+    assertEquals(4, batches.get(1).size());
+  }
+
+  public void testFailure() throws Exception {
+    CoalescingLoader<String, String> loader = new CoalescingLoader<String, String>(10, 1) {
+      @Override
+      Map<String, String> load(List<String> keys) throws TasteException {
+        throw new TasteException("bad key " + keys.get(0));
+      }
+    };
+    try {
+      loader.get("foo");
+      fail("Should have thrown TasteException");
+    } catch (TasteException te) {
+      // good
+    }
+  }
+
+  private static Callable<String> get(final CoalescingLoader<String, String> loader, final String key) {
+    return new Callable<String>() {
+      @Override
+      public String call() throws TasteException {
+        return loader.get(key);
+      }
+    };
+  }
+
+}
@@ -0,0 +1,279 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.model.jdbc;
+
+import org.apache.mahout.cf.taste.common.TasteException;
+import org.apache.mahout.cf.taste.impl.TasteTestCase;
+import org.apache.mahout.cf.taste.model.PreferenceChangeListener;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests {@link MirroringJDBCDataModel} against a {@link StubDatabase} holding a preference table and a change
+ * table.
+ */
+public final class MirroringJDBCDataModelTest extends TasteTestCase {
+
+  private PreferenceDatabase database;
+  private MirroringJDBCDataModel model;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    database = new PreferenceDatabase();
+    database.setPreference("u1", "a", 1.0);
+    database.setPreference("u1", "b", 2.0);
+    database.setPreference("u2", "a", 3.0);
+    database.setPreference("u2", "c", 4.0);
+    // Poll only on refresh
+    model = new MirroringJDBCDataModel(new MySQLJDBCDataModel(database.getDataSource()),
+                                       MirroringJDBCDataModel.DEFAULT_GET_LATEST_CHANGE_SQL,
+                                       MirroringJDBCDataModel.DEFAULT_GET_CHANGES_SQL,
+                                       Long.MAX_VALUE >> 1,
+                                       10L);
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    model.close();
+    super.tearDown();
+  }
+
+  public void testLoad() throws Exception {
+    assertEquals(2, model.getNumUsers());
+    assertEquals(3, model.getNumItems());
+    assertEquals(2.0, model.getUser("u1").getPreferenceFor("b").getValue(), EPSILON);
+  }
+
+  public void testApplyChanges() throws Exception {
+    database.change(database.nextChange(), "u1", "a", 5.0);
+    database.change(database.nextChange(), "u2", "a", null);
+    database.change(database.nextChange(), "u2", "d", 6.0);
+    model.refresh(null);
+    assertEquals(5.0, model.getUser("u1").getPreferenceFor("a").getValue(), EPSILON);
+    assertNull(model.getUser("u2").getPreferenceFor("a"));
+    assertEquals(6.0, model.getUser("u2").getPreferenceFor("d").getValue(), EPSILON);
+    assertEquals(1, model.getNumUsersWithPreferenceFor("a"));
+  }
+
+  public void testLateChanges() throws Exception {
+    CountingListener listener = new CountingListener();
+    model.addPreferenceChangeListener(listener);
+    long base = database.nextChange();
+    database.change(base + 2L, "u1", "a", 5.0);
+    model.refresh(null);
+    assertEquals(1, listener.count.get());
+
+    // Committed after the change numbered above it had been applied
+    database.change(base + 1L, "u1", "b", 7.0);
+    // Also late, but overwritten by the change to u1/a already applied
+    database.change(base, "u1", "a", 9.0);
+    model.refresh(null);
+    assertEquals(7.0, model.getUser("u1").getPreferenceFor("b").getValue(), EPSILON);
+    assertEquals(5.0, model.getUser("u1").getPreferenceFor("a").getValue(), EPSILON);
+    assertEquals(2, listener.count.get());
+
+    // Changes in the overlap are read again but not applied again
+    model.refresh(null);
+    assertEquals(2, listener.count.get());
+  }
+
+  public void testChangesBeforeOverlapAreNotRead() throws Exception {
+    long base = database.nextChange();
+    database.change(base + 20L, "u1", "a", 5.0);
+    model.refresh(null);
+    database.change(base + 5L, "u1", "b", 7.0);
+    model.refresh(null);
+    assertEquals(2.0, model.getUser("u1").getPreferenceFor("b").getValue(), EPSILON);
+  }
+
+  public void testWriteThrough() throws Exception {
+    final List<Double> inDatabase = new ArrayList<Double>();
+    model.addPreferenceChangeListener(new PreferenceChangeListener() {
+      @Override
+      public void preferenceChanged(Object userID, Object itemID) {
+        inDatabase.add(database.getPreference(userID, itemID));
+      }
+    });
+    model.setPreference("u1", "c", 6.0);
+    assertEquals(6.0, model.getUser("u1").getPreferenceFor("c").getValue(), EPSILON);
+    model.removePreference("u1", "a");
+    assertNull(model.getUser("u1").getPreferenceFor("a"));
+    // The database was already written when the copy changed
+    assertEquals(2, inDatabase.size());
+    assertEquals(6.0, inDatabase.get(0), EPSILON);
+    assertNull(inDatabase.get(1));
+
+    database.failing = true;
+    try {
+      model.setPreference("u1", "b", 8.0);
+      fail();
+    } catch (TasteException te) {
+      // good
+    }
+    assertEquals(2.0, model.getUser("u1").getPreferenceFor("b").getValue(), EPSILON);
+
+    // Polling the changes just written through leaves the copy as it is
+    database.failing = false;
+    model.refresh(null);
+    assertEquals(6.0, model.getUser("u1").getPreferenceFor("c").getValue(), EPSILON);
+    assertNull(model.getUser("u1").getPreferenceFor("a"));
+  }
+
+  public void testWriteThroughRacingLaterChange() throws Exception {
+    // Another client changes the same preference just after this write commits, and a poll applies both changes
+    // before this write goes on to update the copy
+    database.afterUpdate = new Runnable() {
+      @Override
+      public void run() {
+        database.afterUpdate = null;
+        database.change(database.nextChange(), "u1", "a", 3.0);
+        model.refresh(null);
+      }
+    };
+    model.setPreference("u1", "a", 2.0);
+    assertEquals(3.0, model.getUser("u1").getPreferenceFor("a").getValue(), EPSILON);
+    model.refresh(null);
+    assertEquals(3.0, model.getUser("u1").getPreferenceFor("a").getValue(), EPSILON);
+  }
+
+  public void testPollFailureResumes() throws Exception {
+    database.change(database.nextChange(), "u1", "a", 5.0);
+    database.failing = true;
+    model.refresh(null);
+    assertEquals(1.0, model.getUser("u1").getPreferenceFor("a").getValue(), EPSILON);
+    database.failing = false;
+    database.change(database.nextChange(), "u1", "b", 7.0);
+    model.refresh(null);
+    assertEquals(5.0, model.getUser("u1").getPreferenceFor("a").getValue(), EPSILON);
+    assertEquals(7.0, model.getUser("u1").getPreferenceFor("b").getValue(), EPSILON);
+  }
+
+  private static final class CountingListener implements PreferenceChangeListener {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public void preferenceChanged(Object userID, Object itemID) {
+      count.incrementAndGet();
+    }
+
+  }
+
+  /**
+   * A preference table, and a change table which triggers on it would keep, answering
+   * {@link MySQLJDBCDataModel}'s and {@link MirroringJDBCDataModel}'s default SQL.
+   */
+  private static final class PreferenceDatabase extends StubDatabase {
+
+    /** Preference values by user ID, then item ID */
+    private final Map<String, Map<String, Double>> preferences = new TreeMap<String, Map<String, Double>>();
+    /** User ID, item ID and preference (or <code>null</code>) by change number */
+    private final SortedMap<Long, Object[]> changes = new TreeMap<Long, Object[]>();
+    private volatile boolean failing;
+    /** Run after each update, as if by another client */
+    private volatile Runnable afterUpdate;
+
+    @Override
+    synchronized List<Object[]> query(String sql, List<Object> args) throws SQLException {
+      if (failing) {
+        throw new SQLException("Failing on purpose");
+      }
+      List<Object[]> rows = new ArrayList<Object[]>();
+      if (sql.equals(MirroringJDBCDataModel.DEFAULT_GET_LATEST_CHANGE_SQL)) {
+        rows.add(new Object[] {nextChange() - 1L});
+      } else if (sql.equals(MirroringJDBCDataModel.DEFAULT_GET_CHANGES_SQL)) {
+        for (Map.Entry<Long, Object[]> entry : changes.entrySet()) {
+          if (entry.getKey() > (Long) args.get(0)) {
+            Object[] change = entry.getValue();
+            rows.add(new Object[] {change[0], change[1], change[2], entry.getKey()});
+          }
+        }
+      } else if (sql.startsWith("SELECT item_id, preference, user_id FROM taste_preferences ORDER BY")) {
+        for (Map.Entry<String, Map<String, Double>> user : preferences.entrySet()) {
+          for (Map.Entry<String, Double> pref : user.getValue().entrySet()) {
+            rows.add(new Object[] {pref.getKey(), pref.getValue(), user.getKey()});
+          }
+        }
+      } else {
+        throw new SQLException("Unexpected query: " + sql);
+      }
+      return rows;
+    }
+
+    @Override
+    synchronized int update(String sql, List<Object> args) throws SQLException {
+      if (failing) {
+        throw new SQLException("Failing on purpose");
+      }
+      String userID = (String) args.get(0);
+      String itemID = (String) args.get(1);
+      if (sql.startsWith("INSERT")) {
+        change(nextChange(), userID, itemID, (Double) args.get(2));
+      } else if (sql.startsWith("DELETE")) {
+        change(nextChange(), userID, itemID, null);
+      } else {
+        throw new SQLException("Unexpected update: " + sql);
+      }
+      Runnable hook = afterUpdate;
+      if (hook != null) {
+        hook.run();
+      }
+      return 1;
+    }
+
+    synchronized long nextChange() {
+      return changes.isEmpty() ? 1L : changes.lastKey() + 1L;
+    }
+
+    synchronized void setPreference(String userID, String itemID, Double value) {
+      Map<String, Double> userPreferences = preferences.get(userID);
+      if (userPreferences == null) {
+        userPreferences = new TreeMap<String, Double>();
+        preferences.put(userID, userPreferences);
+      }
+      if (value == null) {
+        userPreferences.remove(itemID);
+      } else {
+        userPreferences.put(itemID, value);
+      }
+    }
+
+    /**
+     * Changes a preference, as a transaction which was given the change number <code>change</code> and commits
+     * now.
+     */
+    synchronized void change(long change, String userID, String itemID, Double value) {
+      setPreference(userID, itemID, value);
+      changes.put(change, new Object[] {userID, itemID, value});
+    }
+
+    synchronized Double getPreference(Object userID, Object itemID) {
+      Map<String, Double> userPreferences = preferences.get(userID);
+      return userPreferences == null ? null : userPreferences.get(itemID);
+    }
+
+  }
+
+}
@@ -0,0 +1,331 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.model.jdbc;
+
+import org.apache.mahout.cf.taste.impl.TasteTestCase;
+import org.apache.mahout.cf.taste.impl.recommender.GenericItemBasedRecommender;
+import org.apache.mahout.cf.taste.impl.similarity.LogLikelihoodSimilarity;
+import org.apache.mahout.cf.taste.model.Preference;
+import org.apache.mahout.cf.taste.recommender.ItemBasedRecommender;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Tests {@link MySQLJDBCDataModel}'s batch queries, and how {@link AbstractJDBCDataModel} uses them, against a
+ * {@link StubDatabase}.
+ */
+public final class MySQLJDBCDataModelTest extends TasteTestCase {
+
+  private static final String[][] PREFS = {
+      // user, item
+      {"u1", "a"}, {"u1", "b"}, {"u1", "c"},
+      {"u2", "a"}, {"u2", "b"},
+      {"u3", "b"},
+  };
+
+  public void testPrefetchNumUsersWithPreferenceFor() throws Exception {
+    StubDatabase database = new PreferencesDatabase();
+    MySQLJDBCDataModel model = new MySQLJDBCDataModel(database.getDataSource());
+    model.prefetch("a", Arrays.asList("b", "c", "d"));
+    try {
+      assertEquals(2, model.getNumUsersWithPreferenceFor("a", "b"));
+      assertEquals(1, model.getNumUsersWithPreferenceFor("c", "a"));
+      assertEquals(0, model.getNumUsersWithPreferenceFor("a", "d"));
+      assertEquals(1, database.getExecuted().size());
+      assertEquals(3, model.getNumUsersWithPreferenceFor("b"));
+      assertEquals(2, model.getNumUsersWithPreferenceFor("a"));
+      assertEquals(0, model.getNumUsersWithPreferenceFor("d"));
+      assertEquals(2, database.getExecuted().size());
+    } finally {
+      model.clearPrefetched();
+    }
+    assertEquals(2, model.getNumUsersWithPreferenceFor("a", "b"));
+    assertEquals(3, database.getExecuted().size());
+  }
+
+  public void testPrefetchPreferencesForItem() throws Exception {
+    StubDatabase database = new PreferencesDatabase();
+    MySQLJDBCDataModel model = new MySQLJDBCDataModel(database.getDataSource());
+    model.prefetch("a", Arrays.asList("b", "c"));
+    try {
+      assertEquals(2, model.getPreferencesForItemAsArray("a").length);
+      Preference[] prefs = model.getPreferencesForItemAsArray("b");
+      assertEquals(3, prefs.length);
+      assertEquals("b", prefs[0].getItem().getID());
+      assertEquals(1, model.getPreferencesForItemAsArray("c").length);
+      assertEquals(1, database.getExecuted().size());
+      // Not announced
+      assertEquals(0, model.getPreferencesForItemAsArray("d").length);
+      assertEquals(2, database.getExecuted().size());
+    } finally {
+      model.clearPrefetched();
+    }
+  }
+
+  public void testPrefetchWithoutBatchQueries() throws Exception {
+    StubDatabase database = new PreferencesDatabase();
+    AbstractJDBCDataModel model = new AbstractJDBCDataModel(database.getDataSource(),
+                                                            "unused", "unused", "unused", "unused", "unused",
+                                                            "unused", "unused", "unused",
+                                                            "SELECT prefs for one item",
+                                                            "SELECT COUNT for one item",
+                                                            "SELECT COUNT for two items") {
+    };
+    model.prefetch("a", Arrays.asList("b", "c"));
+    try {
+      assertEquals(2, model.getNumUsersWithPreferenceFor("a", "b"));
+      assertEquals(1, model.getNumUsersWithPreferenceFor("a", "c"));
+      assertEquals(2, model.getPreferencesForItemAsArray("a").length);
+      assertEquals(Arrays.asList("SELECT COUNT for two items", "SELECT COUNT for two items",
+                                 "SELECT prefs for one item"), database.getExecuted());
+    } finally {
+      model.clearPrefetched();
+    }
+  }
+
+  public void testItemBasedEstimateUsesPrefetch() throws Exception {
+    StubDatabase database = new PreferencesDatabase();
+    MySQLJDBCDataModel model = new MySQLJDBCDataModel(database.getDataSource());
+    ItemBasedRecommender recommender = new GenericItemBasedRecommender(model, new LogLikelihoodSimilarity(model));
+    recommender.estimatePreference("u2", "c");
+    int pairQueries = 0;
+    for (String sql : database.getExecuted()) {
+      if (sql.contains("tp2")) {
+        pairQueries++;
+      }
+    }
+    // Both of u2's items are paired with c in one query
+    assertEquals(1, pairQueries);
+  }
+
+  public void testItemPairSQLUsesEqualities() {
+    MySQLJDBCDataModel model = new MySQLJDBCDataModel(new PreferencesDatabase().getDataSource());
+    String sql = model.getNumPreferenceForItemsBatchSQL(2);
+    assertFalse(sql.contains(" IN "));
+    assertTrue(sql.contains("WHERE (tp1.item_id=? AND tp2.item_id=?) OR (tp1.item_id=? AND tp2.item_id=?) GROUP BY"));
+  }
+
+  public void testIDsReturnedInAnotherForm() throws Exception {
+    StubDatabase database = new CaseInsensitiveDatabase();
+    MySQLJDBCDataModel model = new MySQLJDBCDataModel(database.getDataSource());
+    assertEquals(3, model.getUser("U1").getPreferencesAsArray().length);
+    model.prefetch("A", Arrays.asList("B", "C", "D"));
+    try {
+      assertEquals(2, model.getNumUsersWithPreferenceFor("A", "B"));
+      assertEquals(1, model.getNumUsersWithPreferenceFor("C", "A"));
+      assertEquals(0, model.getNumUsersWithPreferenceFor("A", "D"));
+      assertEquals(2, model.getNumUsersWithPreferenceFor("A"));
+      assertEquals(0, model.getNumUsersWithPreferenceFor("D"));
+      Preference[] prefs = model.getPreferencesForItemAsArray("B");
+      assertEquals(3, prefs.length);
+      assertEquals("B", prefs[0].getItem().getID());
+      assertEquals(0, model.getPreferencesForItemAsArray("D").length);
+    } finally {
+      model.clearPrefetched();
+    }
+  }
+
+  /**
+   * Answers the batch and item queries of {@link MySQLJDBCDataModel}, and the single-item queries given to the
+   * model in {@link #testPrefetchWithoutBatchQueries()}, from {@link #PREFS}.
+   */
+  private static final class PreferencesDatabase extends StubDatabase {
+
+    @Override
+    List<Object[]> query(String sql, List<Object> args) {
+      if (sql.contains("for two items")) {
+        return Collections.singletonList(new Object[] {countUsers(args.get(0), args.get(1))});
+      }
+      if (sql.startsWith("SELECT 1 ")) {
+        return Collections.singletonList(new Object[] {1});
+      }
+      if (sql.contains("COUNT(DISTINCT user_id)")) {
+        return Collections.singletonList(new Object[] {3});
+      }
+      List<Object[]> rows = new ArrayList<Object[]>();
+      if (sql.contains("user_id IN")) {
+        for (Object userID : new LinkedHashSet<Object>(args)) {
+          for (String[] pref : PREFS) {
+            if (pref[0].equals(userID)) {
+              rows.add(new Object[] {pref[1], 1.0, userID});
+            }
+          }
+        }
+      } else if (sql.contains("tp2")) {
+        for (int i = 0; i < args.size(); i += 2) {
+          Object[] row = {args.get(i), args.get(i + 1), countUsers(args.get(i), args.get(i + 1))};
+          if ((Integer) row[2] > 0 && !containsPair(rows, row)) {
+            rows.add(row);
+          }
+        }
+      } else if (sql.contains("COUNT")) {
+        for (Object itemID : new LinkedHashSet<Object>(args)) {
+          int count = countUsers(itemID, itemID);
+          if (count > 0) {
+            rows.add(new Object[] {itemID, count});
+          }
+        }
+      } else {
+        for (Object itemID : new LinkedHashSet<Object>(args)) {
+          for (String[] pref : PREFS) {
+            if (pref[1].equals(itemID)) {
+              rows.add(new Object[] {1.0, pref[0], itemID});
+            }
+          }
+        }
+      }
+      return rows;
+    }
+
+    private static int countUsers(Object itemID1, Object itemID2) {
+      int count = 0;
+      for (String[] pref1 : PREFS) {
+        if (pref1[1].equals(itemID1)) {
+          for (String[] pref2 : PREFS) {
+            if (pref2[1].equals(itemID2) && pref2[0].equals(pref1[0])) {
+              count++;
+            }
+          }
+        }
+      }
+      return count;
+    }
+
+    private static boolean containsPair(List<Object[]> rows, Object[] row) {
+      for (Object[] existing : rows) {
+        if (existing[0].equals(row[0]) && existing[1].equals(row[1])) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+  }
+
+  /**
+   * Answers {@link MySQLJDBCDataModel}'s queries from {@link #PREFS} the way a database with a case-insensitive
+   * collation would: IDs match whatever their case, and come back as they are stored.
+   */
+  private static final class CaseInsensitiveDatabase extends StubDatabase {
+
+    @Override
+    List<Object[]> query(String sql, List<Object> args) {
+      if (sql.startsWith("SELECT 1 ")) {
+        return Collections.singletonList(new Object[] {1});
+      }
+      if (sql.contains("COUNT(DISTINCT user_id)")) {
+        return Collections.singletonList(new Object[] {3});
+      }
+      List<Object[]> rows = new ArrayList<Object[]>();
+      if (sql.contains("user_id IN")) {
+        for (String[] pref : PREFS) {
+          if (matchesAny(pref[0], args)) {
+            rows.add(new Object[] {pref[1], 1.0, pref[0]});
+          }
+        }
+      } else if (sql.contains("user_id=?")) {
+        for (String[] pref : PREFS) {
+          if (pref[0].equalsIgnoreCase((String) args.get(0))) {
+            rows.add(new Object[] {pref[1], 1.0});
+          }
+        }
+      } else if (sql.contains("GROUP BY tp1")) {
+        for (String[] pref1 : PREFS) {
+          for (String[] pref2 : PREFS) {
+            if (pref1[0].equals(pref2[0]) && matchesAnyPair(pref1[1], pref2[1], args)) {
+              addCount(rows, pref1[1], pref2[1]);
+            }
+          }
+        }
+      } else if (sql.contains("tp2")) {
+        rows.add(new Object[] {countUsers((String) args.get(0), (String) args.get(1))});
+      } else if (sql.contains("COUNT(1)") && sql.contains("item_id IN")) {
+        for (String[] pref : PREFS) {
+          if (matchesAny(pref[1], args)) {
+            addCount(rows, pref[1], null);
+          }
+        }
+      } else if (sql.contains("COUNT(1)")) {
+        rows.add(new Object[] {countUsers((String) args.get(0), (String) args.get(0))});
+      } else if (sql.contains("item_id IN")) {
+        for (String[] pref : PREFS) {
+          if (matchesAny(pref[1], args)) {
+            rows.add(new Object[] {1.0, pref[0], pref[1]});
+          }
+        }
+      } else {
+        for (String[] pref : PREFS) {
+          if (pref[1].equalsIgnoreCase((String) args.get(0))) {
+            rows.add(new Object[] {1.0, pref[0]});
+          }
+        }
+      }
+      return rows;
+    }
+
+    private static boolean matchesAny(String id, List<Object> args) {
+      for (Object arg : args) {
+        if (id.equalsIgnoreCase((String) arg)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private static boolean matchesAnyPair(String itemID1, String itemID2, List<Object> args) {
+      for (int i = 0; i < args.size(); i += 2) {
+        if (itemID1.equalsIgnoreCase((String) args.get(i)) && itemID2.equalsIgnoreCase((String) args.get(i + 1))) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /** Counts one more user for the row grouped by the given IDs, the second of which is absent for one item */
+    private static void addCount(List<Object[]> rows, String itemID1, String itemID2) {
+      int countColumn = itemID2 == null ? 1 : 2;
+      for (Object[] row : rows) {
+        if (row[0].equals(itemID1) && (itemID2 == null || row[1].equals(itemID2))) {
+          row[countColumn] = (Integer) row[countColumn] + 1;
+          return;
+        }
+      }
+      rows.add(itemID2 == null ? new Object[] {itemID1, 1} : new Object[] {itemID1, itemID2, 1});
+    }
+
+    private static int countUsers(String itemID1, String itemID2) {
+      int count = 0;
+      for (String[] pref1 : PREFS) {
+        if (pref1[1].equalsIgnoreCase(itemID1)) {
+          for (String[] pref2 : PREFS) {
+            if (pref2[1].equalsIgnoreCase(itemID2) && pref2[0].equals(pref1[0])) {
+              count++;
+            }
+          }
+        }
+      }
+      return count;
+    }
+
+  }
+
+}
@@ -0,0 +1,186 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.model.jdbc;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>Stands in for a database in tests. Its {@link DataSource} hands out connections whose statements are
+ * answered by {@link #query(String, List)} and {@link #update(String, List)}, and it records the SQL of every
+ * statement executed. Only the parts of JDBC which the data models use are implemented.</p>
+ */
+abstract class StubDatabase {
+
+  private final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+  private final DataSource dataSource =
+      newProxy(DataSource.class, new InvocationHandler() {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+          return "getConnection".equals(method.getName()) ? newConnection() : defaultValue(method);
+        }
+      });
+
+  /**
+   * @return rows answering the query, each an array of column values
+   */
+  abstract List<Object[]> query(String sql, List<Object> args) throws SQLException;
+
+  /**
+   * @return number of rows changed; by default updates fail
+   */
+  int update(String sql, List<Object> args) throws SQLException {
+    throw new SQLException("Unexpected update: " + sql);
+  }
+
+  DataSource getDataSource() {
+    return dataSource;
+  }
+
+  /**
+   * @return SQL of the statements executed so far, in order
+   */
+  List<String> getExecuted() {
+    synchronized (executed) {
+      return new ArrayList<String>(executed);
+    }
+  }
+
+  private Connection newConnection() {
+    return newProxy(Connection.class, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) {
+        return "prepareStatement".equals(method.getName()) ?
+            newStatement((String) args[0]) :
+            defaultValue(method);
+      }
+    });
+  }
+
+  private PreparedStatement newStatement(final String sql) {
+    final List<Object> statementArgs = new ArrayList<Object>();
+    return newProxy(PreparedStatement.class, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+        String name = method.getName();
+        if (name.startsWith("set") && args != null && args.length == 2 && args[0] instanceof Integer) {
+          int index = (Integer) args[0];
+          while (statementArgs.size() < index) {
+            statementArgs.add(null);
+          }
+          statementArgs.set(index - 1, args[1]);
+          return null;
+        }
+        if ("executeQuery".equals(name)) {
+          executed.add(sql);
+          return newResultSet(query(sql, new ArrayList<Object>(statementArgs)));
+        }
+        if ("executeUpdate".equals(name)) {
+          executed.add(sql);
+          return update(sql, new ArrayList<Object>(statementArgs));
+        }
+        return defaultValue(method);
+      }
+    });
+  }
+
+  private static ResultSet newResultSet(final List<Object[]> rows) {
+    return newProxy(ResultSet.class, new InvocationHandler() {
+      private int row = -1;
+      private boolean wasNull;
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) {
+        String name = method.getName();
+        if ("next".equals(name)) {
+          return ++row < rows.size();
+        }
+        if ("wasNull".equals(name)) {
+          return wasNull;
+        }
+        if (name.startsWith("get") && args != null && args.length == 1 && args[0] instanceof Integer) {
+          Object value = rows.get(row)[(Integer) args[0] - 1];
+          wasNull = value == null;
+          if ("getString".equals(name)) {
+            return value == null ? null : value.toString();
+          }
+          if ("getObject".equals(name)) {
+            return value;
+          }
+          Number number = value == null ? 0 : (Number) value;
+          if ("getInt".equals(name)) {
+            return number.intValue();
+          }
+          if ("getLong".equals(name)) {
+            return number.longValue();
+          }
+          if ("getDouble".equals(name)) {
+            return number.doubleValue();
+          }
+        }
+        return defaultValue(method);
+      }
+    });
+  }
+
+  private static <T> T newProxy(final Class<T> type, final InvocationHandler handler) {
+    return type.cast(Proxy.newProxyInstance(StubDatabase.class.getClassLoader(), new Class<?>[] {type},
+        new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+              String name = method.getName();
+              if ("equals".equals(name)) {
+                return proxy == args[0];
+              }
+              if ("hashCode".equals(name)) {
+                return System.identityHashCode(proxy);
+              }
+              return "Stub" + type.getSimpleName();
+            }
+            return handler.invoke(proxy, method, args);
+          }
+        }));
+  }
+
+  private static Object defaultValue(Method method) {
+    Class<?> type = method.getReturnType();
+    if (type == boolean.class) {
+      return false;
+    }
+    if (type == int.class) {
+      return 0;
+    }
+    if (type == long.class) {
+      return 0L;
+    }
+    if (type == double.class) {
+      return 0.0;
+    }
+    return null;
+  }
+
+}
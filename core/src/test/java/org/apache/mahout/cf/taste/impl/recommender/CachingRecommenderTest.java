@@ -77,4 +77,43 @@ public final class CachingRecommenderTest extends TasteTestCase {
     assertEquals(11, recommendCount.get());
   }
 
+  public void testPreferenceChanged() throws Exception {
+    AtomicInteger recommendCount = new AtomicInteger();
+    CachingRecommender cachingRecommender = new CachingRecommender(new MockRecommender(recommendCount));
+    // Every user is recommended item "1"
+    cachingRecommender.recommend("1", 1);
+    cachingRecommender.recommend("2", 1);
+    cachingRecommender.estimatePreference("1", "5");
+    cachingRecommender.estimatePreference("2", "6");
+    assertEquals(4, recommendCount.get());
+
+    // Affects no cached recommendations or estimates
+    cachingRecommender.preferenceChanged("3", "2");
+    cachingRecommender.recommend("1", 1);
+    cachingRecommender.recommend("2", 1);
+    cachingRecommender.estimatePreference("1", "5");
+    cachingRecommender.estimatePreference("2", "6");
+    assertEquals(4, recommendCount.get());
+
+    // Another user's change to a recommended item affects both users' recommendations
+    cachingRecommender.preferenceChanged("3", "1");
+    cachingRecommender.recommend("1", 1);
+    cachingRecommender.recommend("2", 1);
+    assertEquals(6, recommendCount.get());
+
+    // Another user's change to item "5" affects every estimate for it
+    cachingRecommender.preferenceChanged("3", "5");
+    cachingRecommender.estimatePreference("1", "5");
+    cachingRecommender.estimatePreference("2", "6");
+    assertEquals(7, recommendCount.get());
+
+    // A user's own change affects all of that user's estimates and recommendations
+    cachingRecommender.preferenceChanged("2", "7");
+    cachingRecommender.recommend("1", 1);
+    cachingRecommender.recommend("2", 1);
+    cachingRecommender.estimatePreference("1", "5");
+    cachingRecommender.estimatePreference("2", "6");
+    assertEquals(9, recommendCount.get());
+  }
+
 }
@@ -19,6 +19,8 @@ package org.apache.mahout.cf.taste.impl.recommender;
 
 import org.apache.mahout.cf.taste.similarity.ItemSimilarity;
 import org.apache.mahout.cf.taste.impl.TasteTestCase;
+import org.apache.mahout.cf.taste.impl.common.RandomUtils;
+import org.apache.mahout.cf.taste.impl.similarity.PearsonCorrelationSimilarity;
 import org.apache.mahout.cf.taste.impl.similarity.GenericItemSimilarity;
 import org.apache.mahout.cf.taste.impl.model.GenericDataModel;
 import org.apache.mahout.cf.taste.impl.model.GenericItem;
@@ -32,6 +34,9 @@ import org.apache.mahout.cf.taste.recommender.Recommender;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * <p>Tests {@link GenericItemBasedRecommender}.</p>
@@ -82,6 +87,27 @@ public final class GenericItemBasedRecommenderTest extends TasteTestCase {
     }
   }
 
+  public void testDefaultCandidatesCoOccur() throws Exception {
+    List<User> users = new ArrayList<User>(3);
+    users.add(getUser("test1", 0.1, 0.2));
+    users.add(getUser("test2", 0.3, 0.4));
+    // Nobody who rated item 2 rated anything else
+    users.add(getUser("test3", null, null, 0.5));
+    DataModel dataModel = new GenericDataModel(users);
+    Item item1 = new GenericItem<String>("0");
+    Item item3 = new GenericItem<String>("2");
+    Collection<GenericItemSimilarity.ItemItemSimilarity> similarities =
+            new ArrayList<GenericItemSimilarity.ItemItemSimilarity>(1);
+    similarities.add(new GenericItemSimilarity.ItemItemSimilarity(item1, item3, 1.0));
+    ItemSimilarity similarity = new GenericItemSimilarity(similarities);
+    assertTrue(new GenericItemBasedRecommender(dataModel, similarity).recommend("test1", 1).isEmpty());
+    List<RecommendedItem> recommended =
+        new GenericItemBasedRecommender(dataModel, similarity, new AllUnknownItemsCandidateItemsStrategy())
+            .recommend("test1", 1);
+    assertEquals(1, recommended.size());
+    assertEquals(item3, recommended.get(0).getItem());
+  }
+
   public void testRescorer() throws Exception {
     List<User> users = new ArrayList<User>(3);
     users.add(getUser("test1", 0.1, 0.2));
@@ -179,6 +205,44 @@ public final class GenericItemBasedRecommenderTest extends TasteTestCase {
     assertEquals(0.2, third.getValue(), EPSILON);
   }
 
+  public void testParallelScoring() throws Exception {
+    List<User> users = new ArrayList<User>(10);
+    Random random = RandomUtils.getRandom();
+    for (int i = 0; i < 10; i++) {
+      Double[] values = new Double[300];
+      for (int j = 0; j < values.length; j++) {
+        // The first user rates only a few items, leaving many candidates to score
+        if (i > 0 || j < 20) {
+          values[j] = random.nextDouble();
+        }
+      }
+      users.add(getUser("test" + i, values));
+    }
+    DataModel dataModel = new GenericDataModel(users);
+    ItemSimilarity similarity = new PearsonCorrelationSimilarity(dataModel);
+    ItemBasedRecommender serial = new GenericItemBasedRecommender(dataModel, similarity);
+    GenericItemBasedRecommender parallel = new GenericItemBasedRecommender(dataModel, similarity);
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      parallel.setParallelScoring(executor, 4);
+      assertSameRecommendations(serial.recommend("test0", 10), parallel.recommend("test0", 10));
+      assertSameRecommendations(serial.mostSimilarItems("0", 10), parallel.mostSimilarItems("0", 10));
+      // Asking for everything must not size the merge buffer from howMany
+      assertSameRecommendations(serial.recommend("test0", Integer.MAX_VALUE),
+                                parallel.recommend("test0", Integer.MAX_VALUE));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  static void assertSameRecommendations(List<RecommendedItem> expected, List<RecommendedItem> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).getItem(), actual.get(i).getItem());
+      assertEquals(expected.get(i).getValue(), actual.get(i).getValue(), EPSILON);
+    }
+  }
+
   private static ItemBasedRecommender buildRecommender() {
     DataModel dataModel = new GenericDataModel(getMockUsers());
     Collection<GenericItemSimilarity.ItemItemSimilarity> similarities =
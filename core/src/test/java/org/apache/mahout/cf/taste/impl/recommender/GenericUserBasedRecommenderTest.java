@@ -19,6 +19,7 @@ package org.apache.mahout.cf.taste.impl.recommender;
 
 import org.apache.mahout.cf.taste.similarity.UserSimilarity;
 import org.apache.mahout.cf.taste.impl.TasteTestCase;
+import org.apache.mahout.cf.taste.impl.common.RandomUtils;
 import org.apache.mahout.cf.taste.impl.similarity.PearsonCorrelationSimilarity;
 import org.apache.mahout.cf.taste.impl.model.GenericDataModel;
 import org.apache.mahout.cf.taste.impl.model.GenericItem;
@@ -34,6 +35,9 @@ import org.apache.mahout.cf.taste.recommender.UserBasedRecommender;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * <p>Tests {@link GenericUserBasedRecommender}.</p>
@@ -137,6 +141,34 @@ public final class GenericUserBasedRecommenderTest extends TasteTestCase {
     assertEquals(0, mostSimilar.size());
   }
 
+  public void testParallelScoring() throws Exception {
+    List<User> users = new ArrayList<User>(10);
+    Random random = RandomUtils.getRandom();
+    for (int i = 0; i < 10; i++) {
+      Double[] values = new Double[300];
+      for (int j = 0; j < values.length; j++) {
+        // The first user rates only a few items, leaving many candidates to score
+        if (i > 0 || j < 20) {
+          values[j] = random.nextDouble();
+        }
+      }
+      users.add(getUser("test" + i, values));
+    }
+    DataModel dataModel = new GenericDataModel(users);
+    UserSimilarity similarity = new PearsonCorrelationSimilarity(dataModel);
+    UserNeighborhood neighborhood = new NearestNUserNeighborhood(5, similarity, dataModel);
+    Recommender serial = new GenericUserBasedRecommender(dataModel, neighborhood, similarity);
+    GenericUserBasedRecommender parallel = new GenericUserBasedRecommender(dataModel, neighborhood, similarity);
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      parallel.setParallelScoring(executor, 4);
+      GenericItemBasedRecommenderTest.assertSameRecommendations(serial.recommend("test0", 10),
+                                                                parallel.recommend("test0", 10));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   private static UserBasedRecommender buildRecommender() throws Exception {
     DataModel dataModel = new GenericDataModel(getMockUsers());
     UserSimilarity similarity = new PearsonCorrelationSimilarity(dataModel);
@@ -0,0 +1,54 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.recommender;
+
+import org.apache.mahout.cf.taste.impl.TasteTestCase;
+import org.apache.mahout.cf.taste.impl.model.GenericItem;
+import org.apache.mahout.cf.taste.model.DataModel;
+import org.apache.mahout.cf.taste.model.Item;
+import org.apache.mahout.cf.taste.recommender.CandidateItemsStrategy;
+
+import java.util.Set;
+
+/**
+ * <p>Tests {@link PreferredItemsNeighborhoodCandidateItemsStrategy}.</p>
+ */
+public final class PreferredItemsNeighborhoodCandidateItemsStrategyTest extends TasteTestCase {
+
+  public void testCandidateItems() throws Exception {
+    DataModel dataModel = getDataModel(getUser("test1", 0.1, 0.2),
+                                       getUser("test2", null, 0.3, 0.4),
+                                       getUser("test3", null, null, null, 0.5),
+                                       getUser("test4", null, null, null, 0.6, 0.7));
+    CandidateItemsStrategy strategy = new PreferredItemsNeighborhoodCandidateItemsStrategy();
+    Set<Item> candidates = strategy.getCandidateItems(dataModel.getUser("test1"), dataModel);
+    assertEquals(1, candidates.size());
+    assertTrue(candidates.contains(new GenericItem<String>("2")));
+
+    Set<Item> allCandidates =
+        new AllUnknownItemsCandidateItemsStrategy().getCandidateItems(dataModel.getUser("test1"), dataModel);
+    assertEquals(3, allCandidates.size());
+  }
+
+  public void testNoPreferences() throws Exception {
+    DataModel dataModel = getDataModel(getUser("test1"), getUser("test2", 0.3, 0.4));
+    CandidateItemsStrategy strategy = new PreferredItemsNeighborhoodCandidateItemsStrategy();
+    assertTrue(strategy.getCandidateItems(dataModel.getUser("test1"), dataModel).isEmpty());
+  }
+
+}
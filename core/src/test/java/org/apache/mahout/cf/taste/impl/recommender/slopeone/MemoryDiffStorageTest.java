@@ -19,9 +19,20 @@ package org.apache.mahout.cf.taste.impl.recommender.slopeone;
 
 import org.apache.mahout.cf.taste.common.Weighting;
 import org.apache.mahout.cf.taste.impl.TasteTestCase;
+import org.apache.mahout.cf.taste.impl.common.RandomUtils;
 import org.apache.mahout.cf.taste.impl.common.RunningAverage;
+import org.apache.mahout.cf.taste.impl.model.ConcurrentDataModel;
 import org.apache.mahout.cf.taste.impl.model.GenericDataModel;
 import org.apache.mahout.cf.taste.model.DataModel;
+import org.apache.mahout.cf.taste.model.Item;
+import org.apache.mahout.cf.taste.model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Tests {@link MemoryDiffStorage}.
@@ -39,7 +50,8 @@ public class MemoryDiffStorageTest extends TasteTestCase {
   public void testUpdate() throws Exception {
     DataModel model = new GenericDataModel(getMockUsers());
     MemoryDiffStorage storage = new MemoryDiffStorage(model, Weighting.UNWEIGHTED, false, Long.MAX_VALUE);
-    storage.updateItemPref("1", 0.5, false);
+    // test2's preference for item 1 goes from 0.3 to 0.8
+    storage.updateItemPref("test2", "1", 0.3, 0.8);
     RunningAverage average = storage.getDiff("1", "2");
     assertEquals(0.06666666666666668, average.getAverage(), EPSILON);
     assertEquals(3, average.getCount());
@@ -48,10 +60,156 @@ public class MemoryDiffStorageTest extends TasteTestCase {
   public void testRemove() throws Exception {
     DataModel model = new GenericDataModel(getMockUsers());
     MemoryDiffStorage storage = new MemoryDiffStorage(model, Weighting.UNWEIGHTED, false, Long.MAX_VALUE);
-    storage.updateItemPref("1", 0.5, true);
+    // test4's preference of 0.3 for item 1 is removed; its diff with item 2 was 0.5
+    storage.updateItemPref("test4", "1", 0.3, Double.NaN);
     RunningAverage average = storage.getDiff("1", "2");
     assertEquals(0.1, average.getAverage(), EPSILON);
     assertEquals(2, average.getCount());
   }
 
+  public void testAdd() throws Exception {
+    DataModel model = new GenericDataModel(getMockUsers());
+    MemoryDiffStorage storage = new MemoryDiffStorage(model, Weighting.UNWEIGHTED, false, Long.MAX_VALUE);
+    // test1 rated items 0 and 1, and now rates item 2 at 0.9
+    storage.updateItemPref("test1", "2", Double.NaN, 0.9);
+    RunningAverage average = storage.getDiff("1", "2");
+    assertEquals(0.325, average.getAverage(), EPSILON);
+    assertEquals(4, average.getCount());
+    assertEquals(4, storage.getAverageItemPref("2").getCount());
+  }
+
+  public void testAddNewPair() throws Exception {
+    DataModel model = getDataModel(getUser("test1", 0.1, 0.2),
+                                   getUser("test2", 0.3, 0.4),
+                                   getUser("test3", null, null, 0.9),
+                                   getUser("test4", null, null, 0.7));
+    MemoryDiffStorage storage = new MemoryDiffStorage(model, Weighting.UNWEIGHTED, false, Long.MAX_VALUE);
+    assertNull(storage.getDiff("2", "0"));
+    storage.updateItemPref("test1", "2", Double.NaN, 0.5);
+    RunningAverage average = storage.getDiff("2", "0");
+    assertEquals(-0.4, average.getAverage(), EPSILON);
+    assertEquals(1, average.getCount());
+    // Removing it again drops the diff entirely rather than leaving it empty
+    storage.updateItemPref("test1", "2", 0.5, Double.NaN);
+    assertNull(storage.getDiff("2", "0"));
+  }
+
+  public void testAddNewItem() throws Exception {
+    ConcurrentDataModel model = new ConcurrentDataModel(getDataModel(getUser("test1", 0.1, 0.2),
+                                                                     getUser("test2", 0.3, 0.4),
+                                                                     getUser("test3", 0.5, 0.6)));
+    MemoryDiffStorage storage = new MemoryDiffStorage(model, Weighting.UNWEIGHTED, false, Long.MAX_VALUE);
+    // Item "new" was not in the model when the diffs were built
+    model.setPreference("test1", "new", 0.5);
+    storage.updateItemPref("test1", "new", Double.NaN, 0.5);
+    model.setPreference("test2", "new", 0.9);
+    storage.updateItemPref("test2", "new", Double.NaN, 0.9);
+    RunningAverage average = storage.getDiff("new", "0");
+    assertEquals(-0.5, average.getAverage(), EPSILON);
+    assertEquals(2, average.getCount());
+    assertEquals(0.5, storage.getDiff("0", "new").getAverage(), EPSILON);
+    assertEquals(0.7, storage.getAverageItemPref("new").getAverage(), EPSILON);
+    Set<Item> recommendable = storage.getRecommendableItems("test3");
+    assertEquals(1, recommendable.size());
+    assertEquals("new", recommendable.iterator().next().getID());
+  }
+
+  public void testReadersNeverSeeEmptyAverage() throws Exception {
+    DataModel model = getDataModel(getUser("test1", 0.1, 0.2), getUser("test2", 0.3, 0.4));
+    final MemoryDiffStorage storage = new MemoryDiffStorage(model, Weighting.WEIGHTED, false, Long.MAX_VALUE);
+    final AtomicBoolean done = new AtomicBoolean();
+    final AtomicReference<String> failure = new AtomicReference<String>();
+    Thread reader = new Thread() {
+      @Override
+      public void run() {
+        while (!done.get()) {
+          // With standard deviation weighting, a changed datum is removed and re-added
+          RunningAverage average = storage.getDiff("0", "1");
+          double value = average.getAverage();
+          if (average.getCount() != 2 || Double.isNaN(value)) {
+            failure.set("saw count " + average.getCount() + ", average " + value);
+          }
+        }
+      }
+    };
+    reader.start();
+    try {
+      double oldValue = 0.2;
+      for (int i = 0; i < 20000; i++) {
+        double newValue = (i & 1) == 0 ? 0.5 : 0.2;
+        storage.updateItemPref("test1", "1", oldValue, newValue);
+        oldValue = newValue;
+      }
+    } finally {
+      done.set(true);
+      reader.join();
+    }
+    assertNull(failure.get());
+  }
+
+  public void testUpdatePublishesCopies() throws Exception {
+    DataModel model = new GenericDataModel(getMockUsers());
+    MemoryDiffStorage storage = new MemoryDiffStorage(model, Weighting.UNWEIGHTED, false, Long.MAX_VALUE);
+    RunningAverage before = storage.getDiff("1", "2");
+    RunningAverage itemBefore = storage.getAverageItemPref("1");
+    int itemCountBefore = itemBefore.getCount();
+    storage.updateItemPref("test2", "1", 0.3, 0.8);
+    storage.updateItemPref("test4", "1", 0.3, Double.NaN);
+    // What a reader already holds is never changed under it
+    assertEquals(0.23333333333333334, before.getAverage(), EPSILON);
+    assertEquals(3, before.getCount());
+    assertEquals(itemCountBefore, itemBefore.getCount());
+    assertEquals(itemCountBefore - 1, storage.getAverageItemPref("1").getCount());
+    RunningAverage after = storage.getDiff("1", "2");
+    assertEquals(-0.15, after.getAverage(), EPSILON);
+    assertEquals(2, after.getCount());
+  }
+
+  public void testEmptyBuild() throws Exception {
+    // Every diff has a single data point and is pruned
+    DataModel model = getDataModel(getUser("test1", 0.1, 0.2));
+    MemoryDiffStorage storage = new MemoryDiffStorage(model, Weighting.UNWEIGHTED, false, Long.MAX_VALUE, 2);
+    assertNull(storage.getDiff("0", "1"));
+    assertTrue(storage.getRecommendableItems("test1").isEmpty());
+  }
+
+  public void testParallelBuild() throws Exception {
+    Random random = RandomUtils.getRandom();
+    int numItems = 30;
+    // Enough users that they reach the build threads in several batches
+    List<User> users = new ArrayList<User>(2500);
+    for (int i = 0; i < 2500; i++) {
+      Double[] values = new Double[numItems];
+      for (int j = 0; j < numItems; j++) {
+        if (random.nextDouble() < 0.2) {
+          values[j] = random.nextDouble();
+        }
+      }
+      users.add(getUser("test" + i, values));
+    }
+    DataModel model = new GenericDataModel(users);
+    MemoryDiffStorage serial = new MemoryDiffStorage(model, Weighting.WEIGHTED, false, Long.MAX_VALUE);
+    MemoryDiffStorage parallel = new MemoryDiffStorage(model, Weighting.WEIGHTED, false, Long.MAX_VALUE, 4);
+    for (int i = 0; i < numItems; i++) {
+      String itemID1 = String.valueOf(i);
+      assertEquals(serial.getAverageItemPref(itemID1).getAverage(),
+                   parallel.getAverageItemPref(itemID1).getAverage(), EPSILON);
+      for (int j = 0; j < numItems; j++) {
+        String itemID2 = String.valueOf(j);
+        RunningAverage expected = serial.getDiff(itemID1, itemID2);
+        RunningAverage actual = parallel.getDiff(itemID1, itemID2);
+        if (expected == null) {
+          assertNull(actual);
+        } else {
+          assertEquals(expected.getCount(), actual.getCount());
+          assertEquals(expected.getAverage(), actual.getAverage(), EPSILON);
+        }
+      }
+    }
+    Set<Item> expectedItems = serial.getRecommendableItems("test0");
+    Set<Item> actualItems = parallel.getRecommendableItems("test0");
+    assertEquals(expectedItems.size(), actualItems.size());
+    assertTrue(actualItems.containsAll(expectedItems));
+  }
+
 }
@@ -0,0 +1,204 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.recommender.slopeone;
+
+import org.apache.mahout.cf.taste.common.Weighting;
+import org.apache.mahout.cf.taste.impl.TasteTestCase;
+import org.apache.mahout.cf.taste.impl.common.RandomUtils;
+import org.apache.mahout.cf.taste.impl.common.RunningAverage;
+import org.apache.mahout.cf.taste.impl.common.RunningAverageAndStdDev;
+import org.apache.mahout.cf.taste.impl.model.GenericDataModel;
+import org.apache.mahout.cf.taste.model.DataModel;
+import org.apache.mahout.cf.taste.model.Item;
+import org.apache.mahout.cf.taste.model.Preference;
+import org.apache.mahout.cf.taste.model.User;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests {@link PackedDiffStorage}.
+ */
+public final class PackedDiffStorageTest extends TasteTestCase {
+
+  public void testGetDiff() throws Exception {
+    DataModel model = new GenericDataModel(getMockUsers());
+    PackedDiffStorage storage = new PackedDiffStorage(model, Weighting.UNWEIGHTED);
+    RunningAverage average = storage.getDiff("1", "2");
+    assertEquals(0.23333333333333334, average.getAverage(), EPSILON);
+    assertEquals(3, average.getCount());
+    assertEquals(-0.23333333333333334, storage.getDiff("2", "1").getAverage(), EPSILON);
+  }
+
+  public void testGetDiffsPrimitive() throws Exception {
+    DataModel model = new GenericDataModel(getMockUsers());
+    PackedDiffStorage storage = new PackedDiffStorage(model, Weighting.WEIGHTED);
+    Preference[] prefs = model.getUser("test3").getPreferencesAsArray();
+    int[] counts = new int[prefs.length];
+    double[] averages = new double[prefs.length];
+    double[] stdDevs = new double[prefs.length];
+    storage.getDiffs("test3", "2", prefs, counts, averages, stdDevs);
+    for (int i = 0; i < prefs.length; i++) {
+      RunningAverage expected = storage.getDiff(prefs[i].getItem().getID(), "2");
+      if (expected == null) {
+        assertEquals(0, counts[i]);
+      } else {
+        assertEquals(expected.getCount(), counts[i]);
+        assertEquals(expected.getAverage(), averages[i], EPSILON);
+      }
+    }
+  }
+
+  public void testUpdate() throws Exception {
+    DataModel model = new GenericDataModel(getMockUsers());
+    PackedDiffStorage storage = new PackedDiffStorage(model, Weighting.UNWEIGHTED);
+    // test2's preference for item 1 goes from 0.3 to 0.8
+    storage.updateItemPref("test2", "1", 0.3, 0.8);
+    RunningAverage average = storage.getDiff("1", "2");
+    assertEquals(0.06666666666666668, average.getAverage(), EPSILON);
+    assertEquals(3, average.getCount());
+  }
+
+  public void testRemove() throws Exception {
+    DataModel model = new GenericDataModel(getMockUsers());
+    PackedDiffStorage storage = new PackedDiffStorage(model, Weighting.UNWEIGHTED);
+    // test4's preference of 0.3 for item 1 is removed; its diff with item 2 was 0.5
+    storage.updateItemPref("test4", "1", 0.3, Double.NaN);
+    RunningAverage average = storage.getDiff("1", "2");
+    assertEquals(0.1, average.getAverage(), EPSILON);
+    assertEquals(2, average.getCount());
+  }
+
+  public void testItemAddedDuringBuild() throws Exception {
+    final DataModel delegate = getDataModel(getUser("test1", 0.1, 0.2, 0.3), getUser("test2", 0.2, 0.4, 0.5));
+    // Item 2 first shows up in the users, as if added after the items were read
+    DataModel model = (DataModel) Proxy.newProxyInstance(DataModel.class.getClassLoader(),
+                                                         new Class<?>[] {DataModel.class},
+                                                         new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if ("getItems".equals(method.getName())) {
+          List<Item> items = new ArrayList<Item>();
+          for (Item item : delegate.getItems()) {
+            if (!"2".equals(item.getID())) {
+              items.add(item);
+            }
+          }
+          return items;
+        }
+        if ("getNumItems".equals(method.getName())) {
+          return delegate.getNumItems() - 1;
+        }
+        try {
+          return method.invoke(delegate, args);
+        } catch (InvocationTargetException ite) {
+          throw ite.getCause();
+        }
+      }
+    });
+    PackedDiffStorage storage = new PackedDiffStorage(model, Weighting.UNWEIGHTED);
+    RunningAverage average = storage.getDiff("0", "1");
+    assertEquals(2, average.getCount());
+    assertEquals(0.15, average.getAverage(), EPSILON);
+    assertNull(storage.getDiff("0", "2"));
+    assertNull(storage.getAverageItemPref("2"));
+  }
+
+  public void testReadersSeeConsistentDiffs() throws Exception {
+    DataModel model = getDataModel(getUser("test1", 0.1, 0.2), getUser("test2", 0.3, 0.7));
+    final PackedDiffStorage storage = new PackedDiffStorage(model, Weighting.UNWEIGHTED);
+    final AtomicBoolean done = new AtomicBoolean();
+    final AtomicReference<String> failure = new AtomicReference<String>();
+    Thread reader = new Thread() {
+      @Override
+      public void run() {
+        while (!done.get()) {
+          // test1's diff of 0.1 comes and goes; test2's diff of 0.4 stays
+          RunningAverage average = storage.getDiff("0", "1");
+          double expected = average.getCount() == 2 ? 0.25 : 0.4;
+          if (Math.abs(average.getAverage() - expected) > EPSILON) {
+            failure.set("saw count " + average.getCount() + ", average " + average.getAverage());
+          }
+        }
+      }
+    };
+    reader.start();
+    try {
+      for (int i = 0; i < 20000; i++) {
+        if ((i & 1) == 0) {
+          storage.updateItemPref("test1", "1", 0.2, Double.NaN);
+        } else {
+          storage.updateItemPref("test1", "1", Double.NaN, 0.2);
+        }
+      }
+    } finally {
+      done.set(true);
+      reader.join();
+    }
+    assertNull(failure.get());
+  }
+
+  public void testSameAsMemoryDiffStorage() throws Exception {
+    Random random = RandomUtils.getRandom();
+    int numItems = 30;
+    List<User> users = new ArrayList<User>(200);
+    for (int i = 0; i < 200; i++) {
+      Double[] values = new Double[numItems];
+      for (int j = 0; j < numItems; j++) {
+        if (random.nextDouble() < 0.2) {
+          values[j] = random.nextDouble();
+        }
+      }
+      users.add(getUser("test" + i, values));
+    }
+    DataModel model = new GenericDataModel(users);
+    MemoryDiffStorage expected = new MemoryDiffStorage(model, Weighting.WEIGHTED, false, Long.MAX_VALUE);
+    PackedDiffStorage actual = new PackedDiffStorage(model, Weighting.WEIGHTED);
+    for (int i = 0; i < numItems; i++) {
+      String itemID1 = String.valueOf(i);
+      assertEquals(expected.getAverageItemPref(itemID1).getAverage(),
+                   actual.getAverageItemPref(itemID1).getAverage(), EPSILON);
+      for (int j = 0; j < numItems; j++) {
+        String itemID2 = String.valueOf(j);
+        RunningAverage expectedDiff = expected.getDiff(itemID1, itemID2);
+        RunningAverage actualDiff = actual.getDiff(itemID1, itemID2);
+        if (expectedDiff == null) {
+          assertNull(actualDiff);
+        } else {
+          assertEquals(expectedDiff.getCount(), actualDiff.getCount());
+          assertEquals(expectedDiff.getAverage(), actualDiff.getAverage(), EPSILON);
+          assertEquals(((RunningAverageAndStdDev) expectedDiff).getStandardDeviation(),
+                       ((RunningAverageAndStdDev) actualDiff).getStandardDeviation(), EPSILON);
+        }
+      }
+    }
+    Set<Item> expectedItems = expected.getRecommendableItems("test0");
+    Set<Item> actualItems = actual.getRecommendableItems("test0");
+    assertEquals(expectedItems.size(), actualItems.size());
+    assertTrue(actualItems.containsAll(expectedItems));
+  }
+
+}
@@ -18,7 +18,9 @@
 package org.apache.mahout.cf.taste.impl.recommender.slopeone;
 
 import org.apache.mahout.cf.taste.common.TasteException;
+import org.apache.mahout.cf.taste.common.Weighting;
 import org.apache.mahout.cf.taste.impl.TasteTestCase;
+import org.apache.mahout.cf.taste.impl.model.ConcurrentDataModel;
 import org.apache.mahout.cf.taste.impl.model.GenericDataModel;
 import org.apache.mahout.cf.taste.impl.model.GenericItem;
 import org.apache.mahout.cf.taste.impl.recommender.ReversingRescorer;
@@ -30,6 +32,7 @@ import org.apache.mahout.cf.taste.recommender.Recommender;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * <p>Tests {@link SlopeOneRecommender}.</p>
@@ -117,6 +120,38 @@ public final class SlopeOneRecommenderTest extends TasteTestCase {
     assertEquals(0.6, recommender.estimatePreference("test1", "2"), EPSILON);
   }
 
+  public void testUpdateDuringRebuildCountedOnce() throws Exception {
+    ConcurrentDataModel dataModel = new ConcurrentDataModel(new GenericDataModel(getMockUsers()));
+    MemoryDiffStorage storage = new MemoryDiffStorage(dataModel, Weighting.UNWEIGHTED, false, Long.MAX_VALUE);
+    final Recommender recommender =
+        new SlopeOneRecommender(dataModel, Weighting.UNWEIGHTED, Weighting.UNWEIGHTED, storage);
+    final AtomicReference<TasteException> failure = new AtomicReference<TasteException>();
+    Thread writer = new Thread() {
+      @Override
+      public void run() {
+        try {
+          recommender.setPreference("test1", "2", 0.9);
+        } catch (TasteException te) {
+          failure.set(te);
+        }
+      }
+    };
+    storage.getUpdateLock().lock();
+    try {
+      writer.start();
+      writer.join(100L);
+      // The writer must not change the model while a rebuild may be reading it
+      assertNull(dataModel.getUser("test1").getPreferenceFor("2"));
+      storage.refresh(null);
+    } finally {
+      storage.getUpdateLock().unlock();
+    }
+    writer.join();
+    assertNull(failure.get());
+    assertEquals(4, storage.getDiff("1", "2").getCount());
+    assertEquals(0.325, storage.getDiff("1", "2").getAverage(), EPSILON);
+  }
+
   private static Recommender buildRecommender() throws TasteException {
     DataModel dataModel = new GenericDataModel(getMockUsers());
     return new SlopeOneRecommender(dataModel);
@@ -17,13 +17,17 @@
 package org.apache.mahout.cf.taste.impl.similarity;
 
 import org.apache.mahout.cf.taste.similarity.ItemSimilarity;
+import org.apache.mahout.cf.taste.impl.common.RandomUtils;
 import org.apache.mahout.cf.taste.impl.model.GenericItem;
 import org.apache.mahout.cf.taste.model.DataModel;
 import org.apache.mahout.cf.taste.model.Item;
 import org.apache.mahout.cf.taste.model.User;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
 /**
  * <p>Tests {@link GenericItemSimilarity}.</p>
@@ -49,6 +53,44 @@ public final class GenericItemSimilarityTest extends SimilarityTestCase {
     assertTrue(Double.isNaN(itemCorrelation.itemSimilarity(item3, item4)));
   }
 
+  public void testManyPairs() {
+    Random random = RandomUtils.getRandom();
+    Item[] items = new Item[200];
+    for (int i = 0; i < items.length; i++) {
+      items[i] = new GenericItem<String>(String.valueOf(i));
+    }
+    List<GenericItemSimilarity.ItemItemSimilarity> similarities =
+        new ArrayList<GenericItemSimilarity.ItemItemSimilarity>();
+    Map<String, Double> expected = new HashMap<String, Double>();
+    for (int n = 0; n < 5000; n++) {
+      int i = random.nextInt(items.length);
+      int j = random.nextInt(items.length);
+      if (i != j) {
+        double value = 2.0 * random.nextDouble() - 1.0;
+        similarities.add(new GenericItemSimilarity.ItemItemSimilarity(items[i], items[j], value));
+        // the later of two similarities for a pair, in either order, wins
+        expected.put(Math.min(i, j) + "," + Math.max(i, j), value);
+      }
+    }
+    GenericItemSimilarity itemSimilarity = new GenericItemSimilarity(similarities);
+    for (int i = 0; i < items.length; i++) {
+      for (int j = 0; j < items.length; j++) {
+        double actual = itemSimilarity.itemSimilarity(items[i], items[j]);
+        if (i == j) {
+          assertEquals(1.0, actual);
+        } else {
+          Double value = expected.get(Math.min(i, j) + "," + Math.max(i, j));
+          if (value == null) {
+            assertTrue(Double.isNaN(actual));
+          } else {
+            assertEquals(value, actual);
+          }
+        }
+      }
+    }
+    assertTrue(Double.isNaN(itemSimilarity.itemSimilarity(items[0], new GenericItem<String>("unknown"))));
+  }
+
   public void testFromCorrelation() throws Exception {
     User user1 = getUser("test1", 1.0, 2.0);
     User user2 = getUser("test2", 2.0, 5.0);
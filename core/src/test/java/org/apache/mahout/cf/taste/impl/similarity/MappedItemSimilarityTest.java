@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.similarity;
+
+import org.apache.mahout.cf.taste.impl.model.GenericItem;
+import org.apache.mahout.cf.taste.model.DataModel;
+import org.apache.mahout.cf.taste.model.Item;
+import org.apache.mahout.cf.taste.similarity.ItemSimilarity;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Tests {@link MappedItemSimilarity} and {@link ItemSimilarityIndexBuilder}.</p>
+ */
+public final class MappedItemSimilarityTest extends SimilarityTestCase {
+
+  private File indexFile;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    indexFile = File.createTempFile("similarityIndex", ".bin");
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    indexFile.delete();
+    super.tearDown();
+  }
+
+  public void testAllNeighbors() throws Exception {
+    DataModel dataModel = buildDataModel();
+    ItemSimilarity pearson = new PearsonCorrelationSimilarity(dataModel);
+    new ItemSimilarityIndexBuilder(dataModel, pearson, 10, 2).build(indexFile);
+    ItemSimilarity mapped = new MappedItemSimilarity(indexFile);
+    List<Item> items = getItems(dataModel);
+    for (Item item1 : items) {
+      for (Item item2 : items) {
+        double expected = item1.equals(item2) ? 1.0 : pearson.itemSimilarity(item1, item2);
+        double actual = mapped.itemSimilarity(item1, item2);
+        if (Double.isNaN(expected)) {
+          assertTrue(Double.isNaN(actual));
+        } else {
+          assertEquals(expected, actual, EPSILON);
+        }
+      }
+    }
+  }
+
+  public void testTopNeighborsOnly() throws Exception {
+    DataModel dataModel = buildDataModel();
+    ItemSimilarity pearson = new PearsonCorrelationSimilarity(dataModel);
+    new ItemSimilarityIndexBuilder(dataModel, pearson, 1, 3).build(indexFile);
+    ItemSimilarity mapped = new MappedItemSimilarity(indexFile);
+    List<Item> items = getItems(dataModel);
+    for (Item item1 : items) {
+      int known = 0;
+      for (Item item2 : items) {
+        if (!item1.equals(item2)) {
+          double actual = mapped.itemSimilarity(item1, item2);
+          if (!Double.isNaN(actual)) {
+            assertEquals(pearson.itemSimilarity(item1, item2), actual, EPSILON);
+            known++;
+          }
+        }
+      }
+      // Its own top neighbor, plus any items which have it as their top neighbor
+      assertTrue(known >= 1);
+    }
+  }
+
+  public void testUnknownItem() throws Exception {
+    DataModel dataModel = buildDataModel();
+    new ItemSimilarityIndexBuilder(dataModel, new PearsonCorrelationSimilarity(dataModel), 10, 1).build(indexFile);
+    MappedItemSimilarity mapped = new MappedItemSimilarity(indexFile);
+    assertEquals(5, mapped.getNumItems());
+    assertTrue(Double.isNaN(mapped.itemSimilarity(dataModel.getItem("0"),
+                                                  new GenericItem<String>("x"))));
+  }
+
+  public void testCorruptFile() throws Exception {
+    FileOutputStream out = new FileOutputStream(indexFile);
+    try {
+      out.write(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16});
+    } finally {
+      out.close();
+    }
+    try {
+      new MappedItemSimilarity(indexFile);
+      fail("Should have thrown IOException");
+    } catch (IOException ioe) {
+      // good
+    }
+  }
+
+  private static DataModel buildDataModel() {
+    return getDataModel(getUser("test1", 0.1, 0.3, 0.9, 0.8, 0.2),
+                        getUser("test2", 0.2, 0.3, 0.3, 0.4, 0.9),
+                        getUser("test3", 0.4, 0.3, 0.5, 0.1, 0.1),
+                        getUser("test4", 0.7, 0.3, 0.8, 0.5, 0.6),
+                        getUser("test5", 0.5, 0.9, 0.1, 0.3, 0.7));
+  }
+
+  private static List<Item> getItems(DataModel dataModel) throws Exception {
+    List<Item> items = new ArrayList<Item>();
+    for (Item item : dataModel.getItems()) {
+      items.add(item);
+    }
+    return items;
+  }
+
+}
@@ -29,6 +29,7 @@ import org.apache.hadoop.mapred.lib.IdentityReducer;
 import org.apache.mahout.matrix.AbstractVector;
 import org.apache.mahout.matrix.SparseVector;
 import org.apache.mahout.matrix.Vector;
+import org.apache.mahout.matrix.VectorWritable;
 import org.apache.mahout.utils.DistanceMeasure;
 import org.apache.mahout.utils.DummyOutputCollector;
 import org.apache.mahout.utils.EuclideanDistanceMeasure;
@@ -80,10 +81,10 @@ public class TestCanopyCreation extends TestCase {
     return points;
   }
 
-  private static List<Text> getFormattedPoints(List<Vector> points) {
-    List<Text> result = new ArrayList<Text>();
+  private static List<VectorWritable> getFormattedPoints(List<Vector> points) {
+    List<VectorWritable> result = new ArrayList<VectorWritable>();
     for (Vector point : points) {
-      result.add(new Text(point.asFormatString()));
+      result.add(new VectorWritable(point));
     }
     return result;
   }
@@ -348,7 +349,7 @@ public class TestCanopyCreation extends TestCase {
   public void testCanopyMapperManhattan() throws Exception {
     CanopyMapper mapper = new CanopyMapper();
     CanopyCombiner combiner = new CanopyCombiner();
-    DummyOutputCollector<Text,Text> collector = new DummyOutputCollector<Text,Text>();
+    DummyOutputCollector<Text,VectorWritable> collector = new DummyOutputCollector<Text,VectorWritable>();
     Canopy.config(manhattanDistanceMeasure, (3.1), (2.1));
     List<Vector> points = getPoints(raw);
     // map the data
@@ -357,13 +358,13 @@ public class TestCanopyCreation extends TestCase {
     assertEquals("Number of map results", 3, collector.getData().size());
     // now combine the mapper output
     Canopy.config(manhattanDistanceMeasure, (3.1), (2.1));
-    Map<String, List<Text>> mapData = collector.getData();
-    collector = new DummyOutputCollector<Text,Text>();
-    for (Map.Entry<String, List<Text>> stringListEntry : mapData.entrySet())
+    Map<String, List<VectorWritable>> mapData = collector.getData();
+    collector = new DummyOutputCollector<Text,VectorWritable>();
+    for (Map.Entry<String, List<VectorWritable>> stringListEntry : mapData.entrySet())
       combiner.reduce(new Text(stringListEntry.getKey()), stringListEntry.getValue().iterator(), collector,
           null);
     // now verify the output
-    List<Text> data = collector.getValue("centroid");
+    List<VectorWritable> data = collector.getValue("centroid");
     assertEquals("Number of centroids", 3, data.size());
     for (int i = 0; i < data.size(); i++)
       assertEquals("Centroid error",
@@ -381,7 +382,7 @@ public class TestCanopyCreation extends TestCase {
   public void testCanopyMapperEuclidean() throws Exception {
     CanopyMapper mapper = new CanopyMapper();
     CanopyCombiner combiner = new CanopyCombiner();
-    DummyOutputCollector<Text,Text> collector = new DummyOutputCollector<Text,Text>();
+    DummyOutputCollector<Text,VectorWritable> collector = new DummyOutputCollector<Text,VectorWritable>();
     Canopy.config(euclideanDistanceMeasure, (3.1), (2.1));
     List<Vector> points = getPoints(raw);
     // map the data
@@ -390,13 +391,13 @@ public class TestCanopyCreation extends TestCase {
     assertEquals("Number of map results", 3, collector.getData().size());
     // now combine the mapper output
     Canopy.config(euclideanDistanceMeasure, (3.1), (2.1));
-    Map<String, List<Text>> mapData = collector.getData();
-    collector = new DummyOutputCollector<Text,Text>();
-    for (Map.Entry<String, List<Text>> stringListEntry : mapData.entrySet())
+    Map<String, List<VectorWritable>> mapData = collector.getData();
+    collector = new DummyOutputCollector<Text,VectorWritable>();
+    for (Map.Entry<String, List<VectorWritable>> stringListEntry : mapData.entrySet())
       combiner.reduce(new Text(stringListEntry.getKey()), stringListEntry.getValue().iterator(), collector,
           null);
     // now verify the output
-    List<Text> data = collector.getValue("centroid");
+    List<VectorWritable> data = collector.getValue("centroid");
     assertEquals("Number of centroids", 3, data.size());
     for (int i = 0; i < data.size(); i++)
       assertEquals("Centroid error",
@@ -416,7 +417,7 @@ public class TestCanopyCreation extends TestCase {
     DummyOutputCollector<Text,Text> collector = new DummyOutputCollector<Text,Text>();
     Canopy.config(manhattanDistanceMeasure, (3.1), (2.1));
     List<Vector> points = getPoints(raw);
-    List<Text> texts = getFormattedPoints(points);
+    List<VectorWritable> texts = getFormattedPoints(points);
     reducer.reduce(new Text("centroid"), texts.iterator(), collector, null);
     reducer.close();
     Set<String> keys = collector.getKeys();
@@ -443,7 +444,7 @@ public class TestCanopyCreation extends TestCase {
     DummyOutputCollector<Text,Text> collector = new DummyOutputCollector<Text,Text>();
     Canopy.config(euclideanDistanceMeasure, (3.1), (2.1));
     List<Vector> points = getPoints(raw);
-    List<Text> texts = getFormattedPoints(points);
+    List<VectorWritable> texts = getFormattedPoints(points);
     reducer.reduce(new Text("centroid"), texts.iterator(), collector, null);
     reducer.close();
     Set<String> keys = collector.getKeys();
@@ -540,7 +541,7 @@ public class TestCanopyCreation extends TestCase {
     Canopy.config(manhattanDistanceMeasure, (3.1), (2.1));
     ClusterMapper mapper = new ClusterMapper();
     List<Canopy> canopies = new ArrayList<Canopy>();
-    DummyOutputCollector<Text,Text> collector = new DummyOutputCollector<Text,Text>();
+    DummyOutputCollector<Text,Writable> collector = new DummyOutputCollector<Text,Writable>();
     for (Vector centroid : manhattanCentroids)
       canopies.add(new Canopy(centroid));
     mapper.config(canopies);
@@ -548,11 +549,11 @@ public class TestCanopyCreation extends TestCase {
     // map the data
     for (Vector point : points)
       mapper.map(new Text(), new Text(point.asFormatString()), collector, null);
-    Map<String, List<Text>> data = collector.getData();
+    Map<String, List<Writable>> data = collector.getData();
     assertEquals("Number of map results", canopies.size(), data.size());
-    for (Map.Entry<String, List<Text>> stringListEntry : data.entrySet()) {
+    for (Map.Entry<String, List<Writable>> stringListEntry : data.entrySet()) {
       Canopy canopy = Canopy.decodeCanopy(stringListEntry.getKey());
-      List<Text> pts = stringListEntry.getValue();
+      List<Writable> pts = stringListEntry.getValue();
       for (Writable ptDef : pts)
         assertTrue("Point not in canopy", canopy.covers(AbstractVector.decodeVector(ptDef
             .toString())));
@@ -569,7 +570,7 @@ public class TestCanopyCreation extends TestCase {
     Canopy.config(euclideanDistanceMeasure, (3.1), (2.1));
     ClusterMapper mapper = new ClusterMapper();
     List<Canopy> canopies = new ArrayList<Canopy>();
-    DummyOutputCollector<Text,Text> collector = new DummyOutputCollector<Text,Text>();
+    DummyOutputCollector<Text,Writable> collector = new DummyOutputCollector<Text,Writable>();
     for (Vector centroid : euclideanCentroids)
       canopies.add(new Canopy(centroid));
     mapper.config(canopies);
@@ -577,11 +578,11 @@ public class TestCanopyCreation extends TestCase {
     // map the data
     for (Vector point : points)
       mapper.map(new Text(), new Text(point.asFormatString()), collector, null);
-    Map<String, List<Text>> data = collector.getData();
+    Map<String, List<Writable>> data = collector.getData();
     assertEquals("Number of map results", canopies.size(), data.size());
-    for (Map.Entry<String, List<Text>> stringListEntry : data.entrySet()) {
+    for (Map.Entry<String, List<Writable>> stringListEntry : data.entrySet()) {
       Canopy canopy = Canopy.decodeCanopy(stringListEntry.getKey());
-      List<Text> pts = stringListEntry.getValue();
+      List<Writable> pts = stringListEntry.getValue();
       for (Writable ptDef : pts)
         assertTrue("Point not in canopy", canopy.covers(AbstractVector.decodeVector(ptDef
             .toString())));
@@ -598,7 +599,7 @@ public class TestCanopyCreation extends TestCase {
     Canopy.config(manhattanDistanceMeasure, (3.1), (2.1));
     ClusterMapper mapper = new ClusterMapper();
     List<Canopy> canopies = new ArrayList<Canopy>();
-    DummyOutputCollector<Text,Text> collector = new DummyOutputCollector<Text,Text>();
+    DummyOutputCollector<Text,Writable> collector = new DummyOutputCollector<Text,Writable>();
     for (Vector centroid : manhattanCentroids)
       canopies.add(new Canopy(centroid));
     mapper.config(canopies);
@@ -606,20 +607,20 @@ public class TestCanopyCreation extends TestCase {
     // map the data
     for (Vector point : points)
       mapper.map(new Text(), new Text(point.asFormatString()), collector, null);
-    Map<String, List<Text>> data = collector.getData();
+    Map<String, List<Writable>> data = collector.getData();
     assertEquals("Number of map results", canopies.size(), data.size());
 
     // reduce the data
-    Reducer<Text, Text, Text, Text> reducer = new IdentityReducer<Text, Text>();
-    collector = new DummyOutputCollector<Text,Text>();
-    for (Map.Entry<String, List<Text>> stringListEntry : data.entrySet())
+    Reducer<Text, Writable, Text, Writable> reducer = new IdentityReducer<Text, Writable>();
+    collector = new DummyOutputCollector<Text,Writable>();
+    for (Map.Entry<String, List<Writable>> stringListEntry : data.entrySet())
       reducer.reduce(new Text(stringListEntry.getKey()), stringListEntry.getValue().iterator(), collector, null);
 
     // check the output
     data = collector.getData();
-    for (Map.Entry<String, List<Text>> stringListEntry : data.entrySet()) {
+    for (Map.Entry<String, List<Writable>> stringListEntry : data.entrySet()) {
       Canopy canopy = Canopy.decodeCanopy(stringListEntry.getKey());
-      List<Text> pts = stringListEntry.getValue();
+      List<Writable> pts = stringListEntry.getValue();
       for (Writable ptDef : pts)
         assertTrue("Point not in canopy", canopy.covers(AbstractVector.decodeVector(ptDef
             .toString())));
@@ -636,7 +637,7 @@ public class TestCanopyCreation extends TestCase {
     Canopy.config(euclideanDistanceMeasure, (3.1), (2.1));
     ClusterMapper mapper = new ClusterMapper();
     List<Canopy> canopies = new ArrayList<Canopy>();
-    DummyOutputCollector<Text,Text> collector = new DummyOutputCollector<Text,Text>();
+    DummyOutputCollector<Text,Writable> collector = new DummyOutputCollector<Text,Writable>();
     for (Vector centroid : euclideanCentroids)
       canopies.add(new Canopy(centroid));
     mapper.config(canopies);
@@ -644,20 +645,20 @@ public class TestCanopyCreation extends TestCase {
     // map the data
     for (Vector point : points)
       mapper.map(new Text(), new Text(point.asFormatString()), collector, null);
-    Map<String, List<Text>> data = collector.getData();
+    Map<String, List<Writable>> data = collector.getData();
 
     // reduce the data
-    Reducer<Text, Text, Text, Text> reducer = new IdentityReducer<Text, Text>();
-    collector = new DummyOutputCollector<Text,Text>();
-    for (Map.Entry<String, List<Text>> stringListEntry : data.entrySet())
+    Reducer<Text, Writable, Text, Writable> reducer = new IdentityReducer<Text, Writable>();
+    collector = new DummyOutputCollector<Text,Writable>();
+    for (Map.Entry<String, List<Writable>> stringListEntry : data.entrySet())
       reducer.reduce(new Text(stringListEntry.getKey()), stringListEntry.getValue().iterator(), collector, null);
 
     // check the output
     data = collector.getData();
     assertEquals("Number of map results", canopies.size(), data.size());
-    for (Map.Entry<String, List<Text>> stringListEntry : data.entrySet()) {
+    for (Map.Entry<String, List<Writable>> stringListEntry : data.entrySet()) {
       Canopy canopy = Canopy.decodeCanopy(stringListEntry.getKey());
-      List<Text> pts = stringListEntry.getValue();
+      List<Writable> pts = stringListEntry.getValue();
       for (Writable ptDef : pts)
         assertTrue("Point not in canopy", canopy.covers(AbstractVector.decodeVector(ptDef
             .toString())));
@@ -40,6 +40,7 @@ import org.apache.mahout.clustering.dirichlet.models.SampledNormalModel;
 import org.apache.mahout.clustering.kmeans.KMeansDriver;
 import org.apache.mahout.matrix.DenseVector;
 import org.apache.mahout.matrix.Vector;
+import org.apache.mahout.matrix.VectorWritable;
 import org.apache.mahout.utils.DummyOutputCollector;
 
 import com.google.gson.Gson;
@@ -98,10 +99,10 @@ public class TestMapReduce extends TestCase {
     DirichletMapper mapper = new DirichletMapper();
     mapper.configure(state);
 
-    DummyOutputCollector<Text, Text> collector = new DummyOutputCollector<Text, Text>();
+    DummyOutputCollector<Text, VectorWritable> collector = new DummyOutputCollector<Text, VectorWritable>();
     for (Vector v : sampleData)
-      mapper.map(null, new Text(v.asFormatString()), collector, null);
-    Map<String, List<Text>> data = collector.getData();
+      mapper.map(null, new VectorWritable(v), collector, null);
+    Map<String, List<VectorWritable>> data = collector.getData();
     // this seed happens to produce two partitions, but they work
     assertEquals("output size", 3, data.size());
   }
@@ -120,10 +121,10 @@ public class TestMapReduce extends TestCase {
     DirichletMapper mapper = new DirichletMapper();
     mapper.configure(state);
 
-    DummyOutputCollector<Text, Text> mapCollector = new DummyOutputCollector<Text, Text>();
+    DummyOutputCollector<Text, VectorWritable> mapCollector = new DummyOutputCollector<Text, VectorWritable>();
     for (Vector v : sampleData)
-      mapper.map(null, new Text(v.asFormatString()), mapCollector, null);
-    Map<String, List<Text>> data = mapCollector.getData();
+      mapper.map(null, new VectorWritable(v), mapCollector, null);
+    Map<String, List<VectorWritable>> data = mapCollector.getData();
     // this seed happens to produce three partitions, but they work
     assertEquals("output size", 7, data.size());
 
@@ -170,9 +171,9 @@ public class TestMapReduce extends TestCase {
     for (int iteration = 0; iteration < 10; iteration++) {
       DirichletMapper mapper = new DirichletMapper();
       mapper.configure(state);
-      DummyOutputCollector<Text, Text> mapCollector = new DummyOutputCollector<Text, Text>();
+      DummyOutputCollector<Text, VectorWritable> mapCollector = new DummyOutputCollector<Text, VectorWritable>();
       for (Vector v : sampleData)
-        mapper.map(null, new Text(v.asFormatString()), mapCollector, null);
+        mapper.map(null, new VectorWritable(v), mapCollector, null);
 
       DirichletReducer reducer = new DirichletReducer();
       reducer.configure(state);
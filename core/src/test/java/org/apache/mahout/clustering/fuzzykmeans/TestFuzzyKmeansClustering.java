@@ -35,6 +35,7 @@ import junit.framework.TestCase;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.mahout.clustering.kmeans.TestKmeansClustering;
 import org.apache.mahout.matrix.Vector;
@@ -309,7 +310,7 @@ public class TestFuzzyKmeansClustering extends TestCase {
       FuzzyKMeansMapper mapper = new FuzzyKMeansMapper();
       mapper.config(clusterList);
 
-      DummyOutputCollector<Text, Text> mapCollector = new DummyOutputCollector<Text, Text>();
+      DummyOutputCollector<Text, FuzzyKMeansInfo> mapCollector = new DummyOutputCollector<Text, FuzzyKMeansInfo>();
       for (Vector point : points) {
         mapper.map(new Text(), new Text(point.asFormatString()), mapCollector,
             null);
@@ -322,15 +323,13 @@ public class TestFuzzyKmeansClustering extends TestCase {
 
       for (String key : mapCollector.getKeys()) {
         // SoftCluster cluster = SoftCluster.decodeCluster(key);
-        List<Text> values = mapCollector.getValue(key);
+        List<FuzzyKMeansInfo> values = mapCollector.getValue(key);
 
-        for (Text value : values) {
-          String pointInfo = value.toString();
-          double pointProb = Double.parseDouble(pointInfo.substring(0,
-              pointInfo.indexOf(FuzzyKMeansDriver.MAPPER_VALUE_SEPARATOR)));
+        for (FuzzyKMeansInfo value : values) {
+          assertFalse("combined", value.isCombined());
+          double pointProb = value.getProbability();
 
-          String encodedVector = pointInfo.substring(pointInfo
-              .indexOf(FuzzyKMeansDriver.MAPPER_VALUE_SEPARATOR) + 1);
+          String encodedVector = value.getPointTotal().asFormatString();
 
           Double val = pointTotalProbMap.get(encodedVector);
           double probVal = 0.0;
@@ -375,19 +374,19 @@ public class TestFuzzyKmeansClustering extends TestCase {
       FuzzyKMeansMapper mapper = new FuzzyKMeansMapper();
       mapper.config(clusterList);
 
-      DummyOutputCollector<Text, Text> mapCollector = new DummyOutputCollector<Text, Text>();
+      DummyOutputCollector<Text, FuzzyKMeansInfo> mapCollector = new DummyOutputCollector<Text, FuzzyKMeansInfo>();
       for (Vector point : points) {
         mapper.map(new Text(), new Text(point.asFormatString()), mapCollector,
             null);
       }
 
       // run combiner
-      DummyOutputCollector<Text, Text> combinerCollector = new DummyOutputCollector<Text, Text>();
+      DummyOutputCollector<Text, FuzzyKMeansInfo> combinerCollector = new DummyOutputCollector<Text, FuzzyKMeansInfo>();
       FuzzyKMeansCombiner combiner = new FuzzyKMeansCombiner();
 
       for (String key : mapCollector.getKeys()) {
 
-        List<Text> values = mapCollector.getValue(key);
+        List<FuzzyKMeansInfo> values = mapCollector.getValue(key);
         combiner.reduce(new Text(key), values.iterator(), combinerCollector,
             null);
       }
@@ -396,8 +395,9 @@ public class TestFuzzyKmeansClustering extends TestCase {
       assertEquals("Combiner Output", k + 1, combinerCollector.getData().size());
 
       for (String key : combinerCollector.getKeys()) {
-        List<Text> values = combinerCollector.getValue(key);
+        List<FuzzyKMeansInfo> values = combinerCollector.getValue(key);
         assertEquals("too many values", 1, values.size());
+        assertTrue("combined", values.get(0).isCombined());
       }
     }
   }
@@ -426,19 +426,19 @@ public class TestFuzzyKmeansClustering extends TestCase {
       FuzzyKMeansMapper mapper = new FuzzyKMeansMapper();
       mapper.config(clusterList);
 
-      DummyOutputCollector<Text, Text> mapCollector = new DummyOutputCollector<Text, Text>();
+      DummyOutputCollector<Text, FuzzyKMeansInfo> mapCollector = new DummyOutputCollector<Text, FuzzyKMeansInfo>();
       for (Vector point : points) {
         mapper.map(new Text(), new Text(point.asFormatString()), mapCollector,
             null);
       }
 
       // run combiner
-      DummyOutputCollector<Text, Text> combinerCollector = new DummyOutputCollector<Text, Text>();
+      DummyOutputCollector<Text, FuzzyKMeansInfo> combinerCollector = new DummyOutputCollector<Text, FuzzyKMeansInfo>();
       FuzzyKMeansCombiner combiner = new FuzzyKMeansCombiner();
 
       for (String key : mapCollector.getKeys()) {
 
-        List<Text> values = mapCollector.getValue(key);
+        List<FuzzyKMeansInfo> values = mapCollector.getValue(key);
         combiner.reduce(new Text(key), values.iterator(), combinerCollector,
             null);
       }
@@ -449,7 +449,7 @@ public class TestFuzzyKmeansClustering extends TestCase {
       reducer.config(clusterList);
 
       for (String key : combinerCollector.getKeys()) {
-        List<Text> values = combinerCollector.getValue(key);
+        List<FuzzyKMeansInfo> values = combinerCollector.getValue(key);
         reducer
             .reduce(new Text(key), values.iterator(), reducerCollector, null);
       }
@@ -503,19 +503,19 @@ public class TestFuzzyKmeansClustering extends TestCase {
       FuzzyKMeansMapper mapper = new FuzzyKMeansMapper();
       mapper.config(clusterList);
 
-      DummyOutputCollector<Text, Text> mapCollector = new DummyOutputCollector<Text, Text>();
+      DummyOutputCollector<Text, FuzzyKMeansInfo> mapCollector = new DummyOutputCollector<Text, FuzzyKMeansInfo>();
       for (Vector point : points) {
         mapper.map(new Text(), new Text(point.asFormatString()), mapCollector,
             null);
       }
 
       // run combiner
-      DummyOutputCollector<Text, Text> combinerCollector = new DummyOutputCollector<Text, Text>();
+      DummyOutputCollector<Text, FuzzyKMeansInfo> combinerCollector = new DummyOutputCollector<Text, FuzzyKMeansInfo>();
       FuzzyKMeansCombiner combiner = new FuzzyKMeansCombiner();
 
       for (String key : mapCollector.getKeys()) {
 
-        List<Text> values = mapCollector.getValue(key);
+        List<FuzzyKMeansInfo> values = mapCollector.getValue(key);
         combiner.reduce(new Text(key), values.iterator(), combinerCollector,
             null);
       }
@@ -526,7 +526,7 @@ public class TestFuzzyKmeansClustering extends TestCase {
       reducer.config(clusterList);
 
       for (String key : combinerCollector.getKeys()) {
-        List<Text> values = combinerCollector.getValue(key);
+        List<FuzzyKMeansInfo> values = combinerCollector.getValue(key);
         reducer
             .reduce(new Text(key), values.iterator(), reducerCollector, null);
       }
@@ -539,7 +539,7 @@ public class TestFuzzyKmeansClustering extends TestCase {
         reducerCluster.add(SoftCluster.decodeCluster(values.get(0).toString()));
       }
 
-      DummyOutputCollector<Text, Text> clusterMapperCollector = new DummyOutputCollector<Text, Text>();
+      DummyOutputCollector<Writable, Text> clusterMapperCollector = new DummyOutputCollector<Writable, Text>();
       FuzzyKMeansClusterMapper clusterMapper = new FuzzyKMeansClusterMapper();
       clusterMapper.config(reducerCluster);
       for (Vector point : points) {
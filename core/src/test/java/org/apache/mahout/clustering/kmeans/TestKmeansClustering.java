@@ -30,10 +30,12 @@ import org.apache.mahout.matrix.AbstractVector;
 import org.apache.mahout.matrix.DenseVector;
 import org.apache.mahout.matrix.SparseVector;
 import org.apache.mahout.matrix.Vector;
+import org.apache.mahout.matrix.VectorWritable;
 import org.apache.mahout.utils.DistanceMeasure;
 import org.apache.mahout.utils.DummyOutputCollector;
 import org.apache.mahout.utils.EuclideanDistanceMeasure;
 import org.apache.mahout.utils.ManhattanDistanceMeasure;
+import org.apache.mahout.utils.TextToVectorWritableDriver;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
@@ -196,7 +198,7 @@ public class TestKmeansClustering extends TestCase {
     List<Vector> points = getPoints(reference);
     for (int k = 0; k < points.size(); k++) {
       // pick k initial cluster centers at random
-      DummyOutputCollector<Text, Text> collector = new DummyOutputCollector<Text, Text>();
+      DummyOutputCollector<Text, KMeansInfo> collector = new DummyOutputCollector<Text, KMeansInfo>();
       List<Cluster> clusters = new ArrayList<Cluster>();
 
       for (int i = 0; i < k + 1; i++) {
@@ -217,11 +219,10 @@ public class TestKmeansClustering extends TestCase {
       // now verify that all points are correctly allocated
       for (String key : collector.getKeys()) {
         Cluster cluster = clusterMap.get(key);
-        List<Text> values = collector.getValue(key);
-        for (Writable value : values) {
-          String[] pointInfo = value.toString().split("\t");
-
-          Vector point = AbstractVector.decodeVector(pointInfo[1]);
+        List<KMeansInfo> values = collector.getValue(key);
+        for (KMeansInfo value : values) {
+          assertEquals("num points", 1, value.getPoints());
+          Vector point = value.getPointTotal();
           double distance = euclideanDistanceMeasure.distance(cluster
               .getCenter(), point);
           for (Cluster c : clusters)
@@ -245,7 +246,7 @@ public class TestKmeansClustering extends TestCase {
     List<Vector> points = getPoints(reference);
     for (int k = 0; k < points.size(); k++) {
       // pick k initial cluster centers at random
-      DummyOutputCollector<Text, Text> collector = new DummyOutputCollector<Text, Text>();
+      DummyOutputCollector<Text, KMeansInfo> collector = new DummyOutputCollector<Text, KMeansInfo>();
       List<Cluster> clusters = new ArrayList<Cluster>();
       for (int i = 0; i < k + 1; i++) {
         Vector vec = points.get(i);
@@ -263,7 +264,7 @@ public class TestKmeansClustering extends TestCase {
       }
       // now combine the data
       KMeansCombiner combiner = new KMeansCombiner();
-      DummyOutputCollector<Text, Text> collector2 = new DummyOutputCollector<Text, Text>();
+      DummyOutputCollector<Text, KMeansInfo> collector2 = new DummyOutputCollector<Text, KMeansInfo>();
       for (String key : collector.getKeys())
         combiner.reduce(new Text(key), collector.getValue(key).iterator(),
             collector2, null);
@@ -273,13 +274,12 @@ public class TestKmeansClustering extends TestCase {
       int count = 0;
       Vector total = new DenseVector(2);
       for (String key : collector2.getKeys()) {
-        List<Text> values = collector2.getValue(key);
+        List<KMeansInfo> values = collector2.getValue(key);
         assertEquals("too many values", 1, values.size());
-        String value = values.get(0).toString();
+        KMeansInfo info = values.get(0);
 
-        String[] pointInfo = value.split("\t");
-        count += Integer.parseInt(pointInfo[0]);
-        total = total.plus(AbstractVector.decodeVector(pointInfo[1]));
+        count += info.getPoints();
+        total = total.plus(info.getPointTotal());
       }
       assertEquals("total points", 9, count);
       assertEquals("point total[0]", 27, (int) total.get(0));
@@ -301,7 +301,7 @@ public class TestKmeansClustering extends TestCase {
     for (int k = 0; k < points.size(); k++) {
       System.out.println("K = " + k);
       // pick k initial cluster centers at random
-      DummyOutputCollector<Text, Text> collector = new DummyOutputCollector<Text, Text>();
+      DummyOutputCollector<Text, KMeansInfo> collector = new DummyOutputCollector<Text, KMeansInfo>();
       List<Cluster> clusters = new ArrayList<Cluster>();
       for (int i = 0; i < k + 1; i++) {
         Vector vec = points.get(i);
@@ -318,7 +318,7 @@ public class TestKmeansClustering extends TestCase {
       }
       // now combine the data
       KMeansCombiner combiner = new KMeansCombiner();
-      DummyOutputCollector<Text, Text> collector2 = new DummyOutputCollector<Text, Text>();
+      DummyOutputCollector<Text, KMeansInfo> collector2 = new DummyOutputCollector<Text, KMeansInfo>();
       for (String key : collector.getKeys())
         combiner.reduce(new Text(key), collector.getValue(key).iterator(),
             collector2, null);
@@ -435,6 +435,63 @@ public class TestKmeansClustering extends TestCase {
     }
   }
 
+  /**
+   * Story: User wishes to run kmeans job on reference data converted to
+   * VectorWritable SequenceFiles
+   * 
+   * @throws Exception
+   */
+  public void testKMeansMRJobWithVectorWritableInput() throws Exception {
+    List<Vector> points = getPoints(reference);
+    File testData = new File("testdata");
+    if (!testData.exists())
+      testData.mkdir();
+    testData = new File("testdata/points");
+    if (!testData.exists())
+      testData.mkdir();
+
+    writePointsToFile(points, "testdata/points/file1");
+    writePointsToFile(points, "testdata/points/file2");
+    TextToVectorWritableDriver.runJob("testdata/points", "testdata/vectors");
+
+    int k = 1;
+    JobConf job = new JobConf(KMeansDriver.class);
+    FileSystem fs = FileSystem.get(job);
+    Path path = new Path("testdata/clusters/part-00000");
+    SequenceFile.Writer writer = new SequenceFile.Writer(fs, job, path,
+        Text.class, Text.class);
+    for (int i = 0; i < k + 1; i++) {
+      Cluster cluster = new Cluster(points.get(i), i);
+      // add the center so the centroid will be correct upon output
+      cluster.addPoint(cluster.getCenter());
+      writer.append(new Text(cluster.getIdentifier()), new Text(Cluster
+          .formatCluster(cluster)));
+    }
+    writer.close();
+    // now run the Job
+    KMeansJob.runJob("testdata/vectors", "testdata/clusters", "output",
+        EuclideanDistanceMeasure.class.getName(), 0.001, 10, k + 1);
+    // the clustered points come back as VectorWritable keys
+    SequenceFile.Reader reader = new SequenceFile.Reader(fs, new Path(
+        "output/points/part-00000"), job);
+    assertEquals("key class", VectorWritable.class, reader.getKeyClass());
+    VectorWritable key = new VectorWritable();
+    Text value = new Text();
+    DummyOutputCollector<Text, VectorWritable> collector = new DummyOutputCollector<Text, VectorWritable>();
+    while (reader.next(key, value)) {
+      collector.collect(value, key);
+      key = new VectorWritable();
+    }
+    reader.close();
+    int[] expect = expectedNumPoints[k];
+    assertEquals("clusters[" + k + ']', expect.length, collector.getKeys()
+        .size());
+    int i = 0;
+    for (String clusterId : collector.getKeys())
+      assertEquals("points[" + clusterId + ']', expect[i++], collector
+          .getValue(clusterId).size());
+  }
+
   /**
    * Story: User wants to use canopy clustering to input the initial clusters
    * for kmeans job.
@@ -354,6 +354,31 @@ public abstract class MatrixTest extends TestCase {
                 values[row][col] * 4.53, value.getQuick(row, col));
   }
 
+  public void testScaleInPlace() {
+    int[] c = test.cardinality();
+    assertSame("result", test, test.scaleInPlace(4.53));
+    for (int row = 0; row < c[ROW]; row++)
+      for (int col = 0; col < c[COL]; col++)
+        assertEquals("value[" + row + "][" + col + ']',
+                values[row][col] * 4.53, test.getQuick(row, col));
+  }
+
+  public void testAxpy() {
+    int[] c = test.cardinality();
+    Matrix other = test.copy();
+    assertSame("result", test, test.axpy(-2, other));
+    for (int row = 0; row < c[ROW]; row++)
+      for (int col = 0; col < c[COL]; col++)
+        assertEquals("value[" + row + "][" + col + ']',
+                -values[row][col], test.getQuick(row, col), 1.0e-12);
+    try {
+      test.axpy(1, test.transpose());
+      fail("cardinality exception expected");
+    } catch (CardinalityException e) {
+      assertTrue(true);
+    }
+  }
+
   public void testTimesMatrix() {
     int[] c = test.cardinality();
     Matrix transpose = test.transpose();
@@ -367,6 +392,58 @@ public abstract class MatrixTest extends TestCase {
     timestest.transpose().times(timestest);
   }
 
+  public void testTimesMatrixResult() {
+    Matrix transpose = test.transpose();
+    Matrix result = test.like(3, 3);
+    assertSame("result", result, test.times(transpose, result));
+    Matrix expected = test.times(transpose);
+    for (int row = 0; row < 3; row++)
+      for (int col = 0; col < 3; col++) {
+        double sum = 0;
+        for (int k = 0; k < 2; k++)
+          sum += values[row][k] * values[col][k];
+        assertEquals("value[" + row + "][" + col + ']', sum, result.getQuick(row, col), 1.0e-12);
+        assertEquals("value[" + row + "][" + col + ']', sum, expected.getQuick(row, col), 1.0e-12);
+      }
+  }
+
+  public void testTimesMatrixResultAliased() {
+    Matrix square = matrixFactory(new double[][] { {1, 2}, {3, 4} });
+    Matrix expected = square.times(square);
+    square.times(square, square);
+    for (int row = 0; row < 2; row++)
+      for (int col = 0; col < 2; col++)
+        assertEquals("value[" + row + "][" + col + ']', expected.getQuick(row, col), square.getQuick(row, col));
+    assertEquals("value[0][0]", 7.0, square.getQuick(0, 0));
+  }
+
+  public void testTimesMatrixResultCardinality() {
+    try {
+      test.times(test.transpose(), test.like(2, 2));
+      fail("cardinality exception expected");
+    } catch (CardinalityException e) {
+      assertTrue(true);
+    }
+  }
+
+  public void testTimesVector() {
+    double[] data = {2.0, -1.0};
+    for (Vector v : new Vector[] { new DenseVector(data), new SparseVector(2) }) {
+      if (v instanceof SparseVector)
+        v.assign(data);
+      Vector value = test.times(v);
+      assertEquals("cardinality", values.length, value.cardinality());
+      for (int row = 0; row < values.length; row++)
+        assertEquals("value[" + row + ']', values[row][0] * 2.0 - values[row][1], value.getQuick(row), 1.0e-12);
+    }
+    try {
+      test.times(new DenseVector(3));
+      fail("cardinality exception expected");
+    } catch (CardinalityException e) {
+      assertTrue(true);
+    }
+  }
+
   public void testTimesMatrixCardinality() {
     Matrix other = test.like(5, 8);
     try {
@@ -480,4 +557,83 @@ public abstract class MatrixTest extends TestCase {
     assertEquals("determinant", 43.0, m.determinant());
   }
 
+  public void testDeterminantCardinality() {
+    try {
+      test.determinant();
+      fail("cardinality exception expected");
+    } catch (CardinalityException e) {
+      assertTrue(true);
+    }
+  }
+
+  public void testInverse() {
+    Matrix m = matrixFactory(new double[][] { {1,3,4},{5,2,3},{1,4,2} });
+    Matrix product = m.times(m.inverse());
+    for (int row = 0; row < 3; row++)
+      for (int col = 0; col < 3; col++)
+        assertEquals("value[" + row + "][" + col + ']', row == col ? 1.0 : 0.0,
+                product.getQuick(row, col), 1.0e-12);
+    try {
+      matrixFactory(new double[][] { {1,2},{2,4} }).inverse();
+      fail("singular matrix exception expected");
+    } catch (SingularMatrixException e) {
+      assertTrue(true);
+    }
+  }
+
+  public void testSolve() {
+    Matrix m = matrixFactory(new double[][] { {1,3,4},{5,2,3},{1,4,2} });
+    Vector x = m.solve(new DenseVector(new double[] {8, 10, 7}));
+    assertEquals("x[0]", 1.0, x.getQuick(0), 1.0e-12);
+    assertEquals("x[1]", 1.0, x.getQuick(1), 1.0e-12);
+    assertEquals("x[2]", 1.0, x.getQuick(2), 1.0e-12);
+    // least squares for the 3x2 test matrix: the right hand side is in its span
+    Matrix b = test.times(matrixFactory(new double[][] { {1,-2},{2,0.5} }));
+    Matrix solution = test.solve(b);
+    assertEquals("solution[0][0]", 1.0, solution.getQuick(0, 0), 1.0e-12);
+    assertEquals("solution[0][1]", -2.0, solution.getQuick(0, 1), 1.0e-12);
+    assertEquals("solution[1][0]", 2.0, solution.getQuick(1, 0), 1.0e-12);
+    assertEquals("solution[1][1]", 0.5, solution.getQuick(1, 1), 1.0e-12);
+  }
+
+  public void testAggregate() {
+    UnaryFunction square = new UnaryFunction() {
+      @Override
+      public double apply(double x) {
+        return x * x;
+      }
+    };
+    UnaryFunction identity = new UnaryFunction() {
+      @Override
+      public double apply(double x) {
+        return x;
+      }
+    };
+    BinaryFunction max = new BinaryFunction() {
+      @Override
+      public double apply(double a, double b) {
+        return Math.max(a, b);
+      }
+    };
+    double sumOfSquares = 0;
+    for (double[] row : values)
+      for (double value : row)
+        sumOfSquares += value * value;
+    assertEquals("sum of squares", sumOfSquares, test.aggregate(BinaryFunction.plus, square), 1.0e-12);
+    assertEquals("max", 6.6, test.aggregate(max, identity), 1.0e-12);
+    assertEquals("self dot", sumOfSquares, test.aggregate(test.copy(), BinaryFunction.plus, BinaryFunction.times),
+        1.0e-12);
+    assertEquals("max product", 6.6 * 6.6, test.aggregate(test, max, BinaryFunction.times), 1.0e-12);
+    final double[] visited = new double[1];
+    assertTrue("completed", test.foreachNonZero(new IntIntDoubleProcedure() {
+      @Override
+      public boolean apply(int row, int column, double value) {
+        assertEquals("value[" + row + "][" + column + ']', values[row][column], value, 1.0e-12);
+        visited[0]++;
+        return true;
+      }
+    }));
+    assertEquals("cells", 6.0, visited[0]);
+  }
+
 }
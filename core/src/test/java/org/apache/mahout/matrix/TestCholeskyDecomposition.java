@@ -0,0 +1,69 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.matrix;
+
+import junit.framework.TestCase;
+
+public class TestCholeskyDecomposition extends TestCase {
+
+  private final double[][] values = { {4, 12, -16}, {12, 37, -43}, {-16, -43, 98} };
+
+  public TestCholeskyDecomposition(String name) {
+    super(name);
+  }
+
+  public void testFactor() {
+    CholeskyDecomposition cholesky = new CholeskyDecomposition(new DenseMatrix(values));
+    assertTrue("positive definite", cholesky.isPositiveDefinite());
+    double[][] expected = { {2, 0, 0}, {6, 1, 0}, {-8, 5, 3} };
+    Matrix l = cholesky.getL();
+    for (int row = 0; row < 3; row++)
+      for (int col = 0; col < 3; col++)
+        assertEquals("value[" + row + "][" + col + ']', expected[row][col], l.getQuick(row, col), 1.0e-12);
+    assertEquals("determinant", 36.0, cholesky.determinant(), 1.0e-9);
+    assertEquals("log determinant", Math.log(36.0), cholesky.logDeterminant(), 1.0e-12);
+  }
+
+  public void testSolve() {
+    Matrix a = new DenseMatrix(values);
+    CholeskyDecomposition cholesky = new CholeskyDecomposition(a);
+    Vector b = new DenseVector(new double[] {1, 2, 3});
+    Vector x = cholesky.solve(b);
+    Vector ax = a.times(x);
+    for (int i = 0; i < 3; i++)
+      assertEquals("b[" + i + ']', b.getQuick(i), ax.getQuick(i), 1.0e-9);
+    Matrix product = a.times(cholesky.inverse());
+    for (int row = 0; row < 3; row++)
+      for (int col = 0; col < 3; col++)
+        assertEquals("value[" + row + "][" + col + ']', row == col ? 1.0 : 0.0,
+            product.getQuick(row, col), 1.0e-9);
+  }
+
+  public void testNotPositiveDefinite() {
+    CholeskyDecomposition cholesky = new CholeskyDecomposition(new DenseMatrix(new double[][] { {1, 2}, {2, 1} }));
+    assertFalse("positive definite", cholesky.isPositiveDefinite());
+    assertEquals("determinant", 0.0, cholesky.determinant());
+    try {
+      cholesky.solve(new DenseVector(2));
+      fail("singular matrix exception expected");
+    } catch (SingularMatrixException e) {
+      assertTrue(true);
+    }
+  }
+
+}
@@ -0,0 +1,153 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.matrix;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+public class TestCompressedSparseMatrix extends TestCase {
+
+  private final double[][] values = { {0, 1.5, 0, 2}, {0, 0, 0, 0}, {3, 0, -1, 0} };
+
+  private CompressedSparseMatrix test;
+
+  public TestCompressedSparseMatrix(String name) {
+    super(name);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    // add out of order, with a duplicate and a cell that cancels out
+    test = new CompressedSparseMatrix.Builder(3, 4).add(2, 2, -1).add(0, 3, 2)
+        .add(2, 0, 1).add(0, 1, 1.5).add(2, 0, 2).add(1, 2, 4).add(1, 2, -4)
+        .build();
+  }
+
+  private void assertValues(double[][] expected, Matrix actual) {
+    int[] c = actual.cardinality();
+    assertEquals("rows", expected.length, c[AbstractMatrix.ROW]);
+    assertEquals("cols", expected[0].length, c[AbstractMatrix.COL]);
+    for (int row = 0; row < expected.length; row++)
+      for (int col = 0; col < expected[row].length; col++)
+        assertEquals("value[" + row + "][" + col + ']', expected[row][col], actual.getQuick(row, col));
+  }
+
+  public void testBuilder() {
+    assertTrue("row major", test.isRowMajor());
+    assertEquals("non-zeros", 4, test.getNumNonZeros());
+    assertValues(values, test);
+    assertValues(values, CompressedSparseMatrix.valueOf(new DenseMatrix(values)));
+  }
+
+  public void testGetRowAndColumn() {
+    Vector row = test.getRow(0);
+    assertEquals("row size", 2, row.size());
+    assertEquals("row[1]", 1.5, row.getQuick(1));
+    assertEquals("row[3]", 2.0, row.getQuick(3));
+    assertEquals("empty row", 0, test.getRow(1).size());
+    Vector column = test.getColumn(0);
+    assertEquals("column cardinality", 3, column.cardinality());
+    assertEquals("column[2]", 3.0, column.getQuick(2));
+    assertEquals("column[0]", 0.0, column.getQuick(0));
+  }
+
+  public void testTranspose() {
+    Matrix transpose = test.transpose();
+    assertFalse("column major", ((CompressedSparseMatrix) transpose).isRowMajor());
+    for (int row = 0; row < 3; row++)
+      for (int col = 0; col < 4; col++)
+        assertEquals("value[" + col + "][" + row + ']', values[row][col], transpose.getQuick(col, row));
+    assertValues(values, transpose.transpose());
+  }
+
+  public void testConversions() {
+    CompressedSparseMatrix csc = test.toColumnMajor();
+    assertFalse("column major", csc.isRowMajor());
+    assertValues(values, csc);
+    assertSame("already column major", csc, csc.toColumnMajor());
+    CompressedSparseMatrix csr = csc.toRowMajor();
+    assertTrue("row major", csr.isRowMajor());
+    assertValues(values, csr);
+    assertEquals("column[2]", -1.0, csc.getColumn(2).getQuick(2));
+  }
+
+  public void testTimesVector() {
+    Vector x = new DenseVector(new double[] {1, 2, 3, 4});
+    double[] expected = {11, 0, 0};
+    for (Matrix m : new Matrix[] { test, test.toColumnMajor() }) {
+      Vector y = m.times(x);
+      Vector sparseY = m.times(new SparseVector(4).assign(x));
+      for (int i = 0; i < 3; i++) {
+        assertEquals("y[" + i + ']', expected[i], y.getQuick(i));
+        assertEquals("y[" + i + ']', expected[i], sparseY.getQuick(i));
+      }
+    }
+    Vector y = test.transpose().times(new DenseVector(new double[] {1, 1, 1}));
+    assertEquals("y[0]", 3.0, y.getQuick(0));
+    assertEquals("y[2]", -1.0, y.getQuick(2));
+  }
+
+  public void testTimesMatrix() {
+    Matrix product = test.times(test.transpose());
+    Matrix expected = new DenseMatrix(values).times(new DenseMatrix(values).transpose());
+    for (int row = 0; row < 3; row++)
+      for (int col = 0; col < 3; col++)
+        assertEquals("value[" + row + "][" + col + ']', expected.getQuick(row, col), product.getQuick(row, col));
+  }
+
+  public void testWritable() throws Exception {
+    for (CompressedSparseMatrix m : new CompressedSparseMatrix[] { test, test.toColumnMajor() }) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      m.write(out);
+      out.close();
+      CompressedSparseMatrix read = new CompressedSparseMatrix();
+      read.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+      assertEquals("row major", m.isRowMajor(), read.isRowMajor());
+      assertEquals("non-zeros", 4, read.getNumNonZeros());
+      assertValues(values, read);
+    }
+  }
+
+  public void testImmutable() {
+    try {
+      test.setQuick(0, 0, 1.0);
+      fail("unsupported operation exception expected");
+    } catch (UnsupportedOperationException e) {
+      assertTrue(true);
+    }
+    Matrix sum = test.plus(1.0);
+    assertEquals("sum[1][1]", 1.0, sum.getQuick(1, 1));
+    assertEquals("test[1][1]", 0.0, test.getQuick(1, 1));
+  }
+
+  public void testBuilderIndex() {
+    try {
+      new CompressedSparseMatrix.Builder(2, 2).add(2, 0, 1.0);
+      fail("index exception expected");
+    } catch (IndexException e) {
+      assertTrue(true);
+    }
+  }
+
+}
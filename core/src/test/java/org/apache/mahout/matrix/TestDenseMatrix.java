@@ -17,6 +17,8 @@
 
 package org.apache.mahout.matrix;
 
+import java.util.Random;
+
 public class TestDenseMatrix extends MatrixTest {
 
   public TestDenseMatrix(String name) {
@@ -28,6 +30,33 @@ public class TestDenseMatrix extends MatrixTest {
     return new DenseMatrix(values);
   }
 
+  public void testTimesLargeMatrix() {
+    // big enough to span several blocks and to be split across threads
+    Random random = new Random(42);
+    Matrix a = randomMatrix(random, 150, 130);
+    Matrix b = randomMatrix(random, 130, 170);
+    Matrix product = a.times(b);
+    for (int row = 0; row < 150; row++)
+      for (int col = 0; col < 170; col++) {
+        double sum = 0;
+        for (int k = 0; k < 130; k++)
+          sum += a.getQuick(row, k) * b.getQuick(k, col);
+        assertEquals("value[" + row + "][" + col + ']', sum, product.getQuick(row, col), 1.0e-9);
+      }
+    Vector v = b.getColumn(3);
+    Vector av = a.times(v);
+    for (int row = 0; row < 150; row++)
+      assertEquals("value[" + row + ']', product.getQuick(row, 3), av.getQuick(row), 1.0e-9);
+  }
+
+  private static Matrix randomMatrix(Random random, int rows, int columns) {
+    Matrix m = new DenseMatrix(rows, columns);
+    for (int row = 0; row < rows; row++)
+      for (int col = 0; col < columns; col++)
+        m.setQuick(row, col, random.nextGaussian());
+    return m;
+  }
+
   public void testAsFormatString() {
     assertEquals("format", "[[, 1.1, 2.2, ], 3.3, 4.4, ], 5.5, 6.6, ], ] ",
             test.asWritableComparable().toString());
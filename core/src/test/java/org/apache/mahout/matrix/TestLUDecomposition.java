@@ -0,0 +1,107 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.matrix;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+public class TestLUDecomposition extends TestCase {
+
+  private final double[][] values = { {2, 1, 1}, {4, -6, 0}, {-2, 7, 2} };
+
+  public TestLUDecomposition(String name) {
+    super(name);
+  }
+
+  public void testFactors() {
+    Matrix a = new DenseMatrix(values);
+    LUDecomposition lu = new LUDecomposition(a);
+    Matrix product = lu.getL().times(lu.getU());
+    int[] pivot = lu.getPivot();
+    for (int row = 0; row < 3; row++)
+      for (int col = 0; col < 3; col++)
+        assertEquals("value[" + row + "][" + col + ']', values[pivot[row]][col],
+            product.getQuick(row, col), 1.0e-12);
+    assertEquals("largest pivot first", 1, pivot[0]);
+    assertEquals("determinant", -16.0, lu.determinant(), 1.0e-12);
+  }
+
+  public void testSolveReused() {
+    LUDecomposition lu = new LUDecomposition(new DenseMatrix(values));
+    assertFalse("singular", lu.isSingular());
+    Vector x = lu.solve(new DenseVector(new double[] {5, -2, 9}));
+    assertEquals("x[0]", 1.0, x.getQuick(0), 1.0e-12);
+    assertEquals("x[1]", 1.0, x.getQuick(1), 1.0e-12);
+    assertEquals("x[2]", 2.0, x.getQuick(2), 1.0e-12);
+    Matrix inverse = lu.inverse();
+    Matrix product = inverse.times(new DenseMatrix(values));
+    for (int row = 0; row < 3; row++)
+      for (int col = 0; col < 3; col++)
+        assertEquals("value[" + row + "][" + col + ']', row == col ? 1.0 : 0.0,
+            product.getQuick(row, col), 1.0e-12);
+  }
+
+  public void testLargeDeterminant() {
+    // far beyond what cofactor expansion could handle
+    Random random = new Random(42);
+    int n = 60;
+    Matrix a = new DenseMatrix(n, n);
+    double expected = 1.0;
+    for (int row = 0; row < n; row++) {
+      double diagonal = 1.0 + random.nextDouble();
+      expected *= diagonal;
+      a.setQuick(row, row, diagonal);
+      for (int col = row + 1; col < n; col++)
+        a.setQuick(row, col, random.nextGaussian());
+    }
+    // shuffle the rows of the triangular matrix by swapping the first two
+    Vector first = a.getRow(0);
+    a.assignRow(0, a.getRow(1));
+    a.assignRow(1, first);
+    assertEquals("determinant", -expected, a.determinant(), Math.abs(expected) * 1.0e-10);
+  }
+
+  public void testSingular() {
+    LUDecomposition lu = new LUDecomposition(new DenseMatrix(new double[][] { {1, 2}, {2, 4} }));
+    assertTrue("singular", lu.isSingular());
+    assertEquals("determinant", 0.0, lu.determinant(), 0.0);
+    try {
+      lu.solve(new DenseVector(2));
+      fail("singular matrix exception expected");
+    } catch (SingularMatrixException e) {
+      assertTrue(true);
+    }
+  }
+
+  public void testCardinality() {
+    try {
+      new LUDecomposition(new DenseMatrix(2, 3));
+      fail("cardinality exception expected");
+    } catch (CardinalityException e) {
+      assertTrue(true);
+    }
+    try {
+      new LUDecomposition(new DenseMatrix(values)).solve(new DenseVector(2));
+      fail("cardinality exception expected");
+    } catch (CardinalityException e) {
+      assertTrue(true);
+    }
+  }
+
+}
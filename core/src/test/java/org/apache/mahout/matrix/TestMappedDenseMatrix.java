@@ -0,0 +1,93 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.matrix;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ReadOnlyBufferException;
+
+public class TestMappedDenseMatrix extends MatrixTest {
+
+  private File file;
+
+  public TestMappedDenseMatrix(String name) {
+    super(name);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    file = File.createTempFile("matrix", ".bin");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    file.delete();
+    super.tearDown();
+  }
+
+  @Override
+  public Matrix matrixFactory(double[][] values) {
+    Matrix result = new MappedDenseMatrix(values.length, values[0].length);
+    result.assign(values);
+    return result;
+  }
+
+  public void testCreateAndMap() throws Exception {
+    MappedDenseMatrix created = MappedDenseMatrix.create(file, 3, 2);
+    created.assign(values);
+    MappedDenseMatrix mapped = MappedDenseMatrix.map(file, true);
+    for (int row = 0; row < 3; row++)
+      for (int col = 0; col < 2; col++)
+        assertEquals("value[" + row + "][" + col + ']', values[row][col], mapped.getQuick(row, col));
+    // both mappings share the file
+    created.setQuick(1, 1, 9.5);
+    assertEquals("shared value", 9.5, mapped.getQuick(1, 1));
+    try {
+      mapped.setQuick(0, 0, 1.0);
+      fail("read only exception expected");
+    } catch (ReadOnlyBufferException e) {
+      assertTrue(true);
+    }
+  }
+
+  public void testMapDataOutput() throws Exception {
+    DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+    out.writeInt(3);
+    out.writeInt(2);
+    for (double[] row : values)
+      for (double value : row)
+        out.writeDouble(value);
+    out.close();
+    Matrix mapped = MappedDenseMatrix.map(file, true);
+    assertEquals("zsum", 23.1, mapped.zSum(), 1.0e-12);
+    Vector row = mapped.getRow(2);
+    assertTrue("row class", row instanceof MappedDenseVector);
+    assertEquals("row[1]", 6.6, row.getQuick(1));
+  }
+
+  public void testRowSharesStorage() {
+    Vector row = test.getRow(1);
+    row.setQuick(0, 7.0);
+    assertEquals("matrix value", 7.0, test.getQuick(1, 0));
+    Matrix product = test.times(new DenseMatrix(new double[][] { {1, 0}, {0, 1} }));
+    assertEquals("product value", 7.0, product.getQuick(1, 0));
+  }
+
+}
@@ -0,0 +1,107 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.matrix;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.io.DataOutputBuffer;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.DoubleBuffer;
+
+public class TestMappedDenseVector extends TestCase {
+
+  final double[] values = { 1.1, 2.2, 3.3 };
+
+  Vector test;
+
+  public TestMappedDenseVector(String name) {
+    super(name);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    test = new MappedDenseVector(3).assign(values);
+  }
+
+  public void testAsFormatString() {
+    assertEquals("format", "[, 1.1, 2.2, 3.3, ] ", test.asWritableComparable().toString());
+  }
+
+  public void testCopy() {
+    Vector copy = test.copy();
+    copy.setQuick(0, 5.0);
+    assertEquals("copy[0]", 5.0, copy.getQuick(0));
+    assertEquals("test[0]", 1.1, test.getQuick(0));
+    assertFalse("shared cells", test.haveSharedCells(copy));
+  }
+
+  public void testWrapBuffer() {
+    DoubleBuffer buffer = DoubleBuffer.wrap(new double[] {0, 1, 2, 3});
+    buffer.position(1);
+    Vector v = new MappedDenseVector(buffer);
+    assertEquals("cardinality", 3, v.cardinality());
+    v.setQuick(0, 4.0);
+    assertEquals("buffer[1]", 4.0, buffer.get(1));
+  }
+
+  public void testArithmetic() {
+    Vector dense = new DenseVector(values);
+    assertEquals("dot", dense.dot(dense), test.dot(dense), 1.0e-12);
+    Vector sum = test.plus(dense);
+    assertEquals("sum[2]", 6.6, sum.getQuick(2), 1.0e-12);
+    assertEquals("view", 2.2, test.viewPart(1, 2).getQuick(0));
+    Matrix cross = test.cross(dense);
+    assertTrue("cross class", cross instanceof MappedDenseMatrix);
+    assertEquals("cross[1][2]", 2.2 * 3.3, cross.getQuick(1, 2), 1.0e-12);
+  }
+
+  public void testWritable() throws Exception {
+    DataOutputBuffer out = new DataOutputBuffer();
+    test.write(out);
+    Vector read = new MappedDenseVector();
+    read.readFields(new DataInputStream(new ByteArrayInputStream(out.getData())));
+    for (int i = 0; i < 3; i++)
+      assertEquals("read[" + i + ']', values[i], read.getQuick(i));
+  }
+
+  public void testMapDenseVectorFile() throws Exception {
+    File file = File.createTempFile("vector", ".bin");
+    try {
+      DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+      new DenseVector(values).write(out);
+      out.close();
+      Vector mapped = MappedDenseVector.map(file, false);
+      assertEquals("cardinality", 3, mapped.cardinality());
+      assertEquals("mapped[2]", 3.3, mapped.getQuick(2));
+      mapped.setQuick(2, 4.5);
+      assertEquals("remapped[2]", 4.5, MappedDenseVector.map(file, true).getQuick(2));
+      Vector created = MappedDenseVector.create(file, 5);
+      assertEquals("created", 0.0, created.zSum());
+      assertEquals("file length", MappedDenseVector.HEADER_SIZE + 5 * 8, file.length());
+    } finally {
+      file.delete();
+    }
+  }
+
+}
@@ -0,0 +1,78 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.matrix;
+
+import junit.framework.TestCase;
+
+public class TestQRDecomposition extends TestCase {
+
+  private final double[][] values = { {12, -51, 4}, {6, 167, -68}, {-4, 24, -41}, {1, 1, 1} };
+
+  public TestQRDecomposition(String name) {
+    super(name);
+  }
+
+  public void testFactors() {
+    Matrix a = new DenseMatrix(values);
+    QRDecomposition qr = new QRDecomposition(a);
+    assertTrue("full rank", qr.isFullRank());
+    Matrix q = qr.getQ();
+    Matrix r = qr.getR();
+    Matrix product = q.times(r);
+    for (int row = 0; row < 4; row++)
+      for (int col = 0; col < 3; col++)
+        assertEquals("value[" + row + "][" + col + ']', values[row][col], product.getQuick(row, col), 1.0e-9);
+    Matrix qtq = q.transpose().times(q);
+    for (int row = 0; row < 3; row++)
+      for (int col = 0; col < 3; col++) {
+        assertEquals("q'q[" + row + "][" + col + ']', row == col ? 1.0 : 0.0, qtq.getQuick(row, col), 1.0e-12);
+        if (row > col)
+          assertEquals("r[" + row + "][" + col + ']', 0.0, r.getQuick(row, col));
+      }
+  }
+
+  public void testLeastSquares() {
+    // fit a line to four points, by hand: Sxy = 9, Sxx = 5
+    Matrix a = new DenseMatrix(new double[][] { {1, 0}, {1, 1}, {1, 2}, {1, 3} });
+    Vector y = new DenseVector(new double[] {1.5, 2.5, 5.5, 6.5});
+    Vector x = new QRDecomposition(a).solve(y);
+    assertEquals("intercept", 1.3, x.getQuick(0), 1.0e-12);
+    assertEquals("slope", 1.8, x.getQuick(1), 1.0e-12);
+  }
+
+  public void testRankDeficient() {
+    QRDecomposition qr = new QRDecomposition(new DenseMatrix(new double[][] { {1, 2}, {2, 4}, {3, 6} }));
+    assertFalse("full rank", qr.isFullRank());
+    try {
+      qr.solve(new DenseVector(3));
+      fail("singular matrix exception expected");
+    } catch (SingularMatrixException e) {
+      assertTrue(true);
+    }
+  }
+
+  public void testCardinality() {
+    try {
+      new QRDecomposition(new DenseMatrix(2, 3));
+      fail("cardinality exception expected");
+    } catch (CardinalityException e) {
+      assertTrue(true);
+    }
+  }
+
+}
@@ -19,6 +19,7 @@ package org.apache.mahout.matrix;
 
 import junit.framework.TestCase;
 import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Text;
 
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
@@ -56,6 +57,64 @@ public class TestVectorWritable extends TestCase {
 
   public void testVectors() throws Exception {
     doTest(new SparseVector(cardinality));
+    doTest(new SequentialAccessSparseVector(cardinality));
     doTest(new DenseVector(cardinality));
   }
+
+  public void testSparseFormatsInterchangeable() throws Exception {
+    Vector random = new SparseVector(cardinality);
+    for (int i = cardinality - 1; i > 0; i -= 2) {
+      random.set(i, i);
+    }
+    DataOutputBuffer out = new DataOutputBuffer();
+    random.write(out);
+    out.close();
+
+    Vector sequential = new SequentialAccessSparseVector();
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.getData()));
+    sequential.readFields(in);
+    in.close();
+    assertEquals(random.asFormatString(), sequential.asFormatString());
+
+    out = new DataOutputBuffer();
+    sequential.write(out);
+    out.close();
+    Vector copy = new SparseVector();
+    in = new DataInputStream(new ByteArrayInputStream(out.getData()));
+    copy.readFields(in);
+    in.close();
+    assertEquals(random, copy);
+  }
+
+  private static void doTestVectorWritable(Vector vector) throws Exception {
+    for (int i = 0; i < cardinality; i += 3) {
+      vector.set(i, i + 0.5);
+    }
+    DataOutputBuffer out = new DataOutputBuffer();
+    new VectorWritable(vector).write(out);
+    out.close();
+
+    VectorWritable writable = new VectorWritable();
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.getData()));
+    writable.readFields(in);
+    in.close();
+
+    Vector copy = writable.get();
+    assertEquals("class", vector.getClass(), copy.getClass());
+    assertEquals("cardinality", cardinality, copy.cardinality());
+    assertEquals("format", vector.asFormatString(), copy.asFormatString());
+  }
+
+  public void testVectorWritable() throws Exception {
+    doTestVectorWritable(new SparseVector(cardinality));
+    doTestVectorWritable(new SequentialAccessSparseVector(cardinality));
+    doTestVectorWritable(new DenseVector(cardinality));
+  }
+
+  public void testAsVector() throws Exception {
+    Vector vector = new DenseVector(new double[] {1.1, 2.2, 3.3});
+    assertSame(vector, VectorWritable.asVector(new VectorWritable(vector)));
+    assertEquals(vector.asFormatString(),
+        VectorWritable.asVector(new Text(vector.asFormatString())).asFormatString());
+  }
 }
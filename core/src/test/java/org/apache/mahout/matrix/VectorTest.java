@@ -88,4 +88,191 @@ public class VectorTest extends TestCase {
     doTestEnumeration(apriori, sparse);
   }
 
-}
\ No newline at end of file
+  private static Vector[] sameValues(double[] values) {
+    Vector[] result = {
+        new DenseVector(values.length),
+        new SparseVector(values.length),
+        new SequentialAccessSparseVector(values.length),
+        new VectorView(new DenseVector(values.length + 2), 1, values.length)
+    };
+    for (Vector vector : result) {
+      vector.assign(values);
+    }
+    return result;
+  }
+
+  private static void assertValues(String message, double[] expected, Vector actual) {
+    assertEquals(message + " cardinality", expected.length, actual.cardinality());
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(message + " [" + i + ']', expected[i], actual.get(i), 1.0e-12);
+    }
+  }
+
+  /**
+   * Checks dot, plus, minus, times and assign for every combination of dense, sparse and view operands against
+   * the same computation on plain arrays.
+   */
+  public void testMixedOperands() throws Exception {
+    double[] left = {0, 1.5, 0, 0, -2, 0, 3, 0, 0, 7};
+    double[] right = {4, 0, 0, 2.5, -1, 0, 0, 0, 6, 0};
+    double expectedDot = 0;
+    double[] sum = new double[left.length];
+    double[] difference = new double[left.length];
+    double[] product = new double[left.length];
+    for (int i = 0; i < left.length; i++) {
+      expectedDot += left[i] * right[i];
+      sum[i] = left[i] + right[i];
+      difference[i] = left[i] - right[i];
+      product[i] = left[i] * right[i];
+    }
+    for (Vector x : sameValues(left)) {
+      for (Vector y : sameValues(right)) {
+        String message = x.getClass().getSimpleName() + ", " + y.getClass().getSimpleName();
+        assertEquals(message + " dot", expectedDot, x.dot(y), 1.0e-12);
+        assertValues(message + " plus", sum, x.plus(y));
+        assertValues(message + " minus", difference, x.minus(y));
+        assertValues(message + " times", product, x.times(y));
+        assertValues(message + " unchanged", left, x);
+        assertValues(message + " assign plus", sum, x.copy().assign(y, BinaryFunction.plus));
+        assertValues(message + " assign times", product, x.copy().assign(y, BinaryFunction.times));
+      }
+    }
+  }
+
+  /**
+   * Checks that the in-place operations give the same values as their allocating counterparts and return the
+   * vector they modified.
+   */
+  public void testInPlaceOperations() throws Exception {
+    double[] left = {0, 1.5, 0, 0, -2, 0, 3, 0, 0, 7};
+    double[] right = {4, 0, 0, 2.5, -1, 0, 0, 0, 6, 0};
+    double[] axpy = new double[left.length];
+    double[] sum = new double[left.length];
+    double[] scaled = new double[left.length];
+    for (int i = 0; i < left.length; i++) {
+      axpy[i] = left[i] + 0.5 * right[i];
+      sum[i] = left[i] + right[i];
+      scaled[i] = left[i] * -3;
+    }
+    for (Vector x : sameValues(left)) {
+      for (Vector y : sameValues(right)) {
+        String message = x.getClass().getSimpleName() + ", " + y.getClass().getSimpleName();
+        Vector target = x.copy();
+        assertSame(message + " axpy result", target, target.axpy(0.5, y));
+        assertValues(message + " axpy", axpy, target);
+        target = x.copy();
+        assertSame(message + " addTo result", target, y.addTo(target));
+        assertValues(message + " addTo", sum, target);
+        assertValues(message + " unchanged", right, y);
+      }
+      Vector target = x.copy();
+      assertSame("scaleInPlace result", target, target.scaleInPlace(-3));
+      assertValues(x.getClass().getSimpleName() + " scaleInPlace", scaled, target);
+      target = x.copy().normalizeInPlace();
+      assertValues(x.getClass().getSimpleName() + " normalizeInPlace", x.normalize().toArray(), target);
+      assertEquals(x.getClass().getSimpleName() + " zero", 0.0, x.copy().scaleInPlace(0).zSum());
+    }
+  }
+
+  /**
+   * Checks the aggregates, with and without their sparse specialisations, and foreachNonZero for every
+   * combination of dense, sparse and view operands against the same computation on plain arrays.
+   */
+  public void testAggregate() throws Exception {
+    double[] left = {0, 1.5, 0, 0, -2, 0, 3, 0, 0, 7};
+    double[] right = {4, 0, 0, 2.5, -1, 0, 0, 0, 6, 0};
+    UnaryFunction square = new UnaryFunction() {
+      @Override
+      public double apply(double x) {
+        return x * x;
+      }
+    };
+    UnaryFunction plusOne = new UnaryFunction() {
+      @Override
+      public double apply(double x) {
+        return x + 1;
+      }
+    };
+    UnaryFunction identity = new UnaryFunction() {
+      @Override
+      public double apply(double x) {
+        return x;
+      }
+    };
+    BinaryFunction squaredDifference = new BinaryFunction() {
+      @Override
+      public double apply(double a, double b) {
+        return (a - b) * (a - b);
+      }
+    };
+    BinaryFunction min = new BinaryFunction() {
+      @Override
+      public double apply(double a, double b) {
+        return Math.min(a, b);
+      }
+    };
+    double sumOfSquares = 0;
+    double sumPlusOne = 0;
+    double dot = 0;
+    double distance = 0;
+    double minProduct = Double.MAX_VALUE;
+    double weightedSum = 0;
+    int nonZeros = 0;
+    for (int i = 0; i < left.length; i++) {
+      sumOfSquares += left[i] * left[i];
+      sumPlusOne += left[i] + 1;
+      dot += left[i] * right[i];
+      distance += (left[i] - right[i]) * (left[i] - right[i]);
+      minProduct = Math.min(minProduct, left[i] * right[i]);
+      if (left[i] != 0) {
+        weightedSum += i * left[i];
+        nonZeros++;
+      }
+    }
+    for (Vector x : sameValues(left)) {
+      String name = x.getClass().getSimpleName();
+      assertEquals(name + " sum of squares", sumOfSquares, x.aggregate(BinaryFunction.plus, square), 1.0e-12);
+      assertEquals(name + " sum plus one", sumPlusOne, x.aggregate(BinaryFunction.plus, plusOne), 1.0e-12);
+      assertEquals(name + " min", -2.0, x.aggregate(min, identity));
+      for (Vector y : sameValues(right)) {
+        String message = name + ", " + y.getClass().getSimpleName();
+        assertEquals(message + " dot", dot, x.aggregate(y, BinaryFunction.plus, BinaryFunction.times), 1.0e-12);
+        assertEquals(message + " distance", distance, x.aggregate(y, BinaryFunction.plus, squaredDifference),
+            1.0e-12);
+        assertEquals(message + " min product", minProduct, x.aggregate(y, min, BinaryFunction.times));
+      }
+      final double[] visited = new double[2];
+      assertTrue(name + " completed", x.foreachNonZero(new IntDoubleProcedure() {
+        @Override
+        public boolean apply(int index, double value) {
+          visited[0] += index * value;
+          visited[1]++;
+          return true;
+        }
+      }));
+      assertEquals(name + " weighted sum", weightedSum, visited[0], 1.0e-12);
+      assertEquals(name + " non-zeros", (double) nonZeros, visited[1]);
+      visited[1] = 0;
+      assertFalse(name + " stopped", x.foreachNonZero(new IntDoubleProcedure() {
+        @Override
+        public boolean apply(int index, double value) {
+          visited[1]++;
+          return false;
+        }
+      }));
+      assertEquals(name + " stopped after one", 1.0, visited[1]);
+    }
+    assertEquals("empty", 0.0, new SparseVector(0).aggregate(BinaryFunction.plus, plusOne));
+  }
+
+  public void testMinusSelf() throws Exception {
+    for (Vector x : sameValues(new double[] {0, 1, 0, 2})) {
+      Vector difference = x.minus(x);
+      assertEquals(x.getClass().getSimpleName(), 0.0, difference.zSum());
+      if (!(difference instanceof DenseVector) && !(difference instanceof VectorView)) {
+        assertEquals(x.getClass().getSimpleName() + " size", 0, difference.size());
+      }
+    }
+  }
+
+}
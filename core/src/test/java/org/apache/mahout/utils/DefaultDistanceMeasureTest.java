@@ -19,6 +19,8 @@ package org.apache.mahout.utils;
 
 import junit.framework.TestCase;
 import org.apache.mahout.matrix.DenseVector;
+import org.apache.mahout.matrix.SequentialAccessSparseVector;
+import org.apache.mahout.matrix.SparseVector;
 import org.apache.mahout.matrix.Vector;
 
 
@@ -59,4 +61,40 @@ public abstract class DefaultDistanceMeasureTest extends TestCase {
 
   }
 
+  public void testSparseVectors() {
+
+    DistanceMeasure distanceMeasure = distanceMeasureFactory();
+
+    double[][] values = {
+        {1, 0, 3, 0, 0, 2, 0},
+        {0, 4, 3, 0, -1, 0, 0},
+        {2, 0, 0, 0, 0, 1, 5}
+    };
+
+    for (double[] a : values) {
+      for (double[] b : values) {
+        double expected = distanceMeasure.distance(new DenseVector(a), new DenseVector(b));
+        Vector[] as = {new DenseVector(a), sparse(new SparseVector(a.length), a),
+            sparse(new SequentialAccessSparseVector(a.length), a)};
+        Vector[] bs = {new DenseVector(b), sparse(new SparseVector(b.length), b),
+            sparse(new SequentialAccessSparseVector(b.length), b)};
+        for (Vector x : as) {
+          for (Vector y : bs) {
+            assertEquals(x.getClass() + " " + y.getClass(), expected, distanceMeasure.distance(x, y), 1.0e-9);
+          }
+        }
+      }
+    }
+
+  }
+
+  private static Vector sparse(Vector vector, double[] values) {
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] != 0.0) {
+        vector.setQuick(i, values[i]);
+      }
+    }
+    return vector;
+  }
+
 }
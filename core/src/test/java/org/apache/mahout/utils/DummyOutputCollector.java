@@ -18,7 +18,6 @@
 package org.apache.mahout.utils;
 
 import org.apache.hadoop.io.Writable;
-import org.apache.hadoop.io.WritableComparable;
 import org.apache.hadoop.mapred.OutputCollector;
 
 import java.io.IOException;
@@ -28,7 +27,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 
-public class DummyOutputCollector<K extends WritableComparable, V extends Writable> implements OutputCollector<K, V> {
+public class DummyOutputCollector<K extends Writable, V extends Writable> implements OutputCollector<K, V> {
 
   final Map<String, List<V>> data = new TreeMap<String, List<V>>();
 